@@ -10,12 +10,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.ActionTimings;
 import com.automic.docker.utility.DockerUtility;
 import com.automic.docker.utility.URLValidator;
 import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 
 /**
@@ -49,6 +52,12 @@ public abstract class AbstractAction {
 
     private static final Logger LOGGER = LogManager.getLogger(AbstractAction.class);
 
+    private static final String PHASE_ARGUMENTS = "arguments";
+    private static final String PHASE_CLIENT = "client";
+    private static final String PHASE_REQUEST = "request";
+    private static final String PHASE_VALIDATE = "validate";
+    private static final String PHASE_OUTPUT = "output";
+
     private static final int BEGIN_HTTP_CODE = 200;
     private static final int END_HTTP_CODE = 300;
 
@@ -62,6 +71,16 @@ public abstract class AbstractAction {
      */
     protected String certFilePath;
 
+    /**
+     * Docker URL as given, before a unix URL is replaced by {@link Constants#UNIX_SOCKET_REQUEST_URL}
+     */
+    private String givenDockerUrl;
+
+    /**
+     * Path of the unix domain socket if the docker URL is a unix URL, null otherwise
+     */
+    private String socketPath;
+
     /**
      * Connection timeout in milliseconds
      */
@@ -87,6 +106,8 @@ public abstract class AbstractAction {
      * filepath.Then it will call the REST API of docker and gets the response which then validated and at last prepares
      * the out either in the form of xml or just a simple sysout.
      * 
+     * Every phase is timed, see {@link ActionTimings}.
+     * 
      * @param args
      *            Array of arguments
      * @throws DockerException
@@ -94,20 +115,48 @@ public abstract class AbstractAction {
      */
     public final void executeAction(String[] args) throws DockerException {
         Client client = null;
+        ClientResponse response = null;
+        ActionTimings timings = ActionTimings.start(getClass().getSimpleName());
+        boolean success = false;
         try {
+            timings.begin(PHASE_ARGUMENTS);
             logParameters(args);
             checkNoOfargs(args.length);
             trim(args);
             initializeArguments(args);
             validateInputs();
+            timings.begin(PHASE_CLIENT);
             client = getClient();
-            ClientResponse response = executeSpecific(client);
+            timings.begin(PHASE_REQUEST);
+            response = executeSpecific(client);
+            timings.begin(PHASE_VALIDATE);
             validateResponse(response);
+            timings.begin(PHASE_OUTPUT);
             prepareOutput(response);
+            success = true;
         } finally {
+            if (response != null) {
+                closeResponse(response);
+            }
             if (client != null) {
-                client.destroy();
+                HttpClientConfig.releaseClient(client);
             }
+            timings.finish(success);
+        }
+    }
+
+    /**
+     * Method to close the response. It returns the connection to the pool, or closes it if the response has not been
+     * read completely.
+     * 
+     * @param response
+     *            an instance of {@link ClientResponse}
+     */
+    private void closeResponse(ClientResponse response) {
+        try {
+            response.close();
+        } catch (ClientHandlerException e) {
+            LOGGER.warn("Error while closing response ", e);
         }
     }
 
@@ -199,8 +248,14 @@ public abstract class AbstractAction {
         connectionTimeOut = DockerUtility.getAndCheckUnsignedValue(args[AbstractAction.CONNECTION_TIMEOUT_INDEX]);
         readTimeOut = DockerUtility.getAndCheckUnsignedValue(args[AbstractAction.READ_TIMEOUT_INDEX]);
         dockerUrl = args[AbstractAction.DOCKER_URL_INDEX];
+        givenDockerUrl = dockerUrl;
         certFilePath = (args.length > AbstractAction.CERTIFICATE_INDEX) ? args[AbstractAction.CERTIFICATE_INDEX] : "";
         validateGeneralInputs();
+        if (URLValidator.isUnixSocket(dockerUrl)) {
+            // requests are built against a plain http url, the client sends them over the socket
+            socketPath = URLValidator.getSocketPath(dockerUrl);
+            dockerUrl = Constants.UNIX_SOCKET_REQUEST_URL;
+        }
         initialize(args);
     }
 
@@ -229,15 +284,19 @@ public abstract class AbstractAction {
 
     /**
      * Method to create an instance of {@link Client} using docker URL, certificate file path, connection timeout and
-     * read timeout.
+     * read timeout. For a unix URL the client connects to the socket instead.
      * 
      * @return an instance of {@link Client}
      * @throws DockerException
      */
     private Client getClient() throws DockerException {
-        try {
-            return HttpClientConfig.getClient(new URL(dockerUrl).getProtocol(), this.certFilePath, connectionTimeOut,
+        if (socketPath != null) {
+            return HttpClientConfig.getCachedClient(givenDockerUrl, Constants.UNIX, socketPath, connectionTimeOut,
                     readTimeOut);
+        }
+        try {
+            return HttpClientConfig.getCachedClient(givenDockerUrl, new URL(dockerUrl).getProtocol(),
+                    this.certFilePath, connectionTimeOut, readTimeOut);
         } catch (MalformedURLException ex) {
             String msg = String.format(ExceptionConstants.INVALID_DOCKER_URL, dockerUrl);
             LOGGER.error(msg, ex);
@@ -245,6 +304,27 @@ public abstract class AbstractAction {
         }
     }
 
+    /**
+     * @return docker URL as given to the action, also for a unix URL
+     */
+    protected String getGivenDockerUrl() {
+        return givenDockerUrl;
+    }
+
+    /**
+     * @return path of the unix domain socket if the docker URL is a unix URL, null otherwise
+     */
+    protected String getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * @return connection timeout in milliseconds
+     */
+    protected int getConnectionTimeOut() {
+        return connectionTimeOut;
+    }
+
     /**
      * Method to validate response from a HTTP client Request. If response is not in range of {@link HttpStatus#SC_OK}
      * and {@link HttpStatus#SC_MULTIPLE_CHOICES}, it throws {@link DockerException} else prints response on console.
@@ -0,0 +1,326 @@
+package com.automic.docker.actions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.automic.docker.config.TransportSettings;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Base class of the actions changing the state of a container, e.g. stop or remove. Instead of a single container id
+ * they accept a comma separated list of ids or names, or a filter like label=app=web or name=web, which selects among
+ * all containers including stopped ones (add status=running to the filter to select running containers only).
+ *
+ * Several containers are changed concurrently by a bounded pool of workers sharing the pooled connections of the
+ * client. Every call is reported with its status and latency, optionally in an xml file, and the action fails if any
+ * call failed. A container already in the requested state (docker answers 304 Not Modified) is reported as unchanged
+ * and does not fail the action. A single container id is changed as before, failing on any error.
+ */
+public abstract class AbstractContainerStateAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(AbstractContainerStateAction.class);
+
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final String CHANGED = "CHANGED";
+    private static final String UNCHANGED = "UNCHANGED";
+    private static final String FAILED = "FAILED";
+
+    private final String action;
+
+    private List<String> containers;
+    private String filter;
+    private String filePath;
+    private int concurrency;
+    private Client client;
+
+    /**
+     * @param noOfArgs
+     *            number of mandatory arguments
+     * @param action
+     *            name of the state change, used in the output
+     */
+    protected AbstractContainerStateAction(int noOfArgs, String action) {
+        super(noOfArgs);
+        this.action = action;
+    }
+
+    /**
+     * Method to log the arguments selecting the containers and controlling the fan out.
+     */
+    protected void logContainerParameters(String[] args, int containerIndex, int filePathIndex, int concurrencyIndex) {
+        LOGGER.info("Container-id = " + ((args.length > containerIndex) ? args[containerIndex] : ""));
+        LOGGER.info("File-path = " + ((args.length > filePathIndex) ? args[filePathIndex] : ""));
+        LOGGER.info("Concurrency = " + ((args.length > concurrencyIndex) ? args[concurrencyIndex] : ""));
+    }
+
+    /**
+     * Method to read the container ids or the filter, the path of the xml file and the number of concurrent calls.
+     */
+    protected void initializeContainers(String[] args, int containerIndex, int filePathIndex, int concurrencyIndex)
+            throws DockerException {
+        String value = args[containerIndex];
+        containers = new ArrayList<String>();
+        if (value.indexOf('=') >= 0) {
+            filter = value;
+            DockerUtility.toFilters(filter);
+        } else {
+            for (String container : value.split(",")) {
+                if (Validator.checkNotEmpty(container.trim())) {
+                    containers.add(container.trim());
+                }
+            }
+        }
+        if (args.length > filePathIndex) {
+            filePath = args[filePathIndex];
+        }
+        concurrency = DEFAULT_CONCURRENCY;
+        if (args.length > concurrencyIndex && Validator.checkNotEmpty(args[concurrencyIndex])) {
+            concurrency = DockerUtility.getAndCheckUnsignedValue(args[concurrencyIndex]);
+        }
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        if (filter == null && containers.isEmpty()) {
+            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
+            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
+        }
+        if (concurrency <= 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, concurrency);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    private boolean isBulk() {
+        return filter != null || containers.size() > 1 || Validator.checkNotEmpty(filePath);
+    }
+
+    /**
+     * {@inheritDoc AbstractContainerStateAction#executeSpecific(Client)} This method changes the state of a single
+     * container. For several containers it lists the containers matching the filter, or only checks that docker can
+     * be reached, the containers are changed while the output is prepared.
+     */
+    @Override
+    protected final ClientResponse executeSpecific(Client client) throws DockerException {
+        if (!isBulk()) {
+            return changeState(client, containers.get(0));
+        }
+        this.client = client;
+        WebResource webResource;
+        if (filter != null) {
+            webResource = client.resource(dockerUrl).path("containers").path("json").queryParam("all", "1")
+                    .queryParam("filters", DockerUtility.toFilters(filter).toString());
+        } else {
+            webResource = client.resource(dockerUrl).path("_ping");
+        }
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+    }
+
+    /**
+     * Method to call docker to change the state of one container.
+     *
+     * @param client
+     *            the client
+     * @param container
+     *            id or name of the container
+     * @return the response of docker
+     */
+    protected abstract ClientResponse changeState(Client client, String container) throws DockerException;
+
+    /**
+     * {@inheritDoc AbstractContainerStateAction#prepareOutput(ClientResponse)} This method does nothing for a single
+     * container as only a success message is printed on console. For several containers it changes them concurrently
+     * and reports the result of every call.
+     */
+    @Override
+    protected final void prepareOutput(ClientResponse response) throws DockerException {
+        if (!isBulk()) {
+            return;
+        }
+        if (filter != null) {
+            JSONArray matched = DockerUtility.jsonArrayResponse(response.getEntityInputStream());
+            for (int i = 0; i < matched.length(); i++) {
+                containers.add(matched.getJSONObject(i).getString("Id"));
+            }
+            if (containers.isEmpty()) {
+                String msg = String.format(ExceptionConstants.NO_CONTAINER_MATCHES_FILTER, filter);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            LOGGER.info(containers.size() + " containers match the filter " + filter);
+        }
+
+        int threads = Math.min(containers.size(), concurrency);
+        if (threads > TransportSettings.getPoolMaxPerRoute()) {
+            LOGGER.warn("Concurrency " + threads + " exceeds the " + TransportSettings.getPoolMaxPerRoute()
+                    + " pooled connections per host, calls will wait for a connection");
+        }
+        ExecutorService pool = WorkerPool.newPool(threads, action);
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<StateChange>> tasks = new ArrayList<Callable<StateChange>>();
+        for (final String container : containers) {
+            tasks.add(new Callable<StateChange>() {
+                @Override
+                public StateChange call() {
+                    StateChange result = change(container);
+                    System.out.println(action + " " + container + " : " + result.status + " ("
+                            + done.incrementAndGet() + "/" + containers.size() + ")");
+                    return result;
+                }
+            });
+        }
+        List<StateChange> results = new ArrayList<StateChange>();
+        try {
+            List<Future<StateChange>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOGGER.error(action + " of " + containers.get(i) + " failed", e.getCause());
+                    results.add(new StateChange(containers.get(i), FAILED, 0, 0, String.valueOf(e.getCause())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        writeResults(results);
+    }
+
+    /**
+     * Method to change the state of one container, timing the call.
+     *
+     * @return the result, which is failed if the call fails or docker rejects it
+     */
+    private StateChange change(String container) {
+        long start = System.nanoTime();
+        ClientResponse response = null;
+        try {
+            response = changeState(client, container);
+            int status = response.getStatus();
+            long latency = (System.nanoTime() - start) / 1000000L;
+            if (status >= HttpStatus.SC_OK && status < HttpStatus.SC_MULTIPLE_CHOICES) {
+                return new StateChange(container, CHANGED, status, latency, null);
+            }
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                return new StateChange(container, UNCHANGED, status, latency, getErrorMessage(status));
+            }
+            String message = getErrorMessage(status);
+            String detail = getDockerMessage(response);
+            LOGGER.error(action + " of " + container + " failed with status " + status + " : " + detail);
+            return new StateChange(container, FAILED, status, latency,
+                    Validator.checkNotEmpty(detail) ? message + " : " + detail : message);
+        } catch (DockerException | ClientHandlerException e) {
+            LOGGER.error(action + " of " + container + " failed", e);
+            return new StateChange(container, FAILED, 0, (System.nanoTime() - start) / 1000000L, e.getMessage());
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private static String getDockerMessage(ClientResponse response) {
+        String entity = response.getEntity(String.class);
+        try {
+            return new JSONObject(entity).optString("message", entity).trim();
+        } catch (JSONException e) {
+            return entity.trim();
+        }
+    }
+
+    private void writeResults(List<StateChange> results) throws DockerException {
+        XmlResultWriter writer = Validator.checkNotEmpty(filePath) ? new XmlResultWriter(filePath, "containers")
+                : null;
+        int changed = 0;
+        int failed = 0;
+        try {
+            for (StateChange result : results) {
+                System.out.println("UC4RB_DKR_CONTAINER_RESULT ::= " + result.container + "," + result.status + ","
+                        + result.code + "," + result.latency);
+                if (CHANGED.equals(result.status)) {
+                    changed++;
+                } else if (FAILED.equals(result.status)) {
+                    failed++;
+                }
+                if (writer != null) {
+                    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+                    fields.put("id", result.container);
+                    fields.put("action", action);
+                    fields.put("status", result.status);
+                    fields.put("code", (result.code > 0) ? result.code : null);
+                    fields.put("latency_ms", result.latency);
+                    fields.put("message", result.message);
+                    writer.writeRecord("container", fields);
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (writer != null) {
+            System.out.println("OUTPUT_FILE_PATH ::= " + filePath);
+        }
+        System.out.println("UC4RB_DKR_CONTAINERS_CHANGED ::= " + changed);
+        System.out.println("UC4RB_DKR_CONTAINERS_UNCHANGED ::= " + (results.size() - changed - failed));
+        System.out.println("UC4RB_DKR_CONTAINERS_FAILED ::= " + failed);
+        if (failed > 0) {
+            String msg = String.format(ExceptionConstants.CONTAINERS_NOT_CHANGED, failed, results.size(), action);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * Result of the state change of one container.
+     */
+    private static final class StateChange {
+
+        private final String container;
+        private final String status;
+        private final int code;
+        private final long latency;
+        private final String message;
+
+        private StateChange(String container, String status, int code, long latency, String message) {
+            this.container = container;
+            this.status = status;
+            this.code = code;
+            this.latency = latency;
+            this.message = message;
+        }
+    }
+
+}
@@ -103,6 +103,21 @@ public final class ActionFactory {
             case IMPORT_CONTAINER:
                 action = new ImportContainerAction();
                 break;
+            case LOGS:
+                action = new ContainerLogsAction();
+                break;
+            case COLLECT_LOGS:
+                action = new CollectLogsAction();
+                break;
+            case EVENTS:
+                action = new EventsAction();
+                break;
+            case STATS:
+                action = new ContainerStatsAction();
+                break;
+            case INVENTORY:
+                action = new InventoryAction();
+                break;
             default:
                 String msg = "Invalid Action.. Please enter valid action " + Action.getActionNames();
                 LOGGER.error(msg);
@@ -0,0 +1,314 @@
+package com.automic.docker.actions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.automic.docker.client.DockerClient;
+import com.automic.docker.client.OutputRouter;
+import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.constants.Action;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
+
+/**
+ * Action class to execute several actions, listed in a manifest file, in one JVM. Unlike the other actions it does not
+ * talk to docker itself, every entry of the manifest carries its own connection parameters. Clients are shared between
+ * entries using the same protocol, certificates and timeouts. Entries can optionally be executed in parallel, in that
+ * case they must be independent of each other.
+ *
+ * The manifest is either a text file with one action and its arguments per line (arguments separated by blanks, quoted
+ * with double quotes if needed, lines starting with # are ignored) or a json array whose elements are either arrays of
+ * arguments or objects with an "args" array. The output is an xml file with the status, exit code, duration and output
+ * of every entry plus a summary.
+ */
+public class BatchAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(BatchAction.class);
+
+    private static final int NO_OF_ARGS = 2;
+
+    private static final int MANIFEST_INDEX = 0;
+    private static final int OUTPUT_FILE_INDEX = 1;
+    private static final int PARALLELISM_INDEX = 2;
+
+    private static final String BATCH_ROOT_TAG = "BATCH";
+    private static final String BATCH_ENTRY_TAG = "ENTRY";
+    private static final String BATCH_SUMMARY_TAG = "SUMMARY";
+
+    private static final String ARGS_KEY = "args";
+    private static final String COMMENT_PREFIX = "#";
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final int RESPONSE_NOT_OK = 1;
+
+    private String manifestPath;
+    private String outputFilePath;
+    private int parallelism = 1;
+
+    /**
+     * Method to execute all the entries of the manifest. Throws an exception if at least one entry failed.
+     *
+     * @param args
+     *            Array of arguments
+     * @throws DockerException
+     */
+    public void executeAction(String[] args) throws DockerException {
+        logParameters(args);
+        if (args.length < NO_OF_ARGS) {
+            LOGGER.error(ExceptionConstants.INSUFFICIENT_ARGUMENTS);
+            throw new DockerException(ExceptionConstants.INSUFFICIENT_ARGUMENTS);
+        }
+        initialize(args);
+        validateInputs();
+
+        List<String[]> entries = readManifest();
+        String msg = "Executing " + entries.size() + " entries with parallelism " + parallelism;
+        LOGGER.info(msg);
+        System.out.println(msg);
+
+        // when running inside the daemon the cache belongs to the daemon and must survive the batch
+        boolean ownClientCache = HttpClientConfig.enableClientCache();
+        OutputRouter.install();
+        int failed = 0;
+        long start = System.currentTimeMillis();
+        ExecutorService executor = WorkerPool.newPool(parallelism, "batch");
+        XmlResultWriter writer = new XmlResultWriter(outputFilePath, BATCH_ROOT_TAG);
+        try {
+            List<Future<Map<String, Object>>> results = new ArrayList<Future<Map<String, Object>>>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                results.add(executor.submit(new EntryTask(i + 1, entries.get(i))));
+            }
+            for (Future<Map<String, Object>> result : results) {
+                Map<String, Object> record = getResult(result);
+                if (!STATUS_OK.equals(record.get("Status"))) {
+                    failed++;
+                }
+                writer.writeRecord(BATCH_ENTRY_TAG, record);
+                System.out.println("Entry [" + record.get("Index") + "] " + record.get("Action") + " finished with "
+                        + "exit code " + record.get("ExitCode") + " in " + record.get("DurationMs") + " ms");
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<String, Object>();
+            summary.put("Total", entries.size());
+            summary.put("Succeeded", entries.size() - failed);
+            summary.put("Failed", failed);
+            summary.put("DurationMs", System.currentTimeMillis() - start);
+            writer.writeRecord(BATCH_SUMMARY_TAG, summary);
+            System.out.println("UC4RB_DKR_BATCH_SUMMARY ::= " + summary);
+        } finally {
+            executor.shutdownNow();
+            writer.close();
+            if (ownClientCache) {
+                HttpClientConfig.destroyCachedClients();
+            }
+        }
+        System.out.println("OUTPUT_FILE_PATH ::= " + outputFilePath);
+
+        if (failed > 0) {
+            String err = failed + " of " + entries.size() + " batch entries failed";
+            LOGGER.error(err);
+            throw new DockerException(err);
+        }
+    }
+
+    private void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Manifest = " + ((args.length > MANIFEST_INDEX) ? args[MANIFEST_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > OUTPUT_FILE_INDEX) ? args[OUTPUT_FILE_INDEX] : ""));
+        LOGGER.info("Parallelism = " + ((args.length > PARALLELISM_INDEX) ? args[PARALLELISM_INDEX] : ""));
+    }
+
+    private void initialize(String[] args) {
+        manifestPath = args[MANIFEST_INDEX].trim();
+        outputFilePath = args[OUTPUT_FILE_INDEX].trim();
+        if (args.length > PARALLELISM_INDEX && Validator.checkNotEmpty(args[PARALLELISM_INDEX].trim())) {
+            parallelism = DockerUtility.getAndCheckUnsignedValue(args[PARALLELISM_INDEX].trim());
+        }
+    }
+
+    private void validateInputs() throws DockerException {
+        if (!Validator.checkFileExistsAndIsFile(manifestPath)) {
+            String msg = String.format(ExceptionConstants.INVALID_FILE, manifestPath);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (!Validator.checkFileFolderExists(outputFilePath)) {
+            LOGGER.error("Invalid Directory : " + outputFilePath);
+            throw new DockerException(String.format(ExceptionConstants.INVALID_DIRECTORY, outputFilePath));
+        }
+        if (parallelism < 1) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, parallelism);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * Method to read the manifest either as json or as a text file with one entry per line.
+     *
+     * @return list of argument arrays
+     * @throws DockerException
+     */
+    private List<String[]> readManifest() throws DockerException {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(Paths.get(manifestPath)), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            LOGGER.error("Error occured while reading manifest ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_READ_FILE, manifestPath), e);
+        }
+
+        List<String[]> entries = new ArrayList<String[]>();
+        if (content.startsWith("[")) {
+            try {
+                JSONArray array = new JSONArray(content);
+                for (int i = 0; i < array.length(); i++) {
+                    Object item = array.get(i);
+                    JSONArray argArray = (item instanceof JSONObject) ? ((JSONObject) item).getJSONArray(ARGS_KEY)
+                            : (JSONArray) item;
+                    String[] entry = new String[argArray.length()];
+                    for (int j = 0; j < entry.length; j++) {
+                        entry[j] = argArray.get(j).toString();
+                    }
+                    entries.add(entry);
+                }
+            } catch (JSONException | ClassCastException e) {
+                LOGGER.error("Invalid json manifest ", e);
+                throw new DockerException(String.format(ExceptionConstants.INVALID_MANIFEST, manifestPath), e);
+            }
+        } else {
+            for (String line : content.split("\r?\n")) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith(COMMENT_PREFIX)) {
+                    entries.add(tokenize(trimmed));
+                }
+            }
+        }
+        for (String[] entry : entries) {
+            if (entry.length == 0) {
+                throw new DockerException(String.format(ExceptionConstants.INVALID_MANIFEST, manifestPath));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Method to split a manifest line into arguments. Arguments are separated by blanks and may be enclosed in double
+     * quotes, a quote inside a quoted argument is escaped with a backslash.
+     *
+     * @param line
+     *            manifest line
+     * @return arguments
+     */
+    static String[] tokenize(String line) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        boolean hasToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (inQuotes && ch == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                current.append('"');
+                i++;
+            } else if (ch == '"') {
+                inQuotes = !inQuotes;
+                hasToken = true;
+            } else if (!inQuotes && Character.isWhitespace(ch)) {
+                if (hasToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    hasToken = false;
+                }
+            } else {
+                current.append(ch);
+                hasToken = true;
+            }
+        }
+        if (hasToken) {
+            tokens.add(current.toString());
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    private static Map<String, Object> getResult(Future<Map<String, Object>> result) throws DockerException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e);
+        } catch (ExecutionException e) {
+            LOGGER.error("Batch entry failed ", e.getCause());
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e.getCause());
+        }
+    }
+
+    /**
+     * Task which executes one entry of the manifest and captures its output.
+     */
+    private static final class EntryTask implements Callable<Map<String, Object>> {
+
+        private final int index;
+        private final String[] args;
+
+        EntryTask(int index, String[] args) {
+            this.index = index;
+            this.args = args;
+        }
+
+        @Override
+        public Map<String, Object> call() throws UnsupportedEncodingException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            String action = args[0].trim().toUpperCase();
+            int exitCode;
+            long start = System.currentTimeMillis();
+
+            OutputRouter.bind(new PrintStream(out, true), new PrintStream(err, true));
+            try {
+                if (Action.BATCH.name().equals(action)) {
+                    System.err.println(DockerUtility.formatMessage("ERROR", "Nested batches are not supported"));
+                    exitCode = RESPONSE_NOT_OK;
+                } else {
+                    LOGGER.info("Executing batch entry [" + index + "] " + action);
+                    exitCode = DockerClient.execute(args);
+                }
+            } finally {
+                OutputRouter.unbind();
+            }
+
+            Map<String, Object> record = new LinkedHashMap<String, Object>();
+            record.put("Index", index);
+            record.put("Action", action);
+            record.put("Status", exitCode == 0 ? STATUS_OK : STATUS_FAILED);
+            record.put("ExitCode", exitCode);
+            record.put("DurationMs", System.currentTimeMillis() - start);
+            record.put("Stdout", out.toString(StandardCharsets.UTF_8.name()));
+            record.put("Stderr", err.toString(StandardCharsets.UTF_8.name()));
+            return record;
+        }
+    }
+
+}
@@ -1,9 +1,8 @@
 package com.automic.docker.actions;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,13 +11,14 @@ import javax.ws.rs.core.MediaType;
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
+import com.automic.docker.config.StreamingEntity;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.BuildContext;
 import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.GzipEntity;
 import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
@@ -26,7 +26,9 @@ import com.sun.jersey.api.client.WebResource;
 
 /**
  * Action class to Build Image from provide Docker File. It will Create docker image and throw exception if required tar
- * file is missing and required image name is not available.
+ * file is missing and required image name is not available. Instead of a tar file a context directory can be given, it
+ * is streamed to docker as tar archive while it is read, applying the rules of its .dockerignore file. Optionally the
+ * upload is gzip compressed on the fly.
  */
 public class BuildImageAction extends AbstractAction {
 
@@ -36,16 +38,19 @@ public class BuildImageAction extends AbstractAction {
     private static final int TAR_FILE_INDEX = 4;
     private static final int IMAGE_NAME_INDEX = 5;
     private static final int QUERY_STRING_INDEX = 6;
+    private static final int COMPRESS_INDEX = 7;
 
     private static final String QUERY_DELIMETER = ",";
     private static final String VAL_DELIMETER = "=";
-    private static final String ERROR_KEY = "error";
     private static final String APPLICATION_TAR = "application/tar";
-    private static final String PROGRESS_KEY = "progress";
+    private static final String DOCKERFILE_KEY = "dockerfile";
+    private static final String DEFAULT_DOCKERFILE = "Dockerfile";
+    private static final int LARGEST_CONTRIBUTORS = 10;
 
     private String imageName;
     private String tarFilePath;
     private String queryString;
+    private boolean compress;
 
     public BuildImageAction() {
         super(NO_OF_ARGS);
@@ -60,9 +65,11 @@ public class BuildImageAction extends AbstractAction {
         LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
         LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
-        LOGGER.info("tar file-path = " + ((args.length > TAR_FILE_INDEX) ? args[TAR_FILE_INDEX] : ""));
+        LOGGER.info("tar file-path or context directory = "
+                + ((args.length > TAR_FILE_INDEX) ? args[TAR_FILE_INDEX] : ""));
         LOGGER.info("Image-name = " + ((args.length > IMAGE_NAME_INDEX) ? args[IMAGE_NAME_INDEX] : ""));
         LOGGER.info("Query-String = " + ((args.length > QUERY_STRING_INDEX) ? args[QUERY_STRING_INDEX] : ""));
+        LOGGER.info("Compress = " + ((args.length > COMPRESS_INDEX) ? args[COMPRESS_INDEX] : ""));
 
     }
 
@@ -74,6 +81,9 @@ public class BuildImageAction extends AbstractAction {
         if (args.length > QUERY_STRING_INDEX) {
             queryString = args[QUERY_STRING_INDEX];
         }
+        if (args.length > COMPRESS_INDEX) {
+            compress = DockerUtility.convert2Bool(args[COMPRESS_INDEX]);
+        }
 
     }
 
@@ -85,7 +95,7 @@ public class BuildImageAction extends AbstractAction {
             throw new DockerException(ExceptionConstants.EMPTY_IMAGE_NAME);
         }
 
-        if (!Validator.checkFileExistsAndIsFile(tarFilePath)) {
+        if (!Validator.checkFileExistsAndIsFile(tarFilePath) && !Validator.checkIfValidDirectory(tarFilePath)) {
             String msg = String.format(ExceptionConstants.INVALID_FILE, tarFilePath);
             LOGGER.error(msg);
             throw new DockerException(msg);
@@ -96,13 +106,13 @@ public class BuildImageAction extends AbstractAction {
     @Override
     protected ClientResponse executeSpecific(Client client) throws DockerException {
         ClientResponse response = null;
-        InputStream fileInStream = null;
 
         WebResource webResource = client.resource(dockerUrl).path("build");
 
         // Preparing Query String
+        Map<String, String> paramMap = new HashMap<String, String>();
         if (Validator.checkNotEmpty(queryString)) {
-            Map<String, String> paramMap = prepareQueryParamsMap(queryString);
+            paramMap = prepareQueryParamsMap(queryString);
             String temp = "Using advanced options: " + paramMap.toString();
             System.out.println(temp);
             LOGGER.info(temp);
@@ -111,21 +121,71 @@ public class BuildImageAction extends AbstractAction {
             }
         }
         webResource = webResource.queryParam("t", imageName);
-        try {
-            fileInStream = new FileInputStream(new File(tarFilePath));
-        } catch (IOException e) {
-            LOGGER.error("Error while reading tar file for Build Image ", e);
-            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_READ_FILE, tarFilePath), e);
+
+        StreamingEntity entity;
+        if (new File(tarFilePath).isDirectory()) {
+            String dockerfile = paramMap.containsKey(DOCKERFILE_KEY) ? paramMap.get(DOCKERFILE_KEY)
+                    : DEFAULT_DOCKERFILE;
+            entity = scanContext(dockerfile).asEntity();
+        } else {
+            // the tar file is streamed to docker with a fixed content length, it is never held in memory
+            entity = StreamingEntity.of(new File(tarFilePath));
+        }
+
+        GzipEntity gzipEntity = null;
+        if (compress) {
+            gzipEntity = new GzipEntity(entity);
+            entity = gzipEntity;
         }
 
         LOGGER.info("Calling url " + webResource.getURI());
 
-        response = webResource.entity(fileInStream, APPLICATION_TAR).accept(MediaType.APPLICATION_OCTET_STREAM)
-                .post(ClientResponse.class);
+        response = webResource.entity(entity, APPLICATION_TAR)
+                .accept(MediaType.APPLICATION_OCTET_STREAM).post(ClientResponse.class);
+
+        if (gzipEntity != null) {
+            String msg = gzipEntity.describe();
+            LOGGER.info(msg);
+            System.out.println(msg);
+        }
 
         return response;
     }
 
+    /**
+     * Method to scan the context directory and print its size together with its largest files and top level entries.
+     *
+     * @param dockerfile
+     *            path of the Dockerfile relative to the context directory
+     * @return the build context
+     * @throws DockerException
+     */
+    private BuildContext scanContext(String dockerfile) throws DockerException {
+        BuildContext context;
+        try {
+            String relativeDockerfile = dockerfile.startsWith("./") ? dockerfile.substring(2) : dockerfile;
+            context = BuildContext.scan(Paths.get(tarFilePath), relativeDockerfile);
+        } catch (IOException e) {
+            LOGGER.error("Error while reading build context ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_READ_FILE, tarFilePath), e);
+        }
+
+        String msg = "Build context " + tarFilePath + " : " + context.getFileCount() + " files, "
+                + context.getTotalSize() + " bytes";
+        LOGGER.info(msg);
+        System.out.println(msg);
+        System.out.println("Largest top level entries:");
+        for (Map.Entry<String, Long> entry : context.getLargestTopLevelEntries(LARGEST_CONTRIBUTORS).entrySet()) {
+            System.out.println(String.format("  %14d  %s", entry.getValue(), entry.getKey()));
+        }
+        System.out.println("Largest files:");
+        for (Map.Entry<String, Long> entry : context.getLargestFiles(LARGEST_CONTRIBUTORS).entrySet()) {
+            System.out.println(String.format("  %14d  %s", entry.getValue(), entry.getKey()));
+        }
+        System.out.println("UC4RB_DKR_BUILD_CONTEXT_SIZE ::= " + context.getTotalSize());
+        return context;
+    }
+
     /**
      * Method to prepare a map of query arguments. Splits a string using {@link BuildImageAction#QUERY_DELIMETER} and
      * {@link BuildImageAction#VAL_DELIMETER} and create key value pair of query arguments. Example
@@ -199,36 +259,7 @@ public class BuildImageAction extends AbstractAction {
 
     @Override
     protected void prepareOutput(ClientResponse response) throws DockerException {
-        String errorMsg = null;
-        boolean isError = false;
-
-        JSONTokener token = new JSONTokener(response.getEntityInputStream());
-
-        while (!token.end()) {
-            char ch;
-            do {
-                ch = token.next();
-                if (ch == '{') {
-                    token.back();
-                    JSONObject obj = new JSONObject(token);
-                    if (!obj.has(PROGRESS_KEY)) {
-                        if (obj.has(ERROR_KEY)) {
-                            isError = true;
-                            errorMsg = obj.getString(ERROR_KEY);
-                        } else {
-                            LOGGER.info(obj);
-                            System.out.println(obj);
-                        }
-                    }
-                }
-            } while (ch != 0);
-        }
-        if (isError) {
-            LOGGER.error(errorMsg);
-            System.err.println(errorMsg);
-            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG);
-        }
-
+        DockerUtility.readProgressStream(response, true);
     }
 
 }
@@ -0,0 +1,257 @@
+package com.automic.docker.actions;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerTimestamp;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.LogCollector;
+import com.automic.docker.utility.Validator;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Action class to collect the logs of all running containers matching a filter at once, e.g. to capture the logs of a
+ * whole application during an incident. The containers are listed first, then their log streams are read by a
+ * {@link LogCollector} into one file per container, named after the container, in the given folder.
+ *
+ * The filter consists of comma separated key=value pairs as understood by docker, e.g. label=app=web or name=web. The
+ * action reports the number of containers, the bytes collected, the throughput and the number of containers served per
+ * core. It fails if unable to connect with the docker server, no container matches or no log stream could be opened.
+ */
+public class CollectLogsAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(CollectLogsAction.class);
+
+    private static final int NO_OF_ARGS = 10;
+
+    private static final int FILTER_INDEX = 4;
+    private static final int FOLDER_PATH_INDEX = 5;
+    private static final int FOLLOW_INDEX = 6;
+    private static final int SINCE_INDEX = 7;
+    private static final int TAIL_INDEX = 8;
+    private static final int TIMESTAMPS_INDEX = 9;
+    private static final int DURATION_INDEX = 10;
+    private static final int MAX_FILE_SIZE_INDEX = 11;
+    private static final int MAX_FILES_INDEX = 12;
+
+    private static final String TAIL_ALL = "all";
+    private static final String LOG_FILE_EXTENSION = ".log";
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int KILOBYTE = 1024;
+    private static final int MILLIS_PER_SECOND = 1000;
+    private static final int SHORT_ID_LENGTH = 12;
+
+    private String filter;
+    private String folderPath;
+    private boolean follow;
+    private String since;
+    private String tail;
+    private boolean timestamps;
+    private int duration;
+    private int maxFileSize;
+    private int maxFiles = DEFAULT_MAX_FILES;
+
+    private JSONObject filters;
+    private SSLContext sslContext;
+
+    public CollectLogsAction() {
+        super(NO_OF_ARGS);
+    }
+
+    @Override
+    protected void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Connection Timeout = "
+                + ((args.length > CONNECTION_TIMEOUT_INDEX) ? args[CONNECTION_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
+        LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
+        LOGGER.info("Filter = " + ((args.length > FILTER_INDEX) ? args[FILTER_INDEX] : ""));
+        LOGGER.info("Folder Path = " + ((args.length > FOLDER_PATH_INDEX) ? args[FOLDER_PATH_INDEX] : ""));
+        LOGGER.info("Follow = " + ((args.length > FOLLOW_INDEX) ? args[FOLLOW_INDEX] : ""));
+        LOGGER.info("Since = " + ((args.length > SINCE_INDEX) ? args[SINCE_INDEX] : ""));
+        LOGGER.info("Tail = " + ((args.length > TAIL_INDEX) ? args[TAIL_INDEX] : ""));
+        LOGGER.info("Timestamps = " + ((args.length > TIMESTAMPS_INDEX) ? args[TIMESTAMPS_INDEX] : ""));
+        LOGGER.info("Duration (s) = " + ((args.length > DURATION_INDEX) ? args[DURATION_INDEX] : ""));
+        LOGGER.info("Max file size (KB) = " + ((args.length > MAX_FILE_SIZE_INDEX) ? args[MAX_FILE_SIZE_INDEX] : ""));
+        LOGGER.info("Max files = " + ((args.length > MAX_FILES_INDEX) ? args[MAX_FILES_INDEX] : ""));
+    }
+
+    @Override
+    protected void initialize(String[] args) throws DockerException {
+        filter = args[FILTER_INDEX];
+        folderPath = args[FOLDER_PATH_INDEX];
+        follow = DockerUtility.convert2Bool(args[FOLLOW_INDEX]);
+        since = args[SINCE_INDEX];
+        tail = Validator.checkNotEmpty(args[TAIL_INDEX]) ? args[TAIL_INDEX] : TAIL_ALL;
+        timestamps = DockerUtility.convert2Bool(args[TIMESTAMPS_INDEX]);
+        if (args.length > DURATION_INDEX && Validator.checkNotEmpty(args[DURATION_INDEX])) {
+            duration = DockerUtility.getAndCheckUnsignedValue(args[DURATION_INDEX]);
+        }
+        if (args.length > MAX_FILE_SIZE_INDEX && Validator.checkNotEmpty(args[MAX_FILE_SIZE_INDEX])) {
+            maxFileSize = DockerUtility.getAndCheckUnsignedValue(args[MAX_FILE_SIZE_INDEX]);
+        }
+        if (args.length > MAX_FILES_INDEX && Validator.checkNotEmpty(args[MAX_FILES_INDEX])) {
+            maxFiles = DockerUtility.getAndCheckUnsignedValue(args[MAX_FILES_INDEX]);
+        }
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        filters = DockerUtility.toFilters(filter);
+        if (!Validator.checkIfValidDirectory(folderPath)) {
+            String msg = String.format(ExceptionConstants.INVALID_DIRECTORY, folderPath);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (Validator.checkNotEmpty(since)) {
+            try {
+                DockerTimestamp.parseSince(since);
+            } catch (NumberFormatException e) {
+                String msg = String.format(ExceptionConstants.INVALID_TIMESTAMP, since);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+        if (!TAIL_ALL.equals(tail) && DockerUtility.getAndCheckUnsignedValue(tail) < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_TAIL, tail);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (duration < 0 || maxFileSize < 0 || maxFiles < 0) {
+            int invalid = (duration < 0) ? duration : ((maxFileSize < 0) ? maxFileSize : maxFiles);
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, invalid);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (Constants.HTTPS.equalsIgnoreCase(URI.create(dockerUrl).getScheme())) {
+            sslContext = HttpClientConfig.getSslContext(certFilePath);
+        }
+    }
+
+    /**
+     * {@inheritDoc CollectLogsAction#executeSpecific(Client)} This method calls the docker 'list containers' remote
+     * API to find the running containers matching the filter.
+     */
+    @Override
+    protected ClientResponse executeSpecific(Client client) throws DockerException {
+        WebResource webResource = client.resource(dockerUrl).path("containers").path("json")
+                .queryParam("filters", filters.toString());
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.get(ClientResponse.class);
+    }
+
+    @Override
+    protected String getErrorMessage(int errorCode) {
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_BAD_REQUEST:
+                msg = "bad parameter";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc CollectLogsAction#prepareOutput(ClientResponse)} This method collects the logs of the containers
+     * listed and reports the throughput.
+     */
+    @Override
+    protected void prepareOutput(ClientResponse response) throws DockerException {
+        JSONArray containers = DockerUtility.jsonArrayResponse(response.getEntityInputStream());
+        if (containers.length() == 0) {
+            LOGGER.error(ExceptionConstants.NO_CONTAINER_MATCHED);
+            throw new DockerException(ExceptionConstants.NO_CONTAINER_MATCHED);
+        }
+
+        LogCollector collector = new LogCollector(URI.create(dockerUrl), getSocketPath(), sslContext,
+                getConnectionTimeOut(), Paths.get(folderPath), (long) maxFileSize * KILOBYTE, maxFiles);
+        String query = buildQuery();
+        Set<String> fileNames = new HashSet<String>();
+        for (int i = 0; i < containers.length(); i++) {
+            JSONObject container = containers.getJSONObject(i);
+            String id = container.getString("Id");
+            String fileName = getFileName(container, fileNames);
+            LOGGER.info("Collecting logs of container " + id + " into " + fileName);
+            collector.add(getBasePath() + "/containers/" + id + "/logs?" + query, fileName);
+        }
+        collector.collect((long) duration * MILLIS_PER_SECOND);
+
+        System.out.println("OUTPUT_FILE_PATH ::= " + folderPath);
+        System.out.println("UC4RB_DKR_COLLECT_CONTAINERS ::= " + collector.getContainers());
+        System.out.println("UC4RB_DKR_COLLECT_FAILED ::= " + collector.getFailed());
+        System.out.println("UC4RB_DKR_COLLECT_BYTES ::= " + collector.getBytes());
+        System.out.println("UC4RB_DKR_COLLECT_MB_PER_SEC ::= "
+                + String.format(Locale.ROOT, "%.2f", collector.getMegabytesPerSecond()));
+        System.out.println("UC4RB_DKR_COLLECT_CONTAINERS_PER_CORE ::= "
+                + String.format(Locale.ROOT, "%.1f", collector.getContainersPerCore()));
+    }
+
+    private String buildQuery() {
+        StringBuilder query = new StringBuilder("stdout=1&stderr=1");
+        query.append("&follow=").append(follow ? 1 : 0);
+        query.append("&timestamps=").append(timestamps ? 1 : 0);
+        query.append("&tail=").append(tail);
+        if (Validator.checkNotEmpty(since)) {
+            query.append("&since=").append(since);
+        }
+        return query.toString();
+    }
+
+    /**
+     * @return path of the docker url, which prefixes the request paths, e.g. /v1.24
+     */
+    private String getBasePath() {
+        String path = URI.create(dockerUrl).getRawPath();
+        if (path == null) {
+            return "";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * Method to name the log file after the container, or after its short id if it has no name or the name is taken.
+     */
+    private static String getFileName(JSONObject container, Set<String> fileNames) {
+        String name = container.getString("Id");
+        if (name.length() > SHORT_ID_LENGTH) {
+            name = name.substring(0, SHORT_ID_LENGTH);
+        }
+        JSONArray names = container.optJSONArray("Names");
+        if (names != null && names.length() > 0) {
+            String containerName = names.getString(0);
+            containerName = containerName.startsWith("/") ? containerName.substring(1) : containerName;
+            // names of linked containers contain slashes, the name is checked as it is used for the file
+            containerName = containerName.replace('/', '_');
+            if (!containerName.isEmpty() && !fileNames.contains(containerName + LOG_FILE_EXTENSION)) {
+                name = containerName;
+            }
+        }
+        fileNames.add(name + LOG_FILE_EXTENSION);
+        return name + LOG_FILE_EXTENSION;
+    }
+
+}
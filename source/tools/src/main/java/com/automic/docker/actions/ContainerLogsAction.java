@@ -0,0 +1,457 @@
+package com.automic.docker.actions;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerTimestamp;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.LogCursorFile;
+import com.automic.docker.utility.MultiplexedStreamReader;
+import com.automic.docker.utility.OutputSink;
+import com.automic.docker.utility.RotatingFileOutputStream;
+import com.automic.docker.utility.Validator;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Action class to fetch the logs of a container, optionally following them until the container stops. The logs are
+ * written to the job report or appended to a file which is rotated once it reaches a maximum size.
+ *
+ * If a cursor file is given, the timestamp of the last line fetched is stored in it per container, and the next run
+ * for the same container only fetches lines written after it. This action will fail, if unable to connect with the
+ * docker server or the container does not exist in the docker system.
+ */
+public class ContainerLogsAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(ContainerLogsAction.class);
+
+    private static final int NO_OF_ARGS = 10;
+
+    private static final int CONTAINER_ID_INDEX = 4;
+    private static final int FOLLOW_INDEX = 5;
+    private static final int SINCE_INDEX = 6;
+    private static final int UNTIL_INDEX = 7;
+    private static final int TAIL_INDEX = 8;
+    private static final int TIMESTAMPS_INDEX = 9;
+    private static final int FOLDER_PATH_INDEX = 10;
+    private static final int FILE_NAME_INDEX = 11;
+    private static final int MAX_FILE_SIZE_INDEX = 12;
+    private static final int MAX_FILES_INDEX = 13;
+    private static final int CURSOR_FILE_INDEX = 14;
+
+    private static final String TAIL_ALL = "all";
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int KILOBYTE = 1024;
+
+    private String containerId;
+    private boolean follow;
+    private String since;
+    private String until;
+    private String tail;
+    private boolean timestamps;
+    private String folderPath;
+    private String fileName;
+    private int maxFileSize;
+    private int maxFiles = DEFAULT_MAX_FILES;
+    private String cursorFilePath;
+
+    private LogCursorFile cursorFile;
+    private long cursor = -1;
+
+    public ContainerLogsAction() {
+        super(NO_OF_ARGS);
+    }
+
+    @Override
+    protected void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Connection Timeout = "
+                + ((args.length > CONNECTION_TIMEOUT_INDEX) ? args[CONNECTION_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
+        LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
+        LOGGER.info("Container-id = " + ((args.length > CONTAINER_ID_INDEX) ? args[CONTAINER_ID_INDEX] : ""));
+        LOGGER.info("Follow = " + ((args.length > FOLLOW_INDEX) ? args[FOLLOW_INDEX] : ""));
+        LOGGER.info("Since = " + ((args.length > SINCE_INDEX) ? args[SINCE_INDEX] : ""));
+        LOGGER.info("Until = " + ((args.length > UNTIL_INDEX) ? args[UNTIL_INDEX] : ""));
+        LOGGER.info("Tail = " + ((args.length > TAIL_INDEX) ? args[TAIL_INDEX] : ""));
+        LOGGER.info("Timestamps = " + ((args.length > TIMESTAMPS_INDEX) ? args[TIMESTAMPS_INDEX] : ""));
+        LOGGER.info("Folder Path = " + ((args.length > FOLDER_PATH_INDEX) ? args[FOLDER_PATH_INDEX] : ""));
+        LOGGER.info("File Name = " + ((args.length > FILE_NAME_INDEX) ? args[FILE_NAME_INDEX] : ""));
+        LOGGER.info("Max file size (KB) = " + ((args.length > MAX_FILE_SIZE_INDEX) ? args[MAX_FILE_SIZE_INDEX] : ""));
+        LOGGER.info("Max files = " + ((args.length > MAX_FILES_INDEX) ? args[MAX_FILES_INDEX] : ""));
+        LOGGER.info("Cursor file = " + ((args.length > CURSOR_FILE_INDEX) ? args[CURSOR_FILE_INDEX] : ""));
+    }
+
+    @Override
+    protected void initialize(String[] args) throws DockerException {
+        containerId = args[CONTAINER_ID_INDEX];
+        follow = DockerUtility.convert2Bool(args[FOLLOW_INDEX]);
+        since = args[SINCE_INDEX];
+        until = args[UNTIL_INDEX];
+        tail = Validator.checkNotEmpty(args[TAIL_INDEX]) ? args[TAIL_INDEX] : TAIL_ALL;
+        timestamps = DockerUtility.convert2Bool(args[TIMESTAMPS_INDEX]);
+        folderPath = (args.length > FOLDER_PATH_INDEX) ? args[FOLDER_PATH_INDEX] : "";
+        fileName = (args.length > FILE_NAME_INDEX) ? args[FILE_NAME_INDEX] : "";
+        if (args.length > MAX_FILE_SIZE_INDEX && Validator.checkNotEmpty(args[MAX_FILE_SIZE_INDEX])) {
+            maxFileSize = DockerUtility.getAndCheckUnsignedValue(args[MAX_FILE_SIZE_INDEX]);
+        }
+        if (args.length > MAX_FILES_INDEX && Validator.checkNotEmpty(args[MAX_FILES_INDEX])) {
+            maxFiles = DockerUtility.getAndCheckUnsignedValue(args[MAX_FILES_INDEX]);
+        }
+        cursorFilePath = (args.length > CURSOR_FILE_INDEX) ? args[CURSOR_FILE_INDEX] : "";
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        if (!Validator.checkNotEmpty(containerId)) {
+            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
+            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
+        }
+        validateTimestamp(since);
+        validateTimestamp(until);
+        if (!TAIL_ALL.equals(tail) && DockerUtility.getAndCheckUnsignedValue(tail) < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_TAIL, tail);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+
+        if (Validator.checkNotEmpty(folderPath)) {
+            if (!Validator.checkIfValidDirectory(folderPath)) {
+                String msg = String.format(ExceptionConstants.INVALID_DIRECTORY, folderPath);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            if (!Validator.checkNotEmpty(fileName)) {
+                String msg = String.format(ExceptionConstants.MISSING_REQUIRED_PARAM, "File Name");
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+        if (maxFileSize < 0 || maxFiles < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, (maxFileSize < 0) ? maxFileSize
+                    : maxFiles);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+
+        if (Validator.checkNotEmpty(cursorFilePath)) {
+            Path parent = Paths.get(cursorFilePath).toAbsolutePath().getParent();
+            if (parent == null || !Validator.checkIfValidDirectory(parent.toString())) {
+                String msg = String.format(ExceptionConstants.INVALID_FILE, cursorFilePath);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            cursorFile = LogCursorFile.read(Paths.get(cursorFilePath));
+            cursor = cursorFile.get(containerId);
+        }
+    }
+
+    private void validateTimestamp(String value) throws DockerException {
+        if (Validator.checkNotEmpty(value)) {
+            try {
+                DockerTimestamp.parseSince(value);
+            } catch (NumberFormatException e) {
+                String msg = String.format(ExceptionConstants.INVALID_TIMESTAMP, value);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc ContainerLogsAction#executeSpecific(Client)} This method calls the docker 'logs' remote API. If a
+     * cursor is known for the container, it replaces the since parameter, and timestamps are requested in any case to
+     * advance the cursor.
+     */
+    @Override
+    protected ClientResponse executeSpecific(Client client) throws DockerException {
+        WebResource webResource = client.resource(dockerUrl).path("containers").path(containerId).path("logs")
+                .queryParam("stdout", Boolean.TRUE.toString()).queryParam("stderr", Boolean.TRUE.toString())
+                .queryParam("follow", Boolean.toString(follow)).queryParam("tail", tail)
+                .queryParam("timestamps", Boolean.toString(timestamps || cursorFile != null));
+
+        if (cursor >= 0) {
+            LOGGER.info("Continuing after cursor " + DockerTimestamp.toSince(cursor));
+            webResource = webResource.queryParam("since", DockerTimestamp.toSince(cursor));
+        } else if (Validator.checkNotEmpty(since)) {
+            webResource = webResource.queryParam("since", since);
+        }
+        if (Validator.checkNotEmpty(until)) {
+            webResource = webResource.queryParam("until", until);
+        }
+
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.get(ClientResponse.class);
+    }
+
+    @Override
+    protected String getErrorMessage(int errorCode) {
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_NOT_FOUND:
+                msg = "no such container";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc ContainerLogsAction#prepareOutput(ClientResponse)} This method writes the log lines to the job
+     * report or the log file as they arrive and stores the timestamp of the last line in the cursor file.
+     */
+    @Override
+    protected void prepareOutput(ClientResponse response) throws DockerException {
+        MultiplexedStreamReader reader = MultiplexedStreamReader.forContentType(response.getEntityInputStream(),
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        Path logFile = Validator.checkNotEmpty(folderPath) ? Paths.get(folderPath, fileName) : null;
+        LogLineHandler handler = null;
+        Throwable failure = null;
+        try {
+            if (logFile != null) {
+                handler = new LogLineHandler(new RotatingFileOutputStream(logFile, (long) maxFileSize * KILOBYTE,
+                        maxFiles, Constants.IO_BUFFER_SIZE));
+            } else {
+                handler = new LogLineHandler(new OutputSink(System.out, false, 0));
+            }
+            handler.parseTimestamps = timestamps || cursorFile != null;
+            handler.writeTimestamps = timestamps;
+            handler.skipUntil = cursor;
+            reader.readAll(handler);
+        } catch (IOException e) {
+            LOGGER.error("Error while writing logs ", e);
+            DockerException dex = new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, logFile),
+                    e);
+            failure = dex;
+            throw dex;
+        } catch (DockerException | RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (handler != null) {
+                // lines already written must not be fetched again, even if the stream broke off, but a failure to
+                // store the cursor must not hide the error which broke it off
+                try {
+                    handler.close();
+                    if (cursorFile != null && handler.lastTimestamp > cursor) {
+                        cursorFile.put(containerId, handler.lastTimestamp);
+                        cursorFile.save();
+                    }
+                } catch (DockerException e) {
+                    if (failure == null) {
+                        throw e;
+                    }
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        LOGGER.info("Written " + handler.lines + " log lines (" + handler.bytes + " bytes), skipped "
+                + handler.skipped + " lines already read");
+        if (logFile != null) {
+            System.out.println("OUTPUT_FILE_PATH ::= " + logFile);
+        }
+        System.out.println("UC4RB_DKR_LOG_LINES ::= " + handler.lines);
+        long lastTimestamp = Math.max(cursor, handler.lastTimestamp);
+        if (cursorFile != null && lastTimestamp >= 0) {
+            System.out.println("UC4RB_DKR_LOG_CURSOR ::= " + DockerTimestamp.toSince(lastTimestamp));
+        }
+    }
+
+    /**
+     * Handler writing log lines as they arrive. Every frame of a multiplexed stream, or every line of a TTY stream,
+     * is a log line. If timestamps have been requested, the timestamp in front of each line is parsed to advance the
+     * cursor and to skip the lines at or before the cursor, which docker sends again as since is inclusive. A log file
+     * is only rotated between lines.
+     */
+    private static final class LogLineHandler implements MultiplexedStreamReader.FrameHandler {
+
+        private static final int MAX_TIMESTAMP_LENGTH = 64;
+        private static final byte[] SPACE = { ' ' };
+
+        private final OutputSink sink;
+        private final RotatingFileOutputStream file;
+        private final byte[] timestamp = new byte[MAX_TIMESTAMP_LENGTH];
+
+        private boolean parseTimestamps;
+        private boolean writeTimestamps;
+        private long skipUntil = -1;
+
+        private boolean raw;
+        private boolean inTimestamp;
+        private int timestampLength;
+        private boolean skipping;
+        private boolean counted;
+        private long lastTimestamp = -1;
+        private long lines;
+        private long skipped;
+        private long bytes;
+
+        LogLineHandler(OutputSink sink) {
+            this.sink = sink;
+            this.file = null;
+        }
+
+        LogLineHandler(RotatingFileOutputStream file) {
+            this.sink = null;
+            this.file = file;
+        }
+
+        @Override
+        public void startFrame(int streamId, long length) throws DockerException {
+            raw = length < 0;
+            startLine();
+        }
+
+        private void startLine() throws DockerException {
+            if (file != null) {
+                try {
+                    file.rotateIfFull();
+                } catch (IOException e) {
+                    throw writeError(e);
+                }
+            }
+            inTimestamp = parseTimestamps;
+            timestampLength = 0;
+            skipping = false;
+            counted = false;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws DockerException {
+            int pos = offset;
+            int end = offset + length;
+            while (pos < end) {
+                if (inTimestamp) {
+                    pos = readTimestamp(data, pos, end);
+                    continue;
+                }
+                int stop = end;
+                if (raw) {
+                    for (int i = pos; i < end; i++) {
+                        if (data[i] == '\n') {
+                            stop = i + 1;
+                            break;
+                        }
+                    }
+                }
+                if (!skipping) {
+                    output(data, pos, stop - pos);
+                }
+                pos = stop;
+                if (raw && data[stop - 1] == '\n') {
+                    startLine();
+                }
+            }
+        }
+
+        /**
+         * Method to collect the timestamp up to the space separating it from the line.
+         *
+         * @return position after the bytes consumed
+         */
+        private int readTimestamp(byte[] data, int offset, int end) throws DockerException {
+            for (int i = offset; i < end; i++) {
+                if (data[i] == ' ') {
+                    inTimestamp = false;
+                    timestampRead();
+                    return i + 1;
+                }
+                if (timestampLength == MAX_TIMESTAMP_LENGTH) {
+                    // not a timestamp, the bytes belong to the line
+                    inTimestamp = false;
+                    output(timestamp, 0, timestampLength);
+                    return i;
+                }
+                timestamp[timestampLength++] = data[i];
+            }
+            return end;
+        }
+
+        private void timestampRead() throws DockerException {
+            long nanos = DockerTimestamp.parseNanos(timestamp, 0, timestampLength);
+            if (nanos >= 0 && nanos <= skipUntil) {
+                skipping = true;
+                skipped++;
+                return;
+            }
+            if (nanos > lastTimestamp) {
+                lastTimestamp = nanos;
+            }
+            if (writeTimestamps || nanos < 0) {
+                output(timestamp, 0, timestampLength);
+                output(SPACE, 0, 1);
+            }
+        }
+
+        private void output(byte[] data, int offset, int length) throws DockerException {
+            if (!counted) {
+                lines++;
+                counted = true;
+            }
+            bytes += length;
+            if (sink != null) {
+                sink.write(data, offset, length);
+                return;
+            }
+            try {
+                file.write(data, offset, length);
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+        }
+
+        @Override
+        public void endFrame() {
+            // the next frame starts the next line
+        }
+
+        @Override
+        public void idle() throws DockerException {
+            if (sink != null) {
+                sink.flush();
+                return;
+            }
+            try {
+                file.flush();
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+        }
+
+        void close() throws DockerException {
+            if (sink != null) {
+                sink.close();
+                return;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+        }
+
+        private static DockerException writeError(IOException e) {
+            LOGGER.error(ExceptionConstants.UNABLE_TO_WRITEFILE, e);
+            return new DockerException(ExceptionConstants.UNABLE_TO_WRITEFILE, e);
+        }
+    }
+
+}
@@ -0,0 +1,436 @@
+package com.automic.docker.actions;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.config.TransportSettings;
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.ContainerStats;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.NdjsonReader;
+import com.automic.docker.utility.StatsRecording;
+import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Action class to sample the resource usage of one or many running containers, given as comma separated ids or
+ * names, over a window of seconds. The samples are either read from one stats stream per container (STREAM) or
+ * requested at an interval (POLL), which needs fewer connections for many containers.
+ *
+ * The cpu, memory, network and block io usage of every container is aggregated in memory and written to an xml file
+ * as min, avg, p50, p95, p99 and max per container and metric. Optionally every sample is also appended to a compact
+ * recording per container in a folder, named after the container, which the StatsExport tool downsamples and converts
+ * to csv or xml. This action will fail, if unable to connect with the docker server or if no container could be
+ * sampled.
+ */
+public class ContainerStatsAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(ContainerStatsAction.class);
+
+    private static final int NO_OF_ARGS = 8;
+
+    private static final int CONTAINERS_INDEX = 4;
+    private static final int WINDOW_INDEX = 5;
+    private static final int MODE_INDEX = 6;
+    private static final int FILE_PATH_INDEX = 7;
+    private static final int INTERVAL_INDEX = 8;
+    private static final int RECORDING_FOLDER_INDEX = 9;
+
+    private static final String MODE_STREAM = "STREAM";
+    private static final String MODE_POLL = "POLL";
+
+    private static final int DEFAULT_INTERVAL = 1000;
+    private static final int STREAM_INTERVAL = 1000;
+    private static final int MAX_SAMPLES = 10000;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final String RECORDING_EXTENSION = ".stats";
+
+    private String containerNames;
+    private int window;
+    private String mode;
+    private String filePath;
+    private int interval;
+    private String recordingFolder;
+
+    private List<String> containers;
+    private Client client;
+
+    public ContainerStatsAction() {
+        super(NO_OF_ARGS);
+    }
+
+    @Override
+    protected void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Connection Timeout = "
+                + ((args.length > CONNECTION_TIMEOUT_INDEX) ? args[CONNECTION_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
+        LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
+        LOGGER.info("Containers = " + ((args.length > CONTAINERS_INDEX) ? args[CONTAINERS_INDEX] : ""));
+        LOGGER.info("Window (s) = " + ((args.length > WINDOW_INDEX) ? args[WINDOW_INDEX] : ""));
+        LOGGER.info("Mode = " + ((args.length > MODE_INDEX) ? args[MODE_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+        LOGGER.info("Interval (ms) = " + ((args.length > INTERVAL_INDEX) ? args[INTERVAL_INDEX] : ""));
+        LOGGER.info("Recording folder = "
+                + ((args.length > RECORDING_FOLDER_INDEX) ? args[RECORDING_FOLDER_INDEX] : ""));
+    }
+
+    @Override
+    protected void initialize(String[] args) throws DockerException {
+        containerNames = args[CONTAINERS_INDEX];
+        window = DockerUtility.getAndCheckUnsignedValue(args[WINDOW_INDEX]);
+        mode = Validator.checkNotEmpty(args[MODE_INDEX]) ? args[MODE_INDEX].toUpperCase(Locale.ROOT) : MODE_STREAM;
+        filePath = args[FILE_PATH_INDEX];
+        interval = DEFAULT_INTERVAL;
+        if (args.length > INTERVAL_INDEX && Validator.checkNotEmpty(args[INTERVAL_INDEX])) {
+            interval = DockerUtility.getAndCheckUnsignedValue(args[INTERVAL_INDEX]);
+        }
+        recordingFolder = (args.length > RECORDING_FOLDER_INDEX) ? args[RECORDING_FOLDER_INDEX] : "";
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        containers = new ArrayList<String>();
+        if (Validator.checkNotEmpty(containerNames)) {
+            for (String container : containerNames.split(",")) {
+                if (Validator.checkNotEmpty(container.trim()) && !containers.contains(container.trim())) {
+                    containers.add(container.trim());
+                }
+            }
+        }
+        if (containers.isEmpty()) {
+            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
+            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
+        }
+        if (window <= 0 || interval <= 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, (window <= 0) ? window : interval);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (!MODE_STREAM.equals(mode) && !MODE_POLL.equals(mode)) {
+            String msg = String.format(ExceptionConstants.INVALID_STATS_MODE, mode);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        File parent = new File(filePath).getAbsoluteFile().getParentFile();
+        if (!Validator.checkNotEmpty(filePath) || parent == null
+                || !Validator.checkIfValidDirectory(parent.getPath())) {
+            String msg = String.format(ExceptionConstants.INVALID_FILE, filePath);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (Validator.checkNotEmpty(recordingFolder) && !Validator.checkIfValidDirectory(recordingFolder)) {
+            String msg = String.format(ExceptionConstants.INVALID_DIRECTORY, recordingFolder);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * {@inheritDoc ContainerStatsAction#executeSpecific(Client)} This method calls the docker 'list containers' remote
+     * API to resolve the containers to be sampled among the running ones.
+     */
+    @Override
+    protected ClientResponse executeSpecific(Client client) throws DockerException {
+        this.client = client;
+        WebResource webResource = client.resource(dockerUrl).path("containers").path("json");
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+    }
+
+    @Override
+    protected String getErrorMessage(int errorCode) {
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_BAD_REQUEST:
+                msg = "bad parameter";
+                break;
+            case HttpStatus.SC_NOT_FOUND:
+                msg = "no such container";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc ContainerStatsAction#prepareOutput(ClientResponse)} This method samples the containers for the
+     * window and writes the summary of every metric.
+     */
+    @Override
+    protected void prepareOutput(ClientResponse response) throws DockerException {
+        List<ContainerStats> stats = resolve(DockerUtility.jsonArrayResponse(response.getEntityInputStream()));
+
+        String sampling = mode;
+        if (MODE_STREAM.equals(sampling) && stats.size() > TransportSettings.getPoolMaxPerRoute()) {
+            // every stream holds a pooled connection for the whole window
+            LOGGER.warn("Streaming the stats of " + stats.size() + " containers needs more than "
+                    + TransportSettings.getPoolMaxPerRoute() + " connections, polling instead");
+            sampling = MODE_POLL;
+        }
+        List<StatsRecording> recordings = new ArrayList<StatsRecording>();
+        try {
+            if (Validator.checkNotEmpty(recordingFolder)) {
+                for (ContainerStats container : stats) {
+                    Path file = Paths.get(recordingFolder, container.getName() + RECORDING_EXTENSION);
+                    StatsRecording recording = StatsRecording.open(file, ContainerStats.METRICS,
+                            ContainerStats.RECORDING_SCALES);
+                    recordings.add(recording);
+                    container.setRecording(recording);
+                    LOGGER.info("Recording the stats of container " + container.getName() + " to " + file);
+                }
+            }
+            if (MODE_STREAM.equals(sampling)) {
+                stream(stats);
+            } else {
+                poll(stats);
+            }
+        } finally {
+            for (StatsRecording recording : recordings) {
+                recording.close();
+            }
+        }
+
+        long samples = 0;
+        XmlResultWriter writer = new XmlResultWriter(filePath, "stats");
+        try {
+            for (ContainerStats container : stats) {
+                samples += container.getSamples();
+                for (Map<String, Object> fields : container.summarize().values()) {
+                    writer.writeRecord("metric", fields);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        if (samples == 0) {
+            LOGGER.error(ExceptionConstants.NO_STATS_SAMPLES);
+            throw new DockerException(ExceptionConstants.NO_STATS_SAMPLES);
+        }
+        System.out.println("OUTPUT_FILE_PATH ::= " + filePath);
+        System.out.println("UC4RB_DKR_STATS_SAMPLES ::= " + samples);
+    }
+
+    /**
+     * Method to find every container given among the running ones, by the start of its id or by its name.
+     */
+    private List<ContainerStats> resolve(JSONArray running) throws DockerException {
+        int capacity = (int) Math.min(MAX_SAMPLES,
+                window * MILLIS_PER_SECOND / (MODE_POLL.equals(mode) ? interval : STREAM_INTERVAL) + 2);
+        List<ContainerStats> stats = new ArrayList<ContainerStats>();
+        for (String container : containers) {
+            JSONObject found = null;
+            for (int i = 0; i < running.length() && found == null; i++) {
+                JSONObject candidate = running.getJSONObject(i);
+                if (candidate.optString("Id").startsWith(container) || hasName(candidate, container)) {
+                    found = candidate;
+                }
+            }
+            if (found == null) {
+                String msg = String.format(ExceptionConstants.CONTAINER_NOT_RUNNING, container);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            JSONArray names = found.optJSONArray("Names");
+            String name = (names != null && names.length() > 0) ? names.optString(0) : found.getString("Id");
+            stats.add(new ContainerStats(found.getString("Id"), name.startsWith("/") ? name.substring(1) : name,
+                    capacity));
+        }
+        return stats;
+    }
+
+    private static boolean hasName(JSONObject container, String name) {
+        JSONArray names = container.optJSONArray("Names");
+        for (int i = 0; names != null && i < names.length(); i++) {
+            String candidate = names.optString(i);
+            if (candidate.equals(name) || candidate.equals("/" + name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to read one stats stream per container until the window has passed. The streams are closed when the
+     * window has passed, which ends their reads; a stream opened after that is closed right away.
+     */
+    private void stream(List<ContainerStats> stats) throws DockerException {
+        final StreamWindow streams = new StreamWindow();
+        ExecutorService pool = WorkerPool.newPool(stats.size(), "stats");
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final ContainerStats container : stats) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws DockerException {
+                        ClientResponse response = request(container, true);
+                        if (response == null) {
+                            return null;
+                        }
+                        NdjsonReader reader = new NdjsonReader(response.getEntityInputStream());
+                        if (!streams.add(reader)) {
+                            reader.close();
+                            return null;
+                        }
+                        try {
+                            JSONObject sample;
+                            while ((sample = reader.next()) != null) {
+                                container.add(sample);
+                            }
+                        } finally {
+                            reader.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            pool.shutdown();
+            pool.awaitTermination(window, TimeUnit.SECONDS);
+            streams.expire();
+            awaitAll(futures);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            streams.expire();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Method to request a single sample of every container at the interval until the window has passed.
+     */
+    private void poll(List<ContainerStats> stats) throws DockerException {
+        int threads = Math.min(stats.size(), TransportSettings.getPoolMaxPerRoute());
+        ExecutorService pool = WorkerPool.newPool(threads, "stats");
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final ContainerStats container : stats) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws DockerException {
+                    ClientResponse response = request(container, false);
+                    if (response != null) {
+                        try {
+                            container.add(DockerUtility.jsonResponse(response.getEntityInputStream()));
+                        } finally {
+                            response.close();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        long end = System.currentTimeMillis() + window * MILLIS_PER_SECOND;
+        try {
+            long next = System.currentTimeMillis();
+            while (next < end) {
+                awaitAll(pool.invokeAll(tasks));
+                next += interval;
+                long sleep = next - System.currentTimeMillis();
+                if (sleep > 0) {
+                    Thread.sleep(Math.min(sleep, Math.max(0, end - System.currentTimeMillis())));
+                } else {
+                    LOGGER.warn("Sampling the containers took longer than the interval of " + interval + " ms");
+                    next = System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the response of the stats call, null if it failed, which is logged
+     */
+    private ClientResponse request(ContainerStats container, boolean stream) {
+        WebResource webResource = client.resource(dockerUrl).path("containers").path(container.getContainer())
+                .path("stats").queryParam("stream", String.valueOf(stream));
+        LOGGER.debug("Calling url " + webResource.getURI());
+        try {
+            ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                LOGGER.error("Unable to sample container " + container.getContainer() + " : "
+                        + getErrorMessage(response.getStatus()));
+                response.close();
+                return null;
+            }
+            return response;
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to sample container " + container.getContainer(), e);
+            return null;
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws InterruptedException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Sampling failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stats streams which are read until the window has passed.
+     */
+    private static final class StreamWindow {
+
+        private final List<NdjsonReader> readers = new ArrayList<NdjsonReader>();
+        private boolean expired;
+
+        /**
+         * @return false if the window has already passed and the reader is to be closed by the caller
+         */
+        synchronized boolean add(NdjsonReader reader) {
+            if (expired) {
+                return false;
+            }
+            readers.add(reader);
+            return true;
+        }
+
+        /**
+         * Method to close every stream, which unblocks its read, and to refuse streams opened later.
+         */
+        synchronized void expire() {
+            expired = true;
+            for (NdjsonReader reader : readers) {
+                reader.close();
+            }
+            readers.clear();
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.automic.docker.config.StreamingEntity;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
@@ -101,7 +102,7 @@ public class CreateContainerAction extends AbstractAction {
 
         LOGGER.info("Calling url " + webResource.getURI());
 
-        response = webResource.entity(new File(jsonParameterFile), MediaType.APPLICATION_JSON)
+        response = webResource.entity(StreamingEntity.of(new File(jsonParameterFile)), MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class);
 
         return response;
@@ -3,17 +3,36 @@
  */
 package com.automic.docker.actions;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.ws.rs.core.MediaType;
 
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
 
+import com.automic.docker.config.TransportSettings;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.NdjsonReader;
+import com.automic.docker.utility.ProgressMessage;
+import com.automic.docker.utility.PullProgress;
 import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
@@ -23,6 +42,16 @@ import com.sun.jersey.api.client.WebResource;
  * It will pull latest image as per the specified image name with image tag value 'latest'. It will pull all the images
  * for the specified image name if tag is unspecified.
  *
+ * Several images can be pulled at once by a comma separated list of references, e.g. nginx:1.25,redis,alpine@sha256:..
+ * They are pulled concurrently by a bounded number of threads sharing the connection pool, a reference without a tag
+ * gets the tag parameter. The result of every image, its digest and the time its pull took are reported and
+ * optionally written to an xml file. The action fails if any image could not be pulled.
+ *
+ * With the pull policy IF_MISSING an image is only pulled if it is not present locally. With IF_CHANGED it is also
+ * pulled if none of its local repo digests is the expected digest, given with the reference, e.g.
+ * nginx:1.25@sha256:..., or as parameter if only one reference lacks it. A reference with a digest but neither a tag
+ * nor the tag parameter, e.g. alpine@sha256:..., is pulled by its digest. Every image is reported as cache hit or
+ * miss, together with an estimate of the time saved.
  */
 public class CreateImageAction extends AbstractAction {
 
@@ -32,9 +61,32 @@ public class CreateImageAction extends AbstractAction {
 
     private static final int IMAGE_NAME_INDEX = 4;
     private static final int IMAGE_TAG_INDEX = 5;
+    private static final int CONCURRENCY_INDEX = 6;
+    private static final int FILE_PATH_INDEX = 7;
+    private static final int PULL_POLICY_INDEX = 8;
+    private static final int EXPECTED_DIGEST_INDEX = 9;
+
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final String DIGEST_PREFIX = "Digest: ";
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILED = "FAILED";
+    private static final String HIT = "HIT";
+    private static final String MISS = "MISS";
+
+    private static final String ALWAYS = "ALWAYS";
+    private static final String IF_MISSING = "IF_MISSING";
+    private static final String IF_CHANGED = "IF_CHANGED";
+    private static final String SHA256 = "sha256:";
 
     private String imageName;
     private String imageTag;
+    private int concurrency;
+    private String filePath;
+    private String pullPolicy;
+    private String expectedDigest;
+
+    private List<String> references;
+    private Client client;
 
     public CreateImageAction() {
         super(NO_OF_ARGS);
@@ -50,6 +102,11 @@ public class CreateImageAction extends AbstractAction {
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
         LOGGER.info("Image Name = " + ((args.length > IMAGE_NAME_INDEX) ? args[IMAGE_NAME_INDEX] : ""));
         LOGGER.info("Tag = " + ((args.length > IMAGE_TAG_INDEX) ? args[IMAGE_TAG_INDEX] : ""));
+        LOGGER.info("Concurrency = " + ((args.length > CONCURRENCY_INDEX) ? args[CONCURRENCY_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+        LOGGER.info("Pull policy = " + ((args.length > PULL_POLICY_INDEX) ? args[PULL_POLICY_INDEX] : ""));
+        LOGGER.info("Expected digest = "
+                + ((args.length > EXPECTED_DIGEST_INDEX) ? args[EXPECTED_DIGEST_INDEX] : ""));
     }
 
     @Override
@@ -58,6 +115,14 @@ public class CreateImageAction extends AbstractAction {
         if (args.length > IMAGE_TAG_INDEX) {
             imageTag = args[IMAGE_TAG_INDEX];
         }
+        concurrency = DEFAULT_CONCURRENCY;
+        if (args.length > CONCURRENCY_INDEX && Validator.checkNotEmpty(args[CONCURRENCY_INDEX])) {
+            concurrency = DockerUtility.getAndCheckUnsignedValue(args[CONCURRENCY_INDEX]);
+        }
+        filePath = (args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : "";
+        pullPolicy = (args.length > PULL_POLICY_INDEX && Validator.checkNotEmpty(args[PULL_POLICY_INDEX]))
+                ? args[PULL_POLICY_INDEX].toUpperCase(Locale.ROOT) : ALWAYS;
+        expectedDigest = (args.length > EXPECTED_DIGEST_INDEX) ? args[EXPECTED_DIGEST_INDEX] : "";
     }
 
     @Override
@@ -67,16 +132,95 @@ public class CreateImageAction extends AbstractAction {
             LOGGER.error(msg);
             throw new DockerException(msg);
         }
+        references = new ArrayList<String>();
+        for (String reference : imageName.split(",")) {
+            if (Validator.checkNotEmpty(reference.trim()) && !references.contains(reference.trim())) {
+                references.add(reference.trim());
+            }
+        }
+        if (references.isEmpty()) {
+            String msg = String.format(ExceptionConstants.MISSING_REQUIRED_PARAM, "Image name");
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (concurrency <= 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, concurrency);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (!ALWAYS.equals(pullPolicy) && !IF_MISSING.equals(pullPolicy) && !IF_CHANGED.equals(pullPolicy)) {
+            String msg = String.format(ExceptionConstants.INVALID_PULL_POLICY, pullPolicy);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (IF_CHANGED.equals(pullPolicy)) {
+            validateDigests();
+        }
+        if (Validator.checkNotEmpty(filePath)) {
+            File parent = new File(filePath).getAbsoluteFile().getParentFile();
+            if (parent == null || !Validator.checkIfValidDirectory(parent.getPath())) {
+                String msg = String.format(ExceptionConstants.INVALID_FILE, filePath);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+    }
+
+    /**
+     * Method to check that the expected digest of every reference is known, from the reference itself or from the
+     * expected digest parameter. The parameter may only stand for one reference, as several images cannot have the
+     * same digest.
+     */
+    private void validateDigests() throws DockerException {
+        List<String> withoutDigest = new ArrayList<String>();
+        for (String reference : references) {
+            if (reference.indexOf('@') < 0) {
+                withoutDigest.add(reference);
+            }
+        }
+        if (withoutDigest.isEmpty()) {
+            return;
+        }
+        String msg = null;
+        if (!Validator.checkNotEmpty(expectedDigest)) {
+            msg = String.format(ExceptionConstants.MISSING_REQUIRED_PARAM,
+                    "Expected digest of " + withoutDigest.get(0));
+        } else if (withoutDigest.size() > 1) {
+            msg = String.format(ExceptionConstants.AMBIGUOUS_EXPECTED_DIGEST, withoutDigest);
+        }
+        if (msg != null) {
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
 
+    /**
+     * @return true if several images are pulled, a single one only if needed, or its result is to be written to a
+     *         file
+     */
+    private boolean isMultiPull() {
+        return references.size() > 1 || Validator.checkNotEmpty(filePath) || !ALWAYS.equals(pullPolicy);
     }
 
+    /**
+     * {@inheritDoc CreateImageAction#executeSpecific(Client)} This method calls the docker 'create image' remote API
+     * for a single image. To pull several images, it only checks that docker can be reached, the images are pulled
+     * while the output is prepared.
+     */
     @Override
     protected ClientResponse executeSpecific(Client client) throws DockerException {
 
         ClientResponse response = null;
 
+        if (isMultiPull()) {
+            this.client = client;
+            WebResource webResource = client.resource(dockerUrl).path("_ping");
+            LOGGER.info("Calling url " + webResource.getURI());
+            return webResource.get(ClientResponse.class);
+        }
+
         WebResource webResource = client.resource(dockerUrl).path("images").path("create")
-                .queryParam("fromImage", imageName);
+                .queryParam("fromImage", references.get(0));
         if (Validator.checkNotEmpty(imageTag)) {
             webResource = webResource.queryParam("tag", imageTag);
         }
@@ -90,12 +234,293 @@ public class CreateImageAction extends AbstractAction {
 
     @Override
     protected String getErrorMessage(int errorCode) {
-        return (HttpStatus.SC_INTERNAL_SERVER_ERROR == errorCode) ? "server error " : Constants.UNKNOWN_ERROR;
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_NOT_FOUND:
+                msg = "repository does not exist or no read access";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
     }
 
     @Override
     protected void prepareOutput(ClientResponse response) throws DockerException {
-        DockerUtility.readJsonResponseFromStream(response);
+        if (!isMultiPull()) {
+            DockerUtility.readJsonResponseFromStream(response);
+            return;
+        }
+
+        int threads = Math.min(references.size(), concurrency);
+        if (threads > TransportSettings.getPoolMaxPerRoute()) {
+            LOGGER.warn("Concurrency " + threads + " exceeds the " + TransportSettings.getPoolMaxPerRoute()
+                    + " pooled connections per host, pulls will wait for a connection");
+        }
+        ExecutorService pool = WorkerPool.newPool(threads, "pull");
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<ImagePull>> tasks = new ArrayList<Callable<ImagePull>>();
+        for (final String reference : references) {
+            tasks.add(new Callable<ImagePull>() {
+                @Override
+                public ImagePull call() {
+                    ImagePull result = pull(reference);
+                    System.out.println((HIT.equals(result.cache) ? "Skipped " : "Pulled ") + reference + " : "
+                            + result.result + " (" + done.incrementAndGet() + "/" + references.size() + ")");
+                    return result;
+                }
+            });
+        }
+        List<ImagePull> results = new ArrayList<ImagePull>();
+        try {
+            List<Future<ImagePull>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOGGER.error("Pull of " + references.get(i) + " failed", e.getCause());
+                    results.add(new ImagePull(references.get(i), FAILED, null, String.valueOf(e.getCause()), 0,
+                            null));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        writeResults(results);
+    }
+
+    private void writeResults(List<ImagePull> results) throws DockerException {
+        XmlResultWriter writer = Validator.checkNotEmpty(filePath) ? new XmlResultWriter(filePath, "images") : null;
+        int failed = 0;
+        int hits = 0;
+        int misses = 0;
+        long pullTime = 0;
+        try {
+            for (ImagePull result : results) {
+                System.out.println("UC4RB_DKR_IMAGE_RESULT ::= " + result.reference + "," + result.result + ","
+                        + ((result.digest != null) ? result.digest : "") + "," + result.duration
+                        + ((result.cache != null) ? "," + result.cache : ""));
+                if (FAILED.equals(result.result)) {
+                    failed++;
+                } else if (HIT.equals(result.cache)) {
+                    hits++;
+                } else if (MISS.equals(result.cache)) {
+                    misses++;
+                    pullTime += result.duration;
+                }
+                if (writer != null) {
+                    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+                    fields.put("reference", result.reference);
+                    fields.put("result", result.result);
+                    fields.put("cache", result.cache);
+                    fields.put("digest", result.digest);
+                    fields.put("duration_ms", result.duration);
+                    fields.put("message", result.message);
+                    writer.writeRecord("image", fields);
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (writer != null) {
+            System.out.println("OUTPUT_FILE_PATH ::= " + filePath);
+        }
+        System.out.println("UC4RB_DKR_IMAGES_PULLED ::= " + (results.size() - failed - hits));
+        System.out.println("UC4RB_DKR_IMAGES_FAILED ::= " + failed);
+        if (!ALWAYS.equals(pullPolicy)) {
+            System.out.println("UC4RB_DKR_CACHE_HITS ::= " + hits);
+            System.out.println("UC4RB_DKR_CACHE_MISSES ::= " + misses);
+            // the pulls of this run are the only measure of what a skipped pull would have taken
+            long saved = (misses > 0) ? hits * pullTime / misses : 0;
+            if (hits > 0 && misses == 0) {
+                LOGGER.info("No image has been pulled, the time saved cannot be estimated");
+            }
+            System.out.println("UC4RB_DKR_TIME_SAVED_MS ::= " + saved);
+        }
+        if (failed > 0) {
+            String msg = String.format(ExceptionConstants.IMAGES_NOT_PULLED, failed, results.size());
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * Method to decide by the pull policy whether an image has to be pulled, inspecting the local image.
+     *
+     * @return the result of a cache hit, null if the image has to be pulled
+     */
+    private ImagePull checkCache(String image, String expected) throws DockerException {
+        long start = System.currentTimeMillis();
+        WebResource webResource = client.resource(dockerUrl).path("images").path(image).path("json");
+        LOGGER.info("Calling url " + webResource.getURI());
+        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        try {
+            if (response.getStatus() == HttpStatus.SC_NOT_FOUND) {
+                LOGGER.info("Image " + image + " is not present");
+                return null;
+            }
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                String msg = String.format(ExceptionConstants.UNABLE_TO_INSPECT_IMAGE, image,
+                        getErrorMessage(response.getStatus()));
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            JSONArray repoDigests = DockerUtility.jsonResponse(response.getEntityInputStream())
+                    .optJSONArray("RepoDigests");
+            String digest = null;
+            for (int i = 0; repoDigests != null && i < repoDigests.length(); i++) {
+                String repoDigest = repoDigests.optString(i);
+                String candidate = repoDigest.substring(repoDigest.indexOf('@') + 1);
+                if (digest == null || candidate.equals(expected)) {
+                    digest = candidate;
+                }
+            }
+            if (expected != null && !expected.equals(digest)) {
+                LOGGER.info("Image " + image + " has the digest " + digest + " instead of " + expected);
+                return null;
+            }
+            LOGGER.info("Image " + image + " is present" + ((expected != null) ? " with digest " + expected : ""));
+            return new ImagePull(image, SUCCESS, digest, "Image is present", System.currentTimeMillis() - start,
+                    HIT);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Method to pull one image, following its progress in the log.
+     *
+     * @return the result, which is failed if docker rejects the pull or reports an error
+     */
+    private ImagePull pull(String reference) {
+        long start = System.currentTimeMillis();
+        String image = reference;
+        String expected = null;
+        String cache = null;
+        if (IF_CHANGED.equals(pullPolicy)) {
+            // the digest only tells whether the tag is current, the tag is pulled
+            int digestStart = reference.indexOf('@');
+            image = (digestStart < 0) ? reference : reference.substring(0, digestStart);
+            expected = normalizeDigest((digestStart < 0) ? expectedDigest : reference.substring(digestStart + 1));
+            if (digestStart >= 0 && image.lastIndexOf(':') <= image.lastIndexOf('/')
+                    && !Validator.checkNotEmpty(imageTag)) {
+                // there is no tag to keep current, pulling the name alone would pull all of its tags
+                image = image + "@" + expected;
+            }
+        }
+        int tagStart = image.lastIndexOf(':');
+        boolean tagged = image.indexOf('@') >= 0 || tagStart > image.lastIndexOf('/');
+        if (!tagged && Validator.checkNotEmpty(imageTag)) {
+            image = image + ":" + imageTag;
+            tagStart = image.lastIndexOf(':');
+        }
+
+        ClientResponse response = null;
+        try {
+            if (!ALWAYS.equals(pullPolicy)) {
+                ImagePull hit = checkCache(image, expected);
+                if (hit != null) {
+                    return new ImagePull(reference, hit.result, hit.digest, hit.message, hit.duration, HIT);
+                }
+                cache = MISS;
+            }
+
+            WebResource webResource = client.resource(dockerUrl).path("images").path("create");
+            if (image.indexOf('@') < 0 && tagStart > image.lastIndexOf('/')) {
+                webResource = webResource.queryParam("fromImage", image.substring(0, tagStart))
+                        .queryParam("tag", image.substring(tagStart + 1));
+            } else {
+                webResource = webResource.queryParam("fromImage", image);
+            }
+            LOGGER.info("Calling url " + webResource.getURI());
+            response = webResource.accept(MediaType.APPLICATION_JSON).post(ClientResponse.class);
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                String message = response.getEntity(String.class);
+                LOGGER.error("Pull of " + reference + " failed : " + response.getStatus() + " " + message);
+                return new ImagePull(reference, FAILED, null, getErrorMessage(response.getStatus()) + " "
+                        + message.trim(), System.currentTimeMillis() - start, cache);
+            }
+            NdjsonReader reader = new NdjsonReader(response.getEntityInputStream());
+            ProgressMessage message = new ProgressMessage();
+            PullProgress progress = new PullProgress(TransportSettings.getProgressInterval(), start);
+            String digest = null;
+            String status = null;
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                if (!message.parse(line)) {
+                    continue;
+                }
+                if (message.getError() != null) {
+                    LOGGER.error("Pull of " + reference + " failed : " + message.getError());
+                    return new ImagePull(reference, FAILED, digest, message.getError(),
+                            System.currentTimeMillis() - start, cache);
+                }
+                progress.update(message);
+                if (message.getStatus() != null && !message.isProgress()) {
+                    status = message.getStatus();
+                    if (status.startsWith(DIGEST_PREFIX)) {
+                        digest = status.substring(DIGEST_PREFIX.length()).trim();
+                    }
+                }
+                String summary = progress.poll(System.currentTimeMillis());
+                if (summary != null) {
+                    LOGGER.info(reference + " " + summary);
+                }
+            }
+            String summary = progress.finish(System.currentTimeMillis());
+            if (summary != null) {
+                LOGGER.info(reference + " " + summary);
+            }
+            if (expected != null && digest != null && !expected.equals(digest)) {
+                LOGGER.warn("Pulled " + image + " has the digest " + digest + " instead of the expected " + expected);
+            }
+            return new ImagePull(reference, SUCCESS, digest, status, System.currentTimeMillis() - start, cache);
+        } catch (DockerException | RuntimeException e) {
+            LOGGER.error("Pull of " + reference + " failed", e);
+            return new ImagePull(reference, FAILED, null, e.getMessage(), System.currentTimeMillis() - start, cache);
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private static String normalizeDigest(String digest) {
+        String trimmed = digest.trim();
+        return (trimmed.indexOf(':') < 0) ? SHA256 + trimmed : trimmed;
+    }
+
+    /**
+     * Result of the pull of one image.
+     */
+    private static final class ImagePull {
+
+        private final String reference;
+        private final String result;
+        private final String digest;
+        private final String message;
+        private final long duration;
+        private final String cache;
+
+        private ImagePull(String reference, String result, String digest, String message, long duration,
+                String cache) {
+            this.reference = reference;
+            this.result = result;
+            this.digest = digest;
+            this.message = message;
+            this.duration = duration;
+            this.cache = cache;
+        }
     }
 
 }
@@ -0,0 +1,226 @@
+package com.automic.docker.actions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerTimestamp;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.JsonMatcher;
+import com.automic.docker.utility.NdjsonReader;
+import com.automic.docker.utility.OutputSink;
+import com.automic.docker.utility.Validator;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Action class to subscribe to the events of the docker host, instead of polling for changes. The events, one json
+ * object per line, are written to a file or the job report as they arrive.
+ *
+ * The events can be filtered by docker with comma separated key=value pairs, e.g. type=container,label=app=web or
+ * container=web,event=die, and bounded by since and until. The action ends when docker closes the stream at the until
+ * time, or when the action itself closes it after a maximum number of events or with the first event matching a stop
+ * predicate, e.g. Action=die,Actor.Attributes.name=web. The read timeout should be 0 or longer than the expected time
+ * between two events. This action will fail, if unable to connect with the docker server.
+ */
+public class EventsAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(EventsAction.class);
+
+    private static final int NO_OF_ARGS = 7;
+
+    private static final int FILTER_INDEX = 4;
+    private static final int SINCE_INDEX = 5;
+    private static final int UNTIL_INDEX = 6;
+    private static final int MAX_EVENTS_INDEX = 7;
+    private static final int STOP_PREDICATE_INDEX = 8;
+    private static final int FILE_PATH_INDEX = 9;
+
+    private static final byte[] NEW_LINE = { '\n' };
+
+    private String filter;
+    private String since;
+    private String until;
+    private int maxEvents;
+    private String stopPredicate;
+    private String filePath;
+
+    private JSONObject filters;
+    private JsonMatcher stopMatcher;
+
+    public EventsAction() {
+        super(NO_OF_ARGS);
+    }
+
+    @Override
+    protected void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Connection Timeout = "
+                + ((args.length > CONNECTION_TIMEOUT_INDEX) ? args[CONNECTION_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
+        LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
+        LOGGER.info("Filter = " + ((args.length > FILTER_INDEX) ? args[FILTER_INDEX] : ""));
+        LOGGER.info("Since = " + ((args.length > SINCE_INDEX) ? args[SINCE_INDEX] : ""));
+        LOGGER.info("Until = " + ((args.length > UNTIL_INDEX) ? args[UNTIL_INDEX] : ""));
+        LOGGER.info("Max events = " + ((args.length > MAX_EVENTS_INDEX) ? args[MAX_EVENTS_INDEX] : ""));
+        LOGGER.info("Stop predicate = " + ((args.length > STOP_PREDICATE_INDEX) ? args[STOP_PREDICATE_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+    }
+
+    @Override
+    protected void initialize(String[] args) throws DockerException {
+        filter = args[FILTER_INDEX];
+        since = args[SINCE_INDEX];
+        until = args[UNTIL_INDEX];
+        if (args.length > MAX_EVENTS_INDEX && Validator.checkNotEmpty(args[MAX_EVENTS_INDEX])) {
+            maxEvents = DockerUtility.getAndCheckUnsignedValue(args[MAX_EVENTS_INDEX]);
+        }
+        stopPredicate = (args.length > STOP_PREDICATE_INDEX) ? args[STOP_PREDICATE_INDEX] : "";
+        filePath = (args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : "";
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        if (Validator.checkNotEmpty(filter)) {
+            filters = DockerUtility.toFilters(filter);
+        }
+        validateTimestamp(since);
+        validateTimestamp(until);
+        if (maxEvents < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, maxEvents);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (Validator.checkNotEmpty(stopPredicate)) {
+            stopMatcher = JsonMatcher.parse(stopPredicate);
+        }
+        if (Validator.checkNotEmpty(filePath)) {
+            File parent = new File(filePath).getAbsoluteFile().getParentFile();
+            if (parent == null || !Validator.checkIfValidDirectory(parent.getPath())) {
+                String msg = String.format(ExceptionConstants.INVALID_FILE, filePath);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+    }
+
+    private void validateTimestamp(String value) throws DockerException {
+        if (Validator.checkNotEmpty(value)) {
+            try {
+                DockerTimestamp.parseSince(value);
+            } catch (NumberFormatException e) {
+                String msg = String.format(ExceptionConstants.INVALID_TIMESTAMP, value);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc EventsAction#executeSpecific(Client)} This method calls the docker 'events' remote API, which
+     * streams the events until the until time, or endlessly.
+     */
+    @Override
+    protected ClientResponse executeSpecific(Client client) throws DockerException {
+        WebResource webResource = client.resource(dockerUrl).path("events");
+        if (filters != null) {
+            webResource = webResource.queryParam("filters", filters.toString());
+        }
+        if (Validator.checkNotEmpty(since)) {
+            webResource = webResource.queryParam("since", since);
+        }
+        if (Validator.checkNotEmpty(until)) {
+            webResource = webResource.queryParam("until", until);
+        }
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.get(ClientResponse.class);
+    }
+
+    @Override
+    protected String getErrorMessage(int errorCode) {
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_BAD_REQUEST:
+                msg = "bad parameter";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc EventsAction#prepareOutput(ClientResponse)} This method writes every event as soon as it has been
+     * received, and flushes the output whenever no further event is pending.
+     */
+    @Override
+    protected void prepareOutput(ClientResponse response) throws DockerException {
+        NdjsonReader reader = new NdjsonReader(response.getEntityInputStream());
+        OutputSink sink = openSink();
+        JSONObject matched = null;
+        long events = 0;
+        try {
+            JSONObject event;
+            while ((event = reader.next()) != null) {
+                sink.write(reader.getLine().getBytes(StandardCharsets.UTF_8));
+                sink.write(NEW_LINE);
+                events++;
+                if (stopMatcher != null && stopMatcher.matches(event)) {
+                    LOGGER.info("Event matches the stop predicate " + reader.getLine());
+                    matched = event;
+                    break;
+                }
+                if (maxEvents > 0 && events == maxEvents) {
+                    LOGGER.info("Received " + maxEvents + " events, stopping");
+                    break;
+                }
+                if (reader.isIdle()) {
+                    sink.flush();
+                }
+            }
+        } finally {
+            sink.close();
+        }
+
+        LOGGER.info("Received " + events + " events");
+        if (Validator.checkNotEmpty(filePath)) {
+            System.out.println("OUTPUT_FILE_PATH ::= " + filePath);
+        }
+        System.out.println("UC4RB_DKR_EVENTS ::= " + events);
+        if (stopMatcher != null) {
+            System.out.println("UC4RB_DKR_EVENT_MATCHED ::= " + ((matched != null) ? "YES" : "NO"));
+            if (matched != null) {
+                System.out.println("UC4RB_DKR_MATCHED_EVENT ::= " + matched.toString());
+            }
+        }
+    }
+
+    private OutputSink openSink() throws DockerException {
+        if (!Validator.checkNotEmpty(filePath)) {
+            return new OutputSink(System.out, false, 0);
+        }
+        try {
+            return new OutputSink(new FileOutputStream(filePath), true, 0);
+        } catch (FileNotFoundException e) {
+            String msg = String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, filePath);
+            LOGGER.error(msg, e);
+            throw new DockerException(msg, e);
+        }
+    }
+
+}
@@ -3,7 +3,9 @@ package com.automic.docker.actions;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 
 import org.apache.http.HttpStatus;
@@ -11,13 +13,14 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
 
+import com.automic.docker.config.TransportSettings;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
-import com.automic.docker.utility.ByteWriter;
 import com.automic.docker.utility.DockerUtility;
-import com.automic.docker.utility.LogMessage;
-import com.automic.docker.utility.LogStreamReader;
+import com.automic.docker.utility.MultiplexedStreamReader;
+import com.automic.docker.utility.OutputSink;
+import com.automic.docker.utility.TailBuffer;
 import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
@@ -130,101 +133,136 @@ public class ExecStartAction extends AbstractAction {
     }
 
     /**
-     * {@inheritDoc ExecStartAction#prepareOutput(ClientResponse)} This method prepare the output xml by converting the
-     * json response into xml which is then written to the file at the path provided
+     * {@inheritDoc ExecStartAction#prepareOutput(ClientResponse)} This method writes the stdout of the exec instance to
+     * the job report or to the file at the path provided and its stderr to the job report, both while the command is
+     * running. Both streams share the job report, so their lines keep the order in which the command wrote them. If the
+     * command wrote to stderr and its stdout went to a file, the end of its stdout is reported as well.
      */
     @Override
     protected void prepareOutput(ClientResponse response) throws DockerException {
-        LogStreamReader logStreamReader = new LogStreamReader(response.getEntityInputStream());
-        LogMessage logMsg = logStreamReader.next();
-        if (logMsg != null) {
-            ByteWriter stdErrWriter = new ByteWriter(System.out);
-            ByteWriter stdOutWriter = null;
-            File fileToWrite = null;
-            boolean errorStatus = false;
-            try {
-                if (saveToFile) {
-                    fileToWrite = new File(folderPath, fileName);
-                    stdOutWriter = new ByteWriter(new FileOutputStream(fileToWrite));
-                } else {
-                    stdOutWriter = stdErrWriter;
-                }
-                do {
-                    int streamType = writeMessageToWriter(logMsg, stdOutWriter, stdErrWriter);
-                    if (!errorStatus && Constants.STDERR_CODE == streamType) {
-                        errorStatus = true;
-                    }
-                    logMsg = logStreamReader.next();
-                } while (logMsg != null);
-            } catch (IOException io) {
-                LOGGER.error(ExceptionConstants.IO_ERROR, io);
-                throw new DockerException(ExceptionConstants.IO_ERROR, io);
-            } finally {
-                if (stdOutWriter != null) {
-                    stdOutWriter.flush();
-                }
-                stdErrWriter.flush();
-                // closing the writer stream
-                if (fileToWrite != null) {
-                    stdOutWriter.close();
-                }
+        MultiplexedStreamReader reader = MultiplexedStreamReader.forContentType(response.getEntityInputStream(),
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        File fileToWrite = null;
+        OutputSink stdOut = null;
+        OutputSink stdErr = new OutputSink(System.out, false, 0);
+        OutputFrameHandler handler;
+        try {
+            if (saveToFile) {
+                fileToWrite = new File(folderPath, fileName);
+                stdOut = new OutputSink(new FileOutputStream(fileToWrite), true,
+                        TransportSettings.getOutputTailSize());
+            } else {
+                stdOut = stdErr;
             }
-            if (errorStatus) {
-                if (fileToWrite != null) {
-                    DockerUtility.copyData(fileToWrite, stdErrWriter);
-                    if (!fileToWrite.delete()) {
-                        LOGGER.warn("Unable to delete the file [" + fileToWrite.toString());
-                    }
-                    fileToWrite = null;
-                }
-                String msg = "Received error from Docker.";
-                LOGGER.error(msg);
-                throw new DockerException(msg);
-            } else if (fileToWrite != null) {
-                LOGGER.info("OUTPUT_FILE_PATH ::= " + fileToWrite.toString());
-                System.out.println("OUTPUT_FILE_PATH ::= " + fileToWrite.toString());
+            handler = new OutputFrameHandler(stdOut, stdErr);
+            reader.readAll(handler);
+        } catch (IOException io) {
+            LOGGER.error(ExceptionConstants.IO_ERROR, io);
+            throw new DockerException(ExceptionConstants.IO_ERROR, io);
+        } finally {
+            if (stdOut != null && stdOut != stdErr) {
+                stdOut.close();
+            }
+            stdErr.close();
+        }
+
+        if (handler.frames == 0) {
+            if (fileToWrite != null && !fileToWrite.delete()) {
+                LOGGER.warn("Unable to delete the file [" + fileToWrite.toString());
             }
-        } else {
             String msg = "No Data found on stdout/stderr streams";
             LOGGER.info(msg);
             System.out.println(msg);
+        } else if (handler.errorStatus) {
+            if (fileToWrite != null) {
+                printTail(stdOut.getTail(), fileToWrite);
+            }
+            String msg = "Received error from Docker.";
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        } else if (fileToWrite != null) {
+            LOGGER.info("OUTPUT_FILE_PATH ::= " + fileToWrite.toString());
+            System.out.println("OUTPUT_FILE_PATH ::= " + fileToWrite.toString());
         }
         LOGGER.info("Got the response successfully... ");
     }
 
     /**
-     * Method to write/log response message to an Success Ouput/Errror Stream.
-     *
-     * @param logMsg
-     *            Message to be logged
-     * @param out
-     *            ByteWriter stream for sucess
-     * @param error
-     *            ByteWriter stream for error
-     * @return 1 if it is a successful response else 2 for error
-     * @throws DockerException
+     * Method to report the end of the stdout written to a file, so that the context of an error is visible in the job
+     * report without copying the whole file.
      */
-    private int writeMessageToWriter(LogMessage logMsg, ByteWriter out, ByteWriter error) throws DockerException {
-        String streamType = DockerUtility.getStreamName(logMsg.getStreamId());
-        StringBuilder sb = new StringBuilder();
-        sb.append(streamType).append(" -> ");
-        // writing the response into file
-        switch (logMsg.getStreamId()) {
-            case Constants.STDOUT_CODE:
-                out.write(sb.toString());
-                out.write(logMsg.getMessage());
-                out.writeNewLine();
-                break;
-            case Constants.STDERR_CODE:
-                error.write(sb.toString());
-                error.write(logMsg.getMessage());
-                error.writeNewLine();
-                break;
-            default:
-                LOGGER.error("Ignored Stream Id " + logMsg.getStreamId());
-                break;
+    private void printTail(TailBuffer tail, File file) {
+        byte[] bytes = tail.toByteArray();
+        String msg = tail.isTruncated() ? String.format("Last %d of %d bytes of stdout written to [%s]:",
+                bytes.length, tail.getTotal(), file) : String.format("Stdout written to [%s]:", file);
+        System.out.println(msg);
+        System.out.write(bytes, 0, bytes.length);
+        System.out.println();
+        System.out.flush();
+    }
+
+    /**
+     * Handler writing the frames of the exec output, each one prefixed by the name of its stream and terminated by a
+     * new line, to the sink of its stream. Frames are written as they arrive, without copying them.
+     */
+    private static final class OutputFrameHandler implements MultiplexedStreamReader.FrameHandler {
+
+        private static final byte[] STDOUT_PREFIX = (Constants.STDOUT_MSG + " -> ").getBytes(StandardCharsets.UTF_8);
+        private static final byte[] STDERR_PREFIX = (Constants.STDERR_MSG + " -> ").getBytes(StandardCharsets.UTF_8);
+        private static final byte[] NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+        private final OutputSink out;
+        private final OutputSink error;
+        private OutputSink current;
+        private long frames;
+        private boolean errorStatus;
+
+        OutputFrameHandler(OutputSink out, OutputSink error) {
+            this.out = out;
+            this.error = error;
+        }
+
+        @Override
+        public void startFrame(int streamId, long length) throws DockerException {
+            frames++;
+            switch (streamId) {
+                case Constants.STDOUT_CODE:
+                    current = out;
+                    current.write(STDOUT_PREFIX);
+                    break;
+                case Constants.STDERR_CODE:
+                    errorStatus = true;
+                    current = error;
+                    current.write(STDERR_PREFIX);
+                    break;
+                default:
+                    LOGGER.error("Ignored Stream Id " + streamId);
+                    current = null;
+                    break;
+            }
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws DockerException {
+            if (current != null) {
+                current.write(data, offset, length);
+            }
+        }
+
+        @Override
+        public void endFrame() throws DockerException {
+            if (current != null) {
+                current.write(NEW_LINE);
+            }
+        }
+
+        @Override
+        public void idle() throws DockerException {
+            out.flush();
+            if (error != out) {
+                error.flush();
+            }
         }
-        return logMsg.getStreamId();
     }
 
 }
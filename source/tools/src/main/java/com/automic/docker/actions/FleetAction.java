@@ -0,0 +1,505 @@
+package com.automic.docker.actions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.client.DockerClient;
+import com.automic.docker.client.OutputRouter;
+import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.constants.Action;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
+
+/**
+ * Action class to execute one action against many docker hosts in one JVM, e.g. to list the containers of a fleet.
+ * Like {@link BatchAction} it does not talk to docker itself. The hosts are read from a file with one host per line:
+ * an optional name, the docker url and optionally the folder of the certificates of the host, separated by blanks,
+ * lines starting with # are ignored. The action is given with its usual arguments, without the docker url and the
+ * certificate path, which are taken from the host file.
+ *
+ * The hosts are processed in parallel up to the given concurrency, and every host has to finish within the deadline,
+ * counted from the start of its action, so that the whole fleet takes about as long as the slowest host. The read and
+ * connection timeouts are capped to the deadline. When a host misses the deadline its clients are destroyed, which
+ * closes its connections and ends the action, so that no more actions than the concurrency are ever running. A host
+ * whose action could not even start within the deadline, as the actions of earlier hosts did not end, is reported as
+ * NOT_STARTED.
+ *
+ * An argument containing {host} is replaced by the name of the host, which gives every host its own output file. The
+ * xml files written this way are merged into the output file, every record with a host attribute, next to a HOST
+ * record with the status, exit code, duration and output of every host.
+ */
+public class FleetAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(FleetAction.class);
+
+    private static final int NO_OF_ARGS = 7;
+
+    private static final int HOSTS_FILE_INDEX = 0;
+    private static final int OUTPUT_FILE_INDEX = 1;
+    private static final int CONCURRENCY_INDEX = 2;
+    private static final int DEADLINE_INDEX = 3;
+    private static final int ACTION_INDEX = 4;
+    private static final int CONNECTION_TIMEOUT_INDEX = 5;
+    private static final int READ_TIMEOUT_INDEX = 6;
+
+    private static final String FLEET_ROOT_TAG = "FLEET";
+    private static final String FLEET_HOST_TAG = "HOST";
+    private static final String FLEET_SUMMARY_TAG = "SUMMARY";
+    private static final String HOST_ATTRIBUTE = "host";
+    private static final String HOST_PLACEHOLDER = "{host}";
+    private static final String COMMENT_PREFIX = "#";
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String STATUS_TIMEOUT = "TIMEOUT";
+    private static final String STATUS_NOT_STARTED = "NOT_STARTED";
+    private static final int RESPONSE_NOT_OK = 1;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long ABORT_GRACE_SECONDS = 5L;
+
+    private String hostsPath;
+    private String outputFilePath;
+    private int concurrency;
+    private int deadline;
+    private String[] template;
+
+    /**
+     * Method to execute the action against all hosts. Throws an exception if it failed on at least one host.
+     *
+     * @param args
+     *            Array of arguments
+     * @throws DockerException
+     */
+    public void executeAction(String[] args) throws DockerException {
+        logParameters(args);
+        if (args.length < NO_OF_ARGS) {
+            LOGGER.error(ExceptionConstants.INSUFFICIENT_ARGUMENTS);
+            throw new DockerException(ExceptionConstants.INSUFFICIENT_ARGUMENTS);
+        }
+        initialize(args);
+        validateInputs();
+
+        List<Host> hosts = readHosts();
+        String msg = "Executing " + template[0] + " on " + hosts.size() + " hosts with concurrency " + concurrency;
+        LOGGER.info(msg);
+        System.out.println(msg);
+
+        // when running inside the daemon the cache belongs to the daemon and must survive the fleet
+        boolean ownClientCache = HttpClientConfig.enableClientCache();
+        OutputRouter.install();
+        int failed = 0;
+        int timedOut = 0;
+        int notStarted = 0;
+        long slowest = 0;
+        long start = System.currentTimeMillis();
+        int threads = Math.min(concurrency, hosts.size());
+        ExecutorService executor = WorkerPool.newPool(threads, "fleet");
+        // runs the action of a host, so that the worker can give up on it at the deadline
+        ExecutorService runner = WorkerPool.newPool(threads, "fleet-host");
+        XmlResultWriter writer = new XmlResultWriter(outputFilePath, FLEET_ROOT_TAG);
+        try {
+            List<Future<HostResult>> results = new ArrayList<Future<HostResult>>(hosts.size());
+            for (Host host : hosts) {
+                results.add(executor.submit(new HostTask(host, runner)));
+            }
+            for (Future<HostResult> future : results) {
+                HostResult result = getResult(future);
+                if (STATUS_TIMEOUT.equals(result.status)) {
+                    timedOut++;
+                } else if (STATUS_NOT_STARTED.equals(result.status)) {
+                    notStarted++;
+                } else if (!STATUS_OK.equals(result.status)) {
+                    failed++;
+                }
+                slowest = Math.max(slowest, result.duration);
+                writeHost(writer, result);
+                System.out.println("Host [" + result.host.name + "] " + template[0] + " finished with " + result.status
+                        + " (exit code " + result.exitCode + ") in " + result.duration + " ms");
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<String, Object>();
+            summary.put("Total", hosts.size());
+            summary.put("Succeeded", hosts.size() - failed - timedOut - notStarted);
+            summary.put("Failed", failed);
+            summary.put("TimedOut", timedOut);
+            summary.put("NotStarted", notStarted);
+            summary.put("SlowestMs", slowest);
+            summary.put("DurationMs", System.currentTimeMillis() - start);
+            writer.writeRecord(FLEET_SUMMARY_TAG, summary);
+            System.out.println("UC4RB_DKR_FLEET_SUMMARY ::= " + summary);
+        } finally {
+            executor.shutdownNow();
+            runner.shutdownNow();
+            writer.close();
+            if (ownClientCache) {
+                HttpClientConfig.destroyCachedClients();
+            }
+        }
+        System.out.println("OUTPUT_FILE_PATH ::= " + outputFilePath);
+
+        int unsuccessful = failed + timedOut + notStarted;
+        if (unsuccessful > 0) {
+            String err = String.format(ExceptionConstants.FLEET_HOSTS_FAILED, unsuccessful, hosts.size());
+            LOGGER.error(err);
+            throw new DockerException(err);
+        }
+    }
+
+    private void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Hosts = " + ((args.length > HOSTS_FILE_INDEX) ? args[HOSTS_FILE_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > OUTPUT_FILE_INDEX) ? args[OUTPUT_FILE_INDEX] : ""));
+        LOGGER.info("Concurrency = " + ((args.length > CONCURRENCY_INDEX) ? args[CONCURRENCY_INDEX] : ""));
+        LOGGER.info("Deadline = " + ((args.length > DEADLINE_INDEX) ? args[DEADLINE_INDEX] : ""));
+        LOGGER.info("Action = " + ((args.length > ACTION_INDEX) ? args[ACTION_INDEX] : ""));
+    }
+
+    private void initialize(String[] args) {
+        hostsPath = args[HOSTS_FILE_INDEX].trim();
+        outputFilePath = args[OUTPUT_FILE_INDEX].trim();
+        concurrency = DockerUtility.getAndCheckUnsignedValue(args[CONCURRENCY_INDEX].trim());
+        deadline = Validator.checkNotEmpty(args[DEADLINE_INDEX].trim()) ? DockerUtility
+                .getAndCheckUnsignedValue(args[DEADLINE_INDEX].trim()) : 0;
+        template = Arrays.copyOfRange(args, ACTION_INDEX, args.length);
+        template[0] = template[0].trim().toUpperCase();
+    }
+
+    private void validateInputs() throws DockerException {
+        if (!Validator.checkFileExistsAndIsFile(hostsPath)) {
+            String msg = String.format(ExceptionConstants.INVALID_FILE, hostsPath);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (!Validator.checkFileFolderExists(outputFilePath)) {
+            LOGGER.error("Invalid Directory : " + outputFilePath);
+            throw new DockerException(String.format(ExceptionConstants.INVALID_DIRECTORY, outputFilePath));
+        }
+        if (concurrency < 1) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, concurrency);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (deadline < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, deadline);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        try {
+            Action action = Action.valueOf(template[0]);
+            if (action == Action.BATCH || action == Action.FLEET) {
+                throw new IllegalArgumentException(action.name());
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.error(ExceptionConstants.INVALID_ACTION);
+            throw new DockerException(ExceptionConstants.INVALID_ACTION);
+        }
+    }
+
+    /**
+     * Method to read the host file.
+     *
+     * @return hosts in the order of the file
+     * @throws DockerException
+     */
+    private List<Host> readHosts() throws DockerException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(hostsPath), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.error("Error occured while reading host file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_READ_FILE, hostsPath), e);
+        }
+        List<Host> hosts = new ArrayList<Host>();
+        Set<String> names = new HashSet<String>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            String[] tokens = BatchAction.tokenize(trimmed);
+            // the name is optional, a url always contains a colon
+            int urlIndex = (tokens[0].indexOf(':') < 0 && tokens.length > 1) ? 1 : 0;
+            if (tokens.length > urlIndex + 2 || tokens[urlIndex].indexOf(':') < 0) {
+                String msg = String.format(ExceptionConstants.INVALID_HOST_FILE, hostsPath, trimmed);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            String url = tokens[urlIndex];
+            String name = (urlIndex == 1) ? tokens[0] : getName(url);
+            String certificates = (tokens.length > urlIndex + 1) ? tokens[urlIndex + 1] : "";
+            if (!names.add(name)) {
+                String msg = String.format(ExceptionConstants.DUPLICATE_HOST, name, hostsPath);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            hosts.add(new Host(name, url, certificates));
+        }
+        if (hosts.isEmpty()) {
+            String msg = String.format(ExceptionConstants.INVALID_HOST_FILE, hostsPath, "");
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        return hosts;
+    }
+
+    /**
+     * Method to derive the name of a host from its url, e.g. build-01_2376 for https://build-01:2376.
+     */
+    private static String getName(String url) {
+        String name;
+        try {
+            URI uri = URI.create(url);
+            name = (uri.getHost() != null) ? uri.getHost() + ((uri.getPort() > 0) ? "_" + uri.getPort() : "") : url;
+        } catch (IllegalArgumentException e) {
+            name = url;
+        }
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Method to build the arguments of the action for one host.
+     */
+    private String[] getArguments(Host host) {
+        List<String> args = new ArrayList<String>();
+        args.add(template[0]);
+        args.add(capTimeout(template[CONNECTION_TIMEOUT_INDEX - ACTION_INDEX]));
+        args.add(capTimeout(template[READ_TIMEOUT_INDEX - ACTION_INDEX]));
+        args.add(host.url);
+        args.add(host.certificates);
+        for (int i = READ_TIMEOUT_INDEX - ACTION_INDEX + 1; i < template.length; i++) {
+            args.add(template[i].replace(HOST_PLACEHOLDER, host.name));
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Method to cap a timeout in milliseconds to the deadline, 0 meaning no timeout.
+     */
+    private String capTimeout(String timeout) {
+        if (deadline == 0 || !timeout.trim().matches("\\d+")) {
+            return timeout;
+        }
+        long value = Long.parseLong(timeout.trim());
+        long limit = deadline * MILLIS_PER_SECOND;
+        return Long.toString((value == 0 || value > limit) ? limit : value);
+    }
+
+    /**
+     * Method to write the record of a host and to merge the xml files written for it.
+     */
+    private void writeHost(XmlResultWriter writer, HostResult result) throws DockerException {
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put(HOST_ATTRIBUTE, result.host.name);
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        record.put("Url", result.host.url);
+        record.put("Status", result.status);
+        record.put("ExitCode", result.exitCode);
+        record.put("DurationMs", result.duration);
+        record.put("Stdout", result.out);
+        record.put("Stderr", result.err);
+        writer.writeRecord(FLEET_HOST_TAG, attributes, record);
+
+        if (STATUS_TIMEOUT.equals(result.status) || STATUS_NOT_STARTED.equals(result.status)) {
+            return;
+        }
+        for (String arg : template) {
+            if (!arg.contains(HOST_PLACEHOLDER)) {
+                continue;
+            }
+            Path file = Paths.get(arg.replace(HOST_PLACEHOLDER, result.host.name));
+            if (isXml(file)) {
+                int count = writer.copyRecords(file, HOST_ATTRIBUTE, result.host.name);
+                LOGGER.info("Merged " + count + " records of " + file);
+            }
+        }
+    }
+
+    private static boolean isXml(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (InputStream is = Files.newInputStream(file)) {
+            int ch = is.read();
+            while (ch >= 0 && Character.isWhitespace(ch)) {
+                ch = is.read();
+            }
+            return ch == '<';
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read " + file, e);
+            return false;
+        }
+    }
+
+    private static HostResult getResult(Future<HostResult> result) throws DockerException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e);
+        } catch (ExecutionException e) {
+            LOGGER.error("Fleet host failed ", e.getCause());
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e.getCause());
+        }
+    }
+
+    /**
+     * One host of the host file.
+     */
+    private static final class Host {
+
+        private final String name;
+        private final String url;
+        private final String certificates;
+
+        private Host(String name, String url, String certificates) {
+            this.name = name;
+            this.url = url;
+            this.certificates = certificates;
+        }
+    }
+
+    /**
+     * Outcome of the action on one host.
+     */
+    private static final class HostResult {
+
+        private final Host host;
+        private String status;
+        private int exitCode = RESPONSE_NOT_OK;
+        private long duration;
+        private String out;
+        private String err;
+
+        private HostResult(Host host) {
+            this.host = host;
+        }
+    }
+
+    /**
+     * Task which executes the action on one host, captures its output and aborts it at the deadline. The action runs
+     * on a runner, and its deadline only starts once a runner has taken it up; a runner may still be busy with the
+     * action of an earlier host which did not end after it was aborted.
+     */
+    private final class HostTask implements Callable<HostResult> {
+
+        private final Host host;
+        private final ExecutorService runner;
+
+        HostTask(Host host, ExecutorService runner) {
+            this.host = host;
+            this.runner = runner;
+        }
+
+        @Override
+        public HostResult call() throws UnsupportedEncodingException, InterruptedException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            final String[] args = getArguments(host);
+            HostResult result = new HostResult(host);
+            // claimed by whoever comes first, the runner starting the action or this task giving up on it
+            final AtomicBoolean claimed = new AtomicBoolean();
+            final CountDownLatch started = new CountDownLatch(1);
+
+            LOGGER.info("Executing " + args[0] + " on host [" + host.name + "] " + host.url);
+            Future<Integer> execution = runner.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return RESPONSE_NOT_OK;
+                    }
+                    started.countDown();
+                    OutputRouter.bind(new PrintStream(out, true), new PrintStream(err, true));
+                    try {
+                        return DockerClient.execute(args);
+                    } finally {
+                        OutputRouter.unbind();
+                    }
+                }
+            });
+            if (deadline > 0 && !started.await(deadline, TimeUnit.SECONDS) && claimed.compareAndSet(false, true)) {
+                LOGGER.error("Host [" + host.name + "] could not be started within the deadline of " + deadline
+                        + " s, no runner became free");
+                execution.cancel(false);
+                result.status = STATUS_NOT_STARTED;
+                return collect(result, out, err, System.currentTimeMillis());
+            }
+            started.await();
+            long start = System.currentTimeMillis();
+            try {
+                result.exitCode = (deadline > 0) ? execution.get(deadline, TimeUnit.SECONDS) : execution.get();
+                result.status = (result.exitCode == 0) ? STATUS_OK : STATUS_FAILED;
+            } catch (TimeoutException e) {
+                LOGGER.error("Host [" + host.name + "] missed the deadline of " + deadline + " s");
+                result.status = STATUS_TIMEOUT;
+                abort(execution);
+            } catch (ExecutionException e) {
+                LOGGER.error("Host [" + host.name + "] failed ", e.getCause());
+                result.status = STATUS_FAILED;
+            }
+            return collect(result, out, err, start);
+        }
+
+        /**
+         * Method to complete the result with the duration of the action and its output.
+         */
+        private HostResult collect(HostResult result, ByteArrayOutputStream out, ByteArrayOutputStream err, long start)
+                throws UnsupportedEncodingException {
+            result.duration = System.currentTimeMillis() - start;
+            synchronized (out) {
+                result.out = out.toString(StandardCharsets.UTF_8.name());
+            }
+            synchronized (err) {
+                result.err = err.toString(StandardCharsets.UTF_8.name());
+            }
+            return result;
+        }
+
+        /**
+         * Method to abort the action of the host by destroying its clients, which closes the connections its calls
+         * are waiting on, and to wait briefly for it to end, so that its runner is free for the next host. An action
+         * which does not end is interrupted.
+         */
+        private void abort(Future<Integer> execution) throws InterruptedException {
+            HttpClientConfig.destroyCachedClients(host.url);
+            try {
+                execution.get(ABORT_GRACE_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                LOGGER.debug("Action of host [" + host.name + "] aborted", e.getCause());
+            } catch (TimeoutException e) {
+                LOGGER.warn("Action of host [" + host.name + "] did not end within " + ABORT_GRACE_SECONDS
+                        + " s after its connections were closed, interrupting it");
+                execution.cancel(true);
+            }
+        }
+    }
+
+}
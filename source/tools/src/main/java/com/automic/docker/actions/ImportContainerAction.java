@@ -11,10 +11,12 @@ import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.automic.docker.config.StreamingEntity;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.GzipEntity;
 import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
@@ -34,10 +36,12 @@ public class ImportContainerAction extends AbstractAction {
 
     private static final int TAR_FILE_INDEX = 4;
     private static final int IMAGE_INDEX = 5;
+    private static final int COMPRESS_INDEX = 6;
 
     private static final String APPLICATION_TAR = "application/tar";
     private String tarFilePath;
     private String imageName;
+    private boolean compress;
 
     public ImportContainerAction() {
         super(NO_OF_ARGS);
@@ -53,6 +57,7 @@ public class ImportContainerAction extends AbstractAction {
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
         LOGGER.info("Tar File Path = " + ((args.length > TAR_FILE_INDEX) ? args[TAR_FILE_INDEX] : ""));
         LOGGER.info("Image Name = " + ((args.length > IMAGE_INDEX) ? args[IMAGE_INDEX] : ""));
+        LOGGER.info("Compress = " + ((args.length > COMPRESS_INDEX) ? args[COMPRESS_INDEX] : ""));
 
     }
 
@@ -60,6 +65,9 @@ public class ImportContainerAction extends AbstractAction {
     protected void initialize(String[] args) throws DockerException {
         tarFilePath = args[TAR_FILE_INDEX];
         imageName = args[IMAGE_INDEX];
+        if (args.length > COMPRESS_INDEX) {
+            compress = DockerUtility.convert2Bool(args[COMPRESS_INDEX]);
+        }
 
     }
 
@@ -105,9 +113,22 @@ public class ImportContainerAction extends AbstractAction {
 
         LOGGER.info("Calling url " + webResource.getURI());
 
-        response = webResource.entity(new File(tarFilePath), APPLICATION_TAR).accept(MediaType.APPLICATION_JSON)
+        StreamingEntity entity = StreamingEntity.of(new File(tarFilePath));
+        GzipEntity gzipEntity = null;
+        if (compress) {
+            gzipEntity = new GzipEntity(entity);
+            entity = gzipEntity;
+        }
+
+        response = webResource.entity(entity, APPLICATION_TAR).accept(MediaType.APPLICATION_JSON)
                 .post(ClientResponse.class);
 
+        if (gzipEntity != null) {
+            String msg = gzipEntity.describe();
+            LOGGER.info(msg);
+            System.out.println(msg);
+        }
+
         return response;
     }
 
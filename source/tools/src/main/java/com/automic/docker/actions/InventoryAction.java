@@ -0,0 +1,429 @@
+package com.automic.docker.actions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerTimestamp;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.InventoryCache;
+import com.automic.docker.utility.NdjsonReader;
+import com.automic.docker.utility.Validator;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Action class to keep the containers or images of a docker host up to date without listing them on every run. The
+ * last listing is cached in a folder, one file per docker url. Later runs only fetch the events since the listing and
+ * list again just the containers these events touched, including connects to and disconnects from networks; images
+ * are listed again only if there was an image event. A full listing is made when there is no cache yet, when the cache
+ * is older than the event window, or when there were too many events to be sure none has been dropped by docker.
+ *
+ * The output is either the full inventory, in the format of LIST_CONTAINERS or LIST_IMAGES, or only the containers or
+ * images which were added, removed or changed since the previous run. The full inventory is not written again if
+ * nothing changed and the file is still the one written last, as recorded in the cache by its path, size and
+ * modification time. The human readable Status of a container is not compared as it changes with every listing.
+ */
+public class InventoryAction extends AbstractAction {
+
+    private static final Logger LOGGER = LogManager.getLogger(InventoryAction.class);
+
+    private static final int NO_OF_ARGS = 7;
+
+    private static final int KIND_INDEX = 4;
+    private static final int CACHE_FOLDER_INDEX = 5;
+    private static final int FILE_PATH_INDEX = 6;
+    private static final int MODE_INDEX = 7;
+    private static final int EVENT_WINDOW_INDEX = 8;
+
+    private static final String CONTAINERS = "CONTAINERS";
+    private static final String IMAGES = "IMAGES";
+    private static final String FULL = "FULL";
+    private static final String DIFF = "DIFF";
+
+    private static final String LIST_CONTAINER_ROOT_TAG = "LIST_CONTAINERS";
+    private static final String LIST_CONTAINER_CHILD_TAG = "CONTAINER";
+    private static final String LIST_IMAGE_ROOT_TAG = "LIST_IMAGES";
+    private static final String LIST_IMAGE_CHILD_TAG = "IMAGE";
+    private static final String DIFF_ROOT_TAG = "INVENTORY_DIFF";
+    private static final String ADDED_TAG = "ADDED";
+    private static final String REMOVED_TAG = "REMOVED";
+    private static final String CHANGED_TAG = "CHANGED";
+
+    private static final String ID = "Id";
+    private static final String STATUS = "Status";
+    private static final String NETWORK_EVENT = "network";
+    private static final String DATE_HEADER = "Date";
+
+    private static final int DEFAULT_EVENT_WINDOW = 3600;
+    // docker replays at most this many past events, more may mean that older ones are lost
+    private static final int EVENT_BUFFER_SIZE = 256;
+    // more containers than this are listed completely rather than by an id filter in the url
+    private static final int MAX_PATCHED_CONTAINERS = 100;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private String kind;
+    private String cacheFolder;
+    private String outputFilePath;
+    private String mode;
+    private int eventWindow;
+
+    private Client client;
+    private InventoryCache cache;
+    private long dockerTime;
+    private boolean incremental;
+
+    public InventoryAction() {
+        super(NO_OF_ARGS);
+    }
+
+    @Override
+    protected void logParameters(String[] args) {
+        LOGGER.info("Input parameters -->");
+        LOGGER.info("Connection Timeout = "
+                + ((args.length > CONNECTION_TIMEOUT_INDEX) ? args[CONNECTION_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
+        LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
+        LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
+        LOGGER.info("Kind = " + ((args.length > KIND_INDEX) ? args[KIND_INDEX] : ""));
+        LOGGER.info("Cache-folder = " + ((args.length > CACHE_FOLDER_INDEX) ? args[CACHE_FOLDER_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+        LOGGER.info("Mode = " + ((args.length > MODE_INDEX) ? args[MODE_INDEX] : ""));
+        LOGGER.info("Event-window = " + ((args.length > EVENT_WINDOW_INDEX) ? args[EVENT_WINDOW_INDEX] : ""));
+    }
+
+    @Override
+    protected void initialize(String[] args) throws DockerException {
+        kind = args[KIND_INDEX].toUpperCase(Locale.ROOT);
+        cacheFolder = args[CACHE_FOLDER_INDEX];
+        outputFilePath = args[FILE_PATH_INDEX];
+        mode = FULL;
+        if (args.length > MODE_INDEX && Validator.checkNotEmpty(args[MODE_INDEX])) {
+            mode = args[MODE_INDEX].toUpperCase(Locale.ROOT);
+        }
+        eventWindow = DEFAULT_EVENT_WINDOW;
+        if (args.length > EVENT_WINDOW_INDEX && Validator.checkNotEmpty(args[EVENT_WINDOW_INDEX])) {
+            eventWindow = DockerUtility.getAndCheckUnsignedValue(args[EVENT_WINDOW_INDEX]);
+        }
+    }
+
+    @Override
+    protected void validateInputs() throws DockerException {
+        if (!CONTAINERS.equals(kind) && !IMAGES.equals(kind)) {
+            String msg = String.format(ExceptionConstants.INVALID_INVENTORY_KIND, kind);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (!Validator.checkIfValidDirectory(cacheFolder)) {
+            LOGGER.error("Invalid cache folder : " + cacheFolder);
+            throw new DockerException(String.format(ExceptionConstants.INVALID_DIRECTORY, cacheFolder));
+        }
+        if (!Validator.checkFileFolderExists(outputFilePath)) {
+            LOGGER.error("Invalid Directory : " + outputFilePath);
+            throw new DockerException(String.format(ExceptionConstants.INVALID_DIRECTORY, outputFilePath));
+        }
+        if (!FULL.equals(mode) && !DIFF.equals(mode)) {
+            String msg = String.format(ExceptionConstants.INVALID_INVENTORY_MODE, mode);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (eventWindow < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, eventWindow);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * {@inheritDoc InventoryAction#executeSpecific(Client)} This method reads the time of the docker host, which the
+     * new listing is valid for, and then fetches the events since the cached listing, or lists all containers or
+     * images if the cache cannot be used.
+     */
+    @Override
+    protected ClientResponse executeSpecific(Client client) throws DockerException {
+        this.client = client;
+        // a unix url is replaced by a plain http url, which every socket would share
+        cache = InventoryCache.read(Paths.get(cacheFolder), getGivenDockerUrl(), kind);
+        dockerTime = getDockerTime();
+
+        long since = cache.getSince();
+        if (since < 0) {
+            LOGGER.info("No cached listing in " + cache.getFile() + ", listing all " + kind.toLowerCase());
+        } else if (dockerTime - since > eventWindow * NANOS_PER_SECOND) {
+            LOGGER.info("Cached listing of " + DockerTimestamp.toSince(since) + " is older than the event window of "
+                    + eventWindow + " s, listing all " + kind.toLowerCase());
+        } else {
+            incremental = true;
+            JSONObject filters = new JSONObject();
+            // connecting a container to a network or disconnecting it changes the networks of its listing
+            filters.put("type", CONTAINERS.equals(kind) ? new JSONArray().put("container").put(NETWORK_EVENT)
+                    : new JSONArray().put("image"));
+            WebResource webResource = client.resource(dockerUrl).path("events")
+                    .queryParam("since", DockerTimestamp.toSince(since))
+                    .queryParam("until", DockerTimestamp.toSince(dockerTime))
+                    .queryParam("filters", filters.toString());
+            LOGGER.info("Calling url " + webResource.getURI());
+            return webResource.get(ClientResponse.class);
+        }
+        WebResource webResource = getListResource(null);
+        LOGGER.info("Calling url " + webResource.getURI());
+        return webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+    }
+
+    /**
+     * Method to get the time of the docker host from the Date header of a ping, so that the events are read up to a
+     * time which has passed on the docker host even if its clock differs from the local one.
+     *
+     * @return nanoseconds since the epoch, truncated to seconds
+     */
+    private long getDockerTime() {
+        WebResource webResource = client.resource(dockerUrl).path("_ping");
+        LOGGER.info("Calling url " + webResource.getURI());
+        ClientResponse response = webResource.get(ClientResponse.class);
+        try {
+            String header = response.getHeaders().getFirst(DATE_HEADER);
+            Date date = (header != null) ? DateUtils.parseDate(header) : null;
+            if (date != null) {
+                return date.getTime() * NANOS_PER_MILLI;
+            }
+            LOGGER.warn("Docker sent no valid Date header [" + header + "], using the local time");
+            return System.currentTimeMillis() / 1000L * NANOS_PER_SECOND;
+        } finally {
+            response.close();
+        }
+    }
+
+    private WebResource getListResource(JSONObject filters) {
+        WebResource webResource;
+        if (CONTAINERS.equals(kind)) {
+            webResource = client.resource(dockerUrl).path("containers").path("json").queryParam("all", "1");
+        } else {
+            webResource = client.resource(dockerUrl).path("images").path("json").queryParam("all", "0");
+        }
+        if (filters != null) {
+            webResource = webResource.queryParam("filters", filters.toString());
+        }
+        return webResource;
+    }
+
+    @Override
+    protected String getErrorMessage(int errorCode) {
+        String msg = null;
+        switch (errorCode) {
+            case HttpStatus.SC_BAD_REQUEST:
+                msg = "bad parameter";
+                break;
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                msg = "server error ";
+                break;
+            default:
+                msg = Constants.UNKNOWN_ERROR;
+                break;
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc InventoryAction#prepareOutput(ClientResponse)} This method patches the cached listing with the
+     * containers or images touched by the events, compares it with the previous one, saves it and writes the full
+     * inventory or the differences.
+     */
+    @Override
+    protected void prepareOutput(ClientResponse response) throws DockerException {
+        Map<String, JSONObject> previous = new LinkedHashMap<String, JSONObject>(cache.getItems());
+        Map<String, JSONObject> current;
+        String source = "LIST";
+        int events = 0;
+        if (incremental) {
+            Set<String> touched = new LinkedHashSet<String>();
+            events = readEvents(response, touched);
+            if (events >= EVENT_BUFFER_SIZE) {
+                LOGGER.info(events + " events since the cached listing, some may be lost, listing all");
+                current = list(null);
+            } else if (touched.isEmpty()) {
+                current = previous;
+                source = "EVENTS";
+            } else if (IMAGES.equals(kind) || touched.size() > MAX_PATCHED_CONTAINERS) {
+                current = list(null);
+                source = "EVENTS";
+            } else {
+                current = patch(previous, touched);
+                source = "EVENTS";
+            }
+        } else {
+            current = toMap(DockerUtility.jsonArrayResponse(response.getEntityInputStream()));
+        }
+
+        JSONArray added = new JSONArray();
+        JSONArray changed = new JSONArray();
+        JSONArray removed = new JSONArray();
+        for (Map.Entry<String, JSONObject> item : current.entrySet()) {
+            JSONObject old = previous.get(item.getKey());
+            if (old == null) {
+                added.put(item.getValue());
+            } else if (!InventoryCache.same(old, item.getValue(), STATUS)) {
+                changed.put(item.getValue());
+            }
+        }
+        for (Map.Entry<String, JSONObject> item : previous.entrySet()) {
+            if (!current.containsKey(item.getKey())) {
+                removed.put(item.getValue());
+            }
+        }
+        boolean modified = added.length() + changed.length() + removed.length() > 0;
+        boolean upToDate = !modified && isUpToDate();
+
+        if (DIFF.equals(mode)) {
+            JSONObject diff = new JSONObject();
+            diff.put(ADDED_TAG, added);
+            diff.put(REMOVED_TAG, removed);
+            diff.put(CHANGED_TAG, changed);
+            DockerUtility.json2xml(diff, outputFilePath, DIFF_ROOT_TAG);
+        } else if (!upToDate) {
+            boolean containers = CONTAINERS.equals(kind);
+            DockerUtility.jsonArray2xml(new JSONArray(current.values()), outputFilePath,
+                    containers ? LIST_CONTAINER_ROOT_TAG : LIST_IMAGE_ROOT_TAG,
+                    containers ? LIST_CONTAINER_CHILD_TAG : LIST_IMAGE_CHILD_TAG);
+            cache.setOutput(fingerprint(Paths.get(outputFilePath)));
+        } else {
+            LOGGER.info("Inventory unchanged, keeping " + outputFilePath);
+        }
+        cache.update(dockerTime, current);
+        cache.save();
+
+        System.out.println("UC4RB_DKR_INVENTORY_SOURCE ::= " + source);
+        System.out.println("UC4RB_DKR_INVENTORY_EVENTS ::= " + events);
+        System.out.println("UC4RB_DKR_INVENTORY_SIZE ::= " + current.size());
+        System.out.println("UC4RB_DKR_INVENTORY_ADDED ::= " + added.length());
+        System.out.println("UC4RB_DKR_INVENTORY_REMOVED ::= " + removed.length());
+        System.out.println("UC4RB_DKR_INVENTORY_CHANGED ::= " + changed.length());
+        System.out.println("OUTPUT_FILE_PATH ::= " + outputFilePath);
+    }
+
+    /**
+     * @return true if the output file is the full inventory written last, so it holds the cached inventory
+     */
+    private boolean isUpToDate() {
+        String output = fingerprint(Paths.get(outputFilePath));
+        return output != null && output.equals(cache.getOutput());
+    }
+
+    /**
+     * @return absolute path, size and modification time of a file, null if it does not exist or cannot be read
+     */
+    private static String fingerprint(Path file) {
+        try {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            return file.toAbsolutePath().normalize() + "|" + Files.size(file) + "|"
+                    + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the size and modification time of " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Method to read the events and collect the ids of the containers or images they refer to. A network event refers
+     * to the container in its attributes, if any.
+     *
+     * @return number of events read
+     */
+    private int readEvents(ClientResponse response, Set<String> touched) throws DockerException {
+        NdjsonReader reader = new NdjsonReader(response.getEntityInputStream());
+        int events = 0;
+        JSONObject event;
+        while ((event = reader.next()) != null) {
+            events++;
+            JSONObject actor = event.optJSONObject("Actor");
+            String id;
+            if (NETWORK_EVENT.equals(event.optString("Type"))) {
+                JSONObject attributes = (actor != null) ? actor.optJSONObject("Attributes") : null;
+                id = (attributes != null) ? attributes.optString("container") : null;
+            } else {
+                id = (actor != null) ? actor.optString("ID", event.optString("id")) : event.optString("id");
+            }
+            if (Validator.checkNotEmpty(id)) {
+                touched.add(id);
+            }
+        }
+        LOGGER.info(events + " events since the cached listing touched " + touched.size() + " "
+                + kind.toLowerCase());
+        return events;
+    }
+
+    /**
+     * Method to list the touched containers again and replace them in the listing. A container not listed any more
+     * has been removed.
+     */
+    private Map<String, JSONObject> patch(Map<String, JSONObject> previous, Set<String> touched)
+            throws DockerException {
+        JSONObject filters = new JSONObject();
+        filters.put("id", new JSONArray(touched));
+        Map<String, JSONObject> relisted = list(filters);
+        Map<String, JSONObject> current = new LinkedHashMap<String, JSONObject>();
+        // new containers first, as docker lists the newest container first
+        for (Map.Entry<String, JSONObject> item : relisted.entrySet()) {
+            if (!previous.containsKey(item.getKey())) {
+                current.put(item.getKey(), item.getValue());
+            }
+        }
+        for (Map.Entry<String, JSONObject> item : previous.entrySet()) {
+            if (relisted.containsKey(item.getKey())) {
+                current.put(item.getKey(), relisted.get(item.getKey()));
+            } else if (!touched.contains(item.getKey())) {
+                current.put(item.getKey(), item.getValue());
+            }
+        }
+        return current;
+    }
+
+    private Map<String, JSONObject> list(JSONObject filters) throws DockerException {
+        WebResource webResource = getListResource(filters);
+        LOGGER.info("Calling url " + webResource.getURI());
+        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        try {
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                String msg = String.format(ExceptionConstants.UNABLE_TO_LIST, kind.toLowerCase(),
+                        getErrorMessage(response.getStatus()));
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            return toMap(DockerUtility.jsonArrayResponse(response.getEntityInputStream()));
+        } finally {
+            response.close();
+        }
+    }
+
+    private static Map<String, JSONObject> toMap(JSONArray listing) {
+        Map<String, JSONObject> items = new LinkedHashMap<String, JSONObject>();
+        for (int i = 0; i < listing.length(); i++) {
+            JSONObject item = listing.getJSONObject(i);
+            items.put(item.getString(ID), item);
+        }
+        return items;
+    }
+
+}
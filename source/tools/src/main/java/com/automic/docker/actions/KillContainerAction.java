@@ -10,7 +10,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.automic.docker.constants.Constants;
-import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 import com.automic.docker.utility.DockerUtility;
 import com.automic.docker.utility.Validator;
@@ -21,10 +20,10 @@ import com.sun.jersey.api.client.WebResource;
 /**
  *
  * Action class to kill the container based on specified id in a Docker system. Action fails if it could not find the
- * container.
+ * container. Several containers can be given as a comma separated list of ids or as a filter like label=app=web.
  *
  */
-public class KillContainerAction extends AbstractAction {
+public class KillContainerAction extends AbstractContainerStateAction {
 
     private static final Logger LOGGER = LogManager.getLogger(KillContainerAction.class);
 
@@ -32,15 +31,16 @@ public class KillContainerAction extends AbstractAction {
 
     private static final int CONTAINER_ID_INDEX = 4;
     private static final int QUERY_PARAMTER_INDEX = 5;
+    private static final int FILE_PATH_INDEX = 6;
+    private static final int CONCURRENCY_INDEX = 7;
 
     private static final String ACTION = "kill";
     private static final String QUERY_PARAM_NAME = "signal";
 
-    private String containerid;
     private String queryParameter;
 
     public KillContainerAction() {
-        super(NO_OF_ARGS);
+        super(NO_OF_ARGS, ACTION);
 
     }
 
@@ -52,13 +52,13 @@ public class KillContainerAction extends AbstractAction {
         LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
         LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
-        LOGGER.info("Container-id" + ((args.length > CONTAINER_ID_INDEX) ? args[CONTAINER_ID_INDEX] : ""));
         LOGGER.info("Query-param = " + ((args.length > QUERY_PARAMTER_INDEX) ? args[QUERY_PARAMTER_INDEX] : ""));
+        logContainerParameters(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
     }
 
     @Override
     protected void initialize(String[] args) throws DockerException {
-        containerid = args[CONTAINER_ID_INDEX];
+        initializeContainers(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
 
         if (args.length > QUERY_PARAMTER_INDEX) {
             queryParameter = DockerUtility.getQueryParamValue(args[QUERY_PARAMTER_INDEX], QUERY_PARAM_NAME);
@@ -66,16 +66,7 @@ public class KillContainerAction extends AbstractAction {
     }
 
     @Override
-    protected void validateInputs() throws DockerException {
-        if (!Validator.checkNotEmpty(containerid)) {
-            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
-            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
-        }
-
-    }
-
-    @Override
-    protected ClientResponse executeSpecific(Client client) throws DockerException {
+    protected ClientResponse changeState(Client client, String containerid) throws DockerException {
         ClientResponse response = null;
 
         WebResource webResource = client.resource(dockerUrl).path("containers").path(containerid).path(ACTION);
@@ -108,8 +99,4 @@ public class KillContainerAction extends AbstractAction {
 
     }
 
-    @Override
-    protected void prepareOutput(ClientResponse response) throws DockerException {
-    }
-
 }
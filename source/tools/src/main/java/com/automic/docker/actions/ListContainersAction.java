@@ -1,16 +1,24 @@
 package com.automic.docker.actions;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.core.MediaType;
 
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
 
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.ContainerSelector;
 import com.automic.docker.utility.DockerUtility;
 import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
@@ -23,6 +31,10 @@ import com.sun.jersey.api.client.WebResource;
  * XML file consisting all the containers based on the input parameters. Moreover, XML file will be created on the same
  * host where agent is running.
  *
+ * With a selection, e.g. age>2h,state=running, the containers are filtered while the response is read and only the ids
+ * of the matching ones are written, one per line or as a compact XML file. The ids are also printed as a comma
+ * separated list, which the container state actions accept.
+ *
  */
 public class ListContainersAction extends AbstractAction {
 
@@ -37,6 +49,8 @@ public class ListContainersAction extends AbstractAction {
     private static final int FILTER_FILE_PATH = 8;
     private static final int QUERY_PARAM_SIZE_INDEX = 9;
     private static final int FILE_PATH_INDEX = 10;
+    private static final int SELECTION_INDEX = 11;
+    private static final int SELECTION_FORMAT_INDEX = 12;
 
     private static final String QUERY_PARAM_ALL = "all";
     private static final String QUERY_PARAM_LIMIT = "limit";
@@ -46,6 +60,12 @@ public class ListContainersAction extends AbstractAction {
 
     private static final String LIST_CONTAINER_ROOT_TAG = "LIST_CONTAINERS";
     private static final String LIST_CONTAINER_CHILD_TAG = "CONTAINER";
+    private static final String SELECTED_CONTAINERS_ROOT_TAG = "SELECTED_CONTAINERS";
+    private static final String SELECTED_CONTAINERS_CHILD_TAG = "ID";
+
+    private static final String LINES = "LINES";
+    private static final String XML = "XML";
+    private static final int SHORT_ID_LENGTH = 12;
 
     private boolean all;
     private int limit;
@@ -54,6 +74,9 @@ public class ListContainersAction extends AbstractAction {
     private boolean size;
     private String filterFilePath;
     private String outputFilePath;
+    private String selection;
+    private String selectionFormat;
+    private ContainerSelector selector;
 
     public ListContainersAction() {
         super(NO_OF_ARGS);
@@ -78,6 +101,9 @@ public class ListContainersAction extends AbstractAction {
         LOGGER.info("Query-param-size = "
                 + ((args.length > QUERY_PARAM_SIZE_INDEX) ? args[QUERY_PARAM_SIZE_INDEX] : ""));
         LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+        LOGGER.info("Selection = " + ((args.length > SELECTION_INDEX) ? args[SELECTION_INDEX] : ""));
+        LOGGER.info("Selection-format = "
+                + ((args.length > SELECTION_FORMAT_INDEX) ? args[SELECTION_FORMAT_INDEX] : ""));
     }
 
     @Override
@@ -93,6 +119,14 @@ public class ListContainersAction extends AbstractAction {
 
         filterFilePath = args[FILTER_FILE_PATH];
         outputFilePath = args[FILE_PATH_INDEX];
+
+        if (args.length > SELECTION_INDEX) {
+            selection = args[SELECTION_INDEX];
+        }
+        selectionFormat = LINES;
+        if (args.length > SELECTION_FORMAT_INDEX && Validator.checkNotEmpty(args[SELECTION_FORMAT_INDEX])) {
+            selectionFormat = args[SELECTION_FORMAT_INDEX].toUpperCase(Locale.ROOT);
+        }
     }
 
     @Override
@@ -114,6 +148,15 @@ public class ListContainersAction extends AbstractAction {
             LOGGER.error("Invalid Directory : " + outputFilePath);
             throw new DockerException(String.format(ExceptionConstants.INVALID_DIRECTORY, outputFilePath));
         }
+
+        if (!LINES.equals(selectionFormat) && !XML.equals(selectionFormat)) {
+            String msg = String.format(ExceptionConstants.INVALID_SELECTION_FORMAT, selectionFormat);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (Validator.checkNotEmpty(selection)) {
+            selector = ContainerSelector.parse(selection, System.currentTimeMillis() / 1000L);
+        }
     }
 
     /**
@@ -183,8 +226,54 @@ public class ListContainersAction extends AbstractAction {
      */
     @Override
     protected void prepareOutput(ClientResponse response) throws DockerException {
+        if (selector != null) {
+            select(response);
+            return;
+        }
         DockerUtility.jsonArrayResponse2xml(response.getEntityInputStream(), outputFilePath, LIST_CONTAINER_ROOT_TAG,
                 LIST_CONTAINER_CHILD_TAG);
     }
 
+    /**
+     * Method to write the ids of the containers matching the selection, deciding on the numeric fields of every
+     * container as it is read instead of parsing the human readable status.
+     */
+    private void select(ClientResponse response) throws DockerException {
+        final boolean xml = XML.equals(selectionFormat);
+        final StringBuilder shortIds = new StringBuilder();
+        final AtomicInteger selected = new AtomicInteger();
+        int listed;
+        try (final Writer writer = Files.newBufferedWriter(Paths.get(outputFilePath), StandardCharsets.UTF_8)) {
+            if (xml) {
+                writer.write("<" + SELECTED_CONTAINERS_ROOT_TAG + ">");
+            }
+            listed = selector.select(response.getEntityInputStream(), new ContainerSelector.Handler() {
+                @Override
+                public void matched(JSONObject container) throws IOException {
+                    String id = container.getString("Id");
+                    if (xml) {
+                        writer.write("<" + SELECTED_CONTAINERS_CHILD_TAG + ">" + id + "</"
+                                + SELECTED_CONTAINERS_CHILD_TAG + ">");
+                    } else {
+                        writer.write(id);
+                        writer.write('\n');
+                    }
+                    shortIds.append((shortIds.length() > 0) ? "," : "")
+                            .append(id.substring(0, Math.min(SHORT_ID_LENGTH, id.length())));
+                    selected.incrementAndGet();
+                }
+            });
+            if (xml) {
+                writer.write("</" + SELECTED_CONTAINERS_ROOT_TAG + ">");
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while writing file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, outputFilePath), e);
+        }
+        LOGGER.info(selected.get() + " of " + listed + " containers match the selection " + selection);
+        System.out.println("UC4RB_DKR_CONTAINERS_LISTED ::= " + listed);
+        System.out.println("UC4RB_DKR_CONTAINERS_SELECTED ::= " + selected.get());
+        System.out.println("UC4RB_DKR_SELECTED_IDS ::= " + shortIds);
+    }
+
 }
@@ -10,29 +10,28 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.automic.docker.constants.Constants;
-import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
-import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
 /**
  * Action class to pause state of an existing container. It requires a container id as a parameter.
+ * Several containers can be given as a comma separated list of ids or as a filter like label=app=web.
  *
  */
-public class PauseConatinerAction extends AbstractAction {
+public class PauseConatinerAction extends AbstractContainerStateAction {
 
     private static final Logger LOGGER = LogManager.getLogger(PauseConatinerAction.class);
 
     private static final int NO_OF_ARGS = 5;
 
     private static final int CONTAINER_ID_INDEX = 4;
-
-    private String containerid;
+    private static final int FILE_PATH_INDEX = 5;
+    private static final int CONCURRENCY_INDEX = 6;
 
     public PauseConatinerAction() {
-        super(NO_OF_ARGS);
+        super(NO_OF_ARGS, "pause");
 
     }
 
@@ -44,25 +43,16 @@ public class PauseConatinerAction extends AbstractAction {
         LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
         LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
-        LOGGER.info("Container-id" + ((args.length > CONTAINER_ID_INDEX) ? args[CONTAINER_ID_INDEX] : ""));
+        logContainerParameters(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
     }
 
     @Override
     protected void initialize(String[] args) throws DockerException {
-        containerid = args[CONTAINER_ID_INDEX];
+        initializeContainers(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
     }
 
     @Override
-    protected void validateInputs() throws DockerException {
-        if (!Validator.checkNotEmpty(containerid)) {
-            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
-            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
-        }
-
-    }
-
-    @Override
-    protected ClientResponse executeSpecific(Client client) throws DockerException {
+    protected ClientResponse changeState(Client client, String containerid) throws DockerException {
         ClientResponse response = null;
 
         WebResource webResource = client.resource(dockerUrl).path("containers").path(containerid).path("pause");
@@ -91,13 +81,4 @@ public class PauseConatinerAction extends AbstractAction {
         return msg;
     }
 
-    /**
-     *
-     * This method does nothing as only a success message is printed on console when container is successfully removed
-     * from docker system
-     */
-    @Override
-    protected void prepareOutput(ClientResponse response) throws DockerException {
-    }
-
 }
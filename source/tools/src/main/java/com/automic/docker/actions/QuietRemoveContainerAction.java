@@ -22,22 +22,11 @@ public class QuietRemoveContainerAction extends RemoveContainerAction {
     private static final String RESPONSE_INFO = "INFO";
     private static final String RESPONSE_WARNING = "RESPONSE_ERROR";
 
-    private static final int CONTAINER_ID_INDEX = 4;
-
     private static final String PAUSING_CONTAINER_MESSAGE = "Unpause the container before stopping";
 
-    private String containerId;
-
-
-    @Override
-    protected void initialize(String[] args) throws DockerException {
-        super.initialize(args);
-        containerId = args[CONTAINER_ID_INDEX];
-    }
-
     @Override
-    protected ClientResponse executeSpecific(Client client) throws DockerException {
-        ClientResponse response = super.executeSpecific(client);
+    protected ClientResponse changeState(Client client, String containerId) throws DockerException {
+        ClientResponse response = super.changeState(client, containerId);
         
         if (response.getStatus() == HttpStatus.SC_NO_CONTENT)
         	return response;
@@ -57,7 +46,7 @@ public class QuietRemoveContainerAction extends RemoveContainerAction {
 
             if (response.getStatus() >= HttpStatus.SC_OK && response.getStatus() < HttpStatus.SC_MULTIPLE_CHOICES) {
                 //retry
-                response = super.executeSpecific(client);
+                response = super.changeState(client, containerId);
             }
         }
         return response;
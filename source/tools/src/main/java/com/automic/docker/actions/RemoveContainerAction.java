@@ -10,19 +10,18 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.automic.docker.constants.Constants;
-import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 import com.automic.docker.utility.DockerUtility;
-import com.automic.docker.utility.Validator;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
 /**
- * Action class to remove an existing container based on the specified container id.
+ * Action class to remove an existing container based on the specified container id. Several containers can be given
+ * as a comma separated list of ids or as a filter like label=app=web.
  *
  */
-public class RemoveContainerAction extends AbstractAction {
+public class RemoveContainerAction extends AbstractContainerStateAction {
 
     private static final Logger LOGGER = LogManager.getLogger(RemoveContainerAction.class);
 
@@ -31,13 +30,14 @@ public class RemoveContainerAction extends AbstractAction {
     private static final int CONTAINER_ID_INDEX = 4;
     private static final int ASSOCIATED_VOLUME_INDEX = 5;
     private static final int FORCEFULLY_PARAMTER_INDEX = 6;
+    private static final int FILE_PATH_INDEX = 7;
+    private static final int CONCURRENCY_INDEX = 8;
 
-    private String containerId;
     private boolean removeVolume;
     private boolean doForceFully;
 
     public RemoveContainerAction() {
-        super(NO_OF_ARGS);
+        super(NO_OF_ARGS, "remove");
     }
 
     @Override
@@ -48,15 +48,15 @@ public class RemoveContainerAction extends AbstractAction {
         LOGGER.info("Read-timeout = " + ((args.length > READ_TIMEOUT_INDEX) ? args[READ_TIMEOUT_INDEX] : ""));
         LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
-        LOGGER.info("Container-id" + ((args.length > CONTAINER_ID_INDEX) ? args[CONTAINER_ID_INDEX] : ""));
         LOGGER.info("Remove-volume = " + ((args.length > ASSOCIATED_VOLUME_INDEX) ? args[ASSOCIATED_VOLUME_INDEX] : ""));
         LOGGER.info("Forcefully = "
                 + ((args.length > FORCEFULLY_PARAMTER_INDEX) ? args[FORCEFULLY_PARAMTER_INDEX] : ""));
+        logContainerParameters(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
     }
 
     @Override
     protected void initialize(String[] args) throws DockerException {
-        containerId = args[CONTAINER_ID_INDEX];
+        initializeContainers(args, CONTAINER_ID_INDEX, FILE_PATH_INDEX, CONCURRENCY_INDEX);
         if (args.length > ASSOCIATED_VOLUME_INDEX) {
             removeVolume = DockerUtility.convert2Bool(args[ASSOCIATED_VOLUME_INDEX]);
         }
@@ -66,15 +66,7 @@ public class RemoveContainerAction extends AbstractAction {
     }
 
     @Override
-    protected void validateInputs() throws DockerException {
-        if (!Validator.checkNotEmpty(containerId)) {
-            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
-            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
-        }
-    }
-
-    @Override
-    protected ClientResponse executeSpecific(Client client) throws DockerException {
+    protected ClientResponse changeState(Client client, String containerId) throws DockerException {
         ClientResponse response = null;
 
         WebResource webResource = client.resource(dockerUrl).path("containers").path(containerId);
@@ -110,13 +102,4 @@ public class RemoveContainerAction extends AbstractAction {
 
     }
 
-    /**
-     *
-     * This method does nothing as only a success message is printed on console when container is successfully removed
-     * from docker system
-     */
-    @Override
-    protected void prepareOutput(ClientResponse response) throws DockerException {
-    }
-
 }
@@ -1,5 +1,18 @@
 package com.automic.docker.actions;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.ws.rs.core.MediaType;
 
 import org.apache.http.HttpStatus;
@@ -8,18 +21,29 @@ import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.automic.docker.config.TransportSettings;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.ImageSelector;
 import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
+import com.automic.docker.utility.XmlResultWriter;
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
 /**
  * Action class to remove images from the docker based on specified image id.
  *
+ * Several images can be removed at once, given as a comma separated list of names or ids, or selected among the local
+ * images, e.g. dangling=true or repo=ci/*,age>7d,unused=true (see {@link ImageSelector}). The images are listed once
+ * and removed concurrently by a bounded number of workers. A removal rejected with a conflict, e.g. because a child
+ * image is removed at the same time, is retried a few times. The result of every image and the space reclaimed are
+ * reported and optionally written to an xml file. The space reclaimed is the size of the layers no other image shares,
+ * so layers shared only among removed images are not counted. The action fails if any image could not be removed.
  */
 public class RemoveImageAction extends AbstractAction {
 
@@ -30,10 +54,32 @@ public class RemoveImageAction extends AbstractAction {
     private static final int IMAGE_NAME_INDEX = 4;
     private static final int FORCEFUL_PARAMETER_INDEX = 5;
     private static final int NO_PRUNE_PARAMETER_INDEX = 6;
+    private static final int FILE_PATH_INDEX = 7;
+    private static final int CONCURRENCY_INDEX = 8;
+    private static final int RETRIES_INDEX = 9;
+
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_RETRIES = 3;
+    private static final long RETRY_DELAY = 1000L;
+    private static final double BYTES_PER_MB = 1024d * 1024d;
+
+    private static final String REMOVED = "REMOVED";
+    private static final String UNTAGGED = "UNTAGGED";
+    private static final String FAILED = "FAILED";
+    private static final String SHA256 = "sha256:";
+    private static final String LATEST = ":latest";
 
     private String imageName;
     private boolean forecefully;
     private boolean noPrune;
+    private String filePath;
+    private int concurrency;
+    private int retries;
+
+    private List<String> references;
+    private ImageSelector selector;
+    private Set<String> usedImages;
+    private Client client;
 
     public RemoveImageAction() {
         super(NO_OF_ARGS);
@@ -50,6 +96,9 @@ public class RemoveImageAction extends AbstractAction {
         LOGGER.info("Image-id = " + ((args.length > IMAGE_NAME_INDEX) ? args[IMAGE_NAME_INDEX] : ""));
         LOGGER.info("Forcefully = " + ((args.length > FORCEFUL_PARAMETER_INDEX) ? args[FORCEFUL_PARAMETER_INDEX] : ""));
         LOGGER.info("No Prune = " + ((args.length > NO_PRUNE_PARAMETER_INDEX) ? args[NO_PRUNE_PARAMETER_INDEX] : ""));
+        LOGGER.info("File-Path = " + ((args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : ""));
+        LOGGER.info("Concurrency = " + ((args.length > CONCURRENCY_INDEX) ? args[CONCURRENCY_INDEX] : ""));
+        LOGGER.info("Retries = " + ((args.length > RETRIES_INDEX) ? args[RETRIES_INDEX] : ""));
     }
 
     @Override
@@ -61,7 +110,15 @@ public class RemoveImageAction extends AbstractAction {
         if (args.length > FORCEFUL_PARAMETER_INDEX) {
             forecefully = DockerUtility.convert2Bool(args[FORCEFUL_PARAMETER_INDEX]);
         }
-
+        filePath = (args.length > FILE_PATH_INDEX) ? args[FILE_PATH_INDEX] : "";
+        concurrency = DEFAULT_CONCURRENCY;
+        if (args.length > CONCURRENCY_INDEX && Validator.checkNotEmpty(args[CONCURRENCY_INDEX])) {
+            concurrency = DockerUtility.getAndCheckUnsignedValue(args[CONCURRENCY_INDEX]);
+        }
+        retries = DEFAULT_RETRIES;
+        if (args.length > RETRIES_INDEX && Validator.checkNotEmpty(args[RETRIES_INDEX])) {
+            retries = DockerUtility.getAndCheckUnsignedValue(args[RETRIES_INDEX]);
+        }
     }
 
     @Override
@@ -70,14 +127,60 @@ public class RemoveImageAction extends AbstractAction {
             LOGGER.error(ExceptionConstants.EMPTY_IMAGE_NAME);
             throw new DockerException(ExceptionConstants.IMAGE_NAME_EMPTY);
         }
+        references = new ArrayList<String>();
+        if (ImageSelector.isSelection(imageName)) {
+            selector = ImageSelector.parse(imageName, System.currentTimeMillis() / 1000L);
+        } else {
+            for (String reference : imageName.split(",")) {
+                if (Validator.checkNotEmpty(reference.trim()) && !references.contains(reference.trim())) {
+                    references.add(reference.trim());
+                }
+            }
+            if (references.isEmpty()) {
+                LOGGER.error(ExceptionConstants.EMPTY_IMAGE_NAME);
+                throw new DockerException(ExceptionConstants.IMAGE_NAME_EMPTY);
+            }
+        }
+        if (concurrency <= 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, concurrency);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (retries < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, retries);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
     }
 
+    private boolean isBulk() {
+        return selector != null || references.size() > 1 || Validator.checkNotEmpty(filePath);
+    }
+
+    /**
+     * {@inheritDoc RemoveImageAction#executeSpecific(Client)} This method calls the docker 'remove image' remote API
+     * for a single image. To remove several images, it lists the images, the images are removed while the output is
+     * prepared.
+     */
     @Override
     protected ClientResponse executeSpecific(final Client client) throws DockerException {
 
-        ClientResponse response = null;
+        if (isBulk()) {
+            this.client = client;
+            if (selector != null && selector.needsUsedImages()) {
+                usedImages = listUsedImages();
+            }
+            WebResource webResource = client.resource(dockerUrl).path("images").path("json")
+                    .queryParam("shared-size", "1");
+            LOGGER.info("Calling url " + webResource.getURI());
+            return webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        }
 
-        WebResource webResource = client.resource(dockerUrl).path("images").path(imageName);
+        return delete(client, references.get(0));
+    }
+
+    private ClientResponse delete(Client client, String image) {
+        WebResource webResource = client.resource(dockerUrl).path("images").path(image);
 
         webResource = webResource.queryParam("force", Boolean.toString(forecefully));
 
@@ -85,9 +188,32 @@ public class RemoveImageAction extends AbstractAction {
 
         LOGGER.info("Calling url " + webResource.getURI());
 
-        response = webResource.accept(MediaType.APPLICATION_JSON).delete(ClientResponse.class);
+        return webResource.accept(MediaType.APPLICATION_JSON).delete(ClientResponse.class);
+    }
 
-        return response;
+    /**
+     * Method to get the ids of the images containers have been created from, running or not.
+     */
+    private Set<String> listUsedImages() throws DockerException {
+        WebResource webResource = client.resource(dockerUrl).path("containers").path("json").queryParam("all", "1");
+        LOGGER.info("Calling url " + webResource.getURI());
+        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        try {
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                String msg = String.format(ExceptionConstants.UNABLE_TO_LIST, "containers",
+                        getErrorMessage(response.getStatus()));
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            Set<String> images = new HashSet<String>();
+            JSONArray containers = DockerUtility.jsonArrayResponse(response.getEntityInputStream());
+            for (int i = 0; i < containers.length(); i++) {
+                images.add(containers.getJSONObject(i).optString("ImageID"));
+            }
+            return images;
+        } finally {
+            response.close();
+        }
     }
 
     @Override
@@ -111,11 +237,17 @@ public class RemoveImageAction extends AbstractAction {
 
     /**
      * {@inheritDoc ExecStartAction#prepareOutput(ClientResponse)} This method prepare the output by parsing the json
-     * response and printing it to the console.
+     * response and printing it to the console. For several images it removes them concurrently and reports the result
+     * of every image.
      */
     @Override
     protected void prepareOutput(final ClientResponse response) throws DockerException {
 
+        if (isBulk()) {
+            removeImages(DockerUtility.jsonArrayResponse(response.getEntityInputStream()));
+            return;
+        }
+
         JSONArray jsonArray = DockerUtility.jsonArrayResponse(response.getEntityInputStream());
         for (int index = 0; index < jsonArray.length(); index++) {
             JSONObject jsonObject = jsonArray.getJSONObject(index);
@@ -126,4 +258,235 @@ public class RemoveImageAction extends AbstractAction {
         }
     }
 
+    /**
+     * Method to decide which images of the list to remove and to remove them concurrently.
+     */
+    private void removeImages(JSONArray images) throws DockerException {
+        final List<ImageRemoval> removals = new ArrayList<ImageRemoval>();
+        if (selector != null) {
+            for (int i = 0; i < images.length(); i++) {
+                JSONObject image = images.getJSONObject(i);
+                if (selector.matches(image, usedImages)) {
+                    String id = image.optString("Id");
+                    List<String> tags = selector.getSelectedTags(image);
+                    removals.add(new ImageRemoval(tags.isEmpty() ? id : tags.get(0), id, uniqueSize(image),
+                            tags.isEmpty() ? Collections.singletonList(id) : tags));
+                }
+            }
+            LOGGER.info(removals.size() + " of " + images.length() + " images match the selection " + imageName);
+        } else {
+            for (String reference : references) {
+                JSONObject image = find(images, reference);
+                removals.add(new ImageRemoval(reference, (image != null) ? image.optString("Id") : null,
+                        (image != null) ? uniqueSize(image) : 0, Collections.singletonList(reference)));
+            }
+        }
+
+        List<ImageRemoval> results = new ArrayList<ImageRemoval>();
+        if (!removals.isEmpty()) {
+            int threads = Math.min(removals.size(), concurrency);
+            if (threads > TransportSettings.getPoolMaxPerRoute()) {
+                LOGGER.warn("Concurrency " + threads + " exceeds the " + TransportSettings.getPoolMaxPerRoute()
+                        + " pooled connections per host, removals will wait for a connection");
+            }
+            ExecutorService pool = WorkerPool.newPool(threads, "rmi");
+            final AtomicInteger done = new AtomicInteger();
+            List<Callable<ImageRemoval>> tasks = new ArrayList<Callable<ImageRemoval>>();
+            for (final ImageRemoval removal : removals) {
+                tasks.add(new Callable<ImageRemoval>() {
+                    @Override
+                    public ImageRemoval call() {
+                        remove(removal);
+                        System.out.println("Removed " + removal.reference + " : " + removal.result + " ("
+                                + done.incrementAndGet() + "/" + removals.size() + ")");
+                        return removal;
+                    }
+                });
+            }
+            try {
+                List<Future<ImageRemoval>> futures = pool.invokeAll(tasks);
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        results.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        ImageRemoval removal = removals.get(i);
+                        LOGGER.error("Removal of " + removal.reference + " failed", e.getCause());
+                        removal.result = FAILED;
+                        removal.message = String.valueOf(e.getCause());
+                        results.add(removal);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG, e);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        writeResults(results);
+    }
+
+    /**
+     * @return bytes of the layers of an image no other image shares, which are freed with it; the size of all of its
+     *         layers if docker does not report the shared size, as before API version 1.32
+     */
+    private static long uniqueSize(JSONObject image) {
+        long size = image.optLong("Size");
+        long shared = image.optLong("SharedSize", -1);
+        return (shared >= 0 && shared <= size) ? size - shared : size;
+    }
+
+    /**
+     * Method to find an image of the list by tag or digest, or else by id or short id.
+     */
+    private static JSONObject find(JSONArray images, String reference) {
+        for (int i = 0; i < images.length(); i++) {
+            JSONObject image = images.getJSONObject(i);
+            for (String field : new String[] { "RepoTags", "RepoDigests" }) {
+                JSONArray names = image.optJSONArray(field);
+                for (int j = 0; names != null && j < names.length(); j++) {
+                    String name = names.optString(j);
+                    if (name.equals(reference) || name.equals(reference + LATEST)) {
+                        return image;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < images.length(); i++) {
+            JSONObject image = images.getJSONObject(i);
+            String id = image.optString("Id");
+            if (id.startsWith(reference) || id.startsWith(SHA256 + reference)) {
+                return image;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to remove the tags or the id of one image, retrying a removal rejected with a conflict.
+     */
+    private void remove(ImageRemoval removal) {
+        long start = System.currentTimeMillis();
+        boolean deleted = false;
+        try {
+            for (String target : removal.targets) {
+                ClientResponse response = null;
+                int status = 0;
+                for (int attempt = 0; attempt <= retries; attempt++) {
+                    if (response != null) {
+                        response.close();
+                        Thread.sleep(RETRY_DELAY * attempt);
+                    }
+                    removal.attempts++;
+                    response = delete(client, target);
+                    status = response.getStatus();
+                    if (status != HttpStatus.SC_CONFLICT) {
+                        break;
+                    }
+                    LOGGER.info("Removal of " + target + " rejected with a conflict (attempt " + (attempt + 1)
+                            + ")");
+                }
+                try {
+                    if (status != HttpStatus.SC_OK) {
+                        String detail = response.getEntity(String.class);
+                        LOGGER.error("Removal of " + target + " failed with status " + status + " : " + detail);
+                        removal.result = FAILED;
+                        removal.message = getErrorMessage(status) + " : " + detail.trim();
+                        return;
+                    }
+                    JSONArray entries = DockerUtility.jsonArrayResponse(response.getEntityInputStream());
+                    for (int i = 0; i < entries.length(); i++) {
+                        String id = entries.getJSONObject(i).optString("Deleted", null);
+                        if (id != null && (removal.id == null || removal.id.equals(id))) {
+                            deleted = true;
+                        }
+                    }
+                } finally {
+                    response.close();
+                }
+            }
+            removal.result = deleted ? REMOVED : UNTAGGED;
+        } catch (ClientHandlerException e) {
+            LOGGER.error("Removal of " + removal.reference + " failed", e);
+            removal.result = FAILED;
+            removal.message = e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            removal.result = FAILED;
+            removal.message = "interrupted";
+        } finally {
+            removal.duration = System.currentTimeMillis() - start;
+        }
+    }
+
+    private void writeResults(List<ImageRemoval> results) throws DockerException {
+        XmlResultWriter writer = Validator.checkNotEmpty(filePath) ? new XmlResultWriter(filePath, "images") : null;
+        int removed = 0;
+        int failed = 0;
+        long reclaimed = 0;
+        try {
+            for (ImageRemoval result : results) {
+                System.out.println("UC4RB_DKR_IMAGE_RESULT ::= " + result.reference + "," + result.result + ","
+                        + result.attempts + "," + result.duration);
+                if (FAILED.equals(result.result)) {
+                    failed++;
+                } else if (REMOVED.equals(result.result)) {
+                    removed++;
+                    reclaimed += result.size;
+                }
+                if (writer != null) {
+                    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+                    fields.put("reference", result.reference);
+                    fields.put("id", result.id);
+                    fields.put("result", result.result);
+                    fields.put("size", REMOVED.equals(result.result) ? result.size : null);
+                    fields.put("attempts", result.attempts);
+                    fields.put("duration_ms", result.duration);
+                    fields.put("message", result.message);
+                    writer.writeRecord("image", fields);
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (writer != null) {
+            System.out.println("OUTPUT_FILE_PATH ::= " + filePath);
+        }
+        LOGGER.info(String.format("%d images removed, %.1f MB reclaimed", removed, reclaimed / BYTES_PER_MB));
+        System.out.println("UC4RB_DKR_IMAGES_REMOVED ::= " + removed);
+        System.out.println("UC4RB_DKR_IMAGES_UNTAGGED ::= " + (results.size() - removed - failed));
+        System.out.println("UC4RB_DKR_IMAGES_FAILED ::= " + failed);
+        System.out.println("UC4RB_DKR_SPACE_RECLAIMED ::= " + reclaimed);
+        if (failed > 0) {
+            String msg = String.format(ExceptionConstants.IMAGES_NOT_REMOVED, failed, results.size());
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * Removal of one image, by its tags or its id, and its result.
+     */
+    private static final class ImageRemoval {
+
+        private final String reference;
+        private final String id;
+        private final long size;
+        private final List<String> targets;
+        private String result;
+        private String message;
+        private int attempts;
+        private long duration;
+
+        private ImageRemoval(String reference, String id, long size, List<String> targets) {
+            this.reference = reference;
+            this.id = id;
+            this.size = size;
+            this.targets = targets;
+        }
+    }
+
 }
@@ -3,16 +3,30 @@
  */
 package com.automic.docker.actions;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import javax.ws.rs.core.MediaType;
 
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
 
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.DockerTimestamp;
+import com.automic.docker.utility.DockerUtility;
+import com.automic.docker.utility.NdjsonReader;
 import com.automic.docker.utility.Validator;
+import com.automic.docker.utility.WorkerPool;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
@@ -20,6 +34,12 @@ import com.sun.jersey.api.client.WebResource;
 /**
  * Action class to wait until an existing container stops. It requires a container id as a parameter.
  *
+ * It can also wait for a condition on several containers, given as comma separated ids or names: all of them exited
+ * (ALL_EXITED, the default), any of them exited (ANY_EXITED), all of them healthy (HEALTHY) or all of them in a state
+ * (STATE=running, STATE=paused, ...). Instead of one blocking wait call per container, the containers are inspected
+ * once and then followed through a single events subscription, until the condition is met or the deadline passes.
+ * The state and exit code of every container are reported. The read timeout has to be longer than the deadline, or 0,
+ * as the events stream stays silent while nothing happens and would otherwise end the wait early.
  */
 public class WaitContainerAction extends AbstractAction {
 
@@ -28,9 +48,30 @@ public class WaitContainerAction extends AbstractAction {
     private static final int NO_OF_ARGS = 5;
 
     private static final int CONTAINER_ID_INDEX = 4;
+    private static final int CONDITION_INDEX = 5;
+    private static final int DEADLINE_INDEX = 6;
 
     private static final String ACTION = "wait";
+
+    private static final String ALL_EXITED = "ALL_EXITED";
+    private static final String ANY_EXITED = "ANY_EXITED";
+    private static final String HEALTHY = "HEALTHY";
+    private static final String STATE_PREFIX = "STATE=";
+
+    private static final String STATE_EXITED = "exited";
+    private static final String STATE_DEAD = "dead";
+    private static final String STATE_REMOVED = "removed";
+    private static final String HEALTH_STATUS = "health_status";
+    private static final int UNKNOWN_EXIT_CODE = -1;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
     private String containerid;
+    private String condition;
+    private int deadline;
+
+    private List<String> containers;
+    private Client client;
+    private volatile boolean timedOut;
 
     public WaitContainerAction() {
         super(NO_OF_ARGS);
@@ -45,11 +86,17 @@ public class WaitContainerAction extends AbstractAction {
         LOGGER.info("Docker-url = " + ((args.length > DOCKER_URL_INDEX) ? args[DOCKER_URL_INDEX] : ""));
         LOGGER.info("Certificate-path = " + ((args.length > CERTIFICATE_INDEX) ? args[CERTIFICATE_INDEX] : ""));
         LOGGER.info("Container-id" + ((args.length > CONTAINER_ID_INDEX) ? args[CONTAINER_ID_INDEX] : ""));
+        LOGGER.info("Condition = " + ((args.length > CONDITION_INDEX) ? args[CONDITION_INDEX] : ""));
+        LOGGER.info("Deadline (s) = " + ((args.length > DEADLINE_INDEX) ? args[DEADLINE_INDEX] : ""));
     }
 
     @Override
     protected void initialize(String[] args) throws DockerException {
         containerid = args[CONTAINER_ID_INDEX];
+        condition = (args.length > CONDITION_INDEX) ? args[CONDITION_INDEX].toUpperCase(Locale.ROOT) : "";
+        if (args.length > DEADLINE_INDEX && Validator.checkNotEmpty(args[DEADLINE_INDEX])) {
+            deadline = DockerUtility.getAndCheckUnsignedValue(args[DEADLINE_INDEX]);
+        }
     }
 
     @Override
@@ -58,12 +105,59 @@ public class WaitContainerAction extends AbstractAction {
             LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
             throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
         }
+        containers = new ArrayList<String>();
+        for (String container : containerid.split(",")) {
+            if (Validator.checkNotEmpty(container.trim()) && !containers.contains(container.trim())) {
+                containers.add(container.trim());
+            }
+        }
+        if (containers.isEmpty()) {
+            LOGGER.error(ExceptionConstants.EMPTY_CONTAINER_ID);
+            throw new DockerException(ExceptionConstants.EMPTY_CONTAINER_ID);
+        }
+        if (Validator.checkNotEmpty(condition) && !ALL_EXITED.equals(condition) && !ANY_EXITED.equals(condition)
+                && !HEALTHY.equals(condition)
+                && !(condition.startsWith(STATE_PREFIX) && condition.length() > STATE_PREFIX.length())) {
+            String msg = String.format(ExceptionConstants.INVALID_WAIT_CONDITION, condition);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+        if (deadline < 0) {
+            String msg = String.format(ExceptionConstants.INVALID_LIMIT_PARAMETER, deadline);
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * @return true if the action waits for a condition instead of calling the blocking wait of a single container
+     */
+    private boolean isConditionWait() {
+        return containers.size() > 1 || Validator.checkNotEmpty(condition) || deadline > 0;
     }
 
+    /**
+     * {@inheritDoc WaitContainerAction#executeSpecific(Client)} This method calls the docker 'wait' remote API for a
+     * single container. To wait for a condition, it subscribes to the events of the containers before they are
+     * inspected, so that no change can be missed.
+     */
     @Override
     protected ClientResponse executeSpecific(Client client) throws DockerException {
         ClientResponse response = null;
 
+        if (isConditionWait()) {
+            this.client = client;
+            JSONObject filters = new JSONObject();
+            filters.append("type", "container");
+            for (String container : containers) {
+                filters.append("container", container);
+            }
+            WebResource webResource = client.resource(dockerUrl).path("events")
+                    .queryParam("filters", filters.toString());
+            LOGGER.info("Calling url " + webResource.getURI());
+            return webResource.get(ClientResponse.class);
+        }
+
         WebResource webResource = client.resource(dockerUrl).path("containers").path(containerid).path(ACTION);
         LOGGER.info("Calling url " + webResource.getURI());
         response = webResource.accept(MediaType.APPLICATION_JSON).post(ClientResponse.class);
@@ -92,7 +186,243 @@ public class WaitContainerAction extends AbstractAction {
      */
     @Override
     protected void prepareOutput(ClientResponse response) throws DockerException {
-        System.out.println(response.getEntity(String.class));
+        if (!isConditionWait()) {
+            System.out.println(response.getEntity(String.class));
+            return;
+        }
+
+        final NdjsonReader events = new NdjsonReader(response.getEntityInputStream());
+        ScheduledExecutorService timer = null;
+        if (deadline > 0) {
+            timer = WorkerPool.newTimer("wait-deadline");
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // unblocks the read of the events
+                    timedOut = true;
+                    events.close();
+                }
+            }, deadline, TimeUnit.SECONDS);
+        }
+
+        Map<String, ContainerState> states = new LinkedHashMap<String, ContainerState>();
+        Boolean met;
+        try {
+            for (String container : containers) {
+                ContainerState state = inspect(container);
+                states.put(state.id, state);
+            }
+            met = waitForCondition(states, events);
+        } finally {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
+
+        int maxExitCode = UNKNOWN_EXIT_CODE;
+        for (ContainerState state : states.values()) {
+            System.out.println("UC4RB_DKR_CONTAINER_STATE ::= " + state.name + "," + state.status + ","
+                    + state.exitCode + "," + ((state.health != null) ? state.health : ""));
+            maxExitCode = Math.max(maxExitCode, state.exitCode);
+        }
+        System.out.println("UC4RB_DKR_MAX_EXIT_CODE ::= " + maxExitCode);
+        System.out.println("UC4RB_DKR_WAIT_CONDITION_MET ::= " + (Boolean.TRUE.equals(met) ? "YES" : "NO"));
+        if (!Boolean.TRUE.equals(met)) {
+            String msg;
+            if (timedOut) {
+                msg = String.format(ExceptionConstants.WAIT_DEADLINE_REACHED, deadline);
+            } else {
+                msg = (met == null) ? ExceptionConstants.WAIT_EVENTS_ENDED
+                        : ExceptionConstants.WAIT_CONDITION_UNREACHABLE;
+            }
+            LOGGER.error(msg);
+            throw new DockerException(msg);
+        }
+    }
+
+    /**
+     * Method to apply the events to the states until the condition is met or can no longer be met. The events were
+     * subscribed before the containers were inspected, so events older than the inspected state of their container are
+     * skipped; a die of an earlier run would otherwise mark a restarted container as exited.
+     *
+     * @return true if the condition is met, false if it can no longer be met, null if the events ended before
+     */
+    private Boolean waitForCondition(Map<String, ContainerState> states, NdjsonReader reader)
+            throws DockerException {
+        Boolean met = evaluate(states.values());
+        JSONObject event;
+        while (met == null && (event = reader.next()) != null) {
+            JSONObject actor = event.optJSONObject("Actor");
+            String id = (actor != null) ? actor.optString("ID", event.optString("id")) : event.optString("id");
+            ContainerState state = states.get(id);
+            long nanos = eventNanos(event);
+            if (state != null && nanos > 0 && nanos < state.inspected) {
+                LOGGER.info("Skipping event " + event.optString("Action", event.optString("status")) + " of "
+                        + state.name + " older than its inspected state");
+                continue;
+            }
+            if (state != null && state.apply(event.optString("Action", event.optString("status")), actor)) {
+                LOGGER.info("Container " + state.name + " is " + state.status
+                        + ((state.health != null) ? " (" + state.health + ")" : ""));
+                met = evaluate(states.values());
+            }
+        }
+        return met;
+    }
+
+    /**
+     * @return latest docker time an event can have happened at in nanoseconds since the epoch, 0 if it has no time
+     */
+    private static long eventNanos(JSONObject event) {
+        if (event.has("timeNano")) {
+            return event.optLong("timeNano");
+        }
+        long seconds = event.optLong("time");
+        return (seconds > 0) ? (seconds + 1) * NANOS_PER_SECOND - 1 : 0;
+    }
+
+    /**
+     * @return true if the condition is met, false if it can no longer be met, null if it is to be waited for
+     */
+    private Boolean evaluate(Iterable<ContainerState> states) {
+        String expected = Validator.checkNotEmpty(condition) ? condition : ALL_EXITED;
+        boolean all = true;
+        for (ContainerState state : states) {
+            boolean matches;
+            if (ALL_EXITED.equals(expected) || ANY_EXITED.equals(expected)) {
+                matches = state.isExited();
+            } else if (HEALTHY.equals(expected)) {
+                if (state.isExited() || state.health == null) {
+                    LOGGER.error("Container " + state.name + " is " + state.status
+                            + ((state.health == null) ? " without health check" : ""));
+                    return Boolean.FALSE;
+                }
+                matches = "healthy".equals(state.health);
+            } else {
+                String expectedState = expected.substring(STATE_PREFIX.length()).toLowerCase(Locale.ROOT);
+                if (state.isRemoved() && !STATE_REMOVED.equals(expectedState)) {
+                    LOGGER.error("Container " + state.name + " has been removed");
+                    return Boolean.FALSE;
+                }
+                matches = expectedState.equals(state.status);
+            }
+            if (matches && ANY_EXITED.equals(expected)) {
+                return Boolean.TRUE;
+            }
+            all &= matches;
+        }
+        return (all && !ANY_EXITED.equals(expected)) ? Boolean.TRUE : null;
+    }
+
+    private ContainerState inspect(String container) throws DockerException {
+        WebResource webResource = client.resource(dockerUrl).path("containers").path(container).path("json");
+        LOGGER.info("Calling url " + webResource.getURI());
+        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        try {
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                String msg = String.format(ExceptionConstants.UNABLE_TO_INSPECT_CONTAINER, container,
+                        getErrorMessage(response.getStatus()));
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            JSONObject json = DockerUtility.jsonResponse(response.getEntityInputStream());
+            return new ContainerState(json);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * State of a container as inspected and updated by its events.
+     */
+    private static final class ContainerState {
+
+        private final String id;
+        private final String name;
+        private String status = "";
+        private int exitCode = UNKNOWN_EXIT_CODE;
+        private String health;
+        private long inspected = -1;
+
+        ContainerState(JSONObject json) {
+            id = json.getString("Id");
+            String containerName = json.optString("Name", id);
+            name = containerName.startsWith("/") ? containerName.substring(1) : containerName;
+            JSONObject state = json.optJSONObject("State");
+            if (state != null) {
+                status = state.optString("Status", state.optBoolean("Running") ? "running" : STATE_EXITED);
+                if (isExited()) {
+                    exitCode = state.optInt("ExitCode", UNKNOWN_EXIT_CODE);
+                }
+                inspected = Math.max(parseTimestamp(state.optString("StartedAt")),
+                        parseTimestamp(state.optString("FinishedAt")));
+                JSONObject healthState = state.optJSONObject("Health");
+                if (healthState != null) {
+                    health = healthState.optString("Status", null);
+                }
+            }
+        }
+
+        /**
+         * @return nanoseconds since the epoch, -1 if the timestamp is empty, invalid or the zero time of docker
+         */
+        private static long parseTimestamp(String value) {
+            byte[] data = value.getBytes(StandardCharsets.US_ASCII);
+            return DockerTimestamp.parseNanos(data, 0, data.length);
+        }
+
+        /**
+         * Method to apply an event.
+         *
+         * @return true if the state has changed
+         */
+        boolean apply(String action, JSONObject actor) {
+            JSONObject attributes = (actor != null) ? actor.optJSONObject("Attributes") : null;
+            String oldStatus = status;
+            String oldHealth = health;
+            if (action.startsWith(HEALTH_STATUS)) {
+                int separator = action.indexOf(':');
+                health = (separator >= 0) ? action.substring(separator + 1).trim() : health;
+            } else {
+                switch (action) {
+                    case "die":
+                        status = STATE_EXITED;
+                        exitCode = (attributes != null) ? parseExitCode(attributes.optString("exitCode")) : exitCode;
+                        break;
+                    case "start":
+                    case "restart":
+                    case "unpause":
+                        status = "running";
+                        exitCode = UNKNOWN_EXIT_CODE;
+                        break;
+                    case "pause":
+                        status = "paused";
+                        break;
+                    case "destroy":
+                        status = STATE_REMOVED;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return !status.equals(oldStatus) || (health != null && !health.equals(oldHealth));
+        }
+
+        private static int parseExitCode(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return UNKNOWN_EXIT_CODE;
+            }
+        }
+
+        boolean isExited() {
+            return STATE_EXITED.equals(status) || STATE_DEAD.equals(status) || isRemoved();
+        }
+
+        boolean isRemoved() {
+            return STATE_REMOVED.equals(status);
+        }
     }
 
 }
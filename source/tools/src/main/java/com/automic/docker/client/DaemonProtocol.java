@@ -0,0 +1,275 @@
+package com.automic.docker.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Wire protocol shared by {@link DockerDaemon} and {@link DockerLauncher}. This class must not depend on logging or
+ * Jersey classes so that the launcher stays cheap to start.
+ *
+ * A request consists of the token of the daemon, the working directory of the caller, the argument count and the
+ * arguments, all written with {@link DataOutputStream}. The token is a random value the daemon writes at start to a
+ * file only its owner can read; a caller which cannot read it is not allowed to run actions with the certificates and
+ * docker access of the daemon. The response is a sequence of frames, each made of a one byte frame type, a
+ * four byte payload length and the payload. It ends with either an exit frame carrying the response code or a reject
+ * frame which tells the launcher to execute the action itself.
+ */
+public final class DaemonProtocol {
+
+    /**
+     * Frame carrying bytes written to stdout
+     */
+    public static final byte FRAME_STDOUT = 1;
+
+    /**
+     * Frame carrying bytes written to stderr
+     */
+    public static final byte FRAME_STDERR = 2;
+
+    /**
+     * Frame carrying the response code of the action as a 4 byte payload
+     */
+    public static final byte FRAME_EXIT = 3;
+
+    /**
+     * Frame telling the launcher that the daemon did not execute the request
+     */
+    public static final byte FRAME_REJECT = 4;
+
+    /**
+     * System property to override the loopback port the daemon listens on
+     */
+    public static final String PORT_PROPERTY = "docker.tool.daemon.port";
+
+    /**
+     * System property to override the number of actions the daemon runs concurrently
+     */
+    public static final String WORKERS_PROPERTY = "docker.tool.daemon.workers";
+
+    /**
+     * System property to override the time in milliseconds the launcher waits to connect to the daemon
+     */
+    public static final String CONNECT_TIMEOUT_PROPERTY = "docker.tool.daemon.connect.timeout";
+
+    /**
+     * System property to override the file the daemon writes its token to
+     */
+    public static final String TOKEN_FILE_PROPERTY = "docker.tool.daemon.token.file";
+
+    private static final String DEFAULT_TOKEN_FILE = ".automic-docker-daemon.token";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String OWNER_ONLY = "rw-------";
+    private static final int TOKEN_BYTES = 32;
+
+    private static final int DEFAULT_PORT = 47011;
+    private static final int DEFAULT_WORKERS = 8;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 250;
+
+    private static final int INT_SIZE = 4;
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * @return the loopback port of the daemon
+     */
+    public static int getPort() {
+        return Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+    }
+
+    /**
+     * @return the number of actions the daemon runs concurrently
+     */
+    public static int getWorkers() {
+        return Math.max(1, Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS));
+    }
+
+    /**
+     * @return the timeout in milliseconds the launcher waits to connect to the daemon
+     */
+    public static int getConnectTimeout() {
+        return Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * @return the file holding the token of the daemon, by default in the home directory of the user
+     */
+    public static Path getTokenFile() {
+        String file = System.getProperty(TOKEN_FILE_PROPERTY);
+        return (file != null) ? Paths.get(file) : Paths.get(System.getProperty("user.home"), DEFAULT_TOKEN_FILE);
+    }
+
+    /**
+     * Method to create a new random token and write it to a file only the owner can read. The file is written under
+     * a temporary name and then moved, so that a caller never reads a partial token.
+     *
+     * @param file
+     *            file to write the token to
+     * @return the token
+     * @throws IOException
+     */
+    public static String createToken(Path file) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte b : random) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        Files.deleteIfExists(temp);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY)));
+        } else {
+            Files.createFile(temp);
+            File tempFile = temp.toFile();
+            if (!(tempFile.setReadable(false, false) && tempFile.setReadable(true, true)
+                    && tempFile.setWritable(false, false) && tempFile.setWritable(true, true))) {
+                Files.deleteIfExists(temp);
+                throw new IOException("Unable to restrict the permissions of " + temp);
+            }
+        }
+        Files.write(temp, token.toString().getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return token.toString();
+    }
+
+    /**
+     * Method to read the token of the daemon.
+     *
+     * @param file
+     *            file holding the token
+     * @return the token or null if the file cannot be read
+     */
+    public static String readToken(Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to compare a token sent by a caller with the token of the daemon, in constant time.
+     *
+     * @return true if both tokens are equal
+     */
+    public static boolean isValidToken(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                actual.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Method to write a request to the daemon.
+     *
+     * @param out
+     *            stream connected to the daemon
+     * @param token
+     *            token of the daemon
+     * @param workingDir
+     *            working directory of the caller
+     * @param args
+     *            arguments of the action
+     * @throws IOException
+     */
+    public static void writeRequest(DataOutputStream out, String token, String workingDir, String[] args)
+            throws IOException {
+        out.writeUTF(token);
+        out.writeUTF(workingDir);
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /**
+     * Method to read the arguments of a request after its token and working directory have been read.
+     *
+     * @param in
+     *            stream connected to the launcher
+     * @return arguments of the action
+     * @throws IOException
+     */
+    public static String[] readArguments(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid argument count " + count);
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    /**
+     * Method to write a frame holding a response code.
+     *
+     * @param out
+     *            stream connected to the launcher
+     * @param frameType
+     *            either {@link #FRAME_EXIT} or {@link #FRAME_REJECT}
+     * @param code
+     *            response code
+     * @throws IOException
+     */
+    public static void writeCodeFrame(DataOutputStream out, byte frameType, int code) throws IOException {
+        synchronized (out) {
+            out.writeByte(frameType);
+            out.writeInt(INT_SIZE);
+            out.writeInt(code);
+            out.flush();
+        }
+    }
+
+    /**
+     * {@link OutputStream} which wraps everything written to it into frames of the given type.
+     */
+    public static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte frameType;
+
+        public FrameOutputStream(DataOutputStream out, byte frameType) {
+            this.out = out;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(frameType);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+}
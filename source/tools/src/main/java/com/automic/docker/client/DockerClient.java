@@ -50,6 +50,22 @@ public final class DockerClient {
             System.err.println("No arguments received...");
             System.exit(1);
         }
+        System.exit(execute(args));
+    }
+
+    /**
+     * Method to execute an action in the current JVM and return the response code instead of terminating the JVM. It
+     * is used by {@link #main(String[])} as well as by {@link DockerDaemon} which runs many actions in one process.
+     * 
+     * @param args
+     *            array of Arguments
+     * @return the response code
+     */
+    public static int execute(String[] args) {
+        if (args.length == 0) {
+            System.err.println("No arguments received...");
+            return RESPONSE_NOT_OK;
+        }
 
         int responseCode = RESPONSE_NOT_OK;
 
@@ -71,8 +87,7 @@ public final class DockerClient {
         }
 
         LOGGER.info("@@@@@@@ Execution ends for action  with response code : " + responseCode);
-        System.exit(responseCode);
-
+        return responseCode;
     }
 
     /**
@@ -10,6 +10,8 @@ import org.apache.logging.log4j.Logger;
 
 import com.automic.docker.actions.AbstractAction;
 import com.automic.docker.actions.ActionFactory;
+import com.automic.docker.actions.BatchAction;
+import com.automic.docker.actions.FleetAction;
 import com.automic.docker.constants.Action;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
@@ -26,7 +28,9 @@ public final class DockerClientHelper {
     }
 
     /**
-     * Method to delegate parameters to an instance of {@link AbstractAction} based on the value of Action parameter. 
+     * Method to delegate parameters to an instance of {@link AbstractAction} based on the value of Action parameter.
+     * The {@link Action#BATCH} and {@link Action#FLEET} actions are handled by {@link BatchAction} and
+     * {@link FleetAction} which execute other actions themselves.
      * @param args array of String args
      * @throws DockerException 
      */
@@ -38,7 +42,16 @@ public final class DockerClientHelper {
         }
         action = action.toUpperCase();
         LOGGER.info("Execution starts for action [" + action + "]...");
-        AbstractAction useraction = ActionFactory.getAction(Action.valueOf(action));
+        Action enumAction = Action.valueOf(action);
+        if (Action.BATCH == enumAction) {
+            new BatchAction().executeAction(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (Action.FLEET == enumAction) {
+            new FleetAction().executeAction(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        AbstractAction useraction = ActionFactory.getAction(enumAction);
         useraction.executeAction(Arrays.copyOfRange(args, 1, args.length));
     }
 }
@@ -0,0 +1,201 @@
+package com.automic.docker.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.utility.WorkerPool;
+
+/**
+ * Resident server which executes actions on behalf of {@link DockerLauncher}. It listens on a loopback port, keeps the
+ * Jersey clients and SSL contexts warm between requests and runs the requested actions concurrently. Output written by
+ * an action to stdout/stderr is streamed back to the launcher that requested it, followed by the response code.
+ *
+ * At start the daemon writes a random token to a file only its owner can read, see {@link DaemonProtocol}, and serves
+ * only requests carrying that token, so that other local users cannot run actions with its certificates and docker
+ * access. The token file is deleted when the daemon stops.
+ *
+ * Requests coming from a different working directory are rejected because actions resolve relative paths against the
+ * working directory of the JVM; the launcher then executes the action in its own process. This is no security check,
+ * the caller sends its working directory itself.
+ */
+public final class DockerDaemon {
+
+    private static final Logger LOGGER = LogManager.getLogger(DockerDaemon.class);
+
+    private static final int RESPONSE_NOT_OK = 1;
+    private static final int DRAIN_TIMEOUT = 1000;
+    private static final int DRAIN_LIMIT = 1024 * 1024;
+    private static final int DRAIN_BUFFER_SIZE = 8 * 1024;
+
+    private final int port;
+    private final ExecutorService workers;
+    private final String workingDir;
+    private final String token;
+
+    private DockerDaemon(int port, int workerCount, String token) {
+        this.port = port;
+        this.workers = WorkerPool.newPool(workerCount, "daemon-worker");
+        this.workingDir = new File("").getAbsolutePath();
+        this.token = token;
+    }
+
+    /**
+     * Main method to start the daemon. The optional first argument overrides the port to listen on.
+     *
+     * @param args
+     *            array of Arguments
+     */
+    public static void main(String[] args) {
+        int port = DaemonProtocol.getPort();
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0].trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port [" + args[0] + "]");
+                System.exit(RESPONSE_NOT_OK);
+            }
+        }
+
+        HttpClientConfig.enableClientCache();
+        OutputRouter.install();
+
+        final Path tokenFile = DaemonProtocol.getTokenFile();
+        String token = null;
+        try {
+            token = DaemonProtocol.createToken(tokenFile);
+        } catch (IOException e) {
+            LOGGER.error("Unable to write token file " + tokenFile, e);
+            System.err.println("Unable to write token file " + tokenFile + " : " + e.getMessage());
+            System.exit(RESPONSE_NOT_OK);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Files.deleteIfExists(tokenFile);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to delete token file " + tokenFile, e);
+                }
+            }
+        }));
+
+        DockerDaemon daemon = new DockerDaemon(port, DaemonProtocol.getWorkers(), token);
+        try {
+            daemon.serve();
+        } catch (IOException e) {
+            LOGGER.error("Daemon stopped ", e);
+            System.err.println("Daemon stopped : " + e.getMessage());
+            System.exit(RESPONSE_NOT_OK);
+        } finally {
+            HttpClientConfig.destroyCachedClients();
+        }
+    }
+
+    /**
+     * Method to accept connections until the server socket fails.
+     *
+     * @throws IOException
+     */
+    private void serve() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            String msg = "Docker daemon listening on " + serverSocket.getLocalSocketAddress() + " in directory "
+                    + workingDir;
+            LOGGER.info(msg);
+            System.out.println(msg);
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Method to read one request from the socket, execute it and send back the output and response code.
+     *
+     * @param socket
+     *            connection from a launcher
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            if (!DaemonProtocol.isValidToken(token, in.readUTF())) {
+                LOGGER.warn("Rejecting request with invalid token from " + s.getRemoteSocketAddress());
+                DaemonProtocol.writeCodeFrame(out, DaemonProtocol.FRAME_REJECT, RESPONSE_NOT_OK);
+                drain(s);
+                return;
+            }
+            String callerDir = in.readUTF();
+            String[] args = DaemonProtocol.readArguments(in);
+
+            if (!workingDir.equals(callerDir)) {
+                LOGGER.info("Rejecting request from directory " + callerDir);
+                DaemonProtocol.writeCodeFrame(out, DaemonProtocol.FRAME_REJECT, RESPONSE_NOT_OK);
+                return;
+            }
+
+            PrintStream stdOut = new PrintStream(new DaemonProtocol.FrameOutputStream(out,
+                    DaemonProtocol.FRAME_STDOUT), true);
+            PrintStream stdErr = new PrintStream(new DaemonProtocol.FrameOutputStream(out,
+                    DaemonProtocol.FRAME_STDERR), true);
+            int responseCode;
+            OutputRouter.bind(stdOut, stdErr);
+            try {
+                responseCode = DockerClient.execute(args);
+            } finally {
+                OutputRouter.unbind();
+            }
+            stdOut.flush();
+            stdErr.flush();
+            DaemonProtocol.writeCodeFrame(out, DaemonProtocol.FRAME_EXIT, responseCode);
+        } catch (IOException e) {
+            LOGGER.error("Error while serving request ", e);
+        }
+    }
+
+    /**
+     * Method to discard the unread rest of a rejected request, so that closing the socket does not reset the
+     * connection before the caller has read the reject frame.
+     */
+    private static void drain(Socket socket) throws IOException {
+        socket.shutdownOutput();
+        socket.setSoTimeout(DRAIN_TIMEOUT);
+        InputStream in = socket.getInputStream();
+        byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        int drained = 0;
+        try {
+            int read;
+            while (drained < DRAIN_LIMIT && (read = in.read(buffer)) >= 0) {
+                drained += read;
+            }
+        } catch (SocketTimeoutException e) {
+            LOGGER.debug("Caller did not close the rejected connection");
+        }
+    }
+
+}
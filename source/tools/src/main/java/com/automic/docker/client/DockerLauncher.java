@@ -0,0 +1,148 @@
+package com.automic.docker.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Thin entry point called by the AE jobs. It hands the arguments to a running {@link DockerDaemon} and relays the
+ * output and response code of the action. If no daemon is reachable, its token cannot be read, or the daemon rejects
+ * the request, the action is executed in this JVM exactly as {@link DockerClient#main(String[])} would do.
+ *
+ * This class deliberately avoids logging and Jersey classes so that the JVM started per job stays small when the
+ * daemon is available.
+ */
+public final class DockerLauncher {
+
+    private static final int RESPONSE_NOT_OK = 1;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private DockerLauncher() {
+    }
+
+    /**
+     * Main method which forwards the action to the daemon or falls back to in-process execution.
+     *
+     * @param args
+     *            array of Arguments
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("No arguments received...");
+            System.exit(RESPONSE_NOT_OK);
+        }
+
+        String token = DaemonProtocol.readToken(DaemonProtocol.getTokenFile());
+        Socket socket = (token != null) ? connect() : null;
+        if (socket != null) {
+            Integer responseCode = delegate(socket, token, args);
+            if (responseCode != null) {
+                System.exit(responseCode);
+            }
+        }
+        DockerClient.main(args);
+    }
+
+    /**
+     * Method to connect to the daemon.
+     *
+     * @return a connected socket or null if the daemon is not running
+     */
+    private static Socket connect() {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), DaemonProtocol.getPort()),
+                    DaemonProtocol.getConnectTimeout());
+            return socket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            return null;
+        }
+    }
+
+    /**
+     * Method to send the request to the daemon and relay its response.
+     *
+     * @param socket
+     *            connection to the daemon
+     * @param token
+     *            token of the daemon
+     * @param args
+     *            array of Arguments
+     * @return response code of the action or null if the action has to be executed in this JVM
+     */
+    private static Integer delegate(Socket socket, String token, String[] args) {
+        boolean requestSent = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DaemonProtocol.writeRequest(out, token, new File("").getAbsolutePath(), args);
+            requestSent = true;
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                byte frameType = in.readByte();
+                int length = in.readInt();
+                switch (frameType) {
+                    case DaemonProtocol.FRAME_STDOUT:
+                        relay(in, length, buffer, System.out);
+                        break;
+                    case DaemonProtocol.FRAME_STDERR:
+                        relay(in, length, buffer, System.err);
+                        break;
+                    case DaemonProtocol.FRAME_EXIT:
+                        System.out.flush();
+                        System.err.flush();
+                        return in.readInt();
+                    case DaemonProtocol.FRAME_REJECT:
+                        return null;
+                    default:
+                        throw new IOException("Unknown frame type " + frameType);
+                }
+            }
+        } catch (IOException e) {
+            return lostConnection(requestSent);
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static Integer lostConnection(boolean requestSent) {
+        if (!requestSent) {
+            return null;
+        }
+        // the daemon may already have executed the action, so it must not be repeated here
+        System.err.println("ERROR | Lost connection to docker daemon while executing the action.");
+        return RESPONSE_NOT_OK;
+    }
+
+    private static void relay(DataInputStream in, int length, byte[] buffer, PrintStream target) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException();
+            }
+            target.write(buffer, 0, read);
+            remaining -= read;
+        }
+        target.flush();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.automic.docker.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Class to route {@link System#out} and {@link System#err} to per-thread targets. Actions write their report directly
+ * to the standard streams, so when several actions run concurrently in one JVM each of them needs its own pair of
+ * streams. Threads without a registered target keep writing to the original console streams.
+ */
+public final class OutputRouter {
+
+    private static final InheritableThreadLocal<OutputStream> OUT_TARGET = new InheritableThreadLocal<OutputStream>();
+    private static final InheritableThreadLocal<OutputStream> ERR_TARGET = new InheritableThreadLocal<OutputStream>();
+
+    private static boolean installed = false;
+
+    private OutputRouter() {
+    }
+
+    /**
+     * Method to replace the standard streams with routing streams. Calling it more than once has no effect.
+     */
+    public static synchronized void install() {
+        if (!installed) {
+            System.setOut(new PrintStream(new RoutingOutputStream(System.out, OUT_TARGET), true));
+            System.setErr(new PrintStream(new RoutingOutputStream(System.err, ERR_TARGET), true));
+            installed = true;
+        }
+    }
+
+    /**
+     * Method to register the streams the current thread (and the threads it starts) should write to.
+     *
+     * @param out
+     *            target for {@link System#out}
+     * @param err
+     *            target for {@link System#err}
+     */
+    public static void bind(OutputStream out, OutputStream err) {
+        OUT_TARGET.set(out);
+        ERR_TARGET.set(err);
+    }
+
+    /**
+     * Method to flush the standard streams and remove the targets registered for the current thread.
+     */
+    public static void unbind() {
+        System.out.flush();
+        System.err.flush();
+        OUT_TARGET.remove();
+        ERR_TARGET.remove();
+    }
+
+    /**
+     * {@link OutputStream} that forwards every write to the target registered for the calling thread.
+     */
+    private static final class RoutingOutputStream extends OutputStream {
+
+        private final OutputStream fallback;
+        private final ThreadLocal<OutputStream> target;
+
+        RoutingOutputStream(OutputStream fallback, ThreadLocal<OutputStream> target) {
+            this.fallback = fallback;
+            this.target = target;
+        }
+
+        private OutputStream current() {
+            OutputStream os = target.get();
+            return os != null ? os : fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            current().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            current().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            current().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+}
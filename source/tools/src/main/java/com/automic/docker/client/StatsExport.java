@@ -0,0 +1,239 @@
+package com.automic.docker.client;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.StatsRecording;
+import com.automic.docker.utility.XmlResultWriter;
+
+/**
+ * Command line tool to export a stats recording written by the STATS action, e.g. the average of every five minutes of
+ * one day as csv:
+ *
+ * <pre>
+ * java -cp docker.jar com.automic.docker.client.StatsExport web.stats web.csv CSV 300 1700000000 1700086400
+ * </pre>
+ *
+ * The samples are downsampled to the average of every step of seconds, 0 to export every sample, and can be limited
+ * to a range of seconds since the epoch. The rows are written as csv with a header, or as xml with one sample element
+ * per row. Missing values are left empty in csv and omitted in xml.
+ */
+public final class StatsExport {
+
+    private static final int RECORDING_INDEX = 0;
+    private static final int OUTPUT_INDEX = 1;
+    private static final int FORMAT_INDEX = 2;
+    private static final int STEP_INDEX = 3;
+    private static final int FROM_INDEX = 4;
+    private static final int TO_INDEX = 5;
+
+    private static final String CSV = "CSV";
+    private static final String XML = "XML";
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+            Locale.ROOT);
+
+    static {
+        TIME_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    private final long step;
+    private final Output output;
+    private double[] sums;
+    private int[] counts;
+    private long bucket = -1;
+    private long rows;
+
+    private StatsExport(long step, Output output) {
+        this.step = step;
+        this.output = output;
+    }
+
+    /**
+     * Main method to run the export.
+     *
+     * @param args
+     *            recording, output file, format (CSV or XML) and optionally the step, from and to in seconds
+     */
+    public static void main(String[] args) {
+        if (args.length <= FORMAT_INDEX) {
+            System.err.println("Usage: StatsExport <recording> <output-file> <CSV|XML> [<step-seconds> [<from> "
+                    + "[<to>]]]");
+            System.exit(1);
+        }
+        int responseCode = 0;
+        try {
+            String format = args[FORMAT_INDEX].trim().toUpperCase(Locale.ROOT);
+            if (!CSV.equals(format) && !XML.equals(format)) {
+                throw new IllegalArgumentException("Invalid format [" + args[FORMAT_INDEX] + "]. Expected CSV or XML");
+            }
+            long step = seconds(args, STEP_INDEX) * MILLIS_PER_SECOND;
+            long from = seconds(args, FROM_INDEX) * MILLIS_PER_SECOND;
+            long to = seconds(args, TO_INDEX) * MILLIS_PER_SECOND;
+            String outputFile = args[OUTPUT_INDEX].trim();
+            Output output = CSV.equals(format) ? new CsvOutput(outputFile) : new XmlOutput(outputFile);
+            StatsExport export = new StatsExport(step, output);
+            try {
+                export.run(args[RECORDING_INDEX].trim(), from, to);
+            } finally {
+                output.close();
+            }
+            System.out.println("OUTPUT_FILE_PATH ::= " + outputFile);
+            System.out.println("UC4RB_DKR_STATS_ROWS ::= " + export.rows);
+        } catch (DockerException | IOException | RuntimeException e) {
+            System.err.println("Export of [" + args[RECORDING_INDEX] + "] failed : " + e.getMessage());
+            responseCode = 1;
+        }
+        System.exit(responseCode);
+    }
+
+    private static long seconds(String[] args, int index) {
+        return (args.length > index && !args[index].trim().isEmpty()) ? Long.parseLong(args[index].trim()) : 0;
+    }
+
+    private void run(String recording, long from, long to) throws DockerException, IOException {
+        StatsRecording.read(Paths.get(recording), from, to, new StatsRecording.RowHandler() {
+            @Override
+            public void columns(String[] columns) throws DockerException {
+                sums = new double[columns.length];
+                counts = new int[columns.length];
+                output.start(columns);
+            }
+
+            @Override
+            public void row(long time, double[] values) throws DockerException {
+                long rowBucket = (step > 0) ? time - time % step : time;
+                if (rowBucket != bucket) {
+                    emit();
+                    bucket = rowBucket;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    if (!Double.isNaN(values[i])) {
+                        sums[i] += values[i];
+                        counts[i]++;
+                    }
+                }
+            }
+        });
+        emit();
+    }
+
+    /**
+     * Method to write the average of the current bucket.
+     */
+    private void emit() throws DockerException {
+        if (bucket < 0) {
+            return;
+        }
+        double[] averages = new double[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            averages[i] = (counts[i] > 0) ? sums[i] / counts[i] : Double.NaN;
+        }
+        output.write(bucket, averages);
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        rows++;
+    }
+
+    private static String formatTime(long time) {
+        return TIME_FORMAT.format(new Date(time));
+    }
+
+    private static String formatValue(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * Writer of the exported rows.
+     */
+    private interface Output {
+
+        void start(String[] columns) throws DockerException;
+
+        void write(long time, double[] values) throws DockerException;
+
+        void close() throws DockerException, IOException;
+    }
+
+    private static final class CsvOutput implements Output {
+
+        private final Writer writer;
+
+        private CsvOutput(String file) throws IOException {
+            writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void start(String[] columns) throws DockerException {
+            StringBuilder header = new StringBuilder("time");
+            for (String column : columns) {
+                header.append(',').append(column);
+            }
+            write(header.append('\n').toString());
+        }
+
+        @Override
+        public void write(long time, double[] values) throws DockerException {
+            StringBuilder line = new StringBuilder(formatTime(time));
+            for (double value : values) {
+                line.append(',').append(formatValue(value));
+            }
+            write(line.append('\n').toString());
+        }
+
+        private void write(String line) throws DockerException {
+            try {
+                writer.write(line);
+            } catch (IOException e) {
+                throw new DockerException("Unable to write the csv file", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class XmlOutput implements Output {
+
+        private final XmlResultWriter writer;
+        private String[] columns;
+
+        private XmlOutput(String file) throws DockerException {
+            writer = new XmlResultWriter(file, "stats");
+        }
+
+        @Override
+        public void start(String[] columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(long time, double[] values) throws DockerException {
+            Map<String, Object> fields = new LinkedHashMap<String, Object>();
+            fields.put("time", formatTime(time));
+            for (int i = 0; i < values.length; i++) {
+                fields.put(columns[i], Double.isNaN(values[i]) ? null : formatValue(values[i]));
+            }
+            writer.writeRecord("sample", fields);
+        }
+
+        @Override
+        public void close() throws DockerException {
+            writer.close();
+        }
+    }
+
+}
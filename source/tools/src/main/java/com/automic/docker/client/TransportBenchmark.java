@@ -0,0 +1,194 @@
+package com.automic.docker.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.automic.docker.config.HttpClientConfig;
+import com.automic.docker.constants.Constants;
+import com.automic.docker.exceptions.DockerException;
+import com.automic.docker.utility.URLValidator;
+import com.automic.docker.utility.WorkerPool;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Command line tool to compare the transports to a docker host, e.g. the unix socket against the loopback tcp port of
+ * the same daemon:
+ *
+ * <pre>
+ * java -cp docker.jar com.automic.docker.client.TransportBenchmark 1000 4 "" unix:///var/run/docker.sock
+ *     http://127.0.0.1:2375
+ * </pre>
+ *
+ * For every url it measures the latency of sequential _ping requests (min, median, 99th percentile, mean), the request
+ * rate of concurrent _ping requests and the payload throughput of repeatedly reading the image list. Each measurement
+ * is preceded by a warm up so that pooled connections and TLS sessions are established.
+ */
+public final class TransportBenchmark {
+
+    private static final int ITERATIONS_INDEX = 0;
+    private static final int CONCURRENCY_INDEX = 1;
+    private static final int CERTIFICATE_INDEX = 2;
+    private static final int FIRST_URL_INDEX = 3;
+
+    private static final int TIMEOUT = 30000;
+    private static final int WARM_UP = 50;
+    private static final int PERCENTILE_99 = 99;
+    private static final double NANOS_PER_MILLI = 1000000d;
+    private static final double NANOS_PER_SECOND = 1000000000d;
+    private static final double BYTES_PER_MB = 1024d * 1024d;
+
+    private final int iterations;
+    private final int concurrency;
+
+    private TransportBenchmark(int iterations, int concurrency) {
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args
+     *            iterations, concurrency, certificate path (empty for http and unix urls) and one or more docker urls
+     */
+    public static void main(String[] args) {
+        if (args.length <= FIRST_URL_INDEX) {
+            System.err.println("Usage: TransportBenchmark <iterations> <concurrency> <certificate-path> "
+                    + "<docker-url>...");
+            System.exit(1);
+        }
+        TransportBenchmark benchmark = new TransportBenchmark(Integer.parseInt(args[ITERATIONS_INDEX].trim()),
+                Integer.parseInt(args[CONCURRENCY_INDEX].trim()));
+        int responseCode = 0;
+        for (String url : Arrays.copyOfRange(args, FIRST_URL_INDEX, args.length)) {
+            try {
+                benchmark.run(url.trim(), args[CERTIFICATE_INDEX].trim());
+            } catch (DockerException | IOException | RuntimeException e) {
+                System.err.println("Benchmark of [" + url + "] failed : " + e);
+                responseCode = 1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                responseCode = 1;
+                break;
+            }
+        }
+        System.exit(responseCode);
+    }
+
+    private void run(String dockerUrl, String certificatePath) throws DockerException, IOException,
+            InterruptedException {
+        if (!URLValidator.validateURL(dockerUrl)) {
+            throw new DockerException("Invalid docker url [" + dockerUrl + "]");
+        }
+        Client client;
+        String requestUrl;
+        if (URLValidator.isUnixSocket(dockerUrl)) {
+            client = HttpClientConfig.getClient(Constants.UNIX, URLValidator.getSocketPath(dockerUrl), TIMEOUT,
+                    TIMEOUT);
+            requestUrl = Constants.UNIX_SOCKET_REQUEST_URL;
+        } else {
+            client = HttpClientConfig.getClient(dockerUrl.substring(0, dockerUrl.indexOf(':')), certificatePath,
+                    TIMEOUT, TIMEOUT);
+            requestUrl = dockerUrl;
+        }
+
+        try {
+            WebResource ping = client.resource(requestUrl).path("_ping");
+            WebResource images = client.resource(requestUrl).path("images").path("json");
+            System.out.println(dockerUrl);
+
+            for (int i = 0; i < WARM_UP; i++) {
+                read(ping);
+            }
+            long[] latencies = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                read(ping);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            long total = 0;
+            for (long latency : latencies) {
+                total += latency;
+            }
+            System.out.println(String.format("  ping latency ms      : min=%.3f p50=%.3f p99=%.3f mean=%.3f",
+                    latencies[0] / NANOS_PER_MILLI, latencies[latencies.length / 2] / NANOS_PER_MILLI,
+                    latencies[(latencies.length - 1) * PERCENTILE_99 / 100] / NANOS_PER_MILLI,
+                    total / NANOS_PER_MILLI / latencies.length));
+
+            long elapsed = runConcurrently(ping);
+            System.out.println(String.format("  ping requests/s      : %.0f (%d threads)",
+                    iterations * NANOS_PER_SECOND / elapsed, concurrency));
+
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                bytes += read(images);
+            }
+            elapsed = System.nanoTime() - start;
+            System.out.println(String.format("  image list MB/s      : %.2f (%d bytes per response)",
+                    bytes / BYTES_PER_MB * NANOS_PER_SECOND / elapsed, bytes / iterations));
+        } finally {
+            client.destroy();
+        }
+    }
+
+    private long runConcurrently(final WebResource resource) throws IOException, InterruptedException {
+        ExecutorService executor = WorkerPool.newPool(concurrency, "benchmark");
+        try {
+            List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(concurrency);
+            for (int t = 0; t < concurrency; t++) {
+                final int count = iterations / concurrency + ((t < iterations % concurrency) ? 1 : 0);
+                tasks.add(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        long bytes = 0;
+                        for (int i = 0; i < count; i++) {
+                            bytes += read(resource);
+                        }
+                        return bytes;
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Long> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+            return System.nanoTime() - start;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Method to execute a GET request and read the response completely.
+     *
+     * @return number of bytes read
+     */
+    private static long read(WebResource resource) throws IOException {
+        ClientResponse response = resource.get(ClientResponse.class);
+        long bytes = 0;
+        byte[] buffer = new byte[Constants.IO_BUFFER_SIZE];
+        try (InputStream is = response.getEntityInputStream()) {
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+}
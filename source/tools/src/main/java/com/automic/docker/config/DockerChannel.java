@@ -0,0 +1,343 @@
+package com.automic.docker.config;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+import com.automic.docker.constants.Constants;
+
+/**
+ * Connection to a docker host over a {@link SocketChannel}, for callers which multiplex many connections on one
+ * selector instead of using a thread per connection. A connection is opened and the request is written while the
+ * channel is blocking; afterwards it is switched to non blocking and the response is read whenever the channel is
+ * readable. Https connections are encrypted with an {@link SSLEngine}.
+ */
+public abstract class DockerChannel implements Closeable {
+
+    private static final int HTTP_PORT = 80;
+    private static final int HTTPS_PORT = 443;
+
+    private final SocketChannel channel;
+
+    DockerChannel(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Method to open a connection.
+     *
+     * @param dockerUrl
+     *            http or https url of the docker host, ignored for a unix socket
+     * @param socketPath
+     *            path of the unix domain socket, null for a tcp connection
+     * @param sslContext
+     *            context of https connections
+     * @param connectTimeout
+     *            timeout in milliseconds for connecting including the tls handshake, 0 for no timeout
+     * @return the blocking connection
+     * @throws IOException
+     */
+    public static DockerChannel open(URI dockerUrl, String socketPath, SSLContext sslContext, int connectTimeout)
+            throws IOException {
+        if (socketPath != null) {
+            SocketChannel channel = UnixSocket.openChannel();
+            try {
+                channel.connect(UnixSocket.createAddress(socketPath));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new PlainChannel(channel);
+        }
+
+        boolean https = Constants.HTTPS.equalsIgnoreCase(dockerUrl.getScheme());
+        int port = (dockerUrl.getPort() != -1) ? dockerUrl.getPort() : (https ? HTTPS_PORT : HTTP_PORT);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(dockerUrl.getHost(), port), connectTimeout);
+            channel.socket().setTcpNoDelay(true);
+            if (!https) {
+                return new PlainChannel(channel);
+            }
+            SSLEngine engine = sslContext.createSSLEngine(dockerUrl.getHost(), port);
+            engine.setUseClientMode(true);
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+            TlsChannel tlsChannel = new TlsChannel(channel, engine);
+            tlsChannel.handshake((connectTimeout > 0) ? deadline : 0);
+            return tlsChannel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the underlying channel, to configure blocking and to register it with a selector
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Method to read from the non blocking connection.
+     *
+     * @param dst
+     *            buffer to read into
+     * @return number of bytes read, possibly 0, or -1 at the end of the stream
+     * @throws IOException
+     */
+    public abstract int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * Method to write all bytes to the blocking connection.
+     *
+     * @param src
+     *            bytes to write
+     * @throws IOException
+     */
+    public abstract void write(ByteBuffer src) throws IOException;
+
+    /**
+     * Method to tell whether data has been read from the connection but not returned by {@link #read(ByteBuffer)} yet.
+     * A selector does not report such data as readable, so it has to be read before waiting for the selector again.
+     *
+     * @return true if a read would return data without waiting for the connection
+     */
+    public boolean hasPending() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class PlainChannel extends DockerChannel {
+
+        PlainChannel(SocketChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return getChannel().read(dst);
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                getChannel().write(src);
+            }
+        }
+    }
+
+    /**
+     * Tls connection. Only the writes need a blocking channel, the handshake waits on a selector of its own; reads also
+     * process the messages the server sends after the handshake, such as session tickets.
+     */
+    private static final class TlsChannel extends DockerChannel {
+
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        private final SSLEngine engine;
+        private ByteBuffer netIn;
+        private final ByteBuffer netOut;
+        private ByteBuffer appIn;
+        private boolean underflow;
+
+        TlsChannel(SocketChannel channel, SSLEngine engine) {
+            super(channel);
+            this.engine = engine;
+            netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        }
+
+        /**
+         * Method to run the handshake. The messages of the server are awaited on a selector, as a blocking channel
+         * ignores the socket timeout and would wait forever for a server which accepted but does not answer.
+         *
+         * @param deadline
+         *            {@link System#nanoTime()} by which the handshake has to be completed, 0 for no limit
+         * @throws SocketTimeoutException
+         *             if the handshake has not been completed in time
+         */
+        void handshake(long deadline) throws IOException {
+            getChannel().configureBlocking(false);
+            try (Selector selector = Selector.open()) {
+                getChannel().register(selector, SelectionKey.OP_READ);
+                engine.beginHandshake();
+                HandshakeStatus status = engine.getHandshakeStatus();
+                while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+                    switch (status) {
+                        case NEED_TASK:
+                            runTasks();
+                            break;
+                        case NEED_WRAP:
+                            wrap(EMPTY);
+                            break;
+                        default:
+                            int read = unwrap();
+                            if (read < 0) {
+                                throw new EOFException("Connection closed during tls handshake");
+                            }
+                            if (read == 0) {
+                                await(selector, deadline);
+                            }
+                            break;
+                    }
+                    status = engine.getHandshakeStatus();
+                }
+            }
+            // closing the selector has deregistered the channel, so it may block again for the writes
+            getChannel().configureBlocking(true);
+        }
+
+        private static void await(Selector selector, long deadline) throws IOException {
+            long timeout = 0;
+            if (deadline != 0) {
+                timeout = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (timeout <= 0) {
+                    throw new SocketTimeoutException("Tls handshake timed out");
+                }
+            }
+            selector.select(timeout);
+            selector.selectedKeys().clear();
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                wrap(src);
+            }
+        }
+
+        /**
+         * {@inheritDoc} Records are decrypted until the buffer is full or no complete record is left, as the records
+         * already read from the connection do not wake up a selector.
+         */
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int total = 0;
+            while (dst.hasRemaining()) {
+                if (appIn.position() > 0) {
+                    total += drain(dst);
+                    continue;
+                }
+                HandshakeStatus status = engine.getHandshakeStatus();
+                if (status == HandshakeStatus.NEED_TASK) {
+                    runTasks();
+                } else if (status == HandshakeStatus.NEED_WRAP) {
+                    wrap(EMPTY);
+                } else {
+                    int read = unwrap();
+                    if (read <= 0 && appIn.position() == 0) {
+                        return (total > 0) ? total : read;
+                    }
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public boolean hasPending() {
+            return appIn.position() > 0 || (netIn.position() > 0 && !underflow && !engine.isInboundDone());
+        }
+
+        private int drain(ByteBuffer dst) {
+            appIn.flip();
+            int count = Math.min(appIn.remaining(), dst.remaining());
+            ByteBuffer slice = appIn.duplicate();
+            slice.limit(slice.position() + count);
+            dst.put(slice);
+            appIn.position(appIn.position() + count);
+            appIn.compact();
+            return count;
+        }
+
+        /**
+         * Method to decrypt the next tls record, reading from the channel if it is incomplete.
+         *
+         * @return 1 if a record has been processed, 0 if the non blocking channel has no data, -1 at the end of the
+         *         stream
+         */
+        private int unwrap() throws IOException {
+            while (true) {
+                netIn.flip();
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                netIn.compact();
+                underflow = false;
+                switch (result.getStatus()) {
+                    case OK:
+                        if (result.bytesConsumed() > 0 || result.bytesProduced() > 0) {
+                            return 1;
+                        }
+                        break;
+                    case BUFFER_OVERFLOW:
+                        appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+                        continue;
+                    case CLOSED:
+                        return -1;
+                    default:
+                        // the rest of the record has not been received yet
+                        underflow = true;
+                        if (netIn.position() == netIn.capacity()) {
+                            netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+                        }
+                        break;
+                }
+                int read = getChannel().read(netIn);
+                if (read <= 0) {
+                    return read;
+                }
+                underflow = false;
+            }
+        }
+
+        private void wrap(ByteBuffer src) throws IOException {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            if (result.getStatus() != SSLEngineResult.Status.OK) {
+                throw new SSLException("Unexpected tls state " + result.getStatus());
+            }
+            netOut.flip();
+            while (netOut.hasRemaining()) {
+                // only small handshake messages are written while the channel is non blocking
+                getChannel().write(netOut);
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+
+        private static ByteBuffer enlarge(ByteBuffer buffer, int size) {
+            ByteBuffer enlarged = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+            buffer.flip();
+            enlarged.put(buffer);
+            return enlarged;
+        }
+    }
+
+}
@@ -2,7 +2,14 @@ package com.automic.docker.config;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,7 +19,6 @@ import com.automic.docker.exceptions.DockerException;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
 /**
  * Configuration class for http client.This class sets the parameters like connection timeout , read time out , handling
@@ -22,13 +28,119 @@ public final class HttpClientConfig {
 
     private static final Logger LOGGER = LogManager.getLogger(HttpClientConfig.class);
 
+    private static final String KEY_SEPARATOR = "|";
+
+    /**
+     * Clients kept warm between actions when running inside a long lived process, keyed by docker url, protocol,
+     * certificate path and timeouts. Every docker host has clients of its own, so that the clients of a host which
+     * hangs can be destroyed without touching the others. It stays null for the usual one action per JVM execution.
+     */
+    private static volatile ConcurrentMap<String, Client> clientCache;
+
     private HttpClientConfig() {
     }
 
     /**
-     * Creates an instance of {@link Client} using parameters specified.  
-     * @param protocol either http or https
-     * @param certificatePath path to connection certificates
+     * Method to enable reuse of clients (and their SSL contexts) across actions executed in the same JVM. Once enabled,
+     * {@link #releaseClient(Client)} keeps the clients open instead of destroying them.
+     * 
+     * @return true if the cache has been enabled by this call, false if it was already enabled
+     */
+    public static synchronized boolean enableClientCache() {
+        if (clientCache == null) {
+            clientCache = new ConcurrentHashMap<String, Client>();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to destroy all cached clients, if any.
+     */
+    public static synchronized void destroyCachedClients() {
+        if (clientCache != null) {
+            for (Client client : clientCache.values()) {
+                client.destroy();
+            }
+            clientCache.clear();
+        }
+    }
+
+    /**
+     * Method to destroy the cached clients of one docker host, if any, e.g. to abort the calls of an action which
+     * missed its deadline. The connections of the clients are closed, which ends the calls waiting for a response.
+     * 
+     * @param dockerUrl url of the docker host as given to the action
+     */
+    public static void destroyCachedClients(String dockerUrl) {
+        ConcurrentMap<String, Client> cache = clientCache;
+        if (cache == null) {
+            return;
+        }
+        String prefix = dockerUrl + KEY_SEPARATOR;
+        for (Map.Entry<String, Client> entry : cache.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && cache.remove(entry.getKey(), entry.getValue())) {
+                LOGGER.info("Destroying cached client for key " + entry.getKey());
+                entry.getValue().destroy();
+            }
+        }
+    }
+
+    /**
+     * Returns an instance of {@link Client} for the parameters specified. If the client cache is enabled an existing
+     * client is reused, otherwise a new client is created.
+     * 
+     * @param dockerUrl url of the docker host as given to the action, which the client is kept for
+     * @param protocol either http, https or unix
+     * @param certificatePath path to connection certificates, path of the socket for unix
+     * @param connectionTimeOut timeout in milliseconds
+     * @param readTimeOut read timeout in milliseconds
+     * @return an instance of {@link Client}
+     * @throws DockerException
+     */
+    public static Client getCachedClient(String dockerUrl, String protocol, String certificatePath,
+            int connectionTimeOut, int readTimeOut) throws DockerException {
+        ConcurrentMap<String, Client> cache = clientCache;
+        if (cache == null) {
+            return getClient(protocol, certificatePath, connectionTimeOut, readTimeOut);
+        }
+        String key = new StringBuilder(dockerUrl).append(KEY_SEPARATOR).append(protocol.toLowerCase())
+                .append(KEY_SEPARATOR).append(certificatePath).append(KEY_SEPARATOR).append(connectionTimeOut)
+                .append(KEY_SEPARATOR).append(readTimeOut).toString();
+        Client client = cache.get(key);
+        if (client == null) {
+            Client newClient = getClient(protocol, certificatePath, connectionTimeOut, readTimeOut);
+            client = cache.putIfAbsent(key, newClient);
+            if (client == null) {
+                LOGGER.info("Created new cached client for key " + key);
+                client = newClient;
+            } else {
+                newClient.destroy();
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Method to release a client obtained by {@link #getCachedClient(String, String, String, int, int)}. The client is
+     * destroyed unless it is held by the client cache.
+     * 
+     * @param client an instance of {@link Client}
+     */
+    public static void releaseClient(Client client) {
+        ConcurrentMap<String, Client> cache = clientCache;
+        if (cache == null || !cache.containsValue(client)) {
+            client.destroy();
+        }
+    }
+
+    /**
+     * Creates an instance of {@link Client} using parameters specified. The client executes its requests through a
+     * {@link PooledHttpClientHandler}, so connections are kept alive and reused for the lifetime of the client. For the
+     * unix protocol all connections are made to the socket at certificatePath and requests must be addressed to
+     * {@link Constants#UNIX_SOCKET_REQUEST_URL}.
+     * @param protocol either http, https or unix
+     * @param certificatePath path to connection certificates, path of the socket for unix
      * @param connectionTimeOut timeout in milliseconds
      * @param readTimeOut read timeout in milliseconds
      * @return an instance of {@link Client}
@@ -36,30 +148,45 @@ public final class HttpClientConfig {
      */
     public static Client getClient(String protocol, String certificatePath, int connectionTimeOut, int readTimeOut)
             throws DockerException {
-        Client client;
-
         ClientConfig config = new DefaultClientConfig();
 
-       
         config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectionTimeOut);
         config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeOut);
 
+        PooledHttpClientHandler handler;
         if (Constants.HTTPS.equalsIgnoreCase(protocol)) {
-            validateCertificates(certificatePath, config);
+            DockerCertificates certs = validateCertificates(certificatePath);
+            handler = new PooledHttpClientHandler(certs.sslContext(), certs.hostnameVerifier(), connectionTimeOut,
+                    readTimeOut);
+        } else if (Constants.UNIX.equalsIgnoreCase(protocol)) {
+            handler = new PooledHttpClientHandler(Collections.<String, ConnectionSocketFactory> singletonMap(
+                    Constants.HTTP, new UnixSocketFactory(certificatePath)), connectionTimeOut, readTimeOut);
+        } else {
+            handler = new PooledHttpClientHandler(null, null, connectionTimeOut, readTimeOut);
         }
-        client = Client.create(config);
+        return new PooledClient(handler, config);
+    }
 
-        return client;
+    /**
+     * Method to get the ssl context for the certificates at the given path, for connections not made by a
+     * {@link Client}.
+     * 
+     * @param certificatePath
+     *            Path to certificates
+     * @return the ssl context
+     * @throws DockerException
+     */
+    public static SSLContext getSslContext(String certificatePath) throws DockerException {
+        return validateCertificates(certificatePath).sslContext();
     }
 
     /**
      * Method to validate certificates specified at system path with that of the Docker URL specified.
      * @param certificatePath Path to certificates
-     * @param config config to Docker connection
+     * @return the certificates
      * @throws DockerException
      */
-    private static void validateCertificates(String certificatePath, ClientConfig config)
-            throws DockerException {
+    private static DockerCertificates validateCertificates(String certificatePath) throws DockerException {
 
         if (!certificatePath.isEmpty()) {
             File tmpFile = new File(certificatePath);
@@ -72,10 +199,29 @@ public final class HttpClientConfig {
             LOGGER.error(ExceptionConstants.EMPTY_DOCKER_CERITIFCATE_PATH);
             throw new DockerException(ExceptionConstants.EMPTY_DOCKER_CERITIFCATE_PATH);
         }
-        DockerCertificates certs = new DockerCertificates(Paths.get(certificatePath));
-        HTTPSProperties props = new HTTPSProperties(certs.hostnameVerifier(), certs.sslContext());
-        config.getProperties().put(HTTPSProperties.PROPERTY_HTTPS_PROPERTIES, props);
+        return new DockerCertificates(Paths.get(certificatePath));
+    }
+
+    /**
+     * {@link Client} which closes its connection pool when it is destroyed.
+     */
+    private static final class PooledClient extends Client {
+
+        private final PooledHttpClientHandler handler;
+
+        PooledClient(PooledHttpClientHandler handler, ClientConfig config) {
+            super(handler, config);
+            this.handler = handler;
+        }
 
+        @Override
+        public void destroy() {
+            try {
+                super.destroy();
+            } finally {
+                handler.close();
+            }
+        }
     }
 
 }
@@ -0,0 +1,58 @@
+package com.automic.docker.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Counters of a pooled client. A request that does not need a new connection is counted as a pool hit.
+ */
+public class PoolStatistics {
+
+    private static final int PERCENT = 100;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+
+    void requestExecuted() {
+        requests.incrementAndGet();
+    }
+
+    void connectionOpened() {
+        connectionsOpened.incrementAndGet();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * @return percentage of requests served by an already open connection
+     */
+    public double getHitRate() {
+        long total = requests.get();
+        if (total == 0) {
+            return 0;
+        }
+        long hits = Math.max(0, total - connectionsOpened.get());
+        return (double) hits * PERCENT / total;
+    }
+
+    /**
+     * Method to describe the counters together with the current state of the pool.
+     *
+     * @param poolStats
+     *            total statistics of the connection manager
+     * @return a one line summary
+     */
+    public String describe(PoolStats poolStats) {
+        return String.format("requests=%d, connections opened=%d, hit rate=%.1f%%, leased=%d, available=%d, max=%d",
+                getRequests(), getConnectionsOpened(), getHitRate(), poolStats.getLeased(), poolStats.getAvailable(),
+                poolStats.getMax());
+    }
+
+}
@@ -0,0 +1,464 @@
+package com.automic.docker.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.Constants;
+import com.automic.docker.utility.HttpCallTiming;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.TerminatingClientHandler;
+import com.sun.jersey.core.header.InBoundHeaders;
+
+/**
+ * Jersey client handler which executes requests with Apache HttpClient on top of a
+ * {@link PoolingHttpClientConnectionManager}. Connections are kept alive and reused by all requests of a client, TLS
+ * sessions are resumed through the shared {@link SSLContext}, and the number of requests and newly opened connections
+ * is recorded in {@link PoolStatistics}.
+ *
+ * Response streams are returned to the pool once they have been read to the end. Closing a chunked response that has
+ * not been read completely (for example a followed log stream) closes the underlying connection instead.
+ */
+public class PooledHttpClientHandler extends TerminatingClientHandler {
+
+    private static final Logger LOGGER = LogManager.getLogger(PooledHttpClientHandler.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig requestConfig;
+    private final PoolStatistics statistics = new PoolStatistics();
+
+    /**
+     * Creates a handler with its own connection pool.
+     *
+     * @param sslContext
+     *            SSL context for https connections, null if only http is used
+     * @param hostnameVerifier
+     *            hostname verifier for https connections
+     * @param connectionTimeOut
+     *            connection timeout in milliseconds, 0 means infinite
+     * @param readTimeOut
+     *            read timeout in milliseconds, 0 means infinite
+     */
+    public PooledHttpClientHandler(SSLContext sslContext, HostnameVerifier hostnameVerifier, int connectionTimeOut,
+            int readTimeOut) {
+        this(createRegistry(sslContext, hostnameVerifier), connectionTimeOut, readTimeOut);
+    }
+
+    /**
+     * Creates a handler using the given socket factories.
+     *
+     * @param socketFactories
+     *            socket factories per scheme
+     * @param connectionTimeOut
+     *            connection timeout in milliseconds, 0 means infinite
+     * @param readTimeOut
+     *            read timeout in milliseconds, 0 means infinite
+     */
+    protected PooledHttpClientHandler(Map<String, ConnectionSocketFactory> socketFactories, int connectionTimeOut,
+            int readTimeOut) {
+        RegistryBuilder<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create();
+        for (Map.Entry<String, ConnectionSocketFactory> entry : socketFactories.entrySet()) {
+            registry.register(entry.getKey(), new CountingSocketFactory(entry.getValue(), statistics));
+        }
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = registry.build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(TransportSettings.getPoolMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(TransportSettings.getPoolMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(TransportSettings.getValidateAfterInactivity());
+
+        requestConfig = RequestConfig.custom().setConnectTimeout(connectionTimeOut).setSocketTimeout(readTimeOut)
+                .setConnectionRequestTimeout(connectionTimeOut).build();
+
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig).setKeepAliveStrategy(new KeepAliveStrategy())
+                .disableCookieManagement().disableContentCompression().disableAuthCaching().build();
+    }
+
+    private static Map<String, ConnectionSocketFactory> createRegistry(SSLContext sslContext,
+            HostnameVerifier hostnameVerifier) {
+        Map<String, ConnectionSocketFactory> factories = new HashMap<String, ConnectionSocketFactory>();
+        factories.put(Constants.HTTP, PlainConnectionSocketFactory.getSocketFactory());
+        if (sslContext != null) {
+            factories.put(Constants.HTTPS, new SSLConnectionSocketFactory(sslContext, hostnameVerifier));
+        }
+        return factories;
+    }
+
+    /**
+     * @return statistics of this handler
+     */
+    public PoolStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        RequestBuilder builder = RequestBuilder.create(cr.getMethod()).setUri(cr.getURI()).setConfig(requestConfig);
+        for (Map.Entry<String, List<Object>> header : cr.getHeaders().entrySet()) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())
+                    || HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (Object value : header.getValue()) {
+                builder.addHeader(header.getKey(), ClientRequest.getHeaderValue(value));
+            }
+        }
+        HttpCallTiming timing = HttpCallTiming.start(cr.getMethod(), cr.getURI());
+        if (cr.getEntity() instanceof StreamingEntity) {
+            builder.setEntity(new UploadEntity((StreamingEntity) cr.getEntity(), timing));
+        } else if (cr.getEntity() != null) {
+            builder.setEntity(new RequestEntity(getRequestEntityWriter(cr), timing));
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpCallTiming.CONTEXT_ATTRIBUTE, timing);
+
+        CloseableHttpResponse response;
+        try {
+            response = httpClient.execute(builder.build(), context);
+        } catch (ConnectTimeoutException e) {
+            timing.finish();
+            // keep the behaviour of the URLConnection based client which reported connect timeouts this way
+            SocketTimeoutException timeout = new SocketTimeoutException(e.getMessage());
+            timeout.initCause(e);
+            throw new ClientHandlerException(timeout);
+        } catch (IOException e) {
+            timing.finish();
+            throw new ClientHandlerException(e);
+        } finally {
+            statistics.requestExecuted();
+        }
+        timing.responseReceived(response.getStatusLine().getStatusCode());
+
+        InBoundHeaders headers = new InBoundHeaders();
+        for (Header header : response.getAllHeaders()) {
+            headers.add(header.getName(), header.getValue());
+        }
+        return new ClientResponse(response.getStatusLine().getStatusCode(), headers,
+                getEntityStream(response, timing), getMessageBodyWorkers());
+    }
+
+    private static InputStream getEntityStream(CloseableHttpResponse response, HttpCallTiming timing)
+            throws ClientHandlerException {
+        HttpEntity entity = response.getEntity();
+        try {
+            if (entity == null) {
+                response.close();
+                timing.finish();
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            return new ResponseStream(entity.getContent(), response, entity.getContentLength() >= 0, timing);
+        } catch (IOException e) {
+            timing.finish();
+            throw new ClientHandlerException(e);
+        }
+    }
+
+    /**
+     * Method to close the connection pool. Logs the statistics of this handler.
+     */
+    public void close() {
+        LOGGER.info("Connection pool statistics: " + statistics.describe(connectionManager.getTotalStats()));
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.error("Error while closing http client ", e);
+        }
+    }
+
+    /**
+     * Entity which writes the Jersey request entity directly to the connection. Its length is unknown (and the entity
+     * sent chunked) unless the Jersey provider knows it, as for files and byte arrays.
+     */
+    private static final class RequestEntity extends AbstractHttpEntity {
+
+        private final RequestEntityWriter writer;
+        private final HttpCallTiming timing;
+
+        RequestEntity(RequestEntityWriter writer, HttpCallTiming timing) {
+            this.writer = writer;
+            this.timing = timing;
+            if (writer.getMediaType() != null) {
+                setContentType(writer.getMediaType().toString());
+            }
+            setChunked(writer.getSize() < 0);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return writer.getSize();
+        }
+
+        @Override
+        public InputStream getContent() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            CountingOutputStream out = new CountingOutputStream(outstream);
+            writer.writeRequestEntity(out);
+            out.flush();
+            timing.requestSent(out.getCount());
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+
+    /**
+     * Entity sending a {@link StreamingEntity} with a buffer of the configured upload chunk size.
+     */
+    private static final class UploadEntity extends AbstractHttpEntity {
+
+        private final StreamingEntity entity;
+        private final HttpCallTiming timing;
+
+        UploadEntity(StreamingEntity entity, HttpCallTiming timing) {
+            this.entity = entity;
+            this.timing = timing;
+            setChunked(entity.getContentLength() < 0 || TransportSettings.isUploadChunked());
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return isChunked() ? -1 : entity.getContentLength();
+        }
+
+        @Override
+        public InputStream getContent() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            int chunkSize = TransportSettings.getUploadChunkSize();
+            CountingOutputStream out = new CountingOutputStream(outstream);
+            long start = System.currentTimeMillis();
+            entity.writeTo(out, new byte[chunkSize]);
+            out.flush();
+            timing.requestSent(out.getCount());
+            LOGGER.info("Uploaded " + out.getCount() + " bytes in " + (System.currentTimeMillis() - start) + " ms ("
+                    + (isChunked() ? "chunked, chunk size " + chunkSize : "content length") + ")");
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+
+    /**
+     * Output stream counting the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Response stream which returns the connection to the pool after the end of stream has been read. A stream closed
+     * earlier is drained if its length is known, otherwise (chunked, possibly endless streams) the connection is
+     * closed. The call ends, as far as its timing is concerned, at the end of stream or when the stream is closed.
+     */
+    private static final class ResponseStream extends FilterInputStream {
+
+        private final CloseableHttpResponse response;
+        private final boolean drainOnClose;
+        private final HttpCallTiming timing;
+
+        ResponseStream(InputStream in, CloseableHttpResponse response, boolean drainOnClose, HttpCallTiming timing) {
+            super(in);
+            this.response = response;
+            this.drainOnClose = drainOnClose;
+            this.timing = timing;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                timing.finish();
+            } else {
+                timing.bytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                timing.finish();
+            } else {
+                timing.bytesRead(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            timing.bytesRead(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (drainOnClose) {
+                    in.close();
+                }
+            } finally {
+                // no-op if the connection has already been released at end of stream
+                response.close();
+                timing.finish();
+            }
+        }
+    }
+
+    /**
+     * Keep alive strategy honouring the keep-alive header sent by docker and using a default otherwise.
+     */
+    private static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : TransportSettings.getKeepAlive();
+        }
+    }
+
+    /**
+     * Socket factory counting the connections it opens and recording the time needed to open them in the
+     * {@link HttpCallTiming} of the request. For TLS connections the plain socket is created here, so that the TCP
+     * connect can be told apart from the handshake done by the delegate afterwards.
+     */
+    private static final class CountingSocketFactory implements ConnectionSocketFactory {
+
+        private final ConnectionSocketFactory delegate;
+        private final PoolStatistics statistics;
+
+        CountingSocketFactory(ConnectionSocketFactory delegate, PoolStatistics statistics) {
+            this.delegate = delegate;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            if (delegate instanceof LayeredConnectionSocketFactory) {
+                return new TimedSocket();
+            }
+            return delegate.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpContext context) throws IOException {
+            statistics.connectionOpened();
+            long start = System.nanoTime();
+            Socket socket = delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+            long total = System.nanoTime() - start;
+            Object timing = context.getAttribute(HttpCallTiming.CONTEXT_ATTRIBUTE);
+            if (timing instanceof HttpCallTiming) {
+                long connect = (sock instanceof TimedSocket) ? ((TimedSocket) sock).getConnectNanos() : total;
+                ((HttpCallTiming) timing).connectionOpened(connect, total - connect);
+            }
+            return socket;
+        }
+    }
+
+    /**
+     * Plain socket remembering how long its connect took.
+     */
+    private static final class TimedSocket extends Socket {
+
+        private long connectNanos;
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            long start = System.nanoTime();
+            super.connect(endpoint, timeout);
+            connectNanos = System.nanoTime() - start;
+        }
+
+        long getConnectNanos() {
+            return connectNanos;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.automic.docker.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request body which is written straight to the connection by {@link PooledHttpClientHandler}, bypassing the Jersey
+ * message body writers. The body is written in pieces of {@link TransportSettings#getUploadChunkSize()} bytes, which is
+ * also the size of the chunks of a chunked request, so the heap used by an upload does not depend on the size of the
+ * body.
+ *
+ * A body with a known length is sent with a Content-Length header unless chunked uploads are forced by
+ * {@link TransportSettings#UPLOAD_CHUNKED}, a body of unknown length is always sent chunked.
+ */
+public abstract class StreamingEntity {
+
+    /**
+     * @return length of the body in bytes, -1 if it is not known in advance
+     */
+    public abstract long getContentLength();
+
+    /**
+     * Method to write the body.
+     *
+     * @param out
+     *            stream to write to, every write is sent as it is (one chunk if the body is sent chunked)
+     * @param buffer
+     *            buffer of the configured chunk size to be used for copying
+     * @throws IOException
+     */
+    public abstract void writeTo(OutputStream out, byte[] buffer) throws IOException;
+
+    /**
+     * Creates an entity sending the content of a file.
+     *
+     * @param file
+     *            file to send
+     * @return an instance of {@link StreamingEntity}
+     */
+    public static StreamingEntity of(final File file) {
+        return new StreamingEntity() {
+
+            @Override
+            public long getContentLength() {
+                return file.length();
+            }
+
+            @Override
+            public void writeTo(OutputStream out, byte[] buffer) throws IOException {
+                try (InputStream in = new FileInputStream(file)) {
+                    copy(in, out, buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Method to copy a stream to another one until the end of the source stream. The buffer is filled completely before
+     * it is written, so that every write but the last one has the size of the buffer.
+     *
+     * @param in
+     *            source stream
+     * @param out
+     *            destination stream
+     * @param buffer
+     *            copy buffer
+     * @return number of bytes copied
+     * @throws IOException
+     */
+    protected static long copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        long total = 0;
+        int filled = 0;
+        int n;
+        while ((n = in.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += n;
+            if (filled == buffer.length) {
+                out.write(buffer, 0, filled);
+                total += filled;
+                filled = 0;
+            }
+        }
+        if (filled > 0) {
+            out.write(buffer, 0, filled);
+            total += filled;
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.automic.docker.config;
+
+/**
+ * Tuning parameters of the http transport and of the output streamed from it. They rarely need to be changed and are
+ * therefore read from system properties (-Dname=value) instead of being part of the action arguments.
+ */
+public final class TransportSettings {
+
+    /**
+     * Maximum number of pooled connections per client
+     */
+    public static final String POOL_MAX_TOTAL = "docker.tool.pool.max.total";
+
+    /**
+     * Maximum number of pooled connections per docker host
+     */
+    public static final String POOL_MAX_PER_ROUTE = "docker.tool.pool.max.per.route";
+
+    /**
+     * Time in milliseconds an idle connection is kept alive if docker does not send a keep-alive timeout
+     */
+    public static final String KEEP_ALIVE = "docker.tool.keepalive";
+
+    /**
+     * Time in milliseconds after which an idle connection is validated before it is reused
+     */
+    public static final String VALIDATE_AFTER_INACTIVITY = "docker.tool.pool.validate.after";
+
+    /**
+     * Size in bytes of the pieces an upload is written in, which is also the chunk size of chunked uploads
+     */
+    public static final String UPLOAD_CHUNK_SIZE = "docker.tool.upload.chunk.size";
+
+    /**
+     * If true, uploads of a known length are sent chunked instead of with a Content-Length header
+     */
+    public static final String UPLOAD_CHUNKED = "docker.tool.upload.chunked";
+
+    /**
+     * Number of threads compressing an upload, defaults to the number of processors
+     */
+    public static final String COMPRESSION_THREADS = "docker.tool.compression.threads";
+
+    /**
+     * Size in bytes of the blocks compressed independently
+     */
+    public static final String COMPRESSION_BLOCK_SIZE = "docker.tool.compression.block.size";
+
+    /**
+     * Deflate compression level from 1 (fastest) to 9 (best)
+     */
+    public static final String COMPRESSION_LEVEL = "docker.tool.compression.level";
+
+    /**
+     * Maximum time in milliseconds streamed command output stays buffered before it is written to the job report
+     */
+    public static final String OUTPUT_FLUSH_INTERVAL = "docker.tool.output.flush.interval";
+
+    /**
+     * Maximum number of lines of streamed command output buffered before it is written to the job report
+     */
+    public static final String OUTPUT_FLUSH_LINES = "docker.tool.output.flush.lines";
+
+    /**
+     * Number of bytes at the end of command output written to a file that are reported if the command fails
+     */
+    public static final String OUTPUT_TAIL_SIZE = "docker.tool.output.tail.size";
+
+    /**
+     * Size in bytes of the ring buffer between the thread reading the log streams of the log collector and the thread
+     * writing them to files, rounded up to a power of two
+     */
+    public static final String COLLECTOR_RING_SIZE = "docker.tool.collector.ring.size";
+
+    /**
+     * Number of threads opening the log streams of the log collector
+     */
+    public static final String COLLECTOR_CONNECT_THREADS = "docker.tool.collector.connect.threads";
+
+    /**
+     * Minimum time in milliseconds between two progress summaries of a pull, push, import or build
+     */
+    public static final String PROGRESS_INTERVAL = "docker.tool.progress.interval";
+
+    /**
+     * If false, calls fanned out to several containers run on platform threads even if the runtime has virtual threads
+     */
+    public static final String VIRTUAL_THREADS = "docker.tool.virtual.threads";
+
+    private static final int DEFAULT_POOL_MAX_TOTAL = 32;
+    private static final int DEFAULT_POOL_MAX_PER_ROUTE = 16;
+    private static final int DEFAULT_KEEP_ALIVE = 30000;
+    private static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+    private static final int DEFAULT_UPLOAD_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 128 * 1024;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int MAX_COMPRESSION_LEVEL = 9;
+    private static final int DEFAULT_OUTPUT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_OUTPUT_FLUSH_LINES = 100;
+    private static final int DEFAULT_OUTPUT_TAIL_SIZE = 64 * 1024;
+    private static final int DEFAULT_COLLECTOR_RING_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_COLLECTOR_CONNECT_THREADS = 8;
+    private static final int DEFAULT_PROGRESS_INTERVAL = 5000;
+
+    private TransportSettings() {
+    }
+
+    public static int getPoolMaxTotal() {
+        return getPositive(POOL_MAX_TOTAL, DEFAULT_POOL_MAX_TOTAL);
+    }
+
+    public static int getPoolMaxPerRoute() {
+        return getPositive(POOL_MAX_PER_ROUTE, DEFAULT_POOL_MAX_PER_ROUTE);
+    }
+
+    public static int getKeepAlive() {
+        return getPositive(KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+    }
+
+    public static int getValidateAfterInactivity() {
+        return getPositive(VALIDATE_AFTER_INACTIVITY, DEFAULT_VALIDATE_AFTER_INACTIVITY);
+    }
+
+    public static int getUploadChunkSize() {
+        return getPositive(UPLOAD_CHUNK_SIZE, DEFAULT_UPLOAD_CHUNK_SIZE);
+    }
+
+    public static boolean isUploadChunked() {
+        return Boolean.getBoolean(UPLOAD_CHUNKED);
+    }
+
+    public static int getCompressionThreads() {
+        return getPositive(COMPRESSION_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int getCompressionBlockSize() {
+        return getPositive(COMPRESSION_BLOCK_SIZE, DEFAULT_COMPRESSION_BLOCK_SIZE);
+    }
+
+    public static int getCompressionLevel() {
+        return Math.min(getPositive(COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL), MAX_COMPRESSION_LEVEL);
+    }
+
+    public static int getOutputFlushInterval() {
+        return getPositive(OUTPUT_FLUSH_INTERVAL, DEFAULT_OUTPUT_FLUSH_INTERVAL);
+    }
+
+    public static int getOutputFlushLines() {
+        return getPositive(OUTPUT_FLUSH_LINES, DEFAULT_OUTPUT_FLUSH_LINES);
+    }
+
+    public static int getOutputTailSize() {
+        return getPositive(OUTPUT_TAIL_SIZE, DEFAULT_OUTPUT_TAIL_SIZE);
+    }
+
+    public static int getCollectorRingSize() {
+        return getPositive(COLLECTOR_RING_SIZE, DEFAULT_COLLECTOR_RING_SIZE);
+    }
+
+    public static int getCollectorConnectThreads() {
+        return getPositive(COLLECTOR_CONNECT_THREADS, DEFAULT_COLLECTOR_CONNECT_THREADS);
+    }
+
+    public static int getProgressInterval() {
+        return getPositive(PROGRESS_INTERVAL, DEFAULT_PROGRESS_INTERVAL);
+    }
+
+    public static boolean isVirtualThreads() {
+        return !"false".equalsIgnoreCase(System.getProperty(VIRTUAL_THREADS));
+    }
+
+    /**
+     * Method to read an integer system property, falling back to the default if it is missing or not positive.
+     *
+     * @param name
+     *            name of the system property
+     * @param defaultValue
+     *            default value
+     * @return value of the property
+     */
+    static int getPositive(String name, int defaultValue) {
+        Integer value = Integer.getInteger(name);
+        return (value != null && value > 0) ? value : defaultValue;
+    }
+
+}
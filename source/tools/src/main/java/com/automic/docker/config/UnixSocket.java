@@ -0,0 +1,425 @@
+package com.automic.docker.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketImpl;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * {@link Socket} connected to a unix domain socket, such as /var/run/docker.sock. It is backed by a non blocking
+ * {@link SocketChannel} so that the read timeout can be honoured like for tcp sockets. Socket options which do not
+ * apply to unix domain sockets are ignored.
+ *
+ * Unix domain socket channels are available from Java 16 on, they are looked up by reflection so that the tool still
+ * runs on older Java versions as long as no unix socket url is used.
+ */
+class UnixSocket extends Socket {
+
+    private static final String TEMPORARILY_UNAVAILABLE = "temporarily unavailable";
+    private static final long CONNECT_RETRY_PAUSE = 10L;
+
+    private final String socketPath;
+
+    private SocketChannel channel;
+    private Selector readSelector;
+    private Selector writeSelector;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    private int soTimeout;
+    private boolean closed;
+    private boolean inputShutdown;
+    private boolean outputShutdown;
+
+    UnixSocket(String socketPath) throws SocketException {
+        super((SocketImpl) null);
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Connects to the socket path given at construction, the endpoint is ignored. The connection is made without
+     * blocking, so that the timeout applies when docker does not accept connections fast enough, e.g. when its backlog
+     * is full.
+     */
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+        if (channel != null) {
+            throw new SocketException("Already connected");
+        }
+        SocketChannel socketChannel = openChannel();
+        try {
+            socketChannel.configureBlocking(false);
+            connectChannel(socketChannel, timeout);
+            readSelector = Selector.open();
+            writeSelector = Selector.open();
+            socketChannel.register(readSelector, SelectionKey.OP_READ);
+            socketChannel.register(writeSelector, SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            socketChannel.close();
+            closeSelectors();
+            throw e;
+        }
+        channel = socketChannel;
+        inputStream = new ChannelInputStream();
+        outputStream = new ChannelOutputStream();
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint) throws IOException {
+        connect(endpoint, 0);
+    }
+
+    private void connectChannel(SocketChannel socketChannel, int timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        SocketAddress address = createAddress(socketPath);
+        while (true) {
+            try {
+                if (socketChannel.connect(address)) {
+                    return;
+                }
+                break;
+            } catch (SocketException e) {
+                // a full backlog is reported as EAGAIN instead of a pending connection, so it is tried again
+                if (String.valueOf(e.getMessage()).contains(TEMPORARILY_UNAVAILABLE)
+                        && (timeout == 0 || System.currentTimeMillis() < deadline)) {
+                    sleep(CONNECT_RETRY_PAUSE);
+                    continue;
+                }
+                // reported like a refused tcp connection
+                ConnectException connectException = new ConnectException(socketPath + " : " + e.getMessage());
+                connectException.initCause(e);
+                throw connectException;
+            }
+        }
+        try (Selector connectSelector = Selector.open()) {
+            socketChannel.register(connectSelector, SelectionKey.OP_CONNECT);
+            while (!socketChannel.finishConnect()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (timeout > 0 && remaining <= 0) {
+                    throw new SocketTimeoutException("Connect timed out");
+                }
+                connectSelector.select((timeout > 0) ? remaining : 0);
+                connectSelector.selectedKeys().clear();
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting");
+        }
+    }
+
+    static SocketChannel openChannel() throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            Method open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            return (SocketChannel) open.invoke(null, unix);
+        } catch (IllegalArgumentException | NoSuchMethodException | IllegalAccessException e) {
+            throw new SocketException("Unix domain sockets require Java 16 or later");
+        } catch (InvocationTargetException e) {
+            throw asIOException(e);
+        }
+    }
+
+    static SocketAddress createAddress(String path) throws IOException {
+        try {
+            Method of = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+            return (SocketAddress) of.invoke(null, path);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new SocketException("Unix domain sockets require Java 16 or later");
+        } catch (InvocationTargetException e) {
+            throw asIOException(e);
+        }
+    }
+
+    private static IOException asIOException(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new SocketException(String.valueOf(cause));
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        checkConnected();
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        checkConnected();
+        return outputStream;
+    }
+
+    private void checkConnected() throws SocketException {
+        if (closed) {
+            throw new SocketException("Socket is closed");
+        }
+        if (channel == null) {
+            throw new SocketException("Socket is not connected");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            closeSelectors();
+        }
+    }
+
+    private void closeSelectors() throws IOException {
+        // wake up a read or write waiting in select on another thread before the selector goes away
+        try {
+            if (readSelector != null) {
+                readSelector.wakeup();
+                readSelector.close();
+            }
+        } finally {
+            if (writeSelector != null) {
+                writeSelector.wakeup();
+                writeSelector.close();
+            }
+        }
+    }
+
+    /**
+     * Method to wait on a selector of the channel. A socket closed by another thread meanwhile is reported like a
+     * closed tcp socket instead of an unchecked {@link ClosedSelectorException}.
+     *
+     * @param selector
+     *            read or write selector
+     * @param timeout
+     *            milliseconds to wait at most, 0 to wait until the channel is ready
+     * @throws SocketException
+     *             if the socket has been closed
+     */
+    private void await(Selector selector, long timeout) throws IOException {
+        try {
+            selector.select(timeout);
+            selector.selectedKeys().clear();
+        } catch (ClosedSelectorException e) {
+            throw closedException(e);
+        }
+        if (!selector.isOpen() || !channel.isOpen()) {
+            throw closedException(null);
+        }
+    }
+
+    private static SocketException closedException(Throwable cause) {
+        SocketException e = new SocketException("Socket closed");
+        if (cause != null) {
+            e.initCause(cause);
+        }
+        return e;
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        checkConnected();
+        channel.shutdownInput();
+        inputShutdown = true;
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        checkConnected();
+        channel.shutdownOutput();
+        outputShutdown = true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel != null;
+    }
+
+    @Override
+    public boolean isBound() {
+        return channel != null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return inputShutdown;
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return outputShutdown;
+    }
+
+    @Override
+    public synchronized void setSoTimeout(int timeout) {
+        this.soTimeout = timeout;
+    }
+
+    @Override
+    public synchronized int getSoTimeout() {
+        return soTimeout;
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return 0;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return -1;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) {
+        // not applicable to unix domain sockets
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) {
+        // not applicable to unix domain sockets
+    }
+
+    @Override
+    public void setReuseAddress(boolean on) {
+        // not applicable to unix domain sockets
+    }
+
+    @Override
+    public void setSoLinger(boolean on, int linger) {
+        // not applicable to unix domain sockets
+    }
+
+    @Override
+    public void setReceiveBufferSize(int size) {
+        // the operating system default is used
+    }
+
+    @Override
+    public void setSendBufferSize(int size) {
+        // the operating system default is used
+    }
+
+    @Override
+    public String toString() {
+        return "UnixSocket[" + socketPath + "]";
+    }
+
+    /**
+     * Input stream waiting at most the read timeout for data.
+     */
+    private final class ChannelInputStream extends InputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int n = read(single, 0, 1);
+            return n <= 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            int n = channel.read(buffer);
+            int timeout = getSoTimeout();
+            long deadline = System.currentTimeMillis() + timeout;
+            // select may also return without a ready key, e.g. after a spurious wakeup, so only the deadline counts
+            while (n == 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (timeout > 0 && remaining <= 0) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                await(readSelector, (timeout > 0) ? remaining : 0);
+                n = channel.read(buffer);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocket.this.close();
+        }
+    }
+
+    /**
+     * Output stream blocking until all data has been written.
+     */
+    private final class ChannelOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    await(writeSelector, 0);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocket.this.close();
+        }
+    }
+
+}
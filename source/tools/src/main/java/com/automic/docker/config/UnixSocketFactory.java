@@ -0,0 +1,36 @@
+package com.automic.docker.config;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Socket factory connecting every route to the same unix domain socket. Requests are addressed to an http url (the
+ * host is only used for the Host header), the connection itself is made to the socket path.
+ */
+class UnixSocketFactory implements ConnectionSocketFactory {
+
+    private final String socketPath;
+
+    UnixSocketFactory(String socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return new UnixSocket(socketPath);
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+            InetSocketAddress localAddress, HttpContext context) throws IOException {
+        Socket socket = (sock != null) ? sock : createSocket(context);
+        socket.connect(remoteAddress, connectTimeout);
+        return socket;
+    }
+
+}
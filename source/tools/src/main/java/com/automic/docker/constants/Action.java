@@ -14,7 +14,7 @@ public enum Action {
     CREATE_CONTAINER, START_CONTAINER, STOP_CONTAINER, LIST_CONTAINERS, 
     REMOVE_CONTAINER, QUIET_REMOVE_CONTAINER, RESTART_CONTAINER, KILL_CONTAINER, PAUSE_CONTAINER,
     UNPAUSE_CONTAINER, WAIT_CONTAINER,INSPECT_CONTAINER,EXEC_CREATE,
-    START_EXEC,EXPORT_CONTAINER,REMOVE_IMAGE,BUILD_IMAGE,IMAGE_HISTORY,IMPORT_CONTAINER;
+    START_EXEC,EXPORT_CONTAINER,REMOVE_IMAGE,BUILD_IMAGE,IMAGE_HISTORY,IMPORT_CONTAINER,BATCH,LOGS,COLLECT_LOGS,EVENTS,STATS,FLEET,INVENTORY;
 
     public static String getActionNames() {
         Action[] actions = Action.values();
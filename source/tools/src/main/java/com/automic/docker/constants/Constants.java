@@ -15,6 +15,16 @@ public final class Constants {
      * http string constant
      */
     public static final String HTTP = "http";
+
+    /**
+     * unix string constant, protocol of docker urls pointing to a unix domain socket
+     */
+    public static final String UNIX = "unix";
+
+    /**
+     * url used to build the requests sent over a unix domain socket
+     */
+    public static final String UNIX_SOCKET_REQUEST_URL = "http://localhost";
     
     /**
      * "Unknown Error" string constant
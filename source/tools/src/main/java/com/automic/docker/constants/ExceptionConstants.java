@@ -51,6 +51,43 @@ public final class ExceptionConstants {
     public static final String EMPTY_IMAGE_NAME = "Image name required";
     public static final String MISSING_REQUIRED_PARAM = "[%s] is missing";
     public static final String EMPTY_REPO_NAME = "Repo must not be empty";
+    public static final String INVALID_MANIFEST = "Invalid manifest [%s]. Every entry must start with an action";
+    public static final String INVALID_TIMESTAMP = "Invalid timestamp [%s]. Expected seconds since the epoch";
+    public static final String INVALID_TAIL = "Invalid tail [%s]. Expected all or a number of lines";
+    public static final String INVALID_FILTER = "Invalid filter [%s]. Expected key=value, e.g. label=app=web";
+    public static final String NO_CONTAINER_MATCHED = "No running container matches the filter";
+    public static final String INVALID_PREDICATE = "Invalid predicate [%s]. Expected path=value, e.g. Action=die";
+    public static final String INVALID_WAIT_CONDITION = "Invalid condition [%s]. Expected ALL_EXITED, ANY_EXITED, "
+            + "HEALTHY or STATE=<state>";
+    public static final String WAIT_DEADLINE_REACHED = "Condition not met within the deadline of %d seconds";
+    public static final String WAIT_EVENTS_ENDED = "Event stream ended before the condition was met";
+    public static final String WAIT_CONDITION_UNREACHABLE = "Condition can no longer be met";
+    public static final String UNABLE_TO_INSPECT_CONTAINER = "Unable to inspect container [%s] : %s";
+    public static final String NO_LOG_STREAM = "Unable to open the log stream of any container";
+    public static final String INVALID_STATS_MODE = "Invalid mode [%s]. Expected STREAM or POLL";
+    public static final String CONTAINER_NOT_RUNNING = "Container [%s] is not running";
+    public static final String NO_STATS_SAMPLES = "Unable to sample any container";
+    public static final String INVALID_PULL_POLICY = "Invalid pull policy [%s]. Expected ALWAYS, IF_MISSING or "
+            + "IF_CHANGED";
+    public static final String AMBIGUOUS_EXPECTED_DIGEST = "Expected digest given for several images %s. Expected "
+            + "the digest with each reference, e.g. nginx:1.25@sha256:...";
+    public static final String UNABLE_TO_INSPECT_IMAGE = "Unable to inspect image [%s] : %s";
+    public static final String IMAGES_NOT_PULLED = "%d of %d images could not be pulled";
+    public static final String INVALID_RECORDING = "Invalid recording [%s]. Possibly not a stats recording";
+    public static final String NO_CONTAINER_MATCHES_FILTER = "No container matches the filter [%s]";
+    public static final String INVALID_SELECTION = "Invalid selection [%s]. Expected e.g. "
+            + "age>2h,state=running,image=nginx*,name=web*,label=app=web";
+    public static final String INVALID_SELECTION_FORMAT = "Invalid selection format [%s]. Expected LINES or XML";
+    public static final String INVALID_IMAGE_SELECTION = "Invalid image selection [%s]. Expected e.g. "
+            + "dangling=true or repo=ci/*,age>7d,unused=true";
+    public static final String UNABLE_TO_LIST = "Unable to list the %s : %s";
+    public static final String IMAGES_NOT_REMOVED = "%d of %d images could not be removed";
+    public static final String INVALID_HOST_FILE = "Host file [%s] is invalid, expected [name] url [certificates] : %s";
+    public static final String DUPLICATE_HOST = "Host [%s] is defined more than once in host file [%s]";
+    public static final String FLEET_HOSTS_FAILED = "Action failed on %d of %d hosts";
+    public static final String INVALID_INVENTORY_KIND = "Invalid inventory [%s]. Expected CONTAINERS or IMAGES";
+    public static final String INVALID_INVENTORY_MODE = "Invalid inventory mode [%s]. Expected FULL or DIFF";
+    public static final String CONTAINERS_NOT_CHANGED = "%d of %d containers could not be changed (%s)";
 
     private ExceptionConstants() {
     }
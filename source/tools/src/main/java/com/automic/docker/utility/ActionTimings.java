@@ -0,0 +1,326 @@
+package com.automic.docker.utility;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Timings of one action run, split into the phases of {@link com.automic.docker.actions.AbstractAction} and the http
+ * calls made during the run. The timings are bound to the thread executing the action, so the transport can add its
+ * calls without the action passing anything along; pools created by {@link WorkerPool} bind them to their workers.
+ *
+ * The http calls are aggregated per method and endpoint, ids of containers, images and execs in the path are replaced
+ * by {id}, and only the {@value #SLOWEST_CALLS} slowest calls are kept in detail, so that long running actions making
+ * many calls, e.g. polling statistics, do not hold on to every call.
+ *
+ * At the end of the run the timings are logged, and printed to the job report if the system property
+ * {@value #SUMMARY_PROPERTY} is true. If the JVM supports Java Flight Recorder, every phase, action and http call is
+ * also emitted as a custom JFR event, which costs next to nothing unless a recording is running. Set the system
+ * property {@value #JFR_PROPERTY} to false to disable the events.
+ */
+public final class ActionTimings {
+
+    /**
+     * If true, a timing summary is printed at the end of the job report
+     */
+    public static final String SUMMARY_PROPERTY = "docker.tool.timing.summary";
+
+    /**
+     * If false, no JFR events are emitted
+     */
+    public static final String JFR_PROPERTY = "docker.tool.timing.jfr";
+
+    private static final Logger LOGGER = LogManager.getLogger(ActionTimings.class);
+
+    private static final String JFR_EVENT_CLASS = "jdk.jfr.Event";
+    private static final String JFR_LISTENER_CLASS = "com.automic.docker.utility.jfr.JfrTimingListener";
+    private static final double NANOS_PER_MILLI = 1000000d;
+    private static final int SLOWEST_CALLS = 5;
+    private static final int MAX_ENDPOINTS = 50;
+    private static final String OTHER_ENDPOINTS = "other endpoints";
+    private static final String ID_SEGMENT = "/{id}";
+    private static final String ID_PATTERN = "/[0-9a-fA-F]{12,64}(?=/|$)";
+
+    private static final ThreadLocal<ActionTimings> CURRENT = new ThreadLocal<ActionTimings>();
+    private static final AtomicBoolean FIRST_ACTION = new AtomicBoolean(true);
+    private static final TimingListener LISTENER = loadListener();
+
+    private final String action;
+    private final ActionTimings previous;
+    private final long startNanos;
+    private final Object handle;
+    private final List<String> phaseNames = new ArrayList<String>();
+    private final List<Long> phaseNanos = new ArrayList<Long>();
+    private final Map<String, EndpointTimings> endpoints = new LinkedHashMap<String, EndpointTimings>();
+    private final PriorityQueue<HttpCallTiming> slowest = new PriorityQueue<HttpCallTiming>(SLOWEST_CALLS + 1,
+            new Comparator<HttpCallTiming>() {
+                @Override
+                public int compare(HttpCallTiming a, HttpCallTiming b) {
+                    return Long.compare(a.getTotalNanos(), b.getTotalNanos());
+                }
+            });
+    private long jvmStartupMillis = -1;
+
+    private String phase;
+    private Object phaseHandle;
+    private long phaseStartNanos;
+
+    private ActionTimings(String action, ActionTimings previous) {
+        this.action = action;
+        this.previous = previous;
+        if (FIRST_ACTION.getAndSet(false) && Boolean.getBoolean(SUMMARY_PROPERTY)) {
+            // time from the start of the JVM until the first action, only meaningful for a JVM started per job
+            jvmStartupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        }
+        this.handle = LISTENER.actionStarted(action);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Method to start timing an action run on the current thread.
+     *
+     * @param action
+     *            name of the action
+     * @return the timings of the run
+     */
+    public static ActionTimings start(String action) {
+        ActionTimings timings = new ActionTimings(action, CURRENT.get());
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * @return the timings of the action running on the current thread, null if none is running
+     */
+    public static ActionTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Method to run a task with the timings of the current thread, e.g. on a worker of a pool, so that the http calls
+     * of the task are recorded for the running action.
+     *
+     * @param task
+     *            the task
+     * @return the task bound to the timings, or the task itself if no action is running
+     */
+    public static Runnable propagate(final Runnable task) {
+        final ActionTimings timings = CURRENT.get();
+        if (timings == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                ActionTimings previous = CURRENT.get();
+                CURRENT.set(timings);
+                try {
+                    task.run();
+                } finally {
+                    if (previous != null) {
+                        CURRENT.set(previous);
+                    } else {
+                        CURRENT.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    static TimingListener getListener() {
+        return LISTENER;
+    }
+
+    /**
+     * Method to start the next phase, the current phase (if any) ends successfully.
+     *
+     * @param name
+     *            name of the phase
+     */
+    public void begin(String name) {
+        endPhase(true);
+        phase = name;
+        phaseHandle = LISTENER.phaseStarted(action, name);
+        phaseStartNanos = System.nanoTime();
+    }
+
+    private void endPhase(boolean success) {
+        if (phase == null) {
+            return;
+        }
+        phaseNames.add(phase);
+        phaseNanos.add(System.nanoTime() - phaseStartNanos);
+        LISTENER.phaseEnded(phaseHandle, success);
+        phase = null;
+        phaseHandle = null;
+    }
+
+    void httpCallFinished(HttpCallTiming call) {
+        String key = call.getMethod() + ' ' + call.getEndpoint().replaceAll(ID_PATTERN, ID_SEGMENT);
+        synchronized (endpoints) {
+            EndpointTimings timings = endpoints.get(key);
+            if (timings == null) {
+                // endpoints with names instead of ids, e.g. images, could otherwise grow without bounds
+                key = (endpoints.size() < MAX_ENDPOINTS) ? key : OTHER_ENDPOINTS;
+                timings = endpoints.get(key);
+                if (timings == null) {
+                    timings = new EndpointTimings();
+                    endpoints.put(key, timings);
+                }
+            }
+            timings.add(call);
+            slowest.add(call);
+            if (slowest.size() > SLOWEST_CALLS) {
+                // the head is the fastest of the kept calls
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * Method to end the run. The current phase ends, the timings are logged and, if requested, printed.
+     *
+     * @param success
+     *            true if the action completed without an exception
+     */
+    public void finish(boolean success) {
+        endPhase(success);
+        long totalNanos = System.nanoTime() - startNanos;
+        LISTENER.actionEnded(handle, success);
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+
+        List<String> lines = describe(totalNanos);
+        for (String line : lines) {
+            LOGGER.info(line);
+        }
+        if (Boolean.getBoolean(SUMMARY_PROPERTY)) {
+            for (String line : lines) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    private List<String> describe(long totalNanos) {
+        StringBuilder sb = new StringBuilder("Timing summary [").append(action).append("]:");
+        if (jvmStartupMillis >= 0) {
+            sb.append(" jvm startup ").append(jvmStartupMillis).append(" ms,");
+        }
+        for (int i = 0; i < phaseNames.size(); i++) {
+            sb.append(' ').append(phaseNames.get(i)).append(' ').append(formatMillis(phaseNanos.get(i))).append(',');
+        }
+        sb.append(" total ").append(formatMillis(totalNanos));
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(sb.toString());
+        synchronized (endpoints) {
+            for (Map.Entry<String, EndpointTimings> entry : endpoints.entrySet()) {
+                lines.add("  " + entry.getKey() + ": " + entry.getValue().describe());
+            }
+            List<HttpCallTiming> calls = new ArrayList<HttpCallTiming>(slowest);
+            Collections.sort(calls, Collections.reverseOrder(slowest.comparator()));
+            for (HttpCallTiming call : calls) {
+                lines.add("  slowest " + formatMillis(call.getTotalNanos()) + ": " + call.describe());
+            }
+        }
+        return lines;
+    }
+
+    static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f ms", nanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Method to create the listener emitting JFR events. It is loaded by name so that the tool still runs on JVMs
+     * without JFR, and builds on JDKs without it.
+     */
+    private static TimingListener loadListener() {
+        if (!Boolean.parseBoolean(System.getProperty(JFR_PROPERTY, Boolean.TRUE.toString()))) {
+            return new NoTimingListener();
+        }
+        try {
+            Class.forName(JFR_EVENT_CLASS);
+            return (TimingListener) Class.forName(JFR_LISTENER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.debug("Java Flight Recorder events are not available", e);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("Unable to create Java Flight Recorder listener", e);
+        }
+        return new NoTimingListener();
+    }
+
+    /**
+     * Aggregated timings and sizes of the calls to one endpoint.
+     */
+    private static final class EndpointTimings {
+
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private long bytesOut;
+        private long bytesIn;
+
+        void add(HttpCallTiming call) {
+            count++;
+            totalNanos += call.getTotalNanos();
+            maxNanos = Math.max(maxNanos, call.getTotalNanos());
+            bytesOut += call.getBytesOut();
+            bytesIn += call.getBytesIn();
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT, "%d calls, total %s, max %s, sent %d bytes, received %d bytes", count,
+                    formatMillis(totalNanos), formatMillis(maxNanos), bytesOut, bytesIn);
+        }
+    }
+
+    /**
+     * Listener ignoring all timings.
+     */
+    private static final class NoTimingListener implements TimingListener {
+
+        @Override
+        public Object actionStarted(String action) {
+            return null;
+        }
+
+        @Override
+        public void actionEnded(Object handle, boolean success) {
+            // nothing to do
+        }
+
+        @Override
+        public Object phaseStarted(String action, String phase) {
+            return null;
+        }
+
+        @Override
+        public void phaseEnded(Object handle, boolean success) {
+            // nothing to do
+        }
+
+        @Override
+        public Object httpCallStarted(String method, String endpoint) {
+            return null;
+        }
+
+        @Override
+        public void httpCallEnded(Object handle, HttpCallTiming call) {
+            // nothing to do
+        }
+    }
+
+}
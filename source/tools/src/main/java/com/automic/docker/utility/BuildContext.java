@@ -0,0 +1,280 @@
+package com.automic.docker.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.config.StreamingEntity;
+
+/**
+ * Build context read from a directory. The directory is scanned once, applying the rules of its .dockerignore file,
+ * and the resulting entries are then streamed as a tar archive directly into the request body, without writing an
+ * intermediate tar file. The Dockerfile and the .dockerignore file are always sent, even if they are ignored, as docker
+ * needs them.
+ */
+public final class BuildContext {
+
+    private static final Logger LOGGER = LogManager.getLogger(BuildContext.class);
+
+    private static final String SEPARATOR = "/";
+    private static final int DEFAULT_DIRECTORY_MODE = 0755;
+    private static final int DEFAULT_FILE_MODE = 0644;
+    private static final int DEFAULT_EXECUTABLE_MODE = 0755;
+
+    private final Path root;
+    private final DockerIgnore dockerIgnore;
+    private final String dockerfile;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private int fileCount;
+    private long totalSize;
+
+    private BuildContext(Path root, DockerIgnore dockerIgnore, String dockerfile) {
+        this.root = root;
+        this.dockerIgnore = dockerIgnore;
+        this.dockerfile = dockerfile;
+    }
+
+    /**
+     * Method to scan a context directory.
+     *
+     * @param root
+     *            context directory
+     * @param dockerfile
+     *            path of the Dockerfile relative to the context directory
+     * @return the build context
+     * @throws IOException
+     */
+    public static BuildContext scan(Path root, String dockerfile) throws IOException {
+        BuildContext context = new BuildContext(root, DockerIgnore.read(root), dockerfile);
+        context.scanDirectory(root, "");
+        return context;
+    }
+
+    private void scanDirectory(Path dir, String prefix) throws IOException {
+        List<Path> children = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        }
+        // sorted so that the same directory always results in the same archive
+        Collections.sort(children);
+
+        for (Path child : children) {
+            String name = prefix + child.getFileName().toString();
+            BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            boolean ignored = dockerIgnore.isIgnored(name) && !isAlwaysSent(name);
+            if (attrs.isDirectory()) {
+                if (ignored && dockerIgnore.canSkipDirectory(name) && !containsAlwaysSent(name)) {
+                    continue;
+                }
+                if (!ignored) {
+                    entries.add(new Entry(name, child, attrs, getMode(child, attrs)));
+                }
+                scanDirectory(child, name + SEPARATOR);
+            } else if (!ignored) {
+                Entry entry = new Entry(name, child, attrs, getMode(child, attrs));
+                entries.add(entry);
+                if (attrs.isRegularFile()) {
+                    fileCount++;
+                    totalSize += entry.size;
+                }
+            }
+        }
+    }
+
+    private boolean isAlwaysSent(String name) {
+        return name.equals(dockerfile) || name.equals(DockerIgnore.FILE_NAME);
+    }
+
+    /**
+     * @return true if the Dockerfile is inside the directory, which then has to be scanned even if it is ignored
+     */
+    private boolean containsAlwaysSent(String directory) {
+        return dockerfile.startsWith(directory + SEPARATOR);
+    }
+
+    private static int getMode(Path path, BasicFileAttributes attrs) {
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (view != null) {
+            try {
+                int mode = 0;
+                Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+                for (PosixFilePermission permission : PosixFilePermission.values()) {
+                    mode <<= 1;
+                    if (permissions.contains(permission)) {
+                        mode |= 1;
+                    }
+                }
+                return mode;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read permissions of " + path, e);
+            }
+        }
+        if (attrs.isDirectory()) {
+            return DEFAULT_DIRECTORY_MODE;
+        }
+        return Files.isExecutable(path) ? DEFAULT_EXECUTABLE_MODE : DEFAULT_FILE_MODE;
+    }
+
+    /**
+     * @return number of regular files in the context
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return total size of the regular files in the context
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Method to get the largest files of the context.
+     *
+     * @param limit
+     *            maximum number of files
+     * @return map of relative path to size, largest first
+     */
+    public Map<String, Long> getLargestFiles(int limit) {
+        List<Entry> files = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.regularFile) {
+                files.add(entry);
+            }
+        }
+        Collections.sort(files, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return Long.compare(e2.size, e1.size);
+            }
+        });
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Entry entry : files.subList(0, Math.min(limit, files.size()))) {
+            result.put(entry.name, entry.size);
+        }
+        return result;
+    }
+
+    /**
+     * Method to get the size of the top level entries of the context, files below a directory count for the directory.
+     *
+     * @param limit
+     *            maximum number of entries
+     * @return map of top level name to size, largest first
+     */
+    public Map<String, Long> getLargestTopLevelEntries(int limit) {
+        final Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        for (Entry entry : entries) {
+            if (entry.regularFile) {
+                int separator = entry.name.indexOf(SEPARATOR);
+                String topLevel = (separator < 0) ? entry.name : entry.name.substring(0, separator + 1);
+                Long size = sizes.get(topLevel);
+                sizes.put(topLevel, (size == null ? 0 : size) + entry.size);
+            }
+        }
+        List<String> names = new ArrayList<String>(sizes.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String n1, String n2) {
+                return Long.compare(sizes.get(n2), sizes.get(n1));
+            }
+        });
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (String name : names.subList(0, Math.min(limit, names.size()))) {
+            result.put(name, sizes.get(name));
+        }
+        return result;
+    }
+
+    /**
+     * Creates the request body streaming the context as a tar archive. Its length is not known in advance, so it is
+     * sent chunked.
+     *
+     * @return an instance of {@link StreamingEntity}
+     */
+    public StreamingEntity asEntity() {
+        return new StreamingEntity() {
+
+            @Override
+            public long getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream out, byte[] buffer) throws IOException {
+                writeTar(new BufferedOutputStream(out, buffer.length), buffer);
+            }
+        };
+    }
+
+    private void writeTar(OutputStream out, byte[] buffer) throws IOException {
+        TarArchiveWriter tar = new TarArchiveWriter(out);
+        for (Entry entry : entries) {
+            long mtime = entry.lastModified;
+            if (entry.directory) {
+                tar.putDirectory(entry.name, entry.mode, mtime);
+            } else if (entry.symbolicLink) {
+                tar.putSymbolicLink(entry.name, Files.readSymbolicLink(entry.path).toString(), mtime);
+            } else if (entry.regularFile) {
+                try (InputStream in = Files.newInputStream(entry.path)) {
+                    tar.putFile(entry.name, entry.mode, entry.size, mtime, in, buffer);
+                }
+            } else {
+                LOGGER.warn("Skipping special file " + entry.path);
+            }
+        }
+        tar.finish();
+        LOGGER.info("Streamed build context " + root + " as tar archive of " + tar.getBytesWritten() + " bytes");
+    }
+
+    /**
+     * An entry of the context.
+     */
+    private static final class Entry {
+
+        private final String name;
+        private final Path path;
+        private final boolean directory;
+        private final boolean regularFile;
+        private final boolean symbolicLink;
+        private final long size;
+        private final long lastModified;
+        private final int mode;
+
+        Entry(String name, Path path, BasicFileAttributes attrs, int mode) {
+            this.name = name;
+            this.path = path;
+            this.directory = attrs.isDirectory();
+            this.regularFile = attrs.isRegularFile();
+            this.symbolicLink = attrs.isSymbolicLink();
+            this.size = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().to(TimeUnit.SECONDS);
+            this.mode = mode;
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Selection of containers of a docker 'list containers' response, given as comma separated criteria which all have to
+ * match, e.g. age>2h,state=running|paused,image=nginx*,label=app=web:
+ * <ul>
+ * <li>age&gt;, age&gt;=, age&lt; or age&lt;= a number of seconds, optionally followed by s, m, h or d, compared to
+ * the Created timestamp</li>
+ * <li>state= one or more states separated by |</li>
+ * <li>image= the image with or without tag</li>
+ * <li>name= a name without the leading /</li>
+ * <li>label= a label key, or key=value</li>
+ * </ul>
+ * Values of image and name may end with * to match a prefix. The response is read one container at a time, so only
+ * one container is held in memory.
+ */
+public class ContainerSelector {
+
+    private static final Logger LOGGER = LogManager.getLogger(ContainerSelector.class);
+
+    private static final String STATE = "state";
+    private static final String IMAGE = "image";
+    private static final String NAME = "name";
+    private static final String LABEL = "label";
+
+    private final List<Criterion> criteria = new ArrayList<Criterion>();
+    private final long now;
+
+    private ContainerSelector(long now) {
+        this.now = now;
+    }
+
+    /**
+     * Method to parse a selection.
+     *
+     * @param expression
+     *            comma separated criteria
+     * @param now
+     *            current time in seconds since the epoch, which the age is measured to
+     * @return the selection
+     * @throws DockerException
+     *             if a criterion is invalid
+     */
+    public static ContainerSelector parse(String expression, long now) throws DockerException {
+        ContainerSelector selector = new ContainerSelector(now);
+        for (String entry : expression.split(",")) {
+            Criterion criterion = parseCriterion(entry.trim());
+            if (criterion == null) {
+                String msg = String.format(ExceptionConstants.INVALID_SELECTION, expression);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            selector.criteria.add(criterion);
+        }
+        return selector;
+    }
+
+    private static Criterion parseCriterion(String entry) {
+        if (SelectionCriteria.isAge(entry)) {
+            SelectionCriteria.Age age = SelectionCriteria.parseAge(entry);
+            return (age == null) ? null : new Criterion(SelectionCriteria.AGE, null, null, age);
+        }
+        int separator = entry.indexOf('=');
+        if (separator <= 0 || separator == entry.length() - 1) {
+            return null;
+        }
+        String key = entry.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        String value = entry.substring(separator + 1).trim();
+        switch (key) {
+            case STATE:
+            case IMAGE:
+            case NAME:
+                return new Criterion(key, null, value, null);
+            case LABEL:
+                int labelSeparator = value.indexOf('=');
+                return (labelSeparator < 0) ? new Criterion(key, null, value, null) : new Criterion(key,
+                        value.substring(labelSeparator + 1), value.substring(0, labelSeparator), null);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param container
+     *            one container of a 'list containers' response
+     * @return true if the container matches all criteria
+     */
+    public boolean matches(JSONObject container) {
+        for (Criterion criterion : criteria) {
+            if (!criterion.matches(container, now)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to read a 'list containers' response one container at a time and hand the matching ones to the handler.
+     *
+     * @param is
+     *            stream containing the json array
+     * @param handler
+     *            handler of the matching containers
+     * @return number of containers read
+     * @throws IOException
+     *             if the handler fails
+     */
+    public int select(InputStream is, Handler handler) throws IOException {
+        JSONTokener tokener = new JSONTokener(new InputStreamReader(is, StandardCharsets.UTF_8));
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("A JSONArray text must start with '['");
+        }
+        int count = 0;
+        char ch = tokener.nextClean();
+        if (ch == ']') {
+            return count;
+        }
+        tokener.back();
+        while (true) {
+            JSONObject container = (JSONObject) tokener.nextValue();
+            count++;
+            if (matches(container)) {
+                handler.matched(container);
+            }
+            ch = tokener.nextClean();
+            if (ch == ']') {
+                return count;
+            }
+            if (ch != ',') {
+                throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
+    /**
+     * Receiver of the containers matching a selection.
+     */
+    public interface Handler {
+
+        /**
+         * @param container
+         *            the matching container
+         * @throws IOException
+         *             if the container cannot be written
+         */
+        void matched(JSONObject container) throws IOException;
+    }
+
+    /**
+     * One criterion of a selection. For the age only the age is set, for a label the key is the value and the
+     * operator is the label value, if any.
+     */
+    private static final class Criterion {
+
+        private final String key;
+        private final String operator;
+        private final String value;
+        private final SelectionCriteria.Age age;
+
+        private Criterion(String key, String operator, String value, SelectionCriteria.Age age) {
+            this.key = key;
+            this.operator = operator;
+            this.value = value;
+            this.age = age;
+        }
+
+        private boolean matches(JSONObject container, long now) {
+            switch (key) {
+                case SelectionCriteria.AGE:
+                    long created = container.optLong("Created", -1);
+                    return created >= 0 && age.matches(now - created);
+                case STATE:
+                    return Arrays.asList(value.split("\\|")).contains(container.optString("State"));
+                case IMAGE:
+                    String image = container.optString("Image");
+                    return matchesValue(image) || (value.indexOf(':') < 0 && image.startsWith(value + ":"));
+                case NAME:
+                    JSONArray names = container.optJSONArray("Names");
+                    for (int i = 0; names != null && i < names.length(); i++) {
+                        String name = names.optString(i);
+                        if (matchesValue(name.startsWith("/") ? name.substring(1) : name)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    JSONObject labels = container.optJSONObject("Labels");
+                    if (labels == null || !labels.has(value)) {
+                        return false;
+                    }
+                    return operator == null || operator.equals(labels.optString(value));
+            }
+        }
+
+        private boolean matchesValue(String actual) {
+            return SelectionCriteria.matchesValue(value, actual);
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.automic.docker.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Aggregation of the stats samples docker reports for one container. Every sample is reduced to a few numbers, the
+ * cpu and memory usage, the network and block io rates and the number of processes, which are added to a
+ * {@link MetricSeries} each. Rates are computed between consecutive samples, so the first sample only yields the
+ * gauges.
+ */
+public class ContainerStats {
+
+    /**
+     * Names of the metrics, in the order they are reported
+     */
+    public static final String[] METRICS = { "cpu_percent", "memory_bytes", "memory_percent",
+            "net_rx_bytes_per_sec", "net_tx_bytes_per_sec", "block_read_bytes_per_sec", "block_write_bytes_per_sec",
+            "pids" };
+
+    private static final int CPU_PERCENT = 0;
+    private static final int MEMORY_BYTES = 1;
+    private static final int MEMORY_PERCENT = 2;
+    private static final int NET_RX = 3;
+    private static final int NET_TX = 4;
+    private static final int BLOCK_READ = 5;
+    private static final int BLOCK_WRITE = 6;
+    private static final int PIDS = 7;
+
+    /**
+     * Factors the metrics are multiplied with when they are recorded, to keep two decimals of the percentages
+     */
+    public static final int[] RECORDING_SCALES = { 100, 1, 100, 1, 1, 1, 1, 1 };
+
+    private static final double PERCENT = 100d;
+    private static final double NANOS_PER_MILLI = 1000000d;
+    private static final double NANOS_PER_SECOND = 1000000000d;
+    private static final double[] PERCENTILES = { 50, 95, 99 };
+
+    private final String container;
+    private final String name;
+    private final MetricSeries[] series = new MetricSeries[METRICS.length];
+    private final double[] values = new double[METRICS.length];
+    private long samples;
+    private StatsRecording recording;
+
+    // counters of the previous sample, to compute the rates
+    private long previousRead = -1;
+    private double previousRx;
+    private double previousTx;
+    private double previousBlockRead;
+    private double previousBlockWrite;
+
+    /**
+     * @param container
+     *            id of the container
+     * @param name
+     *            name of the container
+     * @param capacity
+     *            number of samples kept per metric for the percentiles
+     */
+    public ContainerStats(String container, String name, int capacity) {
+        this.container = container;
+        this.name = name;
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new MetricSeries(capacity);
+        }
+    }
+
+    /**
+     * Method to add a sample as returned by the docker stats API, and to append it to the recording if any.
+     *
+     * @param stats
+     *            the sample
+     * @throws DockerException
+     *             if the recording cannot be written
+     */
+    public synchronized void add(JSONObject stats) throws DockerException {
+        samples++;
+        Arrays.fill(values, Double.NaN);
+        JSONObject cpu = stats.optJSONObject("cpu_stats");
+        JSONObject precpu = stats.optJSONObject("precpu_stats");
+        if (cpu != null && precpu != null) {
+            double cpuDelta = totalUsage(cpu) - totalUsage(precpu);
+            double systemDelta = cpu.optDouble("system_cpu_usage", 0) - precpu.optDouble("system_cpu_usage", 0);
+            if (systemDelta > 0 && precpu.optDouble("system_cpu_usage", 0) > 0) {
+                values[CPU_PERCENT] = cpuDelta / systemDelta * onlineCpus(cpu) * PERCENT;
+            }
+        }
+
+        JSONObject memory = stats.optJSONObject("memory_stats");
+        if (memory != null && memory.has("usage")) {
+            double usage = memory.optDouble("usage", 0);
+            JSONObject memoryDetails = memory.optJSONObject("stats");
+            if (memoryDetails != null) {
+                // page cache can be reclaimed, docker cli subtracts it as well (cgroup v1: cache, v2: inactive_file)
+                usage -= memoryDetails.has("inactive_file") ? memoryDetails.optDouble("inactive_file", 0)
+                        : memoryDetails.optDouble("cache", 0);
+            }
+            values[MEMORY_BYTES] = usage;
+            double limit = memory.optDouble("limit", 0);
+            if (limit > 0) {
+                values[MEMORY_PERCENT] = usage / limit * PERCENT;
+            }
+        }
+
+        JSONObject pids = stats.optJSONObject("pids_stats");
+        if (pids != null && pids.has("current")) {
+            values[PIDS] = pids.optDouble("current", 0);
+        }
+
+        double rx = 0;
+        double tx = 0;
+        JSONObject networks = stats.optJSONObject("networks");
+        if (networks != null) {
+            Iterator<?> names = networks.keys();
+            while (names.hasNext()) {
+                JSONObject network = networks.optJSONObject((String) names.next());
+                if (network != null) {
+                    rx += network.optDouble("rx_bytes", 0);
+                    tx += network.optDouble("tx_bytes", 0);
+                }
+            }
+        }
+        double blockRead = 0;
+        double blockWrite = 0;
+        JSONObject blkio = stats.optJSONObject("blkio_stats");
+        JSONArray ioBytes = (blkio != null) ? blkio.optJSONArray("io_service_bytes_recursive") : null;
+        if (ioBytes != null) {
+            for (int i = 0; i < ioBytes.length(); i++) {
+                JSONObject entry = ioBytes.optJSONObject(i);
+                String op = (entry != null) ? entry.optString("op").toLowerCase(Locale.ROOT) : "";
+                if ("read".equals(op)) {
+                    blockRead += entry.optDouble("value", 0);
+                } else if ("write".equals(op)) {
+                    blockWrite += entry.optDouble("value", 0);
+                }
+            }
+        }
+
+        String readTime = stats.optString("read", "");
+        byte[] readBytes = readTime.getBytes(StandardCharsets.US_ASCII);
+        long read = DockerTimestamp.parseNanos(readBytes, 0, readBytes.length);
+        if (read > 0 && previousRead > 0 && read > previousRead) {
+            double seconds = (read - previousRead) / NANOS_PER_SECOND;
+            values[NET_RX] = (rx - previousRx) / seconds;
+            values[NET_TX] = (tx - previousTx) / seconds;
+            values[BLOCK_READ] = (blockRead - previousBlockRead) / seconds;
+            values[BLOCK_WRITE] = (blockWrite - previousBlockWrite) / seconds;
+        }
+        if (read > 0) {
+            previousRead = read;
+            previousRx = rx;
+            previousTx = tx;
+            previousBlockRead = blockRead;
+            previousBlockWrite = blockWrite;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            series[i].add(values[i]);
+        }
+        if (recording != null) {
+            recording.append((read > 0) ? (long) (read / NANOS_PER_MILLI) : System.currentTimeMillis(), values);
+        }
+    }
+
+    private static double totalUsage(JSONObject cpuStats) {
+        JSONObject usage = cpuStats.optJSONObject("cpu_usage");
+        return (usage != null) ? usage.optDouble("total_usage", 0) : 0;
+    }
+
+    private static int onlineCpus(JSONObject cpuStats) {
+        int online = cpuStats.optInt("online_cpus", 0);
+        if (online == 0) {
+            JSONObject usage = cpuStats.optJSONObject("cpu_usage");
+            JSONArray perCpu = (usage != null) ? usage.optJSONArray("percpu_usage") : null;
+            online = (perCpu != null) ? perCpu.length() : 1;
+        }
+        return online;
+    }
+
+    /**
+     * @return id of the container
+     */
+    public String getContainer() {
+        return container;
+    }
+
+    /**
+     * @return name of the container
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Method to record every sample added from now on.
+     *
+     * @param recording
+     *            recording of the container, which is closed by the caller
+     */
+    public synchronized void setRecording(StatsRecording recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * @return number of samples added
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Method to get the summary of each metric with at least one sample: container, metric, samples, min, avg, p50,
+     * p95, p99 and max.
+     *
+     * @return one map of fields per metric
+     */
+    public synchronized Map<String, Map<String, Object>> summarize() {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<String, Map<String, Object>>();
+        for (int i = 0; i < METRICS.length; i++) {
+            MetricSeries metric = series[i];
+            if (metric.getCount() == 0) {
+                continue;
+            }
+            Map<String, Object> fields = new LinkedHashMap<String, Object>();
+            fields.put("container", container);
+            fields.put("name", name);
+            fields.put("metric", METRICS[i]);
+            fields.put("samples", metric.getCount());
+            fields.put("min", format(metric.getMin()));
+            fields.put("avg", format(metric.getAverage()));
+            for (double percentile : PERCENTILES) {
+                fields.put("p" + (int) percentile, format(metric.getPercentile(percentile)));
+            }
+            fields.put("max", format(metric.getMax()));
+            summary.put(METRICS[i], fields);
+        }
+        return summary;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Rules of a .dockerignore file, evaluated the way docker does: patterns use the filepath.Match syntax of Go extended
+ * by **, patterns starting with ! re-include paths, the last matching pattern wins and a pattern matching a directory
+ * also matches everything below it. Paths are relative to the build context and use / as separator.
+ */
+public final class DockerIgnore {
+
+    /**
+     * Name of the ignore file in the root of the build context
+     */
+    public static final String FILE_NAME = ".dockerignore";
+
+    private static final String COMMENT_PREFIX = "#";
+    private static final String EXCLUSION_PREFIX = "!";
+    private static final String SEPARATOR = "/";
+
+    private final List<Rule> rules;
+    private final boolean hasExclusions;
+
+    private DockerIgnore(List<Rule> rules) {
+        this.rules = rules;
+        boolean exclusions = false;
+        for (Rule rule : rules) {
+            exclusions |= rule.exclusion;
+        }
+        this.hasExclusions = exclusions;
+    }
+
+    /**
+     * Method to read the .dockerignore file of a build context. A context without such a file ignores nothing.
+     *
+     * @param contextDir
+     *            root of the build context
+     * @return the rules
+     * @throws IOException
+     */
+    public static DockerIgnore read(Path contextDir) throws IOException {
+        Path file = contextDir.resolve(FILE_NAME);
+        List<String> lines = Files.isRegularFile(file) ? Files.readAllLines(file, StandardCharsets.UTF_8)
+                : new ArrayList<String>();
+        return parse(lines);
+    }
+
+    /**
+     * Method to parse the lines of a .dockerignore file.
+     *
+     * @param lines
+     *            lines of the file
+     * @return the rules
+     */
+    public static DockerIgnore parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<Rule>();
+        for (String line : lines) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            boolean exclusion = pattern.startsWith(EXCLUSION_PREFIX);
+            if (exclusion) {
+                pattern = pattern.substring(1).trim();
+            }
+            pattern = clean(pattern);
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(pattern, exclusion));
+            }
+        }
+        return new DockerIgnore(rules);
+    }
+
+    /**
+     * Method to check if a path of the build context is ignored.
+     *
+     * @param relativePath
+     *            path relative to the root of the build context
+     * @return true if the path must not be sent to docker
+     */
+    public boolean isIgnored(String relativePath) {
+        String path = clean(relativePath);
+        boolean ignored = false;
+        for (Rule rule : rules) {
+            if (ignored == rule.exclusion && rule.matches(path)) {
+                ignored = !rule.exclusion;
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Method to check if an ignored directory can be skipped without looking at its content. This is the case unless
+     * a pattern re-includes paths, which might be located below the directory.
+     *
+     * @param relativePath
+     *            path of an ignored directory relative to the root of the build context
+     * @return true if nothing below the directory can be included
+     */
+    public boolean canSkipDirectory(String relativePath) {
+        return !hasExclusions && isIgnored(relativePath);
+    }
+
+    /**
+     * Method to normalize a path like filepath.Clean does, leading and trailing separators are removed.
+     */
+    private static String clean(String path) {
+        List<String> parts = new ArrayList<String>();
+        for (String part : path.replace('\\', '/').split(SEPARATOR)) {
+            if (part.isEmpty() || ".".equals(part)) {
+                continue;
+            }
+            if ("..".equals(part)) {
+                if (!parts.isEmpty()) {
+                    parts.remove(parts.size() - 1);
+                }
+                continue;
+            }
+            parts.add(part);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A single pattern of the file.
+     */
+    private static final class Rule {
+
+        private final Pattern regex;
+        private final boolean exclusion;
+
+        Rule(String pattern, boolean exclusion) {
+            this.regex = Pattern.compile(toRegex(pattern));
+            this.exclusion = exclusion;
+        }
+
+        /**
+         * A rule matches a path if it matches the path itself or one of its parent directories, so that "build" also
+         * matches "build/classes/A.class".
+         */
+        boolean matches(String path) {
+            if (regex.matcher(path).matches()) {
+                return true;
+            }
+            String[] elements = path.split(SEPARATOR);
+            StringBuilder parent = new StringBuilder();
+            for (int i = 0; i < elements.length - 1; i++) {
+                if (i > 0) {
+                    parent.append(SEPARATOR);
+                }
+                parent.append(elements[i]);
+                if (regex.matcher(parent).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String toRegex(String pattern) {
+            StringBuilder sb = new StringBuilder();
+            int length = pattern.length();
+            for (int i = 0; i < length; i++) {
+                char ch = pattern.charAt(i);
+                if (ch == '*') {
+                    if (i + 1 < length && pattern.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < length && pattern.charAt(i + 1) == '/') {
+                            // "**/" matches zero or more directories
+                            i++;
+                            sb.append("(.*/)?");
+                        } else {
+                            sb.append(".*");
+                        }
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                } else if (ch == '?') {
+                    sb.append("[^/]");
+                } else if (ch == '[') {
+                    int end = pattern.indexOf(']', i + 1);
+                    if (end < 0) {
+                        sb.append("\\[");
+                    } else {
+                        String range = pattern.substring(i + 1, end);
+                        if (range.startsWith("!")) {
+                            range = "^" + range.substring(1);
+                        }
+                        sb.append('[').append(range.replace("\\", "\\\\")).append(']');
+                        i = end;
+                    }
+                } else if (ch == '\\' && i + 1 < length) {
+                    i++;
+                    sb.append(Pattern.quote(String.valueOf(pattern.charAt(i))));
+                } else {
+                    sb.append(Pattern.quote(String.valueOf(ch)));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.automic.docker.utility;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Utility class for the timestamps of docker. Log lines carry RFC 3339 timestamps with nanoseconds, like
+ * 2016-02-01T12:34:56.123456789Z, while the since and until parameters of the API take seconds since the epoch with an
+ * optional fraction, like 1454330096.123456789. Both are converted to nanoseconds since the epoch, which is exact and
+ * cheap to compare.
+ */
+public final class DockerTimestamp {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int SECONDS_PER_HOUR = 3600;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final int NANO_DIGITS = 9;
+    private static final int EPOCH_YEAR = 1970;
+
+    private DockerTimestamp() {
+    }
+
+    /**
+     * Method to parse an RFC 3339 timestamp as written by docker in front of log lines.
+     *
+     * @param data
+     *            buffer holding the timestamp as ASCII
+     * @param offset
+     *            offset of the timestamp
+     * @param length
+     *            length of the timestamp
+     * @return nanoseconds since the epoch, -1 if the timestamp is invalid or lies before the epoch, like the zero time
+     *         docker writes for events which never happened, e.g. 0001-01-01T00:00:00Z
+     */
+    public static long parseNanos(byte[] data, int offset, int length) {
+        if (length < DATE_TIME_LENGTH + 1 || data[offset + 4] != '-' || data[offset + 7] != '-'
+                || data[offset + 10] != 'T' || data[offset + 13] != ':' || data[offset + 16] != ':') {
+            return -1;
+        }
+        int year = digits(data, offset, 4);
+        int month = digits(data, offset + 5, 2);
+        int day = digits(data, offset + 8, 2);
+        int hour = digits(data, offset + 11, 2);
+        int minute = digits(data, offset + 14, 2);
+        int second = digits(data, offset + 17, 2);
+        if (year < EPOCH_YEAR || month < 1 || month > 12 || day < 1 || hour < 0 || minute < 0 || second < 0) {
+            return -1;
+        }
+
+        int pos = offset + DATE_TIME_LENGTH;
+        int end = offset + length;
+        long nanos = 0;
+        if (data[pos] == '.') {
+            pos++;
+            int digits = 0;
+            while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+                if (digits < NANO_DIGITS) {
+                    nanos = nanos * 10 + (data[pos] - '0');
+                    digits++;
+                }
+                pos++;
+            }
+            for (; digits < NANO_DIGITS; digits++) {
+                nanos *= 10;
+            }
+        }
+
+        long offsetSeconds;
+        if (pos == end - 1 && (data[pos] == 'Z' || data[pos] == 'z')) {
+            offsetSeconds = 0;
+        } else if (pos == end - 6 && (data[pos] == '+' || data[pos] == '-') && data[pos + 3] == ':') {
+            int offsetHours = digits(data, pos + 1, 2);
+            int offsetMinutes = digits(data, pos + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return -1;
+            }
+            offsetSeconds = offsetHours * SECONDS_PER_HOUR + offsetMinutes * SECONDS_PER_MINUTE;
+            if (data[pos] == '-') {
+                offsetSeconds = -offsetSeconds;
+            }
+        } else {
+            return -1;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * SECONDS_PER_HOUR + minute
+                * SECONDS_PER_MINUTE + second - offsetSeconds;
+        return seconds * NANOS_PER_SECOND + nanos;
+    }
+
+    /**
+     * Method to parse a value of the since or until parameter.
+     *
+     * @param value
+     *            seconds since the epoch with an optional fraction
+     * @return nanoseconds since the epoch
+     * @throws NumberFormatException
+     *             if the value is not a number
+     */
+    public static long parseSince(String value) {
+        return new BigDecimal(value).movePointRight(NANO_DIGITS).longValue();
+    }
+
+    /**
+     * Method to format nanoseconds since the epoch as a value of the since or until parameter.
+     *
+     * @param nanos
+     *            nanoseconds since the epoch
+     * @return seconds since the epoch with nine fraction digits
+     */
+    public static String toSince(long nanos) {
+        return String.format(Locale.ROOT, "%d.%09d", nanos / NANOS_PER_SECOND, nanos % NANOS_PER_SECOND);
+    }
+
+    private static int digits(byte[] data, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Method to compute the number of days since 1970-01-01 of a date of the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = (month <= 2) ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+}
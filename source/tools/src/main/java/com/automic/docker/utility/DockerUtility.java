@@ -8,7 +8,6 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,6 +15,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import com.automic.docker.config.TransportSettings;
 import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
@@ -34,10 +34,6 @@ public final class DockerUtility {
     private static final Logger LOGGER = LogManager.getLogger(DockerUtility.class);
     private static final String CHARSET = "UTF-8";
 
-    private static final String ERROR_KEY = "error";
-    private static final String PROGRESS_KEY = "progress";
-    private static final String STATUS_KEY = "status";
-
     private DockerUtility() {
     }
 
@@ -194,7 +190,7 @@ public final class DockerUtility {
      * @throws DockerException
      */
     public static void json2xml(JSONObject json, String filePath, String rootTag) throws DockerException {
-        createFile(filePath, org.json.XML.toString(JSON2XMLAdapter.adoptJsonToXml(json), rootTag));
+        JsonXmlStreamWriter.writeObject(json, filePath, rootTag);
     }
 
     /**
@@ -235,25 +231,20 @@ public final class DockerUtility {
      */
     public static void jsonArray2xml(JSONArray jsonArray, String filePath, String rootTag, String childTag)
             throws DockerException {
-
-        StringBuilder xmlStringBuilder = new StringBuilder();
-        xmlStringBuilder.append("<").append(rootTag).append(">");
-        for (int i = 0; i < jsonArray.length(); i++) {
-            xmlStringBuilder.append(org.json.XML.toString(
-                    JSON2XMLAdapter.adoptJsonToXml((JSONObject) jsonArray.get(i)), childTag));
-        }
-        xmlStringBuilder.append("</").append(rootTag).append(">");
-        createFile(filePath, xmlStringBuilder.toString());
+        JSONObject wrapper = new JSONObject();
+        wrapper.put(childTag, jsonArray);
+        JsonXmlStreamWriter.writeObject(wrapper, filePath, rootTag);
     }
 
     /**
      * 
      Method to convert a Json Array to xml and then write it to a File specified. It also appends a Root tag and a
-     * child tag for each entry to json array
+     * child tag for each entry to json array. The array is converted while it is read, one entry at a time.
      * 
      * @param filePath
      *            file to write to
-     * @param jsonArray
+     * @param is
+     *            stream containing the json array
      * @param rootTag
      *            root tag
      * @param childTag
@@ -262,7 +253,8 @@ public final class DockerUtility {
      */
     public static void jsonArrayResponse2xml(InputStream is, String filePath, String rootTag, String childTag)
             throws DockerException {
-        jsonArray2xml(jsonArrayResponse(is), filePath, rootTag, childTag);
+        int count = JsonXmlStreamWriter.writeArray(is, filePath, rootTag, childTag);
+        LOGGER.info("Written " + count + " entries to " + filePath);
     }
 
     /**
@@ -297,6 +289,31 @@ public final class DockerUtility {
         return i;
     }
 
+    /**
+     * Method to convert comma separated key=value pairs to the json filters parameter of docker, e.g.
+     * label=app=web,name=web to {"label":["app=web"],"name":["web"]}
+     * 
+     * @param filter
+     *            comma separated key=value pairs
+     * @return the filters
+     * @throws DockerException
+     *             if a pair has no key or no value
+     */
+    public static JSONObject toFilters(String filter) throws DockerException {
+        JSONObject json = new JSONObject();
+        for (String entry : filter.split(",")) {
+            String pair = entry.trim();
+            int separator = pair.indexOf('=');
+            if (separator <= 0 || separator == pair.length() - 1) {
+                String msg = String.format(ExceptionConstants.INVALID_FILTER, filter);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            json.append(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+        }
+        return json;
+    }
+
     /**
      * Method to convert YES/NO values to boolean true or false
      * 
@@ -327,54 +344,70 @@ public final class DockerUtility {
 
     public static void readJsonResponseFromStream(ClientResponse response) throws DockerException {
         long start = System.currentTimeMillis();
+        try {
+            System.out.println(readProgressStream(response, false));
+        } finally {
+            LOGGER.info("Total time taken " + (System.currentTimeMillis() - start) / 1000 + " seconds ");
+        }
+    }
 
-        long end = 0;
+    /**
+     * Method to read the progress messages docker streams while it pulls, imports or builds an image. Every message
+     * but the progress bars is logged, and optionally written to the job report as well. Instead of the progress bars
+     * a summary of the overall progress is written every few seconds.
+     *
+     * @param response
+     *            the streamed response
+     * @param echo
+     *            if true, every message but the progress bars is written to the job report
+     * @return the status of the last message with a status
+     * @throws DockerException
+     *             if the stream cannot be read or docker reports an error
+     */
+    public static String readProgressStream(ClientResponse response, boolean echo) throws DockerException {
+        NdjsonReader reader = new NdjsonReader(response.getEntityInputStream());
+        ProgressMessage message = new ProgressMessage();
+        PullProgress progress = new PullProgress(TransportSettings.getProgressInterval(),
+                System.currentTimeMillis());
         String status = null;
         String errorMsg = null;
-        boolean isError = false;
-
-        try {
-            JSONTokener token = new JSONTokener(response.getEntityInputStream());
-
-            while (!token.end()) {
-                char ch;
-                do {
-                    ch = token.next();
-                    if (ch == '{') {
-                        token.back();
-                        JSONObject obj = new JSONObject(token);
-
-                        @SuppressWarnings("unchecked")
-                        Set<String> keySet = obj.keySet();
-
-                        if (keySet != null && !keySet.contains(PROGRESS_KEY)) {
-                            LOGGER.info(obj.toString());
-                            if (keySet.contains(STATUS_KEY)) {
-                                status = obj.getString(STATUS_KEY);
-                            }
-                            if (keySet.contains(ERROR_KEY)) {
-                                isError = true;
-                                errorMsg = obj.get(ERROR_KEY).toString();
-
-                            }
-                            break;
-                        }
+        String line;
+        while ((line = reader.nextLine()) != null) {
+            if (!message.parse(line)) {
+                LOGGER.warn("Ignoring invalid progress message [" + line + "]");
+                continue;
+            }
+            if (message.getError() != null) {
+                errorMsg = message.getError();
+            } else {
+                progress.update(message);
+                if (!message.isProgress()) {
+                    LOGGER.info(line);
+                    if (echo) {
+                        System.out.println(line);
                     }
-                } while (ch != 0);
+                }
             }
-            System.out.println(status);
-            if (isError) {
-                LOGGER.error(errorMsg);
-                System.err.println(errorMsg);
-                throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG);
+            if (message.getStatus() != null) {
+                status = message.getStatus();
             }
-
-        } finally {
-
-            end = System.currentTimeMillis();
-            LOGGER.info("Total time taken " + (end - start) / 1000 + " seconds ");
-
+            String summary = progress.poll(System.currentTimeMillis());
+            if (summary != null) {
+                LOGGER.info(summary);
+                System.out.println(summary);
+            }
+        }
+        String summary = progress.finish(System.currentTimeMillis());
+        if (summary != null) {
+            LOGGER.info(summary);
+            System.out.println(summary);
+        }
+        if (errorMsg != null) {
+            LOGGER.error(errorMsg);
+            System.err.println(errorMsg);
+            throw new DockerException(ExceptionConstants.GENERIC_ERROR_MSG);
         }
+        return status;
     }
 
 }
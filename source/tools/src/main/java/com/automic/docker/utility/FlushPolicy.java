@@ -0,0 +1,71 @@
+package com.automic.docker.utility;
+
+import java.util.concurrent.TimeUnit;
+
+import com.automic.docker.config.TransportSettings;
+
+/**
+ * Policy deciding when buffered output is flushed, so that a job report shows the output of a long running command
+ * while it runs instead of only at its end. Output is flushed once a number of lines has been written or a time has
+ * passed since the last flush, whichever comes first.
+ */
+public class FlushPolicy {
+
+    private final long intervalNanos;
+    private final int maxLines;
+    private long lastFlush;
+    private int lines;
+
+    /**
+     * @param intervalMillis
+     *            maximum time in milliseconds output stays buffered
+     * @param maxLines
+     *            maximum number of lines kept buffered
+     */
+    public FlushPolicy(long intervalMillis, int maxLines) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.maxLines = maxLines;
+        this.lastFlush = System.nanoTime();
+    }
+
+    /**
+     * @return the policy configured by {@link TransportSettings#OUTPUT_FLUSH_INTERVAL} and
+     *         {@link TransportSettings#OUTPUT_FLUSH_LINES}
+     */
+    public static FlushPolicy fromSettings() {
+        return new FlushPolicy(TransportSettings.getOutputFlushInterval(), TransportSettings.getOutputFlushLines());
+    }
+
+    /**
+     * Method to record written data and decide whether to flush now. The counters are reset if it returns true.
+     *
+     * @param data
+     *            buffer holding the data
+     * @param offset
+     *            offset of the data in the buffer
+     * @param length
+     *            number of bytes
+     * @return true if the output should be flushed
+     */
+    public boolean written(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] == '\n') {
+                lines++;
+            }
+        }
+        if (lines >= maxLines || System.nanoTime() - lastFlush >= intervalNanos) {
+            flushed();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to reset the counters after the output has been flushed.
+     */
+    public void flushed() {
+        lines = 0;
+        lastFlush = System.nanoTime();
+    }
+
+}
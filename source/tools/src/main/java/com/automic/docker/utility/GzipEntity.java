@@ -0,0 +1,63 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.automic.docker.config.StreamingEntity;
+import com.automic.docker.config.TransportSettings;
+
+/**
+ * Request body compressing another body with {@link ParallelGzipOutputStream} while it is uploaded. Docker accepts gzip
+ * compressed tar archives for builds and imports. The number of threads, block size and level are taken from
+ * {@link TransportSettings}. The length of the compressed body is not known in advance, so it is sent chunked.
+ */
+public class GzipEntity extends StreamingEntity {
+
+    private static final double PERCENT = 100d;
+    private static final double BYTES_PER_MB = 1024d * 1024d;
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    private final StreamingEntity entity;
+    private long bytesIn;
+    private long bytesOut;
+    private long durationMs;
+
+    public GzipEntity(StreamingEntity entity) {
+        this.entity = entity;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out, byte[] buffer) throws IOException {
+        long start = System.currentTimeMillis();
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, TransportSettings.getCompressionThreads(),
+                TransportSettings.getCompressionBlockSize(), TransportSettings.getCompressionLevel());
+        try {
+            entity.writeTo(gzip, buffer);
+            gzip.finish();
+        } finally {
+            gzip.shutdown();
+            bytesIn = gzip.getBytesIn();
+            bytesOut = gzip.getBytesOut();
+            durationMs = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Method to describe the result of the compression.
+     *
+     * @return a one line summary with sizes, ratio and throughput
+     */
+    public String describe() {
+        double ratio = (bytesIn == 0) ? 0 : bytesOut * PERCENT / bytesIn;
+        double seconds = Math.max(durationMs, 1) / MILLIS_PER_SECOND;
+        return String.format("Compressed %d bytes to %d bytes (%.1f%%) in %d ms, %.1f MB/s in, %.1f MB/s out "
+                + "using %d threads", bytesIn, bytesOut, ratio, durationMs, bytesIn / BYTES_PER_MB / seconds,
+                bytesOut / BYTES_PER_MB / seconds, TransportSettings.getCompressionThreads());
+    }
+
+}
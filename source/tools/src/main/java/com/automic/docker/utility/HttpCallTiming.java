@@ -0,0 +1,187 @@
+package com.automic.docker.utility;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and sizes of a single request sent to docker. The call starts when the request is handed to the http client
+ * and ends when its response has been read to the end or closed, so that the transfer of streamed responses is
+ * included. A call made while an action is running is added to the {@link ActionTimings} of that action.
+ */
+public final class HttpCallTiming {
+
+    /**
+     * Name of the http context attribute holding the timing of the call being executed
+     */
+    public static final String CONTEXT_ATTRIBUTE = HttpCallTiming.class.getName();
+
+    private final String method;
+    private final String endpoint;
+    private final ActionTimings owner;
+    private final Object handle;
+    private final long startNanos;
+
+    private volatile int status;
+    private volatile long connectNanos;
+    private volatile long tlsHandshakeNanos;
+    private volatile boolean newConnection;
+    private volatile long bytesOut;
+    private final AtomicLong bytesIn = new AtomicLong();
+    private volatile long firstByteNanos;
+    private volatile long endNanos;
+    private boolean finished;
+
+    private HttpCallTiming(String method, String endpoint) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.owner = ActionTimings.current();
+        this.handle = ActionTimings.getListener().httpCallStarted(method, endpoint);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Method to start timing a request.
+     *
+     * @param method
+     *            http method
+     * @param uri
+     *            uri of the request, only its path is recorded
+     * @return the timing of the call
+     */
+    public static HttpCallTiming start(String method, URI uri) {
+        return new HttpCallTiming(method, uri.getRawPath());
+    }
+
+    /**
+     * Method to record that a new connection has been opened for this call.
+     *
+     * @param connectTime
+     *            time in nanoseconds needed to establish the connection
+     * @param tlsHandshakeTime
+     *            time in nanoseconds needed for the TLS handshake, 0 for plain connections
+     */
+    public void connectionOpened(long connectTime, long tlsHandshakeTime) {
+        this.newConnection = true;
+        this.connectNanos = connectTime;
+        this.tlsHandshakeNanos = tlsHandshakeTime;
+    }
+
+    /**
+     * @param count
+     *            number of bytes of the request body
+     */
+    public void requestSent(long count) {
+        this.bytesOut = count;
+    }
+
+    /**
+     * Method to record the arrival of the response head.
+     *
+     * @param statusCode
+     *            http status of the response
+     */
+    public void responseReceived(int statusCode) {
+        this.status = statusCode;
+        this.firstByteNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @param count
+     *            number of bytes of the response body read
+     */
+    public void bytesRead(long count) {
+        bytesIn.addAndGet(count);
+    }
+
+    /**
+     * Method to end the call. Only the first invocation has an effect.
+     */
+    public void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        endNanos = System.nanoTime() - startNanos;
+        if (firstByteNanos == 0) {
+            firstByteNanos = endNanos;
+        }
+        ActionTimings.getListener().httpCallEnded(handle, this);
+        if (owner != null) {
+            owner.httpCallFinished(this);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return http status, 0 if no response has been received
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if a new connection had to be opened, false if a pooled one has been reused
+     */
+    public boolean isNewConnection() {
+        return newConnection;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getTlsHandshakeNanos() {
+        return tlsHandshakeNanos;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * @return time in nanoseconds from the start of the call until the response head has been received, including
+     *         connecting and sending the request body
+     */
+    public long getTimeToFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return time in nanoseconds spent reading the response body
+     */
+    public long getTransferNanos() {
+        return endNanos - firstByteNanos;
+    }
+
+    /**
+     * @return time in nanoseconds from the start until the end of the call
+     */
+    public long getTotalNanos() {
+        return endNanos;
+    }
+
+    /**
+     * @return one line description of the call
+     */
+    public String describe() {
+        String connect = newConnection ? ActionTimings.formatMillis(connectNanos) : "reused";
+        return String.format("%s %s %d: connect %s, tls %s, first byte %s, transfer %s, sent %d bytes, received %d "
+                + "bytes", method, endpoint, status, connect, ActionTimings.formatMillis(tlsHandshakeNanos),
+                ActionTimings.formatMillis(firstByteNanos), ActionTimings.formatMillis(getTransferNanos()), bytesOut,
+                bytesIn.get());
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.automic.docker.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Selection of images of a docker 'list images' response, given as comma separated criteria which all have to match,
+ * e.g. dangling=true or repo=ci/*,age>7d,unused=true:
+ * <ul>
+ * <li>dangling=true or false, whether the image has no tag</li>
+ * <li>unused=true or false, whether no container, running or not, has been created from the image</li>
+ * <li>age&gt;, age&gt;=, age&lt; or age&lt;= a number of seconds, optionally followed by s, m, h or d, compared to
+ * the Created timestamp</li>
+ * <li>repo= a repository, or repository:tag, which may end with * to match a prefix</li>
+ * </ul>
+ */
+public class ImageSelector {
+
+    private static final Logger LOGGER = LogManager.getLogger(ImageSelector.class);
+
+    private static final String DANGLING = "dangling";
+    private static final String UNUSED = "unused";
+    private static final String REPO = "repo";
+    private static final String NO_TAG = "<none>:<none>";
+
+    private final long now;
+    private Boolean dangling;
+    private Boolean unused;
+    private final List<SelectionCriteria.Age> ages = new ArrayList<SelectionCriteria.Age>();
+    private final List<String> repos = new ArrayList<String>();
+
+    private ImageSelector(long now) {
+        this.now = now;
+    }
+
+    /**
+     * @param value
+     *            the image argument of an action
+     * @return true if the argument is a selection rather than image names, which never contain =, &lt; or &gt;
+     */
+    public static boolean isSelection(String value) {
+        return value.indexOf('=') >= 0 || value.indexOf('<') >= 0 || value.indexOf('>') >= 0;
+    }
+
+    /**
+     * Method to parse a selection.
+     *
+     * @param expression
+     *            comma separated criteria
+     * @param now
+     *            current time in seconds since the epoch, which the age is measured to
+     * @return the selection
+     * @throws DockerException
+     *             if a criterion is invalid
+     */
+    public static ImageSelector parse(String expression, long now) throws DockerException {
+        ImageSelector selector = new ImageSelector(now);
+        for (String entry : expression.split(",")) {
+            if (!selector.add(entry.trim())) {
+                String msg = String.format(ExceptionConstants.INVALID_IMAGE_SELECTION, expression);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+        }
+        return selector;
+    }
+
+    private boolean add(String entry) {
+        if (SelectionCriteria.isAge(entry)) {
+            SelectionCriteria.Age age = SelectionCriteria.parseAge(entry);
+            if (age == null) {
+                return false;
+            }
+            ages.add(age);
+            return true;
+        }
+        int separator = entry.indexOf('=');
+        if (separator <= 0 || separator == entry.length() - 1) {
+            return false;
+        }
+        String key = entry.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        String value = entry.substring(separator + 1).trim();
+        switch (key) {
+            case DANGLING:
+                dangling = Boolean.valueOf(DockerUtility.convert2Bool(value));
+                return true;
+            case UNUSED:
+                unused = Boolean.valueOf(DockerUtility.convert2Bool(value));
+                return true;
+            case REPO:
+                repos.add(value);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if the ids of the images used by containers are needed to match
+     */
+    public boolean needsUsedImages() {
+        return unused != null;
+    }
+
+    /**
+     * @param image
+     *            one image of a 'list images' response
+     * @param usedImages
+     *            ids of the images used by containers, only needed if {@link #needsUsedImages()}
+     * @return true if the image matches all criteria
+     */
+    public boolean matches(JSONObject image, Set<String> usedImages) {
+        List<String> tags = getTags(image);
+        if (dangling != null && dangling.booleanValue() != tags.isEmpty()) {
+            return false;
+        }
+        if (unused != null && unused.booleanValue() == usedImages.contains(image.optString("Id"))) {
+            return false;
+        }
+        long age = now - image.optLong("Created", now);
+        for (SelectionCriteria.Age criterion : ages) {
+            if (!criterion.matches(age)) {
+                return false;
+            }
+        }
+        return repos.isEmpty() || !getSelectedTags(image).isEmpty();
+    }
+
+    /**
+     * Method to get the tags to remove of a matching image. Without a repo criterion these are all tags, which removes
+     * the image once the last one is gone, otherwise only the tags of the matching repositories.
+     *
+     * @param image
+     *            one image of a 'list images' response
+     * @return the tags, empty for a dangling image
+     */
+    public List<String> getSelectedTags(JSONObject image) {
+        List<String> tags = getTags(image);
+        if (repos.isEmpty()) {
+            return tags;
+        }
+        List<String> selected = new ArrayList<String>();
+        for (String tag : tags) {
+            int tagStart = tag.lastIndexOf(':');
+            String repository = (tagStart > tag.lastIndexOf('/')) ? tag.substring(0, tagStart) : tag;
+            for (String repo : repos) {
+                if (SelectionCriteria.matchesValue(repo, repository) || SelectionCriteria.matchesValue(repo, tag)) {
+                    selected.add(tag);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @param image
+     *            one image of a 'list images' response
+     * @return the tags of the image, empty for a dangling image
+     */
+    public static List<String> getTags(JSONObject image) {
+        List<String> tags = new ArrayList<String>();
+        JSONArray repoTags = image.optJSONArray("RepoTags");
+        for (int i = 0; repoTags != null && i < repoTags.length(); i++) {
+            String tag = repoTags.optString(i);
+            if (!NO_TAG.equals(tag) && !tag.isEmpty()) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+}
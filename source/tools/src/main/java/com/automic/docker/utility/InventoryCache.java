@@ -0,0 +1,225 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Json file holding the last listing of the containers or images of one docker host, keyed by id, together with the
+ * docker time the listing is valid for and the fingerprint of the output file it was last written to. Later runs
+ * fetch the events since that time and patch the listing instead of listing everything again. The file is replaced
+ * atomically so that an interrupted run never leaves a damaged file behind; a file which cannot be read, or belongs to
+ * another host, is treated as missing.
+ */
+public class InventoryCache {
+
+    private static final Logger LOGGER = LogManager.getLogger(InventoryCache.class);
+
+    private static final String DOCKER_URL = "DockerUrl";
+    private static final String KIND = "Kind";
+    private static final String SINCE = "Since";
+    private static final String ITEMS = "Items";
+    private static final String OUTPUT = "Output";
+    private static final String ID = "Id";
+    private static final String FILE_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final String dockerUrl;
+    private final String kind;
+    private long since = -1;
+    private String output;
+    private final Map<String, JSONObject> items = new LinkedHashMap<String, JSONObject>();
+
+    private InventoryCache(Path file, String dockerUrl, String kind) {
+        this.file = file;
+        this.dockerUrl = dockerUrl;
+        this.kind = kind;
+    }
+
+    /**
+     * Method to read the cache of a docker host from a folder. A missing or unusable file gives an empty cache.
+     *
+     * @param folder
+     *            folder of the cache files
+     * @param dockerUrl
+     *            url of the docker host
+     * @param kind
+     *            what is listed, e.g. CONTAINERS
+     * @return the cache
+     */
+    public static InventoryCache read(Path folder, String dockerUrl, String kind) {
+        String name = kind.toLowerCase() + "-" + dockerUrl.replaceAll("[^A-Za-z0-9._-]", "_") + FILE_SUFFIX;
+        InventoryCache cache = new InventoryCache(folder.resolve(name), dockerUrl, kind);
+        if (!Files.isRegularFile(cache.file)) {
+            return cache;
+        }
+        try (Reader reader = Files.newBufferedReader(cache.file, StandardCharsets.UTF_8)) {
+            JSONObject json = new JSONObject(new JSONTokener(reader));
+            if (!dockerUrl.equals(json.optString(DOCKER_URL)) || !kind.equals(json.optString(KIND))) {
+                LOGGER.warn("Ignoring cache file " + cache.file + " of " + json.optString(DOCKER_URL));
+                return cache;
+            }
+            JSONArray array = json.getJSONArray(ITEMS);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                cache.items.put(item.getString(ID), item);
+            }
+            cache.since = DockerTimestamp.parseSince(json.getString(SINCE));
+            cache.output = json.optString(OUTPUT, null);
+        } catch (IOException | JSONException | NumberFormatException e) {
+            LOGGER.warn("Ignoring unreadable cache file " + cache.file, e);
+            cache.items.clear();
+            cache.since = -1;
+            cache.output = null;
+        }
+        return cache;
+    }
+
+    /**
+     * @return path of the cache file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return docker time of the listing in nanoseconds since the epoch, -1 if there is no listing
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * @return fingerprint of the output file the listing was last written to, null if none
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @param output
+     *            fingerprint of the output file the listing has been written to
+     */
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    /**
+     * @return the listed items by id, in the order docker listed them
+     */
+    public Map<String, JSONObject> getItems() {
+        return items;
+    }
+
+    /**
+     * Method to replace the listing.
+     *
+     * @param nanos
+     *            docker time the listing is valid for, in nanoseconds since the epoch
+     * @param listing
+     *            items by id
+     */
+    public void update(long nanos, Map<String, JSONObject> listing) {
+        since = nanos;
+        if (listing != items) {
+            items.clear();
+            items.putAll(listing);
+        }
+    }
+
+    /**
+     * Method to write the cache back to its file.
+     *
+     * @throws DockerException
+     */
+    public void save() throws DockerException {
+        JSONObject json = new JSONObject();
+        json.put(DOCKER_URL, dockerUrl);
+        json.put(KIND, kind);
+        json.put(SINCE, DockerTimestamp.toSince(since));
+        json.putOpt(OUTPUT, output);
+        json.put(ITEMS, new JSONArray(items.values()));
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                json.write(writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | JSONException e) {
+            LOGGER.error("Error while writing cache file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, file), e);
+        }
+    }
+
+    /**
+     * Method to compare two json values, ignoring the order of the keys of objects and the given keys of the top
+     * level object, e.g. the human readable Status of a container which changes with every listing.
+     *
+     * @return true if both values are equal
+     */
+    public static boolean same(JSONObject first, JSONObject second, String... ignoredKeys) {
+        return sameObject(first, second, Arrays.asList(ignoredKeys));
+    }
+
+    private static boolean sameObject(JSONObject first, JSONObject second, List<String> ignoredKeys) {
+        int compared = 0;
+        Iterator<?> keys = first.keys();
+        while (keys.hasNext()) {
+            String key = keys.next().toString();
+            if (ignoredKeys.contains(key)) {
+                continue;
+            }
+            if (!second.has(key) || !sameValue(first.opt(key), second.opt(key))) {
+                return false;
+            }
+            compared++;
+        }
+        int ignored = 0;
+        for (String key : ignoredKeys) {
+            ignored += second.has(key) ? 1 : 0;
+        }
+        return second.length() - ignored == compared;
+    }
+
+    private static boolean sameValue(Object first, Object second) {
+        if (first instanceof JSONObject && second instanceof JSONObject) {
+            return sameObject((JSONObject) first, (JSONObject) second, Collections.<String> emptyList());
+        }
+        if (first instanceof JSONArray && second instanceof JSONArray) {
+            JSONArray left = (JSONArray) first;
+            JSONArray right = (JSONArray) second;
+            if (left.length() != right.length()) {
+                return false;
+            }
+            for (int i = 0; i < left.length(); i++) {
+                if (!sameValue(left.opt(i), right.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return String.valueOf(first).equals(String.valueOf(second));
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.automic.docker.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Predicate on json objects given as comma separated path=value pairs, e.g. Action=die,Actor.Attributes.name=web. A
+ * path names nested fields separated by dots. An object matches if every path leads to a value equal to the given
+ * one; a value of * only requires the field to be present.
+ */
+public class JsonMatcher {
+
+    private static final Logger LOGGER = LogManager.getLogger(JsonMatcher.class);
+
+    private static final String ANY_VALUE = "*";
+
+    private final List<String[]> paths = new ArrayList<String[]>();
+    private final List<String> values = new ArrayList<String>();
+
+    private JsonMatcher() {
+    }
+
+    /**
+     * Method to parse a predicate.
+     *
+     * @param expression
+     *            comma separated path=value pairs
+     * @return the predicate
+     * @throws DockerException
+     *             if a pair has no path
+     */
+    public static JsonMatcher parse(String expression) throws DockerException {
+        JsonMatcher matcher = new JsonMatcher();
+        for (String entry : expression.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                String msg = String.format(ExceptionConstants.INVALID_PREDICATE, expression);
+                LOGGER.error(msg);
+                throw new DockerException(msg);
+            }
+            matcher.paths.add(entry.substring(0, separator).trim().split("\\."));
+            matcher.values.add(entry.substring(separator + 1).trim());
+        }
+        return matcher;
+    }
+
+    /**
+     * @param json
+     *            the object
+     * @return true if the object matches all pairs
+     */
+    public boolean matches(JSONObject json) {
+        for (int i = 0; i < paths.size(); i++) {
+            Object value = get(json, paths.get(i));
+            if (value == null || JSONObject.NULL.equals(value)) {
+                return false;
+            }
+            String expected = values.get(i);
+            if (!ANY_VALUE.equals(expected) && !expected.equals(String.valueOf(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object get(JSONObject json, String[] path) {
+        Object current = json;
+        for (String field : path) {
+            if (current instanceof JSONObject) {
+                current = ((JSONObject) current).opt(field);
+            } else if (current instanceof JSONArray && field.matches("\\d+")) {
+                current = ((JSONArray) current).opt(Integer.parseInt(field));
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,269 @@
+package com.automic.docker.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Utility class to convert json responses to xml files without holding the whole response in memory. A json array is
+ * read element by element and every element is written to the file as soon as it has been read, so the memory needed
+ * is bounded by the largest element instead of the whole response.
+ *
+ * The xml written is the one {@link org.json.XML#toString(Object, String)} produces for the elements adopted by
+ * {@link JSON2XMLAdapter}, i.e. the same root and child tags as before, but it is written directly to a buffered UTF-8
+ * file instead of being assembled in memory first.
+ */
+public final class JsonXmlStreamWriter {
+
+    private static final Logger LOGGER = LogManager.getLogger(JsonXmlStreamWriter.class);
+
+    private static final String CONTENT_KEY = "content";
+    private static final String ARRAY_TAG = "array";
+
+    private JsonXmlStreamWriter() {
+    }
+
+    /**
+     * Method to convert a stream containing a json array of objects to xml. Every object becomes a child tag of the
+     * root tag.
+     *
+     * @param is
+     *            stream containing the json array
+     * @param filePath
+     *            file to write to
+     * @param rootTag
+     *            root tag
+     * @param childTag
+     *            child tag for each entry of the json array
+     * @return number of entries written
+     * @throws DockerException
+     */
+    public static int writeArray(InputStream is, String filePath, String rootTag, String childTag)
+            throws DockerException {
+        JSONTokener tokener = new JSONTokener(new InputStreamReader(is, StandardCharsets.UTF_8));
+        int count = 0;
+        boolean success = false;
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            writer.write('<');
+            writer.write(rootTag);
+            writer.write('>');
+            if (tokener.nextClean() != '[') {
+                throw tokener.syntaxError("A JSONArray text must start with '['");
+            }
+            char ch = tokener.nextClean();
+            if (ch != ']') {
+                tokener.back();
+                while (true) {
+                    JSONObject element = (JSONObject) tokener.nextValue();
+                    write(writer, JSON2XMLAdapter.adoptJsonToXml(element), childTag);
+                    count++;
+                    ch = tokener.nextClean();
+                    if (ch == ']') {
+                        break;
+                    }
+                    if (ch != ',') {
+                        throw tokener.syntaxError("Expected a ',' or ']'");
+                    }
+                }
+            }
+            writer.write("</");
+            writer.write(rootTag);
+            writer.write('>');
+            success = true;
+        } catch (IOException e) {
+            LOGGER.error("Error while writing file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, filePath), e);
+        } finally {
+            if (!success) {
+                deleteFile(filePath);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Method to write a json object to xml, enclosed in the root tag.
+     *
+     * @param json
+     *            json object
+     * @param filePath
+     *            file to write to
+     * @param rootTag
+     *            root tag
+     * @throws DockerException
+     */
+    public static void writeObject(JSONObject json, String filePath, String rootTag) throws DockerException {
+        boolean success = false;
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            write(writer, JSON2XMLAdapter.adoptJsonToXml(json), rootTag);
+            success = true;
+        } catch (IOException e) {
+            LOGGER.error("Error while writing file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, filePath), e);
+        } finally {
+            if (!success) {
+                deleteFile(filePath);
+            }
+        }
+    }
+
+    private static void deleteFile(String filePath) {
+        File file = new File(filePath);
+        if (file.exists() && !file.delete()) {
+            LOGGER.error("Error deleting file " + file.getName());
+        }
+    }
+
+    /**
+     * Method to write a value as xml the way {@link org.json.XML#toString(Object, String)} does.
+     *
+     * @param writer
+     *            writer to write to
+     * @param value
+     *            json value
+     * @param tagName
+     *            enclosing tag, null for none
+     * @throws IOException
+     */
+    private static void write(Writer writer, Object value, String tagName) throws IOException {
+        if (value instanceof JSONObject) {
+            JSONObject json = (JSONObject) value;
+            if (tagName != null) {
+                openTag(writer, tagName);
+            }
+            Iterator<?> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next().toString();
+                Object child = json.opt(key);
+                if (child == null) {
+                    child = "";
+                }
+                if (CONTENT_KEY.equals(key)) {
+                    writeContent(writer, child);
+                } else if (child instanceof JSONArray) {
+                    JSONArray array = (JSONArray) child;
+                    for (int i = 0; i < array.length(); i++) {
+                        Object element = array.get(i);
+                        if (element instanceof JSONArray) {
+                            openTag(writer, key);
+                            write(writer, element, null);
+                            closeTag(writer, key);
+                        } else {
+                            write(writer, element, key);
+                        }
+                    }
+                } else if ("".equals(child)) {
+                    writer.write('<');
+                    writer.write(key);
+                    writer.write("/>");
+                } else {
+                    write(writer, child, key);
+                }
+            }
+            if (tagName != null) {
+                closeTag(writer, tagName);
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                write(writer, array.opt(i), (tagName == null) ? ARRAY_TAG : tagName);
+            }
+        } else {
+            String string = (value == null) ? "null" : escape(value.toString());
+            if (tagName == null) {
+                writer.write('"');
+                writer.write(string);
+                writer.write('"');
+            } else if (string.isEmpty()) {
+                writer.write('<');
+                writer.write(tagName);
+                writer.write("/>");
+            } else {
+                openTag(writer, tagName);
+                writer.write(string);
+                closeTag(writer, tagName);
+            }
+        }
+    }
+
+    private static void writeContent(Writer writer, Object content) throws IOException {
+        if (content instanceof JSONArray) {
+            JSONArray array = (JSONArray) content;
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    writer.write('\n');
+                }
+                writer.write(escape(array.get(i).toString()));
+            }
+        } else {
+            writer.write(escape(content.toString()));
+        }
+    }
+
+    private static void openTag(Writer writer, String tagName) throws IOException {
+        writer.write('<');
+        writer.write(tagName);
+        writer.write('>');
+    }
+
+    private static void closeTag(Writer writer, String tagName) throws IOException {
+        writer.write("</");
+        writer.write(tagName);
+        writer.write('>');
+    }
+
+    private static String escape(String string) {
+        StringBuilder sb = null;
+        for (int i = 0; i < string.length(); i++) {
+            String replacement;
+            switch (string.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&apos;";
+                    break;
+                default:
+                    replacement = null;
+                    break;
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(string.length() + 16);
+                sb.append(string, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(string.charAt(i));
+                }
+            }
+        }
+        return (sb == null) ? string : sb.toString();
+    }
+
+}
@@ -0,0 +1,752 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.config.DockerChannel;
+import com.automic.docker.config.TransportSettings;
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Collector of the logs of many containers at once. The log streams are opened by a few threads and then read by one
+ * thread from non blocking connections multiplexed on a {@link Selector}. That thread decodes the http responses and
+ * the multiplexed frames in place and passes the log data through a {@link LogRingBuffer} to one writer thread, which
+ * appends it to a {@link RotatingFileOutputStream} per container. So two threads serve any number of containers.
+ *
+ * If the writer falls behind and the ring buffer is full, the streams which cannot be passed on are no longer read
+ * until there is room again, which lets docker hold back their data.
+ */
+public class LogCollector {
+
+    private static final Logger LOGGER = LogManager.getLogger(LogCollector.class);
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int FILE_BUFFER_SIZE = 16 * 1024;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_STREAM_ID = Constants.STDERR_CODE;
+    private static final int HTTP_OK = 200;
+    private static final long SELECT_TIMEOUT = 1000;
+    private static final long BLOCKED_SELECT_TIMEOUT = 1;
+    private static final long WRITER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final double BYTES_PER_MB = 1024d * 1024d;
+    private static final double NANOS_PER_SECOND = 1000000000d;
+
+    private final URI dockerUrl;
+    private final String socketPath;
+    private final SSLContext sslContext;
+    private final int connectTimeout;
+    private final Path folder;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final List<LogStream> streams = new ArrayList<LogStream>();
+
+    private LogRingBuffer ring;
+    private Writer writer;
+    private int opened;
+    private int failed;
+    private long bytes;
+    private long elapsedNanos;
+    private long cpuNanos = -1;
+
+    /**
+     * @param dockerUrl
+     *            url of the docker host, for a unix socket any http url
+     * @param socketPath
+     *            path of the unix domain socket, null for a tcp connection
+     * @param sslContext
+     *            context of https connections
+     * @param connectTimeout
+     *            connection timeout in milliseconds
+     * @param folder
+     *            folder of the log files
+     * @param maxFileSize
+     *            size in bytes after which a log file is rotated, 0 to never rotate
+     * @param maxFiles
+     *            number of rotated files to keep per container
+     */
+    public LogCollector(URI dockerUrl, String socketPath, SSLContext sslContext, int connectTimeout, Path folder,
+            long maxFileSize, int maxFiles) {
+        this.dockerUrl = dockerUrl;
+        this.socketPath = socketPath;
+        this.sslContext = sslContext;
+        this.connectTimeout = connectTimeout;
+        this.folder = folder;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Method to add the log stream of a container.
+     *
+     * @param requestPath
+     *            path and query of the logs request
+     * @param fileName
+     *            name of the log file in the folder
+     */
+    public void add(String requestPath, String fileName) {
+        streams.add(new LogStream(streams.size(), requestPath, fileName));
+    }
+
+    /**
+     * Method to collect the logs until all streams have ended or the time is up.
+     *
+     * @param durationMillis
+     *            maximum time in milliseconds, 0 for no limit
+     * @throws DockerException
+     *             if no stream could be opened or a log file could not be written
+     */
+    public void collect(long durationMillis) throws DockerException {
+        long start = System.nanoTime();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+
+        ring = new LogRingBuffer(TransportSettings.getCollectorRingSize());
+        writer = new Writer();
+        try (Selector selector = Selector.open()) {
+            writer.open();
+            connect(selector);
+            if (opened == 0) {
+                LOGGER.error(ExceptionConstants.NO_LOG_STREAM);
+                throw new DockerException(ExceptionConstants.NO_LOG_STREAM);
+            }
+            writer.start();
+            select(selector, (durationMillis > 0) ? start + TimeUnit.MILLISECONDS.toNanos(durationMillis) : 0);
+        } catch (IOException e) {
+            LOGGER.error("Error while collecting logs ", e);
+            throw new DockerException(ExceptionConstants.IO_ERROR, e);
+        } finally {
+            for (LogStream stream : streams) {
+                stream.close();
+            }
+            writer.stop();
+        }
+        if (writer.failure != null) {
+            throw writer.failure;
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        if (cpuStart >= 0 && writer.cpuNanos >= 0) {
+            cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart + writer.cpuNanos;
+        }
+        for (LogStream stream : streams) {
+            bytes += stream.bytes;
+            LOGGER.info("Collected " + stream.bytes + " bytes of " + stream.fileName
+                    + ((stream.error != null) ? " (" + stream.error + ")" : ""));
+        }
+        LOGGER.info(String.format(Locale.ROOT, "Collected %d bytes from %d containers in %.3f s, %.2f MB/s, "
+                + "%.1f containers per core", bytes, opened, elapsedNanos / NANOS_PER_SECOND, getMegabytesPerSecond(),
+                getContainersPerCore()));
+    }
+
+    /**
+     * Method to open all streams, a few at a time, and register them with the selector.
+     */
+    private void connect(Selector selector) throws IOException {
+        ExecutorService executor = WorkerPool.newPool(
+                Math.min(TransportSettings.getCollectorConnectThreads(), streams.size()), "log-connector");
+        try {
+            List<Future<DockerChannel>> futures = new ArrayList<Future<DockerChannel>>();
+            for (final LogStream stream : streams) {
+                futures.add(executor.submit(new Callable<DockerChannel>() {
+                    @Override
+                    public DockerChannel call() throws IOException {
+                        return stream.open();
+                    }
+                }));
+            }
+            for (int i = 0; i < streams.size(); i++) {
+                LogStream stream = streams.get(i);
+                try {
+                    stream.channel = awaitConnection(futures.get(i));
+                    stream.channel.getChannel().configureBlocking(false);
+                    stream.key = stream.channel.getChannel().register(selector, SelectionKey.OP_READ, stream);
+                    opened++;
+                } catch (ExecutionException e) {
+                    stream.fail("unable to connect: " + e.getCause());
+                } catch (TimeoutException e) {
+                    stream.fail("unable to connect within " + connectTimeout + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("Opened " + opened + " of " + streams.size() + " log streams");
+    }
+
+    /**
+     * Method to wait for a stream to be opened. The streams are awaited in the order they have been submitted, so the
+     * stream is being opened already when its wait starts, and opening it is itself limited by the connect timeout;
+     * the wait only stops a connection stuck in writing the request.
+     *
+     * @throws TimeoutException
+     *             if the stream has not been opened within the connect timeout, its connection is closed
+     */
+    private DockerChannel awaitConnection(Future<DockerChannel> future)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (connectTimeout <= 0) {
+            return future.get();
+        }
+        try {
+            return future.get(connectTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // interrupting the worker closes the channel; if the stream has been opened meanwhile it is used anyway
+            if (future.cancel(true)) {
+                throw e;
+            }
+            return future.get();
+        }
+    }
+
+    /**
+     * Method running the selector loop until all streams have ended, the deadline has passed or the writer failed.
+     */
+    private void select(Selector selector, long deadline) throws IOException, DockerException {
+        List<LogStream> blocked = new ArrayList<LogStream>();
+        // streams with data read from the connection but not returned yet, e.g. decrypted tls records
+        Set<LogStream> pending = new LinkedHashSet<LogStream>();
+        int open = opened;
+        while (open > 0 && writer.failure == null) {
+            long timeout = blocked.isEmpty() ? SELECT_TIMEOUT : BLOCKED_SELECT_TIMEOUT;
+            if (deadline != 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    LOGGER.info("Time is up, stopping " + open + " log streams");
+                    break;
+                }
+                timeout = Math.min(timeout, remaining);
+            }
+            if (pending.isEmpty()) {
+                selector.select(timeout);
+            } else {
+                selector.selectNow();
+            }
+
+            Set<LogStream> ready = pending;
+            pending = new LinkedHashSet<LogStream>();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                ready.add((LogStream) keys.next().attachment());
+                keys.remove();
+            }
+            for (LogStream stream : ready) {
+                if (!stream.read()) {
+                    open--;
+                } else if (stream.blocked) {
+                    stream.key.interestOps(0);
+                    blocked.add(stream);
+                } else if (stream.channel.hasPending()) {
+                    pending.add(stream);
+                }
+            }
+            // streams waiting for room in the ring buffer are retried on every pass
+            Iterator<LogStream> waiting = blocked.iterator();
+            while (waiting.hasNext()) {
+                LogStream stream = waiting.next();
+                if (!stream.process()) {
+                    open--;
+                    waiting.remove();
+                } else if (!stream.blocked) {
+                    stream.key.interestOps(SelectionKey.OP_READ);
+                    waiting.remove();
+                    if (stream.channel.hasPending()) {
+                        pending.add(stream);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of log streams opened
+     */
+    public int getContainers() {
+        return opened;
+    }
+
+    /**
+     * @return number of log streams which could not be opened or failed
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return number of log bytes collected
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return throughput in MB of log data per second
+     */
+    public double getMegabytesPerSecond() {
+        return (elapsedNanos > 0) ? bytes / BYTES_PER_MB / (elapsedNanos / NANOS_PER_SECOND) : 0;
+    }
+
+    /**
+     * @return number of containers served per fully used core, measured by the cpu time of the selector and writer
+     *         thread, -1 if the cpu time is not available
+     */
+    public double getContainersPerCore() {
+        if (cpuNanos <= 0 || elapsedNanos <= 0) {
+            return -1;
+        }
+        return opened / ((double) cpuNanos / elapsedNanos);
+    }
+
+    /**
+     * Log stream of one container: the connection, the state of decoding the http response and the multiplexed
+     * frames, and the bytes read but not yet passed to the ring buffer.
+     */
+    private final class LogStream {
+
+        private final int index;
+        private final String requestPath;
+        private final String fileName;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        private DockerChannel channel;
+        private SelectionKey key;
+        private boolean blocked;
+        private boolean ended;
+        private String error;
+        private long bytes;
+
+        // http response
+        private boolean headersRead;
+        private int status;
+        private boolean chunked;
+        private long bodyRemaining = -1;
+        private long chunkRemaining;
+        private boolean chunkTrailer;
+
+        // frames
+        private Boolean raw;
+        private final byte[] header = new byte[FRAME_HEADER_SIZE];
+        private int headerFill;
+        private long frameRemaining;
+        private boolean frameStart;
+
+        LogStream(int index, String requestPath, String fileName) {
+            this.index = index;
+            this.requestPath = requestPath;
+            this.fileName = fileName;
+        }
+
+        DockerChannel open() throws IOException {
+            DockerChannel dockerChannel = DockerChannel.open(dockerUrl, socketPath, sslContext, connectTimeout);
+            try {
+                String host = (socketPath != null) ? "localhost" : dockerUrl.getAuthority();
+                String request = "GET " + requestPath + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n";
+                dockerChannel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+            } catch (IOException e) {
+                dockerChannel.close();
+                throw e;
+            }
+            return dockerChannel;
+        }
+
+        /**
+         * Method to read what is available and process it.
+         *
+         * @return false if the stream has ended
+         */
+        boolean read() throws DockerException {
+            int count;
+            try {
+                count = channel.read(buffer);
+            } catch (IOException e) {
+                fail("read failed: " + e);
+                return false;
+            }
+            if (count < 0) {
+                ended = true;
+            }
+            return process();
+        }
+
+        /**
+         * Method to decode the bytes in the buffer and pass the log data to the ring buffer.
+         *
+         * @return false if the stream has ended
+         */
+        boolean process() throws DockerException {
+            buffer.flip();
+            blocked = false;
+            byte[] data = buffer.array();
+            int position = buffer.position();
+            int limit = buffer.limit();
+            while (position < limit && error == null && !blocked) {
+                if (!headersRead) {
+                    position = readHeaders(data, position, limit);
+                    if (!headersRead) {
+                        break;
+                    }
+                } else if (chunked && chunkRemaining == 0) {
+                    int next = readChunkSize(data, position, limit);
+                    if (next == position) {
+                        break;
+                    }
+                    position = next;
+                } else {
+                    long available = limit - position;
+                    if (chunked) {
+                        available = Math.min(available, chunkRemaining);
+                    } else if (bodyRemaining >= 0) {
+                        available = Math.min(available, bodyRemaining);
+                    }
+                    int consumed = demultiplex(data, position, (int) available);
+                    position += consumed;
+                    if (chunked) {
+                        chunkRemaining -= consumed;
+                    } else if (bodyRemaining >= 0) {
+                        bodyRemaining -= consumed;
+                    }
+                    if (consumed < available) {
+                        break;
+                    }
+                }
+                if (bodyRemaining == 0) {
+                    ended = true;
+                    break;
+                }
+            }
+            buffer.position(position);
+            buffer.compact();
+            if (!headersRead && !buffer.hasRemaining()) {
+                fail("response headers too large");
+            }
+            if (error != null || (ended && !blocked)) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        private int readHeaders(byte[] data, int position, int limit) {
+            for (int i = position; i + 3 < limit; i++) {
+                if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                    String[] lines = new String(data, position, i - position, StandardCharsets.ISO_8859_1)
+                            .split("\r\n");
+                    String[] statusLine = lines[0].split(" ", 3);
+                    headersRead = true;
+                    try {
+                        status = (statusLine.length > 1) ? Integer.parseInt(statusLine[1]) : 0;
+                        for (int l = 1; l < lines.length; l++) {
+                            int colon = lines[l].indexOf(':');
+                            if (colon > 0) {
+                                header(lines[l].substring(0, colon).trim(), lines[l].substring(colon + 1).trim());
+                            }
+                        }
+                    } catch (NumberFormatException e) {
+                        fail("invalid docker response " + lines[0] + ": " + e.getMessage());
+                        return i + 4;
+                    }
+                    if (status != HTTP_OK) {
+                        fail("docker response " + lines[0]);
+                    }
+                    return i + 4;
+                }
+            }
+            return position;
+        }
+
+        private void header(String name, String value) {
+            if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            } else if ("Content-Length".equalsIgnoreCase(name)) {
+                bodyRemaining = Long.parseLong(value);
+            } else if ("Content-Type".equalsIgnoreCase(name)
+                    && value.startsWith(MultiplexedStreamReader.MULTIPLEXED_STREAM_TYPE)) {
+                raw = Boolean.FALSE;
+            }
+        }
+
+        /**
+         * Method to read the line with the size of the next chunk, preceded by the line end of the previous one.
+         *
+         * @return position after the line, or the given position if the line is incomplete
+         */
+        private int readChunkSize(byte[] data, int position, int limit) {
+            int start = position;
+            if (chunkTrailer) {
+                if (limit - start < 2) {
+                    return position;
+                }
+                start += 2;
+            }
+            for (int i = start; i + 1 < limit; i++) {
+                if (data[i] == '\r' && data[i + 1] == '\n') {
+                    String line = new String(data, start, i - start, StandardCharsets.ISO_8859_1);
+                    int extension = line.indexOf(';');
+                    try {
+                        chunkRemaining = Long.parseLong((extension >= 0) ? line.substring(0, extension).trim()
+                                : line.trim(), 16);
+                    } catch (NumberFormatException e) {
+                        fail("invalid chunk size " + line);
+                        return i + 2;
+                    }
+                    chunkTrailer = true;
+                    if (chunkRemaining == 0) {
+                        ended = true;
+                        bodyRemaining = 0;
+                    }
+                    return i + 2;
+                }
+            }
+            return position;
+        }
+
+        /**
+         * Method to split the body into the log data of the frames and pass it to the ring buffer.
+         *
+         * @return number of bytes consumed, less than the length if the ring buffer is full
+         */
+        private int demultiplex(byte[] data, int offset, int length) {
+            if (raw == null) {
+                if (length < 4) {
+                    return 0;
+                }
+                // as for MultiplexedStreamReader, a stream not starting with a frame header is a TTY stream
+                raw = !(data[offset] >= 0 && data[offset] <= MAX_STREAM_ID && data[offset + 1] == 0
+                        && data[offset + 2] == 0 && data[offset + 3] == 0);
+                frameStart = raw;
+            }
+            int position = offset;
+            int end = offset + length;
+            while (position < end) {
+                if (!raw && frameRemaining == 0) {
+                    int count = Math.min(FRAME_HEADER_SIZE - headerFill, end - position);
+                    System.arraycopy(data, position, header, headerFill, count);
+                    headerFill += count;
+                    position += count;
+                    if (headerFill == FRAME_HEADER_SIZE) {
+                        frameRemaining = ((header[4] & 0xffL) << 24) | ((header[5] & 0xff) << 16)
+                                | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+                        headerFill = 0;
+                        frameStart = true;
+                    }
+                    continue;
+                }
+                int count = raw ? end - position : (int) Math.min(frameRemaining, end - position);
+                int accepted = ring.offer(index, frameStart, data, position, count);
+                if (accepted == 0) {
+                    blocked = true;
+                    break;
+                }
+                if (raw) {
+                    // TTY output may only be rotated at a line end
+                    frameStart = data[position + accepted - 1] == '\n';
+                } else {
+                    frameStart = false;
+                    frameRemaining -= accepted;
+                }
+                position += accepted;
+                bytes += accepted;
+                writer.wakeUp();
+            }
+            return position - offset;
+        }
+
+        void fail(String message) {
+            error = message;
+            failed++;
+            LOGGER.error("Log stream " + fileName + " failed: " + message);
+        }
+
+        void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Error while closing log stream ", e);
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Single worker taking the log data from the ring buffer and appending it to the log files. Files are flushed
+     * whenever the ring buffer is empty.
+     */
+    private final class Writer implements Runnable, LogRingBuffer.RecordHandler {
+
+        private ExecutorService executor;
+        private Future<?> running;
+        private volatile Thread thread;
+        private final List<RotatingFileOutputStream> files = new ArrayList<RotatingFileOutputStream>();
+        private final boolean[] dirty = new boolean[streams.size()];
+        private volatile boolean stopped;
+        private volatile boolean waiting;
+        private volatile DockerException failure;
+        private volatile long cpuNanos = -1;
+
+        void open() throws DockerException {
+            for (LogStream stream : streams) {
+                Path file = folder.resolve(stream.fileName);
+                try {
+                    files.add(new RotatingFileOutputStream(file, maxFileSize, maxFiles, FILE_BUFFER_SIZE));
+                } catch (IOException e) {
+                    closeFiles();
+                    LOGGER.error("Error while opening log file ", e);
+                    throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, file), e);
+                }
+            }
+        }
+
+        void start() {
+            executor = WorkerPool.newPool(1, "log-writer");
+            running = executor.submit(this);
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            try {
+                while (true) {
+                    if (ring.poll(this) == 0) {
+                        // stopped is read before the ring buffer is checked, so no data can be left behind
+                        boolean last = stopped;
+                        if (ring.isEmpty()) {
+                            flush();
+                            if (last) {
+                                break;
+                            }
+                            waiting = true;
+                            if (ring.isEmpty()) {
+                                LockSupport.parkNanos(WRITER_PARK_NANOS);
+                            }
+                            waiting = false;
+                        }
+                    }
+                }
+            } catch (DockerException e) {
+                failure = e;
+            } finally {
+                if (threads.isCurrentThreadCpuTimeSupported()) {
+                    try {
+                        cpuNanos = threads.getCurrentThreadCpuTime();
+                    } catch (UnsupportedOperationException e) {
+                        // a virtual thread has no cpu time of its own
+                        LOGGER.debug("Cpu time of the log writer is not available", e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void record(int stream, boolean frameStart, byte[] data, int offset, int length)
+                throws DockerException {
+            RotatingFileOutputStream file = files.get(stream);
+            try {
+                if (frameStart) {
+                    file.rotateIfFull();
+                }
+                file.write(data, offset, length);
+            } catch (IOException e) {
+                throw writeError(stream, e);
+            }
+            dirty[stream] = true;
+        }
+
+        private void flush() throws DockerException {
+            for (int i = 0; i < dirty.length; i++) {
+                if (dirty[i]) {
+                    try {
+                        files.get(i).flush();
+                    } catch (IOException e) {
+                        throw writeError(i, e);
+                    }
+                    dirty[i] = false;
+                }
+            }
+        }
+
+        /**
+         * Method to wake up the thread if it waits for data. A missed wake up only delays the writing.
+         */
+        void wakeUp() {
+            Thread writerThread = thread;
+            if (waiting && writerThread != null) {
+                LockSupport.unpark(writerThread);
+            }
+        }
+
+        void stop() throws DockerException {
+            stopped = true;
+            if (running != null) {
+                Thread writerThread = thread;
+                if (writerThread != null) {
+                    LockSupport.unpark(writerThread);
+                }
+                try {
+                    running.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Error while writing log files ", e.getCause());
+                } finally {
+                    executor.shutdown();
+                }
+            }
+            closeFiles();
+        }
+
+        private void closeFiles() throws DockerException {
+            DockerException closeFailure = null;
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    files.get(i).close();
+                } catch (IOException e) {
+                    closeFailure = writeError(i, e);
+                }
+            }
+            if (closeFailure != null) {
+                throw closeFailure;
+            }
+        }
+
+        private DockerException writeError(int stream, IOException e) {
+            Path file = folder.resolve(streams.get(stream).fileName);
+            LOGGER.error("Error while writing log file ", e);
+            return new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, file), e);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Properties file remembering, per container, the timestamp of the last log line fetched. Runs reading the logs of a
+ * container again pass it as since parameter and so fetch only new lines. Several containers can share one file; it
+ * is replaced atomically so that an interrupted run never leaves a damaged file behind.
+ */
+public class LogCursorFile {
+
+    private static final Logger LOGGER = LogManager.getLogger(LogCursorFile.class);
+
+    private static final String COMMENT = "Timestamp (seconds since the epoch) of the last log line read per container";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final Properties cursors = new Properties();
+
+    private LogCursorFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Method to read a cursor file. A missing file holds no cursors.
+     *
+     * @param file
+     *            path of the file
+     * @return the cursors
+     * @throws DockerException
+     */
+    public static LogCursorFile read(Path file) throws DockerException {
+        LogCursorFile cursorFile = new LogCursorFile(file);
+        if (Files.exists(file)) {
+            try (InputStream is = Files.newInputStream(file)) {
+                cursorFile.cursors.load(is);
+            } catch (IOException e) {
+                LOGGER.error("Error while reading cursor file ", e);
+                throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_READ_FILE, file), e);
+            }
+        }
+        return cursorFile;
+    }
+
+    /**
+     * @param container
+     *            container id or name
+     * @return timestamp of the last line read in nanoseconds since the epoch, -1 if unknown
+     */
+    public long get(String container) {
+        String value = cursors.getProperty(container);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return DockerTimestamp.parseSince(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid cursor [" + value + "] of container " + container);
+            return -1;
+        }
+    }
+
+    /**
+     * @param container
+     *            container id or name
+     * @param nanos
+     *            timestamp of the last line read in nanoseconds since the epoch
+     */
+    public void put(String container, long nanos) {
+        cursors.setProperty(container, DockerTimestamp.toSince(nanos));
+    }
+
+    /**
+     * Method to write the cursors back to the file.
+     *
+     * @throws DockerException
+     */
+    public void save() throws DockerException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                cursors.store(os, COMMENT);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Error while writing cursor file ", e);
+            throw new DockerException(String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, file), e);
+        }
+    }
+
+}
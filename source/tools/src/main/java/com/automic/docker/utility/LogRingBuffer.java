@@ -0,0 +1,156 @@
+package com.automic.docker.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Lock free ring buffer passing log data from exactly one producer thread to exactly one consumer thread. Every record
+ * is the data of one stream, identified by an index, preceded by an eight byte header holding the index, a flag for the
+ * start of a log frame and the length.
+ *
+ * The producer only advances the tail and the consumer only advances the head. Each side publishes its counter with
+ * an ordered write after it has copied the data, so the other side never sees a counter ahead of the data.
+ */
+public class LogRingBuffer {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_START = 0x80000000;
+
+    private final byte[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // cached counters of the other side, read again only when the buffer seems full or empty
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * Handler of the records taken from the buffer.
+     */
+    public interface RecordHandler {
+
+        /**
+         * Method to process the data of a record.
+         *
+         * @param stream
+         *            index of the stream
+         * @param frameStart
+         *            true if the data starts a log frame
+         * @param data
+         *            buffer holding the data, only valid during the call
+         * @param offset
+         *            offset of the data in the buffer
+         * @param length
+         *            number of bytes
+         * @throws DockerException
+         */
+        void record(int stream, boolean frameStart, byte[] data, int offset, int length) throws DockerException;
+    }
+
+    /**
+     * @param capacity
+     *            size of the buffer, rounded up to a power of two
+     */
+    public LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, HEADER_SIZE * 2) - 1) << 1;
+        buffer = new byte[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Method to append a record, called by the producer thread. If the buffer cannot take all data, only the part
+     * that fits is appended.
+     *
+     * @param stream
+     *            index of the stream
+     * @param frameStart
+     *            true if the data starts a log frame
+     * @param data
+     *            buffer holding the data
+     * @param offset
+     *            offset of the data in the buffer
+     * @param length
+     *            number of bytes
+     * @return number of bytes appended, 0 if the buffer is full
+     */
+    public int offer(int stream, boolean frameStart, byte[] data, int offset, int length) {
+        long position = tail.get();
+        long free = buffer.length - (position - cachedHead);
+        if (free < HEADER_SIZE + length) {
+            cachedHead = head.get();
+            free = buffer.length - (position - cachedHead);
+        }
+        int count = (int) Math.min(length, free - HEADER_SIZE);
+        if (count <= 0 && length > 0) {
+            return 0;
+        }
+        putInt(position, frameStart ? (stream | FRAME_START) : stream);
+        putInt(position + 4, count);
+        copyIn(position + HEADER_SIZE, data, offset, count);
+        tail.lazySet(position + HEADER_SIZE + count);
+        return count;
+    }
+
+    /**
+     * Method to take all records currently in the buffer, called by the consumer thread.
+     *
+     * @param handler
+     *            handler of the records
+     * @return number of records taken
+     * @throws DockerException
+     */
+    public int poll(RecordHandler handler) throws DockerException {
+        long position = head.get();
+        if (position == cachedTail) {
+            cachedTail = tail.get();
+        }
+        int records = 0;
+        while (position < cachedTail) {
+            int stream = getInt(position);
+            int length = getInt(position + 4);
+            int start = (int) ((position + HEADER_SIZE) & mask);
+            int first = Math.min(length, buffer.length - start);
+            boolean frameStart = (stream & FRAME_START) != 0;
+            handler.record(stream & ~FRAME_START, frameStart, buffer, start, first);
+            if (first < length) {
+                // the data wraps around, the rest is handed over as a continuation of the record
+                handler.record(stream & ~FRAME_START, false, buffer, 0, length - first);
+            }
+            position += HEADER_SIZE + length;
+            head.lazySet(position);
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * @return true if the consumer has taken all records
+     */
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    private void putInt(long position, int value) {
+        for (int i = 0; i < 4; i++) {
+            buffer[(int) ((position + i) & mask)] = (byte) (value >>> (24 - 8 * i));
+        }
+    }
+
+    private int getInt(long position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (buffer[(int) ((position + i) & mask)] & 0xff);
+        }
+        return value;
+    }
+
+    private void copyIn(long position, byte[] data, int offset, int length) {
+        int start = (int) (position & mask);
+        int first = Math.min(length, buffer.length - start);
+        System.arraycopy(data, offset, buffer, start, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.automic.docker.utility;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Series of the samples of one metric, kept in a primitive array of fixed size. Count, minimum, maximum and average
+ * cover all samples. Percentiles are computed from the array; once more samples have been added than it holds, it is
+ * a uniform random sample of all of them (reservoir sampling), so the memory used does not grow with the window.
+ */
+public class MetricSeries {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final double[] samples;
+    private final Random random = new Random(SEED);
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double sum;
+    private double[] sorted;
+
+    /**
+     * @param capacity
+     *            number of samples kept for the percentiles
+     */
+    public MetricSeries(int capacity) {
+        this.samples = new double[capacity];
+    }
+
+    /**
+     * Method to add a sample. Samples which are not a number are ignored.
+     *
+     * @param value
+     *            the sample
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (count < samples.length) {
+            samples[(int) count] = value;
+        } else {
+            long index = (long) (random.nextDouble() * (count + 1));
+            if (index < samples.length) {
+                samples[(int) index] = value;
+            }
+        }
+        count++;
+        min = (count == 1) ? value : Math.min(min, value);
+        max = (count == 1) ? value : Math.max(max, value);
+        sum += value;
+        sorted = null;
+    }
+
+    /**
+     * @return number of samples added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return average of all samples, NaN if there are none
+     */
+    public double getAverage() {
+        return (count > 0) ? sum / count : Double.NaN;
+    }
+
+    /**
+     * Method to get a percentile by the nearest rank method.
+     *
+     * @param percentile
+     *            percentile from 0 to 100
+     * @return the percentile, NaN if there are no samples
+     */
+    public double getPercentile(double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (sorted == null) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+            Arrays.sort(sorted);
+        }
+        int rank = (int) Math.ceil(percentile / 100d * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.Constants;
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Utility class to read the stdout/stderr stream given by docker remote API for attach, exec and logs.
+ *
+ * Without a TTY docker multiplexes both streams into frames, each preceded by an 8 byte header holding the stream type
+ * and the size of the payload. The stream is read in large blocks into one buffer taken from a pool, the headers are
+ * parsed in place and the payload is handed to the {@link FrameHandler} as slices of that buffer, so reading a frame
+ * allocates nothing. A frame larger than the buffer is handed over in several slices.
+ *
+ * With a TTY docker sends the raw output without any framing, which is handed over as a single stdout frame. If the
+ * caller does not know which kind of stream it gets, the first bytes are checked for a valid frame header.
+ */
+public class MultiplexedStreamReader {
+
+    /**
+     * Content type docker (API 1.42 and later) sends for multiplexed streams
+     */
+    public static final String MULTIPLEXED_STREAM_TYPE = "application/vnd.docker.multiplexed-stream";
+
+    private static final Logger LOGGER = LogManager.getLogger(MultiplexedStreamReader.class);
+
+    private static final int HEADER_SIZE = 8;
+    private static final int SIZE_INDEX = 4;
+    private static final int MAX_STREAM_ID = Constants.STDERR_CODE;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final long UNSIGNED_INT_MASK = 0xffffffffL;
+
+    private static final Queue<byte[]> BUFFER_POOL = new ConcurrentLinkedQueue<byte[]>();
+
+    private final InputStream in;
+    private FrameHandler handler;
+    private Boolean tty;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long frames;
+    private long bytes;
+
+    /**
+     * Handler receiving the frames of the stream. The slices passed to {@link #write(byte[], int, int)} are only valid
+     * during the call, as the buffer is reused for the following data.
+     */
+    public interface FrameHandler {
+
+        /**
+         * Called at the beginning of a frame.
+         *
+         * @param streamId
+         *            stream type, {@link Constants#STDOUT_CODE} or {@link Constants#STDERR_CODE} (0 is stdin)
+         * @param length
+         *            size of the payload, -1 for the unframed stream of a TTY
+         * @throws DockerException
+         */
+        void startFrame(int streamId, long length) throws DockerException;
+
+        /**
+         * Called with a part of the payload of the current frame.
+         *
+         * @param data
+         *            buffer holding the data
+         * @param offset
+         *            offset of the data in the buffer
+         * @param length
+         *            number of bytes
+         * @throws DockerException
+         */
+        void write(byte[] data, int offset, int length) throws DockerException;
+
+        /**
+         * Called at the end of a frame.
+         *
+         * @throws DockerException
+         */
+        void endFrame() throws DockerException;
+
+        /**
+         * Called when all data received so far has been handed over and the reader is going to wait for more, which
+         * is the moment to flush buffered output.
+         *
+         * @throws DockerException
+         */
+        void idle() throws DockerException;
+    }
+
+    /**
+     * Creates a reader which detects from the first bytes whether the stream is multiplexed.
+     *
+     * @param in
+     *            stream of the response
+     */
+    public MultiplexedStreamReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates a reader for a stream known to be multiplexed or not.
+     *
+     * @param in
+     *            stream of the response
+     * @param tty
+     *            true if the stream is the raw output of a TTY
+     */
+    public MultiplexedStreamReader(InputStream in, boolean tty) {
+        this.in = in;
+        this.tty = tty;
+    }
+
+    /**
+     * Method to create a reader for a response of the given content type. Only newer docker versions tell multiplexed
+     * streams apart by their content type, for others the stream is checked.
+     *
+     * @param in
+     *            stream of the response
+     * @param contentType
+     *            content type of the response, may be null
+     * @return the reader
+     */
+    public static MultiplexedStreamReader forContentType(InputStream in, String contentType) {
+        if (contentType != null && contentType.startsWith(MULTIPLEXED_STREAM_TYPE)) {
+            return new MultiplexedStreamReader(in, false);
+        }
+        return new MultiplexedStreamReader(in);
+    }
+
+    /**
+     * Method to read the stream to its end and hand all frames to the handler.
+     *
+     * @param handler
+     *            handler receiving the frames
+     * @return number of payload bytes read
+     * @throws DockerException
+     */
+    public long readAll(FrameHandler handler) throws DockerException {
+        this.handler = handler;
+        buffer = acquireBuffer();
+        try {
+            if (tty == null) {
+                while (limit < HEADER_SIZE && fill()) {
+                    // the first bytes decide whether the stream is multiplexed
+                }
+                tty = !startsWithHeader();
+                LOGGER.info("Reading " + (tty ? "raw TTY" : "multiplexed") + " stream");
+            }
+            if (tty) {
+                readRaw();
+            } else {
+                readFrames();
+            }
+        } finally {
+            releaseBuffer(buffer);
+            buffer = null;
+            this.handler = null;
+        }
+        LOGGER.info("Read " + frames + " frames with " + bytes + " bytes");
+        return bytes;
+    }
+
+    private void readRaw() throws DockerException {
+        if (limit == 0 && !fill()) {
+            return;
+        }
+        frames++;
+        handler.startFrame(Constants.STDOUT_CODE, -1);
+        do {
+            handler.write(buffer, 0, limit);
+            bytes += limit;
+            limit = 0;
+        } while (fill());
+        handler.endFrame();
+    }
+
+    private void readFrames() throws DockerException {
+        while (true) {
+            if (limit - position < HEADER_SIZE) {
+                compact();
+                while (limit < HEADER_SIZE && fill()) {
+                    // a header may arrive in pieces
+                }
+                if (limit < HEADER_SIZE) {
+                    if (limit > position) {
+                        LOGGER.error("Stream ended within a frame header, ignoring " + (limit - position) + " bytes");
+                    }
+                    return;
+                }
+            }
+            int streamId = buffer[position];
+            long remaining = readInt(position + SIZE_INDEX) & UNSIGNED_INT_MASK;
+            position += HEADER_SIZE;
+            frames++;
+
+            handler.startFrame(streamId, remaining);
+            while (remaining > 0) {
+                if (position == limit) {
+                    position = 0;
+                    limit = 0;
+                    if (!fill()) {
+                        LOGGER.error(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM + " Stream ended within a frame");
+                        throw new DockerException(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM);
+                    }
+                }
+                int n = (int) Math.min(remaining, limit - position);
+                handler.write(buffer, position, n);
+                position += n;
+                remaining -= n;
+                bytes += n;
+            }
+            handler.endFrame();
+        }
+    }
+
+    /**
+     * A frame header starts with the stream type (0, 1 or 2) followed by three zero bytes. Raw output that is too
+     * short to hold a header is treated as raw output as well.
+     */
+    private boolean startsWithHeader() {
+        return limit >= HEADER_SIZE && buffer[0] >= 0 && buffer[0] <= MAX_STREAM_ID && buffer[1] == 0
+                && buffer[2] == 0 && buffer[3] == 0;
+    }
+
+    private int readInt(int offset) {
+        return ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16)
+                | ((buffer[offset + 2] & 0xff) << 8) | (buffer[offset + 3] & 0xff);
+    }
+
+    /**
+     * Method to move the unread bytes (less than a header) to the start of the buffer.
+     */
+    private void compact() {
+        int remaining = limit - position;
+        System.arraycopy(buffer, position, buffer, 0, remaining);
+        position = 0;
+        limit = remaining;
+    }
+
+    /**
+     * Method to read into the free part of the buffer. It blocks until at least one byte has been read or the stream
+     * has ended, so that a followed stream hands over data as soon as it arrives. The handler is told before the
+     * read blocks.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws DockerException {
+        try {
+            if (in.available() == 0) {
+                handler.idle();
+            }
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException e) {
+            LOGGER.error(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+            throw new DockerException(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+        }
+    }
+
+    /**
+     * Method to close the underlying input stream.
+     *
+     * @throws DockerException
+     *             if there was an error closing stream
+     */
+    public void close() throws DockerException {
+        try {
+            in.close();
+        } catch (IOException e) {
+            LOGGER.error(ExceptionConstants.UNABLE_TO_CLOSE_INPUTSTREAM, e);
+            throw new DockerException(ExceptionConstants.UNABLE_TO_CLOSE_INPUTSTREAM, e);
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        byte[] pooled = BUFFER_POOL.poll();
+        return (pooled != null) ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] released) {
+        if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+            BUFFER_POOL.offer(released);
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Reader of newline delimited json, as docker streams events and progress messages. Every object is parsed as soon as
+ * its line is complete, so a long lived stream can be processed while it is open. Only the current line is held in
+ * memory.
+ */
+public class NdjsonReader {
+
+    private static final Logger LOGGER = LogManager.getLogger(NdjsonReader.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private String line;
+    private long lines;
+    private volatile boolean closed;
+
+    /**
+     * @param in
+     *            stream to read
+     */
+    public NdjsonReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Method to read the next object, blocking until its line is complete.
+     *
+     * @return the object, null at the end of the stream
+     * @throws DockerException
+     *             if the stream cannot be read or a line is no json object
+     */
+    public JSONObject next() throws DockerException {
+        String json = nextLine();
+        if (json == null) {
+            return null;
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            LOGGER.error("Invalid json line [" + json + "]", e);
+            throw new DockerException(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+        }
+    }
+
+    /**
+     * Method to read the next non blank line without parsing it, for callers which only need a few fields of it.
+     *
+     * @return the line, null at the end of the stream
+     * @throws DockerException
+     *             if the stream cannot be read
+     */
+    public String nextLine() throws DockerException {
+        while (true) {
+            int end = findLineEnd();
+            while (end < 0) {
+                if (!fill()) {
+                    if (position == limit || closed) {
+                        return null;
+                    }
+                    // the last line is not terminated
+                    end = limit;
+                    break;
+                }
+                end = findLineEnd();
+            }
+            int lineEnd = (end > position && buffer[end - 1] == '\r') ? end - 1 : end;
+            line = new String(buffer, position, lineEnd - position, StandardCharsets.UTF_8);
+            position = Math.min(end + 1, limit);
+            if (!line.trim().isEmpty()) {
+                lines++;
+                return line;
+            }
+        }
+    }
+
+    /**
+     * @return the line returned last
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @return number of lines read
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Method to check whether the next call of {@link #next()} would block, e.g. to flush output before.
+     *
+     * @return true if no complete line is buffered and no data is available
+     * @throws DockerException
+     */
+    public boolean isIdle() throws DockerException {
+        try {
+            return findLineEnd() < 0 && in.available() == 0;
+        } catch (IOException e) {
+            LOGGER.error(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+            throw new DockerException(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+        }
+    }
+
+    private int findLineEnd() {
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to read more data, moving the incomplete line to the start of the buffer and growing the buffer if the
+     * line fills it.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws DockerException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0 || closed) {
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            if (closed) {
+                return false;
+            }
+            LOGGER.error(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+            throw new DockerException(ExceptionConstants.UNABLE_TO_READ_INPUTSTREAM, e);
+        }
+    }
+
+    /**
+     * Method to close the stream, which may be called by another thread to end a blocked {@link #next()} as if the
+     * stream had ended.
+     */
+    public void close() {
+        closed = true;
+        try {
+            in.close();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(ExceptionConstants.UNABLE_TO_CLOSE_INPUTSTREAM, e);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.automic.docker.utility;
+
+import java.io.OutputStream;
+
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Target of one output stream of a command (stdout or stderr). Data is buffered and flushed according to a
+ * {@link FlushPolicy}, and whenever no more data is available for the moment, so the job report follows the command
+ * live. Optionally the end of the output is kept in a {@link TailBuffer}.
+ */
+public class OutputSink {
+
+    private final ByteWriter writer;
+    private final FlushPolicy flushPolicy;
+    private final TailBuffer tail;
+    private final boolean closeable;
+    private boolean dirty;
+
+    /**
+     * @param out
+     *            stream to write to
+     * @param closeable
+     *            true if the stream is to be closed with the sink, false for console streams
+     * @param tailSize
+     *            number of bytes of the end of the output to keep, 0 for none
+     * @throws DockerException
+     */
+    public OutputSink(OutputStream out, boolean closeable, int tailSize) throws DockerException {
+        this.writer = new ByteWriter(out);
+        this.flushPolicy = FlushPolicy.fromSettings();
+        this.tail = (tailSize > 0) ? new TailBuffer(tailSize) : null;
+        this.closeable = closeable;
+    }
+
+    /**
+     * Method to write bytes.
+     *
+     * @param data
+     *            buffer holding the data
+     * @param offset
+     *            offset of the data in the buffer
+     * @param length
+     *            number of bytes
+     * @throws DockerException
+     */
+    public void write(byte[] data, int offset, int length) throws DockerException {
+        writer.write(data, offset, length);
+        dirty = true;
+        if (tail != null) {
+            tail.write(data, offset, length);
+        }
+        if (flushPolicy.written(data, offset, length)) {
+            flush();
+        }
+    }
+
+    /**
+     * Method to write bytes.
+     *
+     * @param data
+     *            the data
+     * @throws DockerException
+     */
+    public void write(byte[] data) throws DockerException {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Method to flush the buffered data, called when no more data is available for the moment.
+     *
+     * @throws DockerException
+     */
+    public void flush() throws DockerException {
+        if (dirty) {
+            writer.flush();
+            flushPolicy.flushed();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Method to flush the sink and close its stream unless it is a console stream.
+     *
+     * @throws DockerException
+     */
+    public void close() throws DockerException {
+        if (closeable) {
+            writer.close();
+        } else {
+            writer.flush();
+        }
+    }
+
+    /**
+     * @return the end of the output, null if the sink does not keep it
+     */
+    public TailBuffer getTail() {
+        return tail;
+    }
+
+}
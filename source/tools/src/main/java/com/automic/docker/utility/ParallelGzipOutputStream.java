@@ -0,0 +1,266 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream writing gzip data compressed by several threads, in the way pigz does it. The input is cut into blocks
+ * which are deflated independently, each one primed with the last 32 KB of the previous block as dictionary, and
+ * terminated by a sync flush so that the compressed blocks simply concatenate to one deflate stream. The result is a
+ * normal single member gzip file.
+ *
+ * The pipeline is bounded: at most twice as many blocks as threads are in flight, and their buffers are reused, so the
+ * memory used does not depend on the amount of data. Compressed blocks are written to the underlying stream in order
+ * by the thread writing to this stream.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte OS_UNKNOWN = (byte) 0xff;
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final int level;
+    private final ExecutorService executor;
+    private final Deque<Block> freeBlocks = new ArrayDeque<Block>();
+    private final Deque<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+    private final int maxPending;
+    private final CRC32 crc = new CRC32();
+    private final byte[] dictionary = new byte[DICTIONARY_SIZE];
+
+    private Block current;
+    private int dictionaryLength;
+    private long bytesIn;
+    private long bytesOut;
+    private boolean finished;
+
+    /**
+     * Creates the stream and writes the gzip header.
+     *
+     * @param out
+     *            stream receiving the compressed data
+     * @param threads
+     *            number of compression threads
+     * @param blockSize
+     *            size of the blocks compressed independently
+     * @param level
+     *            deflate compression level
+     * @throws IOException
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize, int level) throws IOException {
+        this.out = out;
+        this.blockSize = Math.max(blockSize, DICTIONARY_SIZE);
+        this.level = level;
+        this.maxPending = 2 * threads;
+        this.executor = WorkerPool.newPool(threads, "gzip-compressor");
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        header[0] = (byte) GZIP_MAGIC;
+        header[1] = (byte) (GZIP_MAGIC >> Byte.SIZE);
+        header[2] = Deflater.DEFLATED;
+        header[HEADER_SIZE - 1] = OS_UNKNOWN;
+        out.write(header);
+        bytesOut += HEADER_SIZE;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        crc.update(b, off, len);
+        bytesIn += len;
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (current == null) {
+                current = takeBlock();
+            }
+            int n = Math.min(remaining, blockSize - current.length);
+            System.arraycopy(b, offset, current.input, current.length, n);
+            current.length += n;
+            offset += n;
+            remaining -= n;
+            if (current.length == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Method to compress the remaining data and write the gzip trailer. The underlying stream is flushed but not
+     * closed.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            if (current == null) {
+                current = takeBlock();
+            }
+            submit(true);
+            while (!pending.isEmpty()) {
+                writeBlock(pending.poll());
+            }
+            byte[] trailer = new byte[TRAILER_SIZE];
+            writeInt(trailer, 0, crc.getValue());
+            writeInt(trailer, TRAILER_SIZE / 2, bytesIn);
+            out.write(trailer);
+            bytesOut += TRAILER_SIZE;
+            out.flush();
+        } finally {
+            finished = true;
+            shutdown();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Method to stop the compression threads without writing the remaining data, used if the upload failed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        for (Block block : freeBlocks) {
+            block.deflater.end();
+        }
+        freeBlocks.clear();
+    }
+
+    /**
+     * @return number of uncompressed bytes written to this stream
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return number of compressed bytes written to the underlying stream
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    private Block takeBlock() {
+        Block block = freeBlocks.poll();
+        if (block == null) {
+            block = new Block(blockSize, level);
+        }
+        block.length = 0;
+        return block;
+    }
+
+    private void submit(boolean last) throws IOException {
+        Block block = current;
+        current = null;
+        System.arraycopy(dictionary, 0, block.dictionary, 0, dictionaryLength);
+        block.dictionaryLength = dictionaryLength;
+        block.last = last;
+
+        // the end of this block is the dictionary of the next one
+        dictionaryLength = Math.min(DICTIONARY_SIZE, block.length);
+        System.arraycopy(block.input, block.length - dictionaryLength, dictionary, 0, dictionaryLength);
+
+        while (pending.size() >= maxPending) {
+            writeBlock(pending.poll());
+        }
+        pending.add(executor.submit(block));
+    }
+
+    private void writeBlock(Future<Block> future) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+        out.write(block.output, 0, block.outputLength);
+        bytesOut += block.outputLength;
+        freeBlocks.add(block);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < TRAILER_SIZE / 2; i++) {
+            buffer[offset + i] = (byte) (value >> (i * Byte.SIZE));
+        }
+    }
+
+    /**
+     * A block of input together with its compressed form. Blocks and their deflaters are reused.
+     */
+    private static final class Block implements Callable<Block> {
+
+        private final Deflater deflater;
+        private final byte[] input;
+        private final byte[] dictionary = new byte[DICTIONARY_SIZE];
+        private byte[] output;
+        private int length;
+        private int dictionaryLength;
+        private int outputLength;
+        private boolean last;
+
+        Block(int blockSize, int level) {
+            this.deflater = new Deflater(level, true);
+            this.input = new byte[blockSize];
+            // incompressible data grows by a few bytes per 16 KB, the buffer is enlarged if that is not enough
+            this.output = new byte[blockSize + blockSize / 8 + 64];
+        }
+
+        @Override
+        public Block call() {
+            deflater.reset();
+            if (dictionaryLength > 0) {
+                deflater.setDictionary(dictionary, 0, dictionaryLength);
+            }
+            deflater.setInput(input, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            outputLength = 0;
+            while (true) {
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength, flush);
+                boolean done = last ? deflater.finished() : outputLength < output.length;
+                if (done) {
+                    return this;
+                }
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package com.automic.docker.utility;
+
+/**
+ * One message of the progress docker streams while it pulls, pushes, imports or builds an image, e.g.
+ * {"status":"Downloading","progressDetail":{"current":1024,"total":4096},"progress":"[=> ]","id":"a3ed95caeb02"}.
+ *
+ * Only the fields needed to follow the progress are extracted, scanning the line once without building a json object
+ * for it. An instance is reused for every line of a stream.
+ */
+public class ProgressMessage {
+
+    private static final String STATUS = "status";
+    private static final String ID = "id";
+    private static final String ERROR = "error";
+    private static final String STREAM = "stream";
+    private static final String PROGRESS = "progress";
+    private static final String PROGRESS_DETAIL = "progressDetail";
+    private static final String CURRENT = "current";
+    private static final String TOTAL = "total";
+
+    private String line;
+    private int position;
+
+    private String status;
+    private String id;
+    private String error;
+    private String stream;
+    private boolean progress;
+    private long current;
+    private long total;
+
+    /**
+     * Method to parse a line, replacing the fields of the previous one.
+     *
+     * @param json
+     *            the line
+     * @return false if the line is no json object
+     */
+    public boolean parse(String json) {
+        line = json;
+        position = 0;
+        status = null;
+        id = null;
+        error = null;
+        stream = null;
+        progress = false;
+        current = -1;
+        total = -1;
+        try {
+            return parseObject(true) && skipWhitespace() == line.length();
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method to parse an object, extracting the fields of the message at the top level and the counters of the
+     * progress detail below it.
+     */
+    private boolean parseObject(boolean top) {
+        if (charAt(skipWhitespace()) != '{') {
+            return false;
+        }
+        position++;
+        if (charAt(skipWhitespace()) == '}') {
+            position++;
+            return true;
+        }
+        while (true) {
+            if (charAt(skipWhitespace()) != '"') {
+                return false;
+            }
+            String key = parseString();
+            if (charAt(skipWhitespace()) != ':') {
+                return false;
+            }
+            position++;
+            char first = charAt(skipWhitespace());
+            if (first == '"' && top && isTextField(key)) {
+                setText(key, parseString());
+            } else if (first == '{' && top && PROGRESS_DETAIL.equals(key)) {
+                if (!parseObject(false)) {
+                    return false;
+                }
+            } else if (!top && (first == '-' || Character.isDigit(first))
+                    && (CURRENT.equals(key) || TOTAL.equals(key))) {
+                long value = parseNumber();
+                if (CURRENT.equals(key)) {
+                    current = value;
+                } else {
+                    total = value;
+                }
+            } else {
+                if (top && PROGRESS.equals(key)) {
+                    progress = true;
+                }
+                if (!skipValue()) {
+                    return false;
+                }
+            }
+            char next = charAt(skipWhitespace());
+            position++;
+            if (next == '}') {
+                return true;
+            }
+            if (next != ',') {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isTextField(String key) {
+        return STATUS.equals(key) || ID.equals(key) || ERROR.equals(key) || STREAM.equals(key)
+                || PROGRESS.equals(key);
+    }
+
+    private void setText(String key, String value) {
+        switch (key) {
+            case STATUS:
+                status = value;
+                break;
+            case ID:
+                id = value;
+                break;
+            case ERROR:
+                error = value;
+                break;
+            case STREAM:
+                stream = value;
+                break;
+            default:
+                progress = true;
+                break;
+        }
+    }
+
+    /**
+     * Method to parse a string starting at the current position, which is a quote.
+     */
+    private String parseString() {
+        int start = ++position;
+        int end = line.indexOf('"', start);
+        if (end < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        int escape = line.indexOf('\\', start);
+        if (escape < 0 || escape > end) {
+            position = end + 1;
+            return line.substring(start, end);
+        }
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = line.charAt(position++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = line.charAt(position++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    value.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+                    position += 4;
+                    break;
+                default:
+                    value.append(escaped);
+                    break;
+            }
+        }
+    }
+
+    private long parseNumber() {
+        int start = position;
+        while (position < line.length() && "+-0123456789.eE".indexOf(line.charAt(position)) >= 0) {
+            position++;
+        }
+        String number = line.substring(start, position);
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(number);
+        }
+    }
+
+    /**
+     * Method to skip a value of any type, including nested objects and arrays.
+     */
+    private boolean skipValue() {
+        char first = charAt(position);
+        if (first == '"') {
+            parseString();
+            return true;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (true) {
+                char c = charAt(position);
+                if (c == '"') {
+                    parseString();
+                    continue;
+                }
+                position++;
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return true;
+                }
+            }
+        }
+        int start = position;
+        while (position < line.length() && ",}] \t\r\n".indexOf(line.charAt(position)) < 0) {
+            position++;
+        }
+        return position > start;
+    }
+
+    private int skipWhitespace() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private char charAt(int index) {
+        return line.charAt(index);
+    }
+
+    /**
+     * @return the line parsed last
+     */
+    public String getLine() {
+        return line;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return output of a build step, null for other messages
+     */
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * @return true if the message carries a progress bar, which is not worth logging
+     */
+    public boolean isProgress() {
+        return progress;
+    }
+
+    /**
+     * @return bytes processed of the layer, -1 if unknown
+     */
+    public long getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return size of the layer, -1 if unknown
+     */
+    public long getTotal() {
+        return total;
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.automic.docker.utility;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregation of the progress messages of the layers of a pull, push or build. The bytes downloaded and extracted are
+ * tracked per layer, so that the overall progress and the transfer rate can be reported every few seconds instead of
+ * a line per message.
+ */
+public class PullProgress {
+
+    private static final double BYTES_PER_MB = 1024d * 1024d;
+    private static final double MILLIS_PER_SECOND = 1000d;
+    private static final int PERCENT = 100;
+
+    private final long interval;
+    private final long started;
+    private final Map<String, Layer> layers = new HashMap<String, Layer>();
+    private long lastReport;
+    private long lastTransferred;
+    private boolean changed;
+
+    /**
+     * @param interval
+     *            minimum time in milliseconds between two reports
+     * @param now
+     *            current time in milliseconds
+     */
+    public PullProgress(long interval, long now) {
+        this.interval = interval;
+        this.started = now;
+        this.lastReport = now;
+    }
+
+    /**
+     * Method to apply a message to the layer it refers to. Messages without a layer id are ignored.
+     *
+     * @param message
+     *            the message
+     */
+    public void update(ProgressMessage message) {
+        String status = message.getStatus();
+        if (message.getId() == null || status == null || message.getError() != null) {
+            return;
+        }
+        Layer layer = layers.get(message.getId());
+        if (layer == null) {
+            // the status of the image itself, e.g. "Pulling from library/busybox", has the tag as id
+            if (status.startsWith("Pulling from") || status.startsWith("Digest")) {
+                return;
+            }
+            layer = new Layer();
+            layers.put(message.getId(), layer);
+        }
+        if (message.getTotal() > 0) {
+            layer.size = message.getTotal();
+        }
+        if ("Downloading".equals(status) || "Pushing".equals(status)) {
+            layer.transferred = Math.max(0, message.getCurrent());
+        } else if ("Verifying Checksum".equals(status) || "Download complete".equals(status)) {
+            layer.transferred = Math.max(layer.transferred, layer.size);
+        } else if ("Extracting".equals(status)) {
+            layer.transferred = Math.max(layer.transferred, layer.size);
+            layer.extracted = Math.max(0, message.getCurrent());
+        } else if ("Pull complete".equals(status) || "Pushed".equals(status) || status.endsWith("exists")) {
+            layer.transferred = Math.max(layer.transferred, layer.size);
+            layer.extracted = Math.max(layer.extracted, layer.size);
+            layer.complete = true;
+        }
+        changed = true;
+    }
+
+    /**
+     * Method to get a summary if the interval has passed since the last one and the progress has changed.
+     *
+     * @param now
+     *            current time in milliseconds
+     * @return the summary or null
+     */
+    public String poll(long now) {
+        if (!changed || now - lastReport < interval) {
+            return null;
+        }
+        long transferred = getTransferred();
+        String summary = summarize(transferred, transferred - lastTransferred, now - lastReport);
+        lastReport = now;
+        lastTransferred = transferred;
+        changed = false;
+        return summary;
+    }
+
+    /**
+     * Method to get the summary of the whole pull, with the average transfer rate.
+     *
+     * @param now
+     *            current time in milliseconds
+     * @return the summary, null if no layer has been reported
+     */
+    public String finish(long now) {
+        if (layers.isEmpty()) {
+            return null;
+        }
+        long transferred = getTransferred();
+        return summarize(transferred, transferred, now - started);
+    }
+
+    private long getTransferred() {
+        long transferred = 0;
+        for (Layer layer : layers.values()) {
+            transferred += layer.transferred;
+        }
+        return transferred;
+    }
+
+    private String summarize(long transferred, long delta, long elapsed) {
+        long size = 0;
+        long done = 0;
+        int complete = 0;
+        for (Layer layer : layers.values()) {
+            if (layer.size > 0) {
+                size += 2 * layer.size;
+                done += Math.min(layer.transferred, layer.size) + Math.min(layer.extracted, layer.size);
+            }
+            if (layer.complete) {
+                complete++;
+            }
+        }
+        long percent = (complete == layers.size()) ? PERCENT : ((size > 0) ? done * PERCENT / size : 0);
+        double rate = (elapsed > 0) ? delta / BYTES_PER_MB / (elapsed / MILLIS_PER_SECOND) : 0;
+        return String.format(Locale.ROOT, "Progress: %d%% (%.1f of %.1f MB transferred, %d/%d layers complete, "
+                + "%.1f MB/s)", percent, transferred / BYTES_PER_MB, size / 2 / BYTES_PER_MB, complete,
+                layers.size(), rate);
+    }
+
+    /**
+     * Progress of one layer.
+     */
+    private static final class Layer {
+
+        private long size;
+        private long transferred;
+        private long extracted;
+        private boolean complete;
+    }
+
+}
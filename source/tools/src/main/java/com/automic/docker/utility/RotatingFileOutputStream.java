@@ -0,0 +1,120 @@
+package com.automic.docker.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Buffered output stream appending to a file which is rotated once it has reached a maximum size: the file is renamed
+ * to name.1, an existing name.1 to name.2 and so on, and the oldest file beyond the number of files to keep is
+ * deleted. Rotation only happens in {@link #rotateIfFull()}, so that callers can keep records such as log lines in
+ * one file.
+ */
+public class RotatingFileOutputStream extends OutputStream {
+
+    private static final Logger LOGGER = LogManager.getLogger(RotatingFileOutputStream.class);
+
+    private final Path file;
+    private final long maxSize;
+    private final int maxBackups;
+    private final int bufferSize;
+    private OutputStream out;
+    private long size;
+    private int rotations;
+
+    /**
+     * Creates the stream, appending to the file if it already exists.
+     *
+     * @param file
+     *            file to write to
+     * @param maxSize
+     *            size after which the file is rotated, 0 to never rotate
+     * @param maxBackups
+     *            number of rotated files to keep
+     * @param bufferSize
+     *            size of the write buffer
+     * @throws IOException
+     */
+    public RotatingFileOutputStream(Path file, long maxSize, int maxBackups, int bufferSize) throws IOException {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.maxBackups = maxBackups;
+        this.bufferSize = bufferSize;
+        open();
+    }
+
+    private void open() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND), bufferSize);
+        size = Files.size(file);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Method to rotate the file if it has reached its maximum size.
+     *
+     * @throws IOException
+     */
+    public void rotateIfFull() throws IOException {
+        if (maxSize <= 0 || size < maxSize) {
+            return;
+        }
+        out.close();
+        if (maxBackups > 0) {
+            Files.deleteIfExists(backup(maxBackups));
+            for (int i = maxBackups - 1; i >= 1; i--) {
+                Path source = backup(i);
+                if (Files.exists(source)) {
+                    Files.move(source, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        rotations++;
+        LOGGER.info("Rotated " + file + " at " + size + " bytes");
+        open();
+    }
+
+    private Path backup(int index) {
+        return Paths.get(file.toString() + "." + index);
+    }
+
+    /**
+     * @return number of rotations done by this stream
+     */
+    public int getRotations() {
+        return rotations;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.automic.docker.utility;
+
+import java.util.Locale;
+
+/**
+ * Criteria shared by the selections of containers and images: the age, like age&gt;7d, compared to the Created
+ * timestamp, and values which may end with * to match a prefix.
+ */
+final class SelectionCriteria {
+
+    static final String AGE = "age";
+
+    private static final String WILDCARD = "*";
+
+    private static final long SECONDS_PER_MINUTE = 60L;
+    private static final long SECONDS_PER_HOUR = 3600L;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private SelectionCriteria() {
+    }
+
+    /**
+     * @return true if the entry of a selection is an age criterion
+     */
+    static boolean isAge(String entry) {
+        return entry.toLowerCase(Locale.ROOT).startsWith(AGE);
+    }
+
+    /**
+     * Method to parse an age criterion like age&gt;7d, age&gt;=90 or age&lt;2h.
+     *
+     * @return the criterion, null if it is invalid
+     */
+    static Age parseAge(String entry) {
+        String operator = entry.substring(AGE.length());
+        String value = operator.replaceFirst("^[<>]=?", "");
+        operator = operator.substring(0, operator.length() - value.length());
+        long seconds = parseSeconds(value.trim());
+        return (operator.isEmpty() || seconds < 0) ? null : new Age(operator, seconds);
+    }
+
+    /**
+     * Method to parse a duration like 90, 90s, 15m, 2h or 7d.
+     *
+     * @return the seconds, -1 if the duration is invalid
+     */
+    private static long parseSeconds(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        long unit = 1;
+        switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'd':
+                unit = SECONDS_PER_DAY;
+                break;
+            case 'h':
+                unit = SECONDS_PER_HOUR;
+                break;
+            case 'm':
+                unit = SECONDS_PER_MINUTE;
+                break;
+            case 's':
+                break;
+            default:
+                return value.matches("\\d+") ? Long.parseLong(value) : -1;
+        }
+        String number = value.substring(0, value.length() - 1).trim();
+        return number.matches("\\d+") ? Long.parseLong(number) * unit : -1;
+    }
+
+    /**
+     * @param expected
+     *            value of a criterion, which may end with * to match a prefix
+     * @param actual
+     *            value of the container or image
+     * @return true if the value matches
+     */
+    static boolean matchesValue(String expected, String actual) {
+        if (expected.endsWith(WILDCARD)) {
+            return actual.startsWith(expected.substring(0, expected.length() - 1));
+        }
+        return expected.equals(actual);
+    }
+
+    /**
+     * Age criterion, an operator and a number of seconds.
+     */
+    static final class Age {
+
+        private final String operator;
+        private final long seconds;
+
+        private Age(String operator, long seconds) {
+            this.operator = operator;
+            this.seconds = seconds;
+        }
+
+        /**
+         * @param age
+         *            age in seconds of a container or image
+         * @return true if the age matches
+         */
+        boolean matches(long age) {
+            switch (operator) {
+                case ">":
+                    return age > seconds;
+                case ">=":
+                    return age >= seconds;
+                case "<":
+                    return age < seconds;
+                default:
+                    return age <= seconds;
+            }
+        }
+    }
+
+}
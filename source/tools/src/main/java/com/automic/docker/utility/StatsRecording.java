@@ -0,0 +1,448 @@
+package com.automic.docker.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Compact columnar file of stats samples, for recordings over hours or days. The file starts with a header naming the
+ * columns and their scale, followed by segments of up to {@value #SEGMENT_ROWS} rows which are appended when they are
+ * complete. The file is read and written through plain channel reads and writes rather than memory mappings, which
+ * are only released on garbage collection and keep the file from being truncated on Windows.
+ *
+ * Within a segment every column is stored on its own: the time in milliseconds, a mask of the values present and one
+ * column per metric holding only the present values. Every value is stored as the zigzag varint of its difference to
+ * the previous value of the column, so a slowly changing metric takes one or two bytes per sample. The magic of a
+ * segment is written after its data, so a segment which was not completely written, e.g. because the process was
+ * killed, has no magic and is cut off when the file is opened again.
+ */
+public class StatsRecording {
+
+    private static final Logger LOGGER = LogManager.getLogger(StatsRecording.class);
+
+    /**
+     * Number of rows after which a segment is written
+     */
+    public static final int SEGMENT_ROWS = 900;
+
+    private static final byte[] FILE_MAGIC = "DKRSTAT1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SEGMENT_MAGIC = 0x53454731;
+    private static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final int MAX_COLUMNS = 63;
+    private static final int MAX_HEADER_SIZE = 65536;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final String[] columns;
+    private final int[] scales;
+    private long end;
+
+    // columns of the current segment
+    private final ByteArrayOutputStream[] buffers;
+    private final long[] previous;
+    private int rows;
+    private long firstTime;
+    private long lastTime;
+
+    private StatsRecording(Path file, FileChannel channel, String[] columns, int[] scales, long end) {
+        this.file = file;
+        this.channel = channel;
+        this.columns = columns;
+        this.scales = scales;
+        this.end = end;
+        this.buffers = new ByteArrayOutputStream[columns.length + 2];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ByteArrayOutputStream();
+        }
+        this.previous = new long[buffers.length];
+    }
+
+    /**
+     * Method to open a recording for appending, creating it if it does not exist.
+     *
+     * @param file
+     *            file of the recording
+     * @param columns
+     *            names of the columns
+     * @param scales
+     *            factor every value of a column is multiplied with before it is rounded, e.g. 100 to keep two decimals
+     * @return the recording
+     * @throws DockerException
+     *             if the file cannot be written or is a recording of other columns
+     */
+    public static StatsRecording open(Path file, String[] columns, int[] scales) throws DockerException {
+        if (columns.length > MAX_COLUMNS || columns.length != scales.length) {
+            throw new IllegalArgumentException("Invalid columns " + Arrays.toString(columns));
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long end;
+            if (channel.size() == 0) {
+                byte[] header = header(columns, scales);
+                channel.write(ByteBuffer.wrap(header), 0);
+                end = header.length;
+            } else {
+                Header header = readHeader(file, channel);
+                if (!Arrays.equals(header.columns, columns) || !Arrays.equals(header.scales, scales)) {
+                    String msg = String.format(ExceptionConstants.INVALID_RECORDING, file);
+                    LOGGER.error(msg + " : columns " + Arrays.toString(header.columns));
+                    throw new DockerException(msg);
+                }
+                end = header.size;
+                long size = channel.size();
+                while (end + SEGMENT_HEADER_SIZE <= size) {
+                    ByteBuffer segment = readFully(channel, end, SEGMENT_HEADER_SIZE);
+                    if (segment.getInt() != SEGMENT_MAGIC) {
+                        break;
+                    }
+                    segment.position(SEGMENT_HEADER_SIZE - 4);
+                    long next = end + SEGMENT_HEADER_SIZE + segment.getInt();
+                    if (next > size) {
+                        break;
+                    }
+                    end = next;
+                }
+                if (end < size) {
+                    LOGGER.warn("Cutting off " + (size - end) + " bytes of an incomplete segment of " + file);
+                    channel.truncate(end);
+                }
+            }
+            return new StatsRecording(file, channel, columns, scales, end);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw writeError(file, e);
+        } catch (DockerException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Method to append a row. Values which are not a number are recorded as missing.
+     *
+     * @param time
+     *            time of the sample in milliseconds since the epoch
+     * @param values
+     *            one value per column
+     * @throws DockerException
+     *             if a complete segment cannot be written
+     */
+    public void append(long time, double[] values) throws DockerException {
+        if (rows == 0) {
+            firstTime = time;
+            Arrays.fill(previous, 0);
+        }
+        lastTime = time;
+        long mask = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (!Double.isNaN(values[i]) && !Double.isInfinite(values[i])) {
+                mask |= 1L << i;
+                writeDelta(i + 2, Math.round(values[i] * scales[i]));
+            }
+        }
+        writeDelta(0, time);
+        writeDelta(1, mask);
+        rows++;
+        if (rows == SEGMENT_ROWS) {
+            flush();
+        }
+    }
+
+    private void writeDelta(int column, long value) {
+        long delta = value - previous[column];
+        previous[column] = value;
+        writeVarint(buffers[column], (delta << 1) ^ (delta >> 63));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Method to write the rows appended since the last segment as a segment.
+     *
+     * @throws DockerException
+     */
+    public void flush() throws DockerException {
+        if (rows == 0) {
+            return;
+        }
+        int length = 0;
+        for (ByteArrayOutputStream buffer : buffers) {
+            length += 4 + buffer.size();
+        }
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER_SIZE + length);
+        segment.putInt(0).putInt(rows).putLong(firstTime).putLong(lastTime).putInt(length);
+        for (ByteArrayOutputStream buffer : buffers) {
+            segment.putInt(buffer.size());
+            segment.put(buffer.toByteArray());
+            buffer.reset();
+        }
+        try {
+            segment.flip();
+            writeFully(channel, segment, end);
+            channel.force(false);
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            magic.putInt(SEGMENT_MAGIC).flip();
+            writeFully(channel, magic, end);
+            channel.force(false);
+            end += SEGMENT_HEADER_SIZE + length;
+            rows = 0;
+        } catch (IOException e) {
+            throw writeError(file, e);
+        }
+    }
+
+    /**
+     * Method to write the pending rows and close the file.
+     *
+     * @throws DockerException
+     */
+    public void close() throws DockerException {
+        try {
+            flush();
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * @return size of the file in bytes, without the rows not yet written
+     */
+    public long getSize() {
+        return end;
+    }
+
+    /**
+     * Handler of the rows read from a recording.
+     */
+    public interface RowHandler {
+
+        /**
+         * Called once before the rows.
+         *
+         * @param columns
+         *            names of the columns
+         * @throws DockerException
+         */
+        void columns(String[] columns) throws DockerException;
+
+        /**
+         * @param time
+         *            time of the sample in milliseconds since the epoch
+         * @param values
+         *            one value per column, NaN if missing; the array is reused for the next row
+         * @throws DockerException
+         */
+        void row(long time, double[] values) throws DockerException;
+    }
+
+    /**
+     * Method to read the rows of a recording in the order they were appended.
+     *
+     * @param file
+     *            file of the recording
+     * @param from
+     *            time in milliseconds of the first row to read, 0 for all
+     * @param to
+     *            time in milliseconds after which rows are skipped, 0 for all
+     * @param handler
+     *            handler of the rows
+     * @throws DockerException
+     *             if the file cannot be read or is no recording
+     */
+    public static void read(Path file, long from, long to, RowHandler handler) throws DockerException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(file, channel);
+            handler.columns(header.columns);
+            double[] values = new double[header.columns.length];
+            long position = header.size;
+            long size = channel.size();
+            while (position + SEGMENT_HEADER_SIZE <= size) {
+                ByteBuffer segmentHeader = readFully(channel, position, SEGMENT_HEADER_SIZE);
+                if (segmentHeader.getInt() != SEGMENT_MAGIC) {
+                    break;
+                }
+                int rows = segmentHeader.getInt();
+                long firstTime = segmentHeader.getLong();
+                long lastTime = segmentHeader.getLong();
+                int length = segmentHeader.getInt();
+                if (position + SEGMENT_HEADER_SIZE + length > size) {
+                    break;
+                }
+                if ((to == 0 || firstTime <= to) && lastTime >= from) {
+                    ByteBuffer segment = readFully(channel, position + SEGMENT_HEADER_SIZE, length);
+                    readSegment(segment, rows, header, from, to, values, handler);
+                }
+                position += SEGMENT_HEADER_SIZE + length;
+            }
+        } catch (IOException | RuntimeException e) {
+            String msg = String.format(ExceptionConstants.INVALID_RECORDING, file);
+            LOGGER.error(msg, e);
+            throw new DockerException(msg, e);
+        }
+    }
+
+    private static void readSegment(ByteBuffer segment, int rows, Header header, long from, long to,
+            double[] values, RowHandler handler) throws DockerException {
+        int columns = header.columns.length;
+        long[] times = readColumn(segment, rows);
+        long[] masks = readColumn(segment, rows);
+        long[][] data = new long[columns][];
+        for (int i = 0; i < columns; i++) {
+            int present = 0;
+            for (long mask : masks) {
+                present += (int) ((mask >>> i) & 1);
+            }
+            data[i] = readColumn(segment, present);
+        }
+        int[] next = new int[columns];
+        for (int row = 0; row < rows; row++) {
+            for (int i = 0; i < columns; i++) {
+                values[i] = ((masks[row] >>> i & 1) != 0) ? (double) data[i][next[i]++] / header.scales[i]
+                        : Double.NaN;
+            }
+            if (times[row] >= from && (to == 0 || times[row] <= to)) {
+                handler.row(times[row], values);
+            }
+        }
+    }
+
+    private static long[] readColumn(ByteBuffer segment, int count) {
+        int length = segment.getInt();
+        int columnEnd = segment.position() + length;
+        long[] column = new long[count];
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = segment.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            column[i] = value;
+        }
+        segment.position(columnEnd);
+        return column;
+    }
+
+    private static byte[] header(String[] columns, int[] scales) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FILE_MAGIC, 0, FILE_MAGIC.length);
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        out.write(buffer.putInt(0, columns.length).array(), 0, 4);
+        for (int i = 0; i < columns.length; i++) {
+            byte[] name = columns[i].getBytes(StandardCharsets.UTF_8);
+            out.write(buffer.putInt(0, name.length).array(), 0, 4);
+            out.write(name, 0, name.length);
+            out.write(buffer.putInt(0, scales[i]).array(), 0, 4);
+        }
+        return out.toByteArray();
+    }
+
+    private static Header readHeader(Path file, FileChannel channel) throws IOException, DockerException {
+        ByteBuffer buffer = readFully(channel, 0, (int) Math.min(channel.size(), MAX_HEADER_SIZE));
+        try {
+            if (Arrays.equals(get(buffer, new byte[FILE_MAGIC.length]), FILE_MAGIC)) {
+                int count = buffer.getInt();
+                if (count >= 0 && count <= MAX_COLUMNS) {
+                    String[] columns = new String[count];
+                    int[] scales = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        columns[i] = new String(get(buffer, new byte[buffer.getInt()]), StandardCharsets.UTF_8);
+                        scales[i] = buffer.getInt();
+                    }
+                    return new Header(columns, scales, buffer.position());
+                }
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            LOGGER.error("Truncated header of " + file, e);
+        }
+        String msg = String.format(ExceptionConstants.INVALID_RECORDING, file);
+        LOGGER.error(msg);
+        throw new DockerException(msg);
+    }
+
+    /**
+     * Method to read a part of the file, which is shorter only if the file ends before.
+     *
+     * @return the bytes read, ready to be got
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    private static byte[] get(ByteBuffer buffer, byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static DockerException writeError(Path file, IOException e) {
+        String msg = String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, file);
+        LOGGER.error(msg, e);
+        return new DockerException(msg, e);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close the recording", e);
+            }
+        }
+    }
+
+    /**
+     * Header of a recording.
+     */
+    private static final class Header {
+
+        private final String[] columns;
+        private final int[] scales;
+        private final long size;
+
+        private Header(String[] columns, int[] scales, long size) {
+            this.columns = columns;
+            this.scales = scales;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.automic.docker.utility;
+
+/**
+ * Ring buffer keeping the last bytes written to it. Its size is fixed, so any amount of output can be passed through
+ * it while only its end is retained, e.g. to report the last part of an output that went to a file.
+ */
+public class TailBuffer {
+
+    private final byte[] buffer;
+    private int next;
+    private long total;
+
+    /**
+     * @param capacity
+     *            number of bytes retained
+     */
+    public TailBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Method to append bytes, overwriting the oldest ones once the buffer is full.
+     *
+     * @param data
+     *            buffer holding the data
+     * @param offset
+     *            offset of the data in the buffer
+     * @param length
+     *            number of bytes
+     */
+    public void write(byte[] data, int offset, int length) {
+        total += length;
+        int off = offset;
+        int len = length;
+        if (len >= buffer.length) {
+            // only the end of the data fits
+            off += len - buffer.length;
+            len = buffer.length;
+        }
+        int first = Math.min(len, buffer.length - next);
+        System.arraycopy(data, off, buffer, next, first);
+        System.arraycopy(data, off + first, buffer, 0, len - first);
+        next = (next + len) % buffer.length;
+    }
+
+    /**
+     * @return total number of bytes written, including those no longer retained
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return true if more bytes have been written than retained
+     */
+    public boolean isTruncated() {
+        return total > buffer.length;
+    }
+
+    /**
+     * @return the retained bytes, oldest first
+     */
+    public byte[] toByteArray() {
+        int size = (int) Math.min(total, buffer.length);
+        byte[] tail = new byte[size];
+        int start = (next - size + buffer.length) % buffer.length;
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, tail, 0, first);
+        System.arraycopy(buffer, 0, tail, first, size - first);
+        return tail;
+    }
+
+}
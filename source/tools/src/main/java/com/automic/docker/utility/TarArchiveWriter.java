@@ -0,0 +1,241 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal writer of tar archives in ustar format as understood by docker. Names longer than the ustar limits are
+ * written as GNU long name records and sizes beyond the octal limit in base-256, both of which docker accepts. The
+ * writer does not buffer, callers should pass a buffered stream.
+ */
+public class TarArchiveWriter {
+
+    /**
+     * Size of a tar record
+     */
+    public static final int RECORD_SIZE = 512;
+
+    private static final char TYPE_FILE = '0';
+    private static final char TYPE_SYMLINK = '2';
+    private static final char TYPE_DIRECTORY = '5';
+    private static final char TYPE_GNU_LONG_NAME = 'L';
+    private static final char TYPE_GNU_LONG_LINK = 'K';
+    private static final String GNU_LONG_LINK_NAME = "././@LongLink";
+
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+    private static final int MODE_OFFSET = 100;
+    private static final int UID_OFFSET = 108;
+    private static final int GID_OFFSET = 116;
+    private static final int SIZE_OFFSET = 124;
+    private static final int MTIME_OFFSET = 136;
+    private static final int CHECKSUM_OFFSET = 148;
+    private static final int TYPE_OFFSET = 156;
+    private static final int LINK_NAME_OFFSET = 157;
+    private static final int MAGIC_OFFSET = 257;
+    private static final int PREFIX_OFFSET = 345;
+    private static final int NUMBER_FIELD_LENGTH = 8;
+    private static final int LONG_NUMBER_FIELD_LENGTH = 12;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final byte[] MAGIC = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] header = new byte[RECORD_SIZE];
+    private long bytesWritten;
+
+    public TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Method to write a directory entry.
+     *
+     * @param name
+     *            path of the directory inside the archive, separated by /
+     * @param mode
+     *            unix permissions
+     * @param mtime
+     *            modification time in seconds since the epoch
+     * @throws IOException
+     */
+    public void putDirectory(String name, int mode, long mtime) throws IOException {
+        writeHeader(name.endsWith("/") ? name : name + "/", mode, 0, mtime, TYPE_DIRECTORY, "");
+    }
+
+    /**
+     * Method to write a symbolic link entry.
+     *
+     * @param name
+     *            path of the link inside the archive
+     * @param target
+     *            target of the link
+     * @param mtime
+     *            modification time in seconds since the epoch
+     * @throws IOException
+     */
+    public void putSymbolicLink(String name, String target, long mtime) throws IOException {
+        writeHeader(name, 0777, 0, mtime, TYPE_SYMLINK, target);
+    }
+
+    /**
+     * Method to write a file entry with its content. Exactly size bytes are read from the stream.
+     *
+     * @param name
+     *            path of the file inside the archive
+     * @param mode
+     *            unix permissions
+     * @param size
+     *            size of the file
+     * @param mtime
+     *            modification time in seconds since the epoch
+     * @param content
+     *            content of the file
+     * @param buffer
+     *            copy buffer
+     * @throws IOException
+     *             also if the stream ends before size bytes have been read
+     */
+    public void putFile(String name, int mode, long size, long mtime, InputStream content, byte[] buffer)
+            throws IOException {
+        writeHeader(name, mode, size, mtime, TYPE_FILE, "");
+        long remaining = size;
+        while (remaining > 0) {
+            int n = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n == -1) {
+                throw new IOException("File [" + name + "] has been truncated while it was archived");
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+        bytesWritten += size;
+        pad(size);
+    }
+
+    /**
+     * Method to write the end of archive marker. The underlying stream is not closed.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        Arrays.fill(header, (byte) 0);
+        out.write(header);
+        out.write(header);
+        bytesWritten += 2 * RECORD_SIZE;
+        out.flush();
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void writeHeader(String name, int mode, long size, long mtime, char type, String linkName)
+            throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] linkBytes = linkName.getBytes(StandardCharsets.UTF_8);
+        if (linkBytes.length > NAME_LENGTH) {
+            writeLongName(TYPE_GNU_LONG_LINK, linkBytes);
+        }
+
+        int split = -1;
+        if (nameBytes.length > NAME_LENGTH) {
+            split = findPrefixSplit(nameBytes);
+            if (split < 0) {
+                writeLongName(TYPE_GNU_LONG_NAME, nameBytes);
+            }
+        }
+
+        Arrays.fill(header, (byte) 0);
+        if (nameBytes.length <= NAME_LENGTH) {
+            System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        } else if (split >= 0) {
+            System.arraycopy(nameBytes, split + 1, header, 0, nameBytes.length - split - 1);
+            System.arraycopy(nameBytes, 0, header, PREFIX_OFFSET, split);
+        } else {
+            System.arraycopy(nameBytes, 0, header, 0, NAME_LENGTH);
+        }
+        writeOctal(mode, MODE_OFFSET, NUMBER_FIELD_LENGTH);
+        writeOctal(0, UID_OFFSET, NUMBER_FIELD_LENGTH);
+        writeOctal(0, GID_OFFSET, NUMBER_FIELD_LENGTH);
+        writeSize(size);
+        writeOctal(mtime, MTIME_OFFSET, LONG_NUMBER_FIELD_LENGTH);
+        header[TYPE_OFFSET] = (byte) type;
+        System.arraycopy(linkBytes, 0, header, LINK_NAME_OFFSET, Math.min(linkBytes.length, NAME_LENGTH));
+        System.arraycopy(MAGIC, 0, header, MAGIC_OFFSET, MAGIC.length);
+        writeChecksum();
+        out.write(header);
+        bytesWritten += RECORD_SIZE;
+    }
+
+    /**
+     * Method to find a / at which a long name can be split into the ustar prefix and name fields.
+     *
+     * @return index of the /, -1 if the name cannot be split
+     */
+    private static int findPrefixSplit(byte[] nameBytes) {
+        for (int i = Math.min(nameBytes.length - 1, PREFIX_LENGTH); i > 0; i--) {
+            if (nameBytes[i] == '/' && nameBytes.length - i - 1 <= NAME_LENGTH && nameBytes.length - i - 1 > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void writeLongName(char type, byte[] value) throws IOException {
+        byte[] data = Arrays.copyOf(value, value.length + 1);
+        writeHeader(GNU_LONG_LINK_NAME, 0, data.length, 0, type, "");
+        out.write(data);
+        bytesWritten += data.length;
+        pad(data.length);
+    }
+
+    private void writeSize(long size) {
+        if (size <= MAX_OCTAL_SIZE) {
+            writeOctal(size, SIZE_OFFSET, LONG_NUMBER_FIELD_LENGTH);
+            return;
+        }
+        // base-256 encoding: high bit of the first byte set, big endian value in the remaining bytes
+        long value = size;
+        for (int i = SIZE_OFFSET + LONG_NUMBER_FIELD_LENGTH - 1; i > SIZE_OFFSET; i--) {
+            header[i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
+        header[SIZE_OFFSET] = (byte) 0x80;
+    }
+
+    private void writeOctal(long value, int offset, int length) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        int pad = digits - octal.length();
+        for (int i = 0; i < digits; i++) {
+            header[offset + i] = (byte) (i < pad ? '0' : octal.charAt(i - pad));
+        }
+        header[offset + digits] = 0;
+    }
+
+    private void writeChecksum() {
+        Arrays.fill(header, CHECKSUM_OFFSET, CHECKSUM_OFFSET + NUMBER_FIELD_LENGTH, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        // six octal digits, NUL and space
+        writeOctal(checksum, CHECKSUM_OFFSET, NUMBER_FIELD_LENGTH - 1);
+        header[CHECKSUM_OFFSET + NUMBER_FIELD_LENGTH - 1] = (byte) ' ';
+    }
+
+    private void pad(long length) throws IOException {
+        int remainder = (int) (length % RECORD_SIZE);
+        if (remainder > 0) {
+            Arrays.fill(header, (byte) 0);
+            out.write(header, 0, RECORD_SIZE - remainder);
+            bytesWritten += RECORD_SIZE - remainder;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.automic.docker.utility;
+
+/**
+ * Receiver of the timings recorded by {@link ActionTimings} and {@link HttpCallTiming}, used to emit them as Java
+ * Flight Recorder events. The object returned when something starts is handed back when it ends, so that an
+ * implementation can keep its own state (for example the event) in it.
+ */
+public interface TimingListener {
+
+    /**
+     * Called when an action starts.
+     *
+     * @param action
+     *            name of the action
+     * @return handle passed to {@link #actionEnded(Object, boolean)}
+     */
+    Object actionStarted(String action);
+
+    /**
+     * Called when an action ends.
+     *
+     * @param handle
+     *            handle returned by {@link #actionStarted(String)}
+     * @param success
+     *            true if the action completed without an exception
+     */
+    void actionEnded(Object handle, boolean success);
+
+    /**
+     * Called when a phase of an action starts.
+     *
+     * @param action
+     *            name of the action
+     * @param phase
+     *            name of the phase
+     * @return handle passed to {@link #phaseEnded(Object, boolean)}
+     */
+    Object phaseStarted(String action, String phase);
+
+    /**
+     * Called when a phase of an action ends.
+     *
+     * @param handle
+     *            handle returned by {@link #phaseStarted(String, String)}
+     * @param success
+     *            true if the phase completed without an exception
+     */
+    void phaseEnded(Object handle, boolean success);
+
+    /**
+     * Called before a request is sent to docker.
+     *
+     * @param method
+     *            http method
+     * @param endpoint
+     *            path of the request
+     * @return handle passed to {@link #httpCallEnded(Object, HttpCallTiming)}
+     */
+    Object httpCallStarted(String method, String endpoint);
+
+    /**
+     * Called when the response has been read completely or has been closed, or the request failed.
+     *
+     * @param handle
+     *            handle returned by {@link #httpCallStarted(String, String)}
+     * @param call
+     *            timings of the call
+     */
+    void httpCallEnded(Object handle, HttpCallTiming call);
+
+}
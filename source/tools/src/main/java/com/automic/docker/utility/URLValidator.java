@@ -5,6 +5,7 @@ import java.net.URI;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.automic.docker.constants.Constants;
 import com.automic.docker.constants.ExceptionConstants;
 import com.automic.docker.exceptions.DockerException;
 
@@ -25,7 +26,8 @@ public final class URLValidator {
 
     /**
      * Method to validate Docker URL. It validates connection protocol, Port numbers if specified. Also throws a
-     * {@link MalformedURLException} if URL is invalid.
+     * {@link MalformedURLException} if URL is invalid. A unix url (unix:///var/run/docker.sock) must contain the path
+     * of the socket.
      * 
      * @param dockerUrl
      *            String representing Docker URL
@@ -43,17 +45,43 @@ public final class URLValidator {
 
         }
 
+        if (uri != null && Constants.UNIX.equalsIgnoreCase(uri.getScheme())) {
+            return Validator.checkNotEmpty(uri.getPath());
+        }
+
         return (uri != null)
                 && checkPort(uri.getPort(), dockerUrl)
                 && checkProtocol(uri.getScheme()) ;
     }
+
+    /**
+     * Method to check if the Docker URL points to a unix domain socket.
+     * 
+     * @param dockerUrl
+     *            String representing Docker URL
+     * @return true if the protocol of the URL is unix
+     */
+    public static boolean isUnixSocket(String dockerUrl) {
+        return dockerUrl.regionMatches(true, 0, Constants.UNIX + ":", 0, Constants.UNIX.length() + 1);
+    }
+
+    /**
+     * Method to get the socket path of a unix Docker URL, e.g. /var/run/docker.sock for unix:///var/run/docker.sock
+     * 
+     * @param dockerUrl
+     *            a valid unix Docker URL
+     * @return path of the socket
+     */
+    public static String getSocketPath(String dockerUrl) {
+        return URI.create(dockerUrl).getPath();
+    }
     
     private static boolean checkPort(int port, String dockerUrl) {
         return ((port == -1 && dockerUrl.indexOf("-1") == -1) || port >= PORT_RANGE_START || port <= PORT_RANGE_END);
     }
 
     private static boolean checkProtocol(String protocol) {
-        return ("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol));
+        return (Constants.HTTP.equalsIgnoreCase(protocol) || Constants.HTTPS.equalsIgnoreCase(protocol));
     }
 
 }
@@ -0,0 +1,129 @@
+package com.automic.docker.utility;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.config.TransportSettings;
+
+/**
+ * Factory of the thread pools calls to docker are fanned out on. The workers are virtual threads if the runtime has
+ * them (Java 21 and later), which are looked up by reflection as the tool is built for Java 7, and daemon platform
+ * threads otherwise. A fixed pool has a fixed number of workers, so that no more calls than that are in flight and
+ * waiting for a pooled connection; a cached pool is for tasks which are bounded by their caller, and a timer for
+ * deadlines.
+ *
+ * Every task runs with the {@link ActionTimings} of the thread which submitted it, so that the calls made by the
+ * workers are recorded for the action.
+ */
+public final class WorkerPool {
+
+    private static final Logger LOGGER = LogManager.getLogger(WorkerPool.class);
+
+    private static final long IDLE_SECONDS = 60L;
+
+    private WorkerPool() {
+    }
+
+    /**
+     * Method to create a pool of a fixed number of workers.
+     *
+     * @param threads
+     *            number of workers
+     * @param name
+     *            prefix of the names of the workers
+     * @return the pool
+     */
+    public static ExecutorService newPool(int threads, String name) {
+        return new TimedPool(threads, threads, 0L, new LinkedBlockingQueue<Runnable>(), threadFactory(name));
+    }
+
+    /**
+     * Method to create a pool which starts a worker for every task no idle worker is available for, e.g. for tasks
+     * which are already bounded by the pool submitting them.
+     *
+     * @param name
+     *            prefix of the names of the workers
+     * @return the pool
+     */
+    public static ExecutorService newCachedPool(String name) {
+        return new TimedPool(0, Integer.MAX_VALUE, IDLE_SECONDS, new SynchronousQueue<Runnable>(), threadFactory(name));
+    }
+
+    /**
+     * Method to create a timer of a single worker, e.g. to close a stream at a deadline.
+     *
+     * @param name
+     *            name of the worker
+     * @return the timer
+     */
+    public static ScheduledExecutorService newTimer(String name) {
+        return new ScheduledThreadPoolExecutor(1, threadFactory(name));
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        ThreadFactory factory = TransportSettings.isVirtualThreads() ? virtualThreadFactory(name) : null;
+        if (factory == null) {
+            factory = new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+        }
+        return factory;
+    }
+
+    /**
+     * Method to get the factory of Thread.ofVirtual().name(name + "-", 1).factory().
+     *
+     * @return the factory, null if the runtime has no virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            LOGGER.info("Using virtual threads for " + name);
+            return factory;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            LOGGER.debug("Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Pool running every task with the timings of the thread which submitted it. All ways of submitting a task end in
+     * {@link #execute(Runnable)}.
+     */
+    private static final class TimedPool extends ThreadPoolExecutor {
+
+        TimedPool(int coreThreads, int maxThreads, long idleSeconds, BlockingQueue<Runnable> queue,
+                ThreadFactory factory) {
+            super(coreThreads, maxThreads, idleSeconds, TimeUnit.SECONDS, queue, factory);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(ActionTimings.propagate(command));
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.automic.docker.utility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.automic.docker.constants.ExceptionConstants;
+import com.automic.docker.exceptions.DockerException;
+
+/**
+ * Utility class to write result records to an xml file as they are produced. Every record becomes a child of the root
+ * tag and every field of a record becomes a child element of the record, which is the same layout the json based
+ * outputs use. Records may be written from several threads.
+ */
+public class XmlResultWriter {
+
+    private static final Logger LOGGER = LogManager.getLogger(XmlResultWriter.class);
+
+    private final String filePath;
+    private final Writer writer;
+    private final XMLStreamWriter xmlWriter;
+
+    /**
+     * Creates the file and writes the root tag.
+     *
+     * @param filePath
+     *            file to write to
+     * @param rootTag
+     *            root tag
+     * @throws DockerException
+     */
+    public XmlResultWriter(String filePath, String rootTag) throws DockerException {
+        this.filePath = filePath;
+        try {
+            writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+            xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            xmlWriter.writeStartElement(rootTag);
+        } catch (IOException | XMLStreamException e) {
+            throw writeError(e);
+        }
+    }
+
+    /**
+     * Method to write a record.
+     *
+     * @param tag
+     *            tag of the record
+     * @param fields
+     *            fields of the record in the order they should appear, null values are skipped
+     * @throws DockerException
+     */
+    public synchronized void writeRecord(String tag, Map<String, ?> fields) throws DockerException {
+        writeRecord(tag, Collections.<String, Object> emptyMap(), fields);
+    }
+
+    /**
+     * Method to write a record with attributes.
+     *
+     * @param tag
+     *            tag of the record
+     * @param attributes
+     *            attributes of the record, null values are skipped
+     * @param fields
+     *            fields of the record in the order they should appear, null values are skipped
+     * @throws DockerException
+     */
+    public synchronized void writeRecord(String tag, Map<String, ?> attributes, Map<String, ?> fields)
+            throws DockerException {
+        try {
+            xmlWriter.writeStartElement(tag);
+            for (Map.Entry<String, ?> attribute : attributes.entrySet()) {
+                if (attribute.getValue() != null) {
+                    xmlWriter.writeAttribute(attribute.getKey(), attribute.getValue().toString());
+                }
+            }
+            for (Map.Entry<String, ?> field : fields.entrySet()) {
+                if (field.getValue() != null) {
+                    xmlWriter.writeStartElement(field.getKey());
+                    xmlWriter.writeCharacters(field.getValue().toString());
+                    xmlWriter.writeEndElement();
+                }
+            }
+            xmlWriter.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw writeError(e);
+        }
+    }
+
+    /**
+     * Method to copy the records of another xml file, i.e. the children of its root, adding an attribute to every
+     * record.
+     *
+     * @param file
+     *            xml file to copy
+     * @param attribute
+     *            name of the attribute
+     * @param value
+     *            value of the attribute
+     * @return number of records copied
+     * @throws DockerException
+     *             if the file cannot be read or is no xml
+     */
+    public synchronized int copyRecords(Path file, String attribute, String value) throws DockerException {
+        int count = 0;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+            int depth = 0;
+            while (xmlReader.hasNext()) {
+                switch (xmlReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth > 1) {
+                            xmlWriter.writeStartElement(xmlReader.getLocalName());
+                            for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+                                xmlWriter.writeAttribute(xmlReader.getAttributeLocalName(i),
+                                        xmlReader.getAttributeValue(i));
+                            }
+                            if (depth == 2) {
+                                xmlWriter.writeAttribute(attribute, value);
+                                count++;
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth > 1) {
+                            xmlWriter.writeEndElement();
+                        }
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (depth > 1) {
+                            xmlWriter.writeCharacters(xmlReader.getText());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            xmlReader.close();
+        } catch (IOException | XMLStreamException e) {
+            String msg = String.format(ExceptionConstants.UNABLE_TO_READ_FILE, file);
+            LOGGER.error(msg, e);
+            throw new DockerException(msg, e);
+        }
+        return count;
+    }
+
+    /**
+     * Method to close the root tag and the file.
+     *
+     * @throws DockerException
+     */
+    public synchronized void close() throws DockerException {
+        try {
+            xmlWriter.writeEndElement();
+            xmlWriter.flush();
+            xmlWriter.close();
+            writer.close();
+        } catch (IOException | XMLStreamException e) {
+            throw writeError(e);
+        }
+    }
+
+    private DockerException writeError(Exception e) {
+        String msg = String.format(ExceptionConstants.UNABLE_TO_WRITE_FILE, filePath);
+        LOGGER.error(msg, e);
+        return new DockerException(msg, e);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.automic.docker.utility.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning a whole action run.
+ */
+@Name("com.automic.docker.Action")
+@Label("Docker Action")
+@Category(JfrTimingListener.CATEGORY)
+@Description("Run of an action of the docker tool")
+class ActionEvent extends jdk.jfr.Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("Success")
+    boolean success;
+
+}
@@ -0,0 +1,27 @@
+package com.automic.docker.utility.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning one phase of an action run: argument parsing, client creation, request, response validation or
+ * output.
+ */
+@Name("com.automic.docker.ActionPhase")
+@Label("Docker Action Phase")
+@Category(JfrTimingListener.CATEGORY)
+@Description("Phase of an action run of the docker tool")
+class ActionPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Success")
+    boolean success;
+
+}
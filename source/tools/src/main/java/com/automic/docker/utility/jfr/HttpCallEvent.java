@@ -0,0 +1,55 @@
+package com.automic.docker.utility.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning a request to docker, from sending the request until its response has been read or closed.
+ */
+@Name("com.automic.docker.HttpCall")
+@Label("Docker HTTP Call")
+@Category(JfrTimingListener.CATEGORY)
+@Description("Request sent to the docker remote API")
+class HttpCallEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Status")
+    int status;
+
+    @Label("New Connection")
+    boolean newConnection;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesOut;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Connect Time")
+    @Timespan
+    long connectTime;
+
+    @Label("TLS Handshake Time")
+    @Timespan
+    long tlsHandshakeTime;
+
+    @Label("Time To First Byte")
+    @Timespan
+    long timeToFirstByte;
+
+    @Label("Transfer Time")
+    @Timespan
+    long transferTime;
+
+}
@@ -0,0 +1,77 @@
+package com.automic.docker.utility.jfr;
+
+import com.automic.docker.utility.HttpCallTiming;
+import com.automic.docker.utility.TimingListener;
+
+/**
+ * {@link TimingListener} emitting the timings as custom Java Flight Recorder events. It is only loaded if the JVM
+ * provides the jdk.jfr module. The events are created for every run, but only written if a recording with them
+ * enabled is running, e.g. after starting java with -XX:StartFlightRecording.
+ */
+public class JfrTimingListener implements TimingListener {
+
+    /**
+     * Category of all events of the docker tool
+     */
+    static final String CATEGORY = "Docker Action Pack";
+
+    @Override
+    public Object actionStarted(String action) {
+        ActionEvent event = new ActionEvent();
+        event.action = action;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void actionEnded(Object handle, boolean success) {
+        ActionEvent event = (ActionEvent) handle;
+        event.end();
+        event.success = success;
+        event.commit();
+    }
+
+    @Override
+    public Object phaseStarted(String action, String phase) {
+        ActionPhaseEvent event = new ActionPhaseEvent();
+        event.action = action;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void phaseEnded(Object handle, boolean success) {
+        ActionPhaseEvent event = (ActionPhaseEvent) handle;
+        event.end();
+        event.success = success;
+        event.commit();
+    }
+
+    @Override
+    public Object httpCallStarted(String method, String endpoint) {
+        HttpCallEvent event = new HttpCallEvent();
+        event.method = method;
+        event.endpoint = endpoint;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void httpCallEnded(Object handle, HttpCallTiming call) {
+        HttpCallEvent event = (HttpCallEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.status = call.getStatus();
+            event.newConnection = call.isNewConnection();
+            event.bytesOut = call.getBytesOut();
+            event.bytesIn = call.getBytesIn();
+            event.connectTime = call.getConnectNanos();
+            event.tlsHandshakeTime = call.getTlsHandshakeNanos();
+            event.timeToFirstByte = call.getTimeToFirstByteNanos();
+            event.transferTime = call.getTransferNanos();
+            event.commit();
+        }
+    }
+
+}